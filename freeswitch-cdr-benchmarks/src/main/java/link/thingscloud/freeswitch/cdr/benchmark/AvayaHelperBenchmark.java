@@ -0,0 +1,38 @@
+package link.thingscloud.freeswitch.cdr.benchmark;
+
+import link.thingscloud.freeswitch.cdr.common.AvayaHelper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>AvayaHelperBenchmark class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AvayaHelperBenchmark {
+
+    /**
+     * sip_h_User-to-User 样例: 仅 ucid / shared uui + ucid
+     */
+    @Param({"00FA08006401B65D005B91", "04C80B4646464646464646464646FA08006403895D75D362"})
+    private String uui;
+
+    @Benchmark
+    public void decode(Blackhole bh) {
+        bh.consume(AvayaHelper.decode(uui));
+    }
+
+    @Benchmark
+    public String decodeUcid() {
+        return AvayaHelper.decodeUcid(uui);
+    }
+}
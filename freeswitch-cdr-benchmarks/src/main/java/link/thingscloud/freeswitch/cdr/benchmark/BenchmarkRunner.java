@@ -0,0 +1,36 @@
+package link.thingscloud.freeswitch.cdr.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>BenchmarkRunner class.</p>
+ * <p>
+ * 运行全部基准并开启 gc profiler(gc.alloc.rate.norm 即每次操作分配字节数), 可传入正则只运行部分基准.
+ * 也可直接 java -jar target/benchmarks.jar -prof gc.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    /**
+     * <p>main.</p>
+     *
+     * @param args benchmark include regex, default all
+     * @throws org.openjdk.jmh.runner.RunnerException if any.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
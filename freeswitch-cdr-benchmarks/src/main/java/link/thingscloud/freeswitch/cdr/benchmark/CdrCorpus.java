@@ -0,0 +1,99 @@
+package link.thingscloud.freeswitch.cdr.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>CdrCorpus class.</p>
+ * <p>
+ * 基准数据: example/*.cdr.xml 原样, 或在其基础上追加 variables / app_log 构造的大话单.
+ * 目录可通过 -Dcdr.corpus.dir 指定, 默认依次查找 example、../example.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public final class CdrCorpus {
+
+    /**
+     * 原样话单
+     */
+    public static final String EXAMPLE = "example";
+    /**
+     * 追加 2000 个变量、500 条 application 的大话单
+     */
+    public static final String LARGE = "large";
+
+    private static final int LARGE_VARIABLES = 2000;
+    private static final int LARGE_APPLICATIONS = 500;
+
+    private CdrCorpus() {
+    }
+
+    /**
+     * <p>xmls.</p>
+     *
+     * @param corpus {@link #EXAMPLE} or {@link #LARGE}
+     * @return decoded cdr xml list
+     */
+    public static List<String> xmls(String corpus) {
+        List<String> xmls = new ArrayList<>();
+        for (File file : files()) {
+            try {
+                String xml = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+                xmls.add(LARGE.equals(corpus) ? enlarge(xml) : xml);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return xmls;
+    }
+
+    /**
+     * mod_xml_cdr 推送的表单报文: uuid=a_xxx&amp;cdr=urlencoded xml
+     *
+     * @param xml decoded cdr xml
+     * @return request body bytes
+     */
+    public static byte[] form(String xml) {
+        try {
+            return ("uuid=a_benchmark&cdr=" + URLEncoder.encode(xml, "UTF-8")).getBytes(StandardCharsets.US_ASCII);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String enlarge(String xml) {
+        StringBuilder variables = new StringBuilder();
+        for (int i = 0; i < LARGE_VARIABLES; i++) {
+            variables.append("    <bench_var_").append(i).append('>')
+                    .append("value%20").append(i).append("%3Bencoding%3Dhex")
+                    .append("</bench_var_").append(i).append(">\n");
+        }
+        StringBuilder applications = new StringBuilder();
+        for (int i = 0; i < LARGE_APPLICATIONS; i++) {
+            applications.append("    <application app_name=\"set\" app_data=\"bench_")
+                    .append(i).append("=true\" app_stamp=\"1560303989023546\"></application>\n");
+        }
+        return xml.replaceFirst("</variables>", variables + "  </variables>")
+                .replaceFirst("</app_log>", applications + "  </app_log>");
+    }
+
+    private static File[] files() {
+        String dir = System.getProperty("cdr.corpus.dir");
+        File[] candidates = dir != null ? new File[]{new File(dir)} : new File[]{new File("example"), new File("../example")};
+        for (File candidate : candidates) {
+            File[] files = candidate.listFiles((d, name) -> name.endsWith(".cdr.xml"));
+            if (files != null && files.length > 0) {
+                return files;
+            }
+        }
+        throw new IllegalStateException("cdr corpus not found, set -Dcdr.corpus.dir=<path to example>");
+    }
+}
@@ -0,0 +1,91 @@
+package link.thingscloud.freeswitch.cdr.benchmark;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.exception.CdrRejectedException;
+import link.thingscloud.freeswitch.cdr.handler.CdrHandler;
+import link.thingscloud.freeswitch.cdr.service.CdrService;
+import link.thingscloud.freeswitch.cdr.service.impl.CdrServiceImpl;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>CdrServiceBenchmark class.</p>
+ * <p>
+ * 端到端: CdrService.handle(byte[]) 入队、解析、分发到 handler, 每次调用提交 {@link #BATCH} 条并等待全部处理完成.
+ * 注意 gc profiler 只统计基准线程的分配, 解析发生在服务线程池中, 分配率请参考 ParserBenchmark.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CdrServiceBenchmark {
+
+    private static final int BATCH = 1000;
+
+    @Param({"DOM4J", "STAX", "LAZY"})
+    private String engine;
+
+    @Param({CdrCorpus.EXAMPLE, CdrCorpus.LARGE})
+    private String corpus;
+
+    private AnnotationConfigApplicationContext context;
+    private CdrService cdrService;
+    private final LongAdder handled = new LongAdder();
+    private byte[][] bodies;
+
+    @Setup
+    public void setup() {
+        List<String> xmls = CdrCorpus.xmls(corpus);
+        bodies = new byte[xmls.size()][];
+        for (int i = 0; i < bodies.length; i++) {
+            bodies[i] = CdrCorpus.form(xmls.get(i));
+        }
+        Map<String, Object> properties = new HashMap<>(4);
+        properties.put("cdr.parser.engine", engine);
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+        context.registerBean("countingCdrHandler", CdrHandler.class, () -> (Cdr cdr) -> handled.increment());
+        context.register(CdrServiceImpl.class);
+        context.refresh();
+        cdrService = context.getBean(CdrService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long handle() {
+        long target = handled.sum() + BATCH;
+        for (int i = 0; i < BATCH; i++) {
+            byte[] body = bodies[i % bodies.length];
+            while (true) {
+                try {
+                    cdrService.handle(body);
+                    break;
+                } catch (CdrRejectedException e) {
+                    Thread.yield();
+                }
+            }
+        }
+        long sum;
+        while ((sum = handled.sum()) < target) {
+            Thread.yield();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,136 @@
+package link.thingscloud.freeswitch.cdr.benchmark;
+
+import com.alibaba.fastjson.JSON;
+import link.thingscloud.freeswitch.cdr.codec.CdrBinaryReader;
+import link.thingscloud.freeswitch.cdr.codec.CdrBinaryWriter;
+import link.thingscloud.freeswitch.cdr.codec.CdrCodec;
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.exception.ParserException;
+import link.thingscloud.freeswitch.cdr.parser.CdrParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>CodecBenchmark class.</p>
+ * <p>
+ * Cdr 二进制编码与 fastjson 的编码、解码对比; stream* 为同一流内连续写入(共享字典), 每次调用处理一条话单.
+ * 编码大小在 setup 时打印.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    private static final int STREAM_RECORDS = 1000;
+
+    @Param({CdrCorpus.EXAMPLE, CdrCorpus.LARGE})
+    private String corpus;
+
+    private Cdr[] cdrs;
+    private byte[][] jsons;
+    private byte[][] binaries;
+    private byte[] stream;
+    private CdrBinaryWriter streamWriter;
+    private CdrBinaryReader streamReader;
+    private int next;
+
+    @Setup
+    public void setup() throws ParserException, IOException {
+        List<String> xmls = CdrCorpus.xmls(corpus);
+        cdrs = new Cdr[xmls.size()];
+        jsons = new byte[xmls.size()][];
+        binaries = new byte[xmls.size()][];
+        long jsonSize = 0;
+        long binarySize = 0;
+        for (int i = 0; i < xmls.size(); i++) {
+            cdrs[i] = CdrParser.parse(xmls.get(i));
+            jsons[i] = JSON.toJSONBytes(cdrs[i]);
+            binaries[i] = CdrCodec.encode(cdrs[i]);
+            jsonSize += JSON.toJSONString(cdrs[i], true).length();
+            binarySize += binaries[i].length;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CdrBinaryWriter writer = new CdrBinaryWriter(out)) {
+            for (int i = 0; i < STREAM_RECORDS; i++) {
+                writer.write(cdrs[i % cdrs.length]);
+            }
+        }
+        stream = out.toByteArray();
+        System.out.printf("%n%s : pretty json %d bytes/cdr, compact json %d bytes/cdr, binary %d bytes/cdr, binary stream %d bytes/cdr%n",
+                corpus, jsonSize / cdrs.length, compactSize() / cdrs.length, binarySize / cdrs.length, stream.length / STREAM_RECORDS);
+        streamWriter = new CdrBinaryWriter(new NullOutputStream());
+        streamReader = new CdrBinaryReader(new ByteArrayInputStream(stream));
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() {
+        return JSON.toJSONBytes(cdrs[next()]);
+    }
+
+    @Benchmark
+    public Cdr jsonDecode() {
+        return JSON.parseObject(jsons[next()], Cdr.class);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return CdrCodec.encode(cdrs[next()]);
+    }
+
+    @Benchmark
+    public Cdr binaryDecode() throws IOException {
+        return CdrCodec.decode(binaries[next()]);
+    }
+
+    @Benchmark
+    public void streamEncode() throws IOException {
+        streamWriter.write(cdrs[next()]);
+    }
+
+    @Benchmark
+    public Cdr streamDecode() throws IOException {
+        Cdr cdr = streamReader.read();
+        if (cdr == null) {
+            // 字典只在流内有效, 读完后从头开始
+            streamReader = new CdrBinaryReader(new ByteArrayInputStream(stream));
+            cdr = streamReader.read();
+        }
+        return cdr;
+    }
+
+    private long compactSize() {
+        long size = 0;
+        for (byte[] json : jsons) {
+            size += json.length;
+        }
+        return size;
+    }
+
+    private int next() {
+        int index = next;
+        next = index + 1 == cdrs.length ? 0 : index + 1;
+        return index;
+    }
+
+    private static final class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
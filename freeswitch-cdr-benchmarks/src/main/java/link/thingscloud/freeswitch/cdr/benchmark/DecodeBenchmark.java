@@ -0,0 +1,82 @@
+package link.thingscloud.freeswitch.cdr.benchmark;
+
+import link.thingscloud.freeswitch.cdr.parser.CdrEnvelope;
+import link.thingscloud.freeswitch.cdr.util.CdrDecodeUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>DecodeBenchmark class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecodeBenchmark {
+
+    @Param({CdrCorpus.EXAMPLE, CdrCorpus.LARGE})
+    private String corpus;
+
+    private String[] forms;
+    private byte[][] bodies;
+    private final byte[] buffer = new byte[8192];
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<String> xmls = CdrCorpus.xmls(corpus);
+        forms = new String[xmls.size()];
+        bodies = new byte[xmls.size()][];
+        for (int i = 0; i < xmls.size(); i++) {
+            bodies[i] = CdrCorpus.form(xmls.get(i));
+            forms[i] = new String(bodies[i], StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * URLDecoder 解码整个表单为 String
+     */
+    @Benchmark
+    public String decode() {
+        return CdrDecodeUtil.decode(forms[next()]);
+    }
+
+    /**
+     * 按字节流解码 cdr 字段
+     */
+    @Benchmark
+    public long decodeField() throws IOException {
+        long length = 0;
+        try (InputStream in = CdrDecodeUtil.decodeField(bodies[next()], "cdr")) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                length += n;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 只读取 uuid / core-uuid / switchname, 耗时应与话单大小无关
+     */
+    @Benchmark
+    public CdrEnvelope envelope() {
+        return CdrEnvelope.read(bodies[next()]);
+    }
+
+    private int next() {
+        int index = next;
+        next = index + 1 == forms.length ? 0 : index + 1;
+        return index;
+    }
+}
@@ -0,0 +1,95 @@
+package link.thingscloud.freeswitch.cdr.benchmark;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.exception.ParserException;
+import link.thingscloud.freeswitch.cdr.parser.CdrParser;
+import link.thingscloud.freeswitch.cdr.parser.CdrProjection;
+import link.thingscloud.freeswitch.cdr.parser.ParseOptions;
+import link.thingscloud.freeswitch.cdr.parser.ParserEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>ParserBenchmark class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"DOM4J", "STAX", "LAZY"})
+    private ParserEngine engine;
+
+    @Param({CdrCorpus.EXAMPLE, CdrCorpus.LARGE})
+    private String corpus;
+
+    private String[] xmls;
+    private String[] forms;
+    private byte[][] bodies;
+    private int next;
+
+    /**
+     * 典型订阅 : Times、通话质量及少量变量
+     */
+    private final ParseOptions projected = new ParseOptions().setProjection(
+            CdrProjection.parse("CALL_STATS,CALLFLOW_TIMES", "hangup_cause,billsec,sip_term_status,call_uuid"));
+
+    @Setup
+    public void setup() {
+        List<String> list = CdrCorpus.xmls(corpus);
+        xmls = list.toArray(new String[0]);
+        forms = new String[xmls.length];
+        bodies = new byte[xmls.length][];
+        for (int i = 0; i < xmls.length; i++) {
+            bodies[i] = CdrCorpus.form(xmls[i]);
+            forms[i] = new String(bodies[i], StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * 解析已解码的 xml
+     */
+    @Benchmark
+    public Cdr parse() throws ParserException {
+        return CdrParser.parse(xmls[next()], engine);
+    }
+
+    /**
+     * 按投影解析已解码的 xml
+     */
+    @Benchmark
+    public Cdr parseProjected() throws ParserException {
+        return CdrParser.parse(xmls[next()], engine, projected);
+    }
+
+    /**
+     * 表单 String 解码后解析
+     */
+    @Benchmark
+    public Cdr decodeThenParseText() throws ParserException {
+        return CdrParser.decodeThenParse(forms[next()], engine);
+    }
+
+    /**
+     * 请求体字节直接解码解析, 与 CdrController 路径一致
+     */
+    @Benchmark
+    public Cdr decodeThenParseBytes() throws ParserException {
+        return CdrParser.decodeThenParse(bodies[next()], engine);
+    }
+
+    private int next() {
+        int index = next;
+        next = index + 1 == xmls.length ? 0 : index + 1;
+        return index;
+    }
+}
@@ -0,0 +1,247 @@
+package link.thingscloud.freeswitch.cdr.converter;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * <p>CdrArchives class.</p>
+ * <p>
+ * 顺序读取输入中的话单文件: 目录(递归, 目录中的归档同样展开)、.zip、.tar、.tar.gz / .tgz 以及单个 .cdr.xml 文件.
+ * tar 只识别普通文件, 支持 ustar 前缀、GNU 长文件名与 pax path.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+final class CdrArchives {
+
+    private static final int BLOCK = 512;
+
+    /**
+     * 话单文件回调
+     */
+    interface EntryConsumer {
+        void accept(String name, byte[] xml) throws IOException;
+    }
+
+    private CdrArchives() {
+    }
+
+    static void read(Path input, String suffix, EntryConsumer consumer) throws IOException {
+        if (Files.isDirectory(input)) {
+            try (Stream<Path> files = Files.walk(input)) {
+                Iterator<Path> iterator = files.filter(Files::isRegularFile).sorted().iterator();
+                while (iterator.hasNext()) {
+                    Path file = iterator.next();
+                    if (isArchive(file.getFileName().toString()) || file.getFileName().toString().endsWith(suffix)) {
+                        read(file, suffix, consumer);
+                    }
+                }
+            }
+            return;
+        }
+        String name = input.getFileName().toString();
+        if (name.endsWith(".zip")) {
+            try (ZipInputStream in = new ZipInputStream(new BufferedInputStream(Files.newInputStream(input), 1 << 16))) {
+                readZip(in, suffix, consumer);
+            }
+        } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(input), 1 << 16)) {
+                readTar(new BufferedInputStream(in, 1 << 16), suffix, consumer);
+            }
+        } else if (name.endsWith(".tar")) {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(input), 1 << 16)) {
+                readTar(in, suffix, consumer);
+            }
+        } else {
+            consumer.accept(input.toString(), Files.readAllBytes(input));
+        }
+    }
+
+    private static boolean isArchive(String name) {
+        return name.endsWith(".zip") || name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    private static void readZip(ZipInputStream in, String suffix, EntryConsumer consumer) throws IOException {
+        ZipEntry entry;
+        while ((entry = in.getNextEntry()) != null) {
+            if (!entry.isDirectory() && entry.getName().endsWith(suffix)) {
+                consumer.accept(entry.getName(), readAll(in, entry.getSize()));
+            }
+        }
+    }
+
+    static void readTar(InputStream in, String suffix, EntryConsumer consumer) throws IOException {
+        byte[] header = new byte[BLOCK];
+        String longName = null;
+        while (readBlock(in, header)) {
+            if (isZero(header)) {
+                return;
+            }
+            long size = number(header, 124, 12);
+            byte type = header[156];
+            if (type == 'L' || type == 'x') {
+                byte[] data = readFully(in, (int) size);
+                skipPadding(in, size);
+                String name = type == 'L' ? cstring(data, 0, data.length) : paxPath(data);
+                if (name != null) {
+                    longName = name;
+                }
+                continue;
+            }
+            String name = longName != null ? longName : name(header);
+            longName = null;
+            if ((type == '0' || type == 0) && name.endsWith(suffix)) {
+                consumer.accept(name, readFully(in, (int) size));
+                skipPadding(in, size);
+            } else {
+                skip(in, size + padding(size));
+            }
+        }
+    }
+
+    private static String name(byte[] header) {
+        String name = cstring(header, 0, 100);
+        if (header[257] == 'u' && header[258] == 's' && header[259] == 't' && header[260] == 'a' && header[261] == 'r') {
+            String prefix = cstring(header, 345, 155);
+            if (!prefix.isEmpty()) {
+                return prefix + "/" + name;
+            }
+        }
+        return name;
+    }
+
+    /**
+     * pax 扩展头: "&lt;length&gt; &lt;key&gt;=&lt;value&gt;\n" 记录序列
+     */
+    private static String paxPath(byte[] data) {
+        int pos = 0;
+        while (pos < data.length) {
+            int space = pos;
+            while (space < data.length && data[space] != ' ') {
+                space++;
+            }
+            if (space == data.length) {
+                return null;
+            }
+            int length = Integer.parseInt(new String(data, pos, space - pos, StandardCharsets.US_ASCII));
+            if (length <= 0) {
+                return null;
+            }
+            String record = new String(data, space + 1, pos + length - space - 2, StandardCharsets.UTF_8);
+            if (record.startsWith("path=")) {
+                return record.substring(5);
+            }
+            pos += length;
+        }
+        return null;
+    }
+
+    private static long number(byte[] header, int offset, int length) {
+        if ((header[offset] & 0x80) != 0) {
+            // base-256
+            long value = header[offset] & 0x7F;
+            for (int i = 1; i < length; i++) {
+                value = (value << 8) | (header[offset + i] & 0xFF);
+            }
+            return value;
+        }
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b >= '0' && b <= '7') {
+                value = (value << 3) + (b - '0');
+            } else if (b == 0 || (b == ' ' && value > 0)) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    private static String cstring(byte[] data, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && data[end] != 0) {
+            end++;
+        }
+        return new String(data, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isZero(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long padding(long size) {
+        return (BLOCK - (size % BLOCK)) % BLOCK;
+    }
+
+    private static void skipPadding(InputStream in, long size) throws IOException {
+        skip(in, padding(size));
+    }
+
+    private static boolean readBlock(InputStream in, byte[] block) throws IOException {
+        int read = 0;
+        while (read < block.length) {
+            int n = in.read(block, read, block.length - read);
+            if (n < 0) {
+                if (read == 0) {
+                    return false;
+                }
+                throw new EOFException("truncated tar header.");
+            }
+            read += n;
+        }
+        return true;
+    }
+
+    private static byte[] readFully(InputStream in, int size) throws IOException {
+        byte[] data = new byte[size];
+        int read = 0;
+        while (read < size) {
+            int n = in.read(data, read, size - read);
+            if (n < 0) {
+                throw new EOFException("truncated archive entry.");
+            }
+            read += n;
+        }
+        return data;
+    }
+
+    private static byte[] readAll(InputStream in, long sizeHint) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(sizeHint > 0 ? (int) sizeHint : 32 * 1024);
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static void skip(InputStream in, long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("truncated archive.");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package link.thingscloud.freeswitch.cdr.converter;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.function.Function;
+
+/**
+ * <p>CdrColumn class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Getter
+@ToString(exclude = "extractor")
+public final class CdrColumn {
+
+    private final String name;
+    private final ColumnType type;
+    /**
+     * 从 Cdr 取值(Long / Double / String, 可为 null), 读取文件时为 null
+     */
+    private final Function<Cdr, Object> extractor;
+
+    /**
+     * <p>Constructor for CdrColumn.</p>
+     *
+     * @param name      a {@link java.lang.String} object.
+     * @param type      a {@link link.thingscloud.freeswitch.cdr.converter.ColumnType} object.
+     * @param extractor a {@link java.util.function.Function} object.
+     */
+    public CdrColumn(String name, ColumnType type, Function<Cdr, Object> extractor) {
+        this.name = name;
+        this.type = type;
+        this.extractor = extractor;
+    }
+}
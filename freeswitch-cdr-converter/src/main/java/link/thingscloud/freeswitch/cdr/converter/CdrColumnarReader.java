@@ -0,0 +1,182 @@
+package link.thingscloud.freeswitch.cdr.converter;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * <p>CdrColumnarReader class.</p>
+ * <p>
+ * 按行组读取 {@link CdrColumnarWriter} 写出的文件, 只解压、解码选中的列, 其余列直接跳过.
+ * <pre>
+ * try (CdrColumnarReader reader = new CdrColumnarReader(new FileInputStream(file))) {
+ *     while (reader.next(Arrays.asList("switchname", "in_mos"))) {
+ *         ColumnVector mos = reader.getColumn("in_mos");
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class CdrColumnarReader implements Closeable {
+
+    private final DataInputStream in;
+    private final List<CdrColumn> columns;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final Inflater inflater = new Inflater();
+    private final Map<String, ColumnVector> current = new HashMap<>();
+    private int rows;
+    private boolean finished;
+
+    /**
+     * <p>Constructor for CdrColumnarReader.</p>
+     *
+     * @param in a {@link java.io.InputStream} object.
+     * @throws java.io.IOException if any.
+     */
+    public CdrColumnarReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        byte[] magic = new byte[CdrColumnarWriter.MAGIC.length];
+        this.in.readFully(magic);
+        if (!Arrays.equals(magic, CdrColumnarWriter.MAGIC)) {
+            throw new IOException("not a cdr columnar file.");
+        }
+        int version = this.in.readInt();
+        if (version != CdrColumnarWriter.VERSION) {
+            throw new IOException("unsupported cdr columnar file version : " + version);
+        }
+        int count = this.in.readInt();
+        List<CdrColumn> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = this.in.readUTF();
+            list.add(new CdrColumn(name, ColumnType.values()[this.in.readByte()], null));
+            indexes.put(name, i);
+        }
+        this.columns = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * <p>getColumns.</p>
+     *
+     * @return 文件中的列
+     */
+    public List<CdrColumn> getColumns() {
+        return columns;
+    }
+
+    /**
+     * 读取下一个行组.
+     *
+     * @param names 需要的列名, null 表示全部
+     * @return 已到文件末尾时为 false
+     * @throws java.io.IOException if any.
+     */
+    public boolean next(Collection<String> names) throws IOException {
+        current.clear();
+        if (finished) {
+            return false;
+        }
+        rows = in.readInt();
+        if (rows == 0) {
+            finished = true;
+            return false;
+        }
+        for (CdrColumn column : columns) {
+            int rawLength = in.readInt();
+            int compressedLength = in.readInt();
+            if (names != null && !names.contains(column.getName())) {
+                skip(compressedLength);
+                continue;
+            }
+            byte[] compressed = new byte[compressedLength];
+            in.readFully(compressed);
+            current.put(column.getName(), ColumnVector.decode(column.getType(), inflate(compressed, rawLength), rows));
+        }
+        return true;
+    }
+
+    /**
+     * <p>getRowCount.</p>
+     *
+     * @return 当前行组的行数
+     */
+    public int getRowCount() {
+        return rows;
+    }
+
+    /**
+     * <p>getColumn.</p>
+     *
+     * @param name 列名
+     * @return 当前行组中该列的值, 未选中或不存在时为 null
+     */
+    public ColumnVector getColumn(String name) {
+        return current.get(name);
+    }
+
+    /**
+     * <p>hasColumn.</p>
+     *
+     * @param name 列名
+     * @return a boolean.
+     */
+    public boolean hasColumn(String name) {
+        return indexes.containsKey(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+
+    private byte[] inflate(byte[] compressed, int rawLength) throws IOException {
+        byte[] raw = new byte[rawLength];
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            int length = 0;
+            while (length < rawLength) {
+                int n = inflater.inflate(raw, length, rawLength - length);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != rawLength) {
+                throw new IOException("corrupted column chunk, expect : " + rawLength + ", actual : " + length);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupted column chunk.", e);
+        }
+        return raw;
+    }
+
+    private void skip(int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+    }
+}
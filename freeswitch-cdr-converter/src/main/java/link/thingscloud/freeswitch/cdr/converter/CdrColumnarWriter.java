@@ -0,0 +1,79 @@
+package link.thingscloud.freeswitch.cdr.converter;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * <p>CdrColumnarWriter class.</p>
+ * <p>
+ * 文件格式: [magic "FSCDRCOL"][int version][int columns]([UTF name][byte type])*,
+ * 之后为行组: [int rows]([int rawLength][int compressedLength][zlib bytes])*, 以 rows = 0 结束.
+ * 读取时可按 compressedLength 跳过不需要的列.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class CdrColumnarWriter implements Closeable {
+
+    static final byte[] MAGIC = "FSCDRCOL".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private final int columns;
+    private long rows;
+
+    /**
+     * <p>Constructor for CdrColumnarWriter.</p>
+     *
+     * @param out     a {@link java.io.OutputStream} object.
+     * @param columns a {@link java.util.List} object.
+     * @throws java.io.IOException if any.
+     */
+    public CdrColumnarWriter(OutputStream out, List<CdrColumn> columns) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        this.columns = columns.size();
+        this.out.write(MAGIC);
+        this.out.writeInt(VERSION);
+        this.out.writeInt(columns.size());
+        for (CdrColumn column : columns) {
+            this.out.writeUTF(column.getName());
+            this.out.writeByte(column.getType().ordinal());
+        }
+    }
+
+    void write(RowGroup group) throws IOException {
+        if (group.rows == 0) {
+            return;
+        }
+        out.writeInt(group.rows);
+        for (int i = 0; i < columns; i++) {
+            out.writeInt(group.rawLengths[i]);
+            out.writeInt(group.chunks[i].length);
+            out.write(group.chunks[i]);
+        }
+        rows += group.rows;
+    }
+
+    /**
+     * <p>getRows.</p>
+     *
+     * @return 已写入的行数
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        out.writeInt(0);
+        out.close();
+    }
+}
@@ -0,0 +1,343 @@
+package link.thingscloud.freeswitch.cdr.converter;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.exception.ParserException;
+import link.thingscloud.freeswitch.cdr.parser.CdrParser;
+import link.thingscloud.freeswitch.cdr.parser.ParseOptions;
+import link.thingscloud.freeswitch.cdr.parser.ParserEngine;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>CdrConverter class.</p>
+ * <p>
+ * 把 .cdr.xml 目录或归档转换为列式文件({@link CdrColumnarWriter}), 之后用 {@link CdrColumnarReader} 只读需要的列.
+ * <p>
+ * 流水线: 主线程顺序读取归档, 每 {@link #CHUNK} 个文件提交一个解析任务到 ForkJoinPool(任务内再二分并行);
+ * 解析结果按提交顺序拼成行组, 再提交按列并行的编码压缩任务, 主线程按顺序写出.
+ * 进行中的解析、编码任务数有上限, 内存占用与输入规模无关.
+ * <pre>
+ * java -jar cdr-converter.jar -o cdrs.col [-v sip_call_id,hangup_cause] [-e STAX] [-p 8] [-r 8192] [-l 6] &lt;dir|zip|tar|tar.gz&gt;...
+ * </pre>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Slf4j
+public class CdrConverter {
+
+    static final int CHUNK = 64;
+    private static final int SPLIT = 8;
+
+    private final ConverterOptions options;
+    private final CdrSchema schema;
+    private final ParseOptions parseOptions;
+    private final LongAdder failed = new LongAdder();
+    private long files;
+    private long inputBytes;
+
+    /**
+     * <p>Constructor for CdrConverter.</p>
+     *
+     * @param options a {@link link.thingscloud.freeswitch.cdr.converter.ConverterOptions} object.
+     */
+    public CdrConverter(ConverterOptions options) {
+        this.options = options;
+        this.schema = CdrSchema.of(options.getVariables());
+        this.parseOptions = schema.parseOptions();
+    }
+
+    /**
+     * <p>main.</p>
+     *
+     * @param args an array of {@link java.lang.String} objects.
+     */
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    static int run(String[] args) {
+        ConverterOptions options;
+        try {
+            options = parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage : java -jar cdr-converter.jar -o <output> [-v var1,var2] [-e STAX|DOM4J|LAZY] [-p parallelism]"
+                    + " [-r rows-per-group] [-l level] [-s suffix] <dir|zip|tar|tar.gz|cdr.xml>...");
+            return 2;
+        }
+        long start = System.nanoTime();
+        CdrConverter converter = new CdrConverter(options);
+        try {
+            long rows = converter.convert();
+            log.info("cdr converter output : [{}], rows : [{}], failed : [{}], input : [{}] bytes, output : [{}] bytes, elapsed : [{}] ms.",
+                    options.getOutput(), rows, converter.getFailedCount(), converter.getInputBytes(), options.getOutput().length(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return converter.getFailedCount() > 0 ? 1 : 0;
+        } catch (IOException e) {
+            log.error("cdr converter failure : ", e);
+            return 1;
+        }
+    }
+
+    static ConverterOptions parseArgs(String[] args) {
+        ConverterOptions options = new ConverterOptions();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-o":
+                case "--output":
+                    options.setOutput(new File(value(args, ++i, arg)));
+                    break;
+                case "-v":
+                case "--variables":
+                    options.setVariables(Arrays.asList(value(args, ++i, arg).split(",")));
+                    break;
+                case "-e":
+                case "--engine":
+                    options.setEngine(ParserEngine.valueOf(value(args, ++i, arg).toUpperCase()));
+                    break;
+                case "-p":
+                case "--parallelism":
+                    options.setParallelism(Integer.parseInt(value(args, ++i, arg)));
+                    break;
+                case "-r":
+                case "--rows-per-group":
+                    options.setRowsPerGroup(Integer.parseInt(value(args, ++i, arg)));
+                    break;
+                case "-l":
+                case "--level":
+                    options.setLevel(Integer.parseInt(value(args, ++i, arg)));
+                    break;
+                case "-s":
+                case "--suffix":
+                    options.setSuffix(value(args, ++i, arg));
+                    break;
+                default:
+                    if (arg.startsWith("-")) {
+                        throw new IllegalArgumentException("unknown option : " + arg);
+                    }
+                    options.getInputs().add(new File(arg));
+            }
+        }
+        if (options.getOutput() == null || options.getInputs().isEmpty()) {
+            throw new IllegalArgumentException("output and at least one input are required.");
+        }
+        if (options.getParallelism() < 1 || options.getRowsPerGroup() < 1) {
+            throw new IllegalArgumentException("parallelism and rows-per-group must be positive.");
+        }
+        return options;
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("missing value for option : " + option);
+        }
+        return args[i];
+    }
+
+    /**
+     * 转换到 options.output.
+     *
+     * @return 写出的行数
+     * @throws java.io.IOException if any.
+     */
+    public long convert() throws IOException {
+        try (OutputStream out = new FileOutputStream(options.getOutput())) {
+            return convert(out);
+        }
+    }
+
+    /**
+     * <p>convert.</p>
+     *
+     * @param out a {@link java.io.OutputStream} object.
+     * @return 写出的行数
+     * @throws java.io.IOException if any.
+     */
+    public long convert(OutputStream out) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(options.getParallelism());
+        try (CdrColumnarWriter writer = new CdrColumnarWriter(out, schema.getColumns())) {
+            Pipeline pipeline = new Pipeline(pool, writer);
+            for (File input : options.getInputs()) {
+                CdrArchives.read(input.toPath(), options.getSuffix(), pipeline::add);
+            }
+            pipeline.finish();
+            return writer.getRows();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * <p>getSchema.</p>
+     *
+     * @return a {@link link.thingscloud.freeswitch.cdr.converter.CdrSchema} object.
+     */
+    public CdrSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * <p>getFailedCount.</p>
+     *
+     * @return 解析失败的文件数
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * <p>getFileCount.</p>
+     *
+     * @return 读取的话单文件数
+     */
+    public long getFileCount() {
+        return files;
+    }
+
+    /**
+     * <p>getInputBytes.</p>
+     *
+     * @return 读取的 xml 字节数
+     */
+    public long getInputBytes() {
+        return inputBytes;
+    }
+
+    /**
+     * 在主线程中调用, 保持输出顺序与输入顺序一致.
+     */
+    private final class Pipeline {
+
+        private final ForkJoinPool pool;
+        private final CdrColumnarWriter writer;
+        private final int maxParsing;
+        private final Deque<ParseTask> parsing = new ArrayDeque<>();
+        private final Deque<ForkJoinTask<RowGroup>> encoding = new ArrayDeque<>();
+        private List<String> names = new ArrayList<>(CHUNK);
+        private List<byte[]> xmls = new ArrayList<>(CHUNK);
+        private List<Cdr> group;
+
+        Pipeline(ForkJoinPool pool, CdrColumnarWriter writer) {
+            this.pool = pool;
+            this.writer = writer;
+            this.maxParsing = pool.getParallelism() * 4;
+            this.group = new ArrayList<>(options.getRowsPerGroup());
+        }
+
+        void add(String name, byte[] xml) throws IOException {
+            files++;
+            inputBytes += xml.length;
+            names.add(name);
+            xmls.add(xml);
+            if (xmls.size() == CHUNK) {
+                submitChunk();
+            }
+        }
+
+        void finish() throws IOException {
+            if (!xmls.isEmpty()) {
+                submitChunk();
+            }
+            while (!parsing.isEmpty()) {
+                collect(parsing.poll());
+            }
+            if (!group.isEmpty()) {
+                submitGroup();
+            }
+            while (!encoding.isEmpty()) {
+                writer.write(encoding.poll().join());
+            }
+        }
+
+        private void submitChunk() throws IOException {
+            ParseTask task = new ParseTask(names.toArray(new String[0]), xmls.toArray(new byte[0][]), 0, xmls.size());
+            names = new ArrayList<>(CHUNK);
+            xmls = new ArrayList<>(CHUNK);
+            parsing.add(task);
+            pool.execute(task);
+            while (parsing.size() > maxParsing) {
+                collect(parsing.poll());
+            }
+        }
+
+        private void collect(ParseTask task) throws IOException {
+            task.join();
+            for (Cdr cdr : task.cdrs) {
+                if (cdr != null) {
+                    group.add(cdr);
+                    if (group.size() == options.getRowsPerGroup()) {
+                        submitGroup();
+                    }
+                }
+            }
+        }
+
+        private void submitGroup() throws IOException {
+            Cdr[] cdrs = group.toArray(new Cdr[0]);
+            group = new ArrayList<>(options.getRowsPerGroup());
+            encoding.add(pool.submit(() -> RowGroup.encode(schema.getColumns(), cdrs, options.getLevel())));
+            while (encoding.size() > 2) {
+                writer.write(encoding.poll().join());
+            }
+        }
+    }
+
+    /**
+     * 解析 [from, to), 超过 {@link #SPLIT} 个文件时二分.
+     */
+    private final class ParseTask extends RecursiveAction {
+
+        private final String[] names;
+        private final byte[][] xmls;
+        private final Cdr[] cdrs;
+        private final int from;
+        private final int to;
+
+        ParseTask(String[] names, byte[][] xmls, int from, int to) {
+            this(names, xmls, new Cdr[xmls.length], from, to);
+        }
+
+        private ParseTask(String[] names, byte[][] xmls, Cdr[] cdrs, int from, int to) {
+            this.names = names;
+            this.xmls = xmls;
+            this.cdrs = cdrs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ParseTask(names, xmls, cdrs, from, mid), new ParseTask(names, xmls, cdrs, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                try {
+                    cdrs[i] = CdrParser.parse(xmls[i], options.getEngine(), parseOptions);
+                } catch (ParserException e) {
+                    failed.increment();
+                    log.warn("cdr converter parse : [{}] failure : {}", names[i], e.getMessage());
+                }
+                // 解析后即释放原始 xml, LAZY 引擎仍持有直到各段落加载
+                xmls[i] = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package link.thingscloud.freeswitch.cdr.converter;
+
+import link.thingscloud.freeswitch.cdr.domain.Audio;
+import link.thingscloud.freeswitch.cdr.domain.CallerProfile;
+import link.thingscloud.freeswitch.cdr.domain.Callflow;
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.domain.InboundStats;
+import link.thingscloud.freeswitch.cdr.domain.OutboundStats;
+import link.thingscloud.freeswitch.cdr.domain.Times;
+import link.thingscloud.freeswitch.cdr.parser.CdrProjection;
+import link.thingscloud.freeswitch.cdr.parser.CdrSection;
+import link.thingscloud.freeswitch.cdr.parser.ParseOptions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * <p>CdrSchema class.</p>
+ * <p>
+ * 固定列来自 Cdr 根节点、channel_data、第一个 callflow(最近的 caller_profile)的 caller_profile / times、
+ * call-stats 的 inbound / outbound 数值统计; 另加 var.&lt;name&gt; 形式的可选变量列.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public final class CdrSchema {
+
+    /**
+     * 变量列名前缀
+     */
+    public static final String VARIABLE_PREFIX = "var.";
+
+    private final List<CdrColumn> columns;
+    private final List<String> variables;
+
+    private CdrSchema(List<CdrColumn> columns, List<String> variables) {
+        this.columns = Collections.unmodifiableList(columns);
+        this.variables = Collections.unmodifiableList(variables);
+    }
+
+    /**
+     * <p>of.</p>
+     *
+     * @param variables 额外输出的通道变量
+     * @return a {@link link.thingscloud.freeswitch.cdr.converter.CdrSchema} object.
+     */
+    public static CdrSchema of(Collection<String> variables) {
+        List<CdrColumn> columns = new ArrayList<>(64);
+        string(columns, "core_uuid", Cdr::getCoreUuid);
+        string(columns, "switchname", Cdr::getSwitchname);
+        string(columns, "direction", cdr -> cdr.getChannelData() == null ? null : trim(cdr.getChannelData().getDirection()));
+        string(columns, "unique_id", cdr -> callflow(cdr) == null ? null : callflow(cdr).getUniqueId());
+        string(columns, "caller_id_name", cdr -> profile(cdr) == null ? null : profile(cdr).getCallerIdName());
+        string(columns, "caller_id_number", cdr -> profile(cdr) == null ? null : profile(cdr).getCallerIdNumber());
+        string(columns, "destination_number", cdr -> profile(cdr) == null ? null : profile(cdr).getDestinationNumber());
+        string(columns, "network_addr", cdr -> profile(cdr) == null ? null : profile(cdr).getNetworkAddr());
+        string(columns, "context", cdr -> profile(cdr) == null ? null : profile(cdr).getContext());
+        time(columns, "created_time", Times::getCreatedTime);
+        time(columns, "profile_created_time", Times::getProfileCreatedTime);
+        time(columns, "progress_time", Times::getProgressTime);
+        time(columns, "progress_media_time", Times::getProgressMediaTime);
+        time(columns, "answered_time", Times::getAnsweredTime);
+        time(columns, "bridged_time", Times::getBridgedTime);
+        time(columns, "last_hold_time", Times::getLastHoldTime);
+        time(columns, "hold_accum_time", Times::getHoldAccumTime);
+        time(columns, "hangup_time", Times::getHangupTime);
+        time(columns, "resurrect_time", Times::getResurrectTime);
+        time(columns, "transfer_time", Times::getTransferTime);
+        inboundLong(columns, "in_raw_bytes", InboundStats::getRawBytes);
+        inboundLong(columns, "in_media_bytes", InboundStats::getMediaBytes);
+        inboundLong(columns, "in_packet_count", InboundStats::getPacketCount);
+        inboundLong(columns, "in_media_packet_count", InboundStats::getMediaPacketCount);
+        inboundLong(columns, "in_skip_packet_count", InboundStats::getSkipPacketCount);
+        inboundLong(columns, "in_jitter_packet_count", InboundStats::getJitterPacketCount);
+        inboundLong(columns, "in_dtmf_packet_count", InboundStats::getDtmfPacketCount);
+        inboundLong(columns, "in_cng_packet_count", InboundStats::getCngPacketCount);
+        inboundLong(columns, "in_flush_packet_count", InboundStats::getFlushPacketCount);
+        inboundLong(columns, "in_largest_jb_size", InboundStats::getLargestJbSize);
+        inboundLong(columns, "in_flaw_total", InboundStats::getFlawTotal);
+        inboundDouble(columns, "in_jitter_min_variance", InboundStats::getJitterMinVariance);
+        inboundDouble(columns, "in_jitter_max_variance", InboundStats::getJitterMaxVariance);
+        inboundDouble(columns, "in_jitter_loss_rate", InboundStats::getJitterLossRate);
+        inboundDouble(columns, "in_jitter_burst_rate", InboundStats::getJitterBurstRate);
+        inboundDouble(columns, "in_mean_interval", InboundStats::getMeanInterval);
+        inboundDouble(columns, "in_quality_percentage", InboundStats::getQualityPercentage);
+        inboundDouble(columns, "in_mos", InboundStats::getMos);
+        outboundLong(columns, "out_raw_bytes", OutboundStats::getRawBytes);
+        outboundLong(columns, "out_media_bytes", OutboundStats::getMediaBytes);
+        outboundLong(columns, "out_packet_count", OutboundStats::getPacketCount);
+        outboundLong(columns, "out_media_packet_count", OutboundStats::getMediaPacketCount);
+        outboundLong(columns, "out_skip_packet_count", OutboundStats::getSkipPacketCount);
+        outboundLong(columns, "out_dtmf_packet_count", OutboundStats::getDtmfPacketCount);
+        outboundLong(columns, "out_cng_packet_count", OutboundStats::getCngPacketCount);
+        outboundLong(columns, "out_rtcp_packet_count", OutboundStats::getRtcpPacketCount);
+        outboundLong(columns, "out_rtcp_octet_count", OutboundStats::getRtcpOctetCount);
+        List<String> names = variables == null ? Collections.emptyList() : new ArrayList<>(variables);
+        for (String name : names) {
+            string(columns, VARIABLE_PREFIX + name, cdr -> variable(cdr, name));
+        }
+        return new CdrSchema(columns, names);
+    }
+
+    /**
+     * <p>getColumns.</p>
+     *
+     * @return a {@link java.util.List} object.
+     */
+    public List<CdrColumn> getColumns() {
+        return columns;
+    }
+
+    /**
+     * <p>getVariables.</p>
+     *
+     * @return a {@link java.util.List} object.
+     */
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * 只解析输出列所需的段落与变量, 并开启 typedStats.
+     *
+     * @return a {@link link.thingscloud.freeswitch.cdr.parser.ParseOptions} object.
+     */
+    public ParseOptions parseOptions() {
+        CdrProjection projection = CdrProjection.of(Arrays.asList(CdrSection.CHANNEL_DATA, CdrSection.CALL_STATS,
+                CdrSection.CALLFLOW_CALLER_PROFILE, CdrSection.CALLFLOW_TIMES), variables);
+        return new ParseOptions().setTypedStats(true).setProjection(projection);
+    }
+
+    private static void string(List<CdrColumn> columns, String name, Function<Cdr, Object> extractor) {
+        columns.add(new CdrColumn(name, ColumnType.STRING, extractor));
+    }
+
+    private static void time(List<CdrColumn> columns, String name, Function<Times, Long> getter) {
+        columns.add(new CdrColumn(name, ColumnType.LONG, cdr -> {
+            Callflow callflow = callflow(cdr);
+            return callflow == null || callflow.getTimes() == null ? null : getter.apply(callflow.getTimes());
+        }));
+    }
+
+    private static void inboundLong(List<CdrColumn> columns, String name, ToLongFunction<InboundStats> getter) {
+        columns.add(new CdrColumn(name, ColumnType.LONG, cdr -> inbound(cdr) == null ? null : getter.applyAsLong(inbound(cdr))));
+    }
+
+    private static void inboundDouble(List<CdrColumn> columns, String name, ToDoubleFunction<InboundStats> getter) {
+        columns.add(new CdrColumn(name, ColumnType.DOUBLE, cdr -> inbound(cdr) == null ? null : getter.applyAsDouble(inbound(cdr))));
+    }
+
+    private static void outboundLong(List<CdrColumn> columns, String name, ToLongFunction<OutboundStats> getter) {
+        columns.add(new CdrColumn(name, ColumnType.LONG, cdr -> outbound(cdr) == null ? null : getter.applyAsLong(outbound(cdr))));
+    }
+
+    private static Callflow callflow(Cdr cdr) {
+        List<Callflow> callflows = cdr.getCallflows();
+        return callflows == null || callflows.isEmpty() ? null : callflows.get(0);
+    }
+
+    private static CallerProfile profile(Cdr cdr) {
+        Callflow callflow = callflow(cdr);
+        return callflow == null ? null : callflow.getCallerProfile();
+    }
+
+    private static Audio audio(Cdr cdr) {
+        return cdr.getCallStats() == null ? null : cdr.getCallStats().getAudio();
+    }
+
+    private static InboundStats inbound(Cdr cdr) {
+        Audio audio = audio(cdr);
+        return audio == null || audio.getInbound() == null ? null : audio.getInbound().getStats();
+    }
+
+    private static OutboundStats outbound(Cdr cdr) {
+        Audio audio = audio(cdr);
+        return audio == null || audio.getOutbound() == null ? null : audio.getOutbound().getStats();
+    }
+
+    private static String variable(Cdr cdr, String name) {
+        if (cdr.getVariables() == null) {
+            return null;
+        }
+        Map<String, String> table = cdr.getVariables().getVariableTable();
+        return table == null ? null : table.get(name);
+    }
+
+    private static String trim(String value) {
+        return value == null ? null : value.trim();
+    }
+}
@@ -0,0 +1,22 @@
+package link.thingscloud.freeswitch.cdr.converter;
+
+/**
+ * <p>ColumnType enum.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public enum ColumnType {
+    /**
+     * 与上一个非空值的差值, zigzag varint
+     */
+    LONG,
+    /**
+     * IEEE 754 8 字节
+     */
+    DOUBLE,
+    /**
+     * 行组内字典 + varint 下标
+     */
+    STRING
+}
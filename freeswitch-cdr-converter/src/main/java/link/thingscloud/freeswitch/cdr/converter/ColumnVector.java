@@ -0,0 +1,264 @@
+package link.thingscloud.freeswitch.cdr.converter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>ColumnVector class.</p>
+ * <p>
+ * 一个行组内单列的值. 编码格式(压缩前): 空值位图 ceil(rows / 8) 字节, 之后只编码非空值:
+ * LONG 为与上一个非空值差值的 zigzag varint; DOUBLE 为 8 字节 big-endian;
+ * STRING 为 varint 字典大小、字典项(varint 长度 + UTF-8), 再逐行 varint 字典下标.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public final class ColumnVector {
+
+    private final ColumnType type;
+    private final int size;
+    private final boolean[] nulls;
+    private final long[] longs;
+    private final double[] doubles;
+    private final String[] strings;
+
+    private ColumnVector(ColumnType type, int size) {
+        this.type = type;
+        this.size = size;
+        this.nulls = new boolean[size];
+        this.longs = type == ColumnType.LONG ? new long[size] : null;
+        this.doubles = type == ColumnType.DOUBLE ? new double[size] : null;
+        this.strings = type == ColumnType.STRING ? new String[size] : null;
+    }
+
+    /**
+     * <p>getType.</p>
+     *
+     * @return a {@link link.thingscloud.freeswitch.cdr.converter.ColumnType} object.
+     */
+    public ColumnType getType() {
+        return type;
+    }
+
+    /**
+     * <p>size.</p>
+     *
+     * @return 行数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * <p>isNull.</p>
+     *
+     * @param row a int.
+     * @return a boolean.
+     */
+    public boolean isNull(int row) {
+        return nulls[row];
+    }
+
+    /**
+     * <p>getLong.</p>
+     *
+     * @param row a int.
+     * @return 空值时为 0
+     */
+    public long getLong(int row) {
+        return longs[row];
+    }
+
+    /**
+     * <p>getDouble.</p>
+     *
+     * @param row a int.
+     * @return 空值时为 0
+     */
+    public double getDouble(int row) {
+        return doubles[row];
+    }
+
+    /**
+     * <p>getString.</p>
+     *
+     * @param row a int.
+     * @return a {@link java.lang.String} object.
+     */
+    public String getString(int row) {
+        return strings[row];
+    }
+
+    /**
+     * <p>get.</p>
+     *
+     * @param row a int.
+     * @return Long / Double / String, 空值为 null
+     */
+    public Object get(int row) {
+        if (nulls[row]) {
+            return null;
+        }
+        switch (type) {
+            case LONG:
+                return longs[row];
+            case DOUBLE:
+                return doubles[row];
+            default:
+                return strings[row];
+        }
+    }
+
+    /**
+     * <p>encode.</p>
+     *
+     * @param type   a {@link link.thingscloud.freeswitch.cdr.converter.ColumnType} object.
+     * @param values Long / Double / String, 可为 null
+     * @return 未压缩的列数据
+     */
+    public static byte[] encode(ColumnType type, Object[] values) {
+        int rows = values.length;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(rows * 4 + 16);
+        byte[] bitmap = new byte[(rows + 7) >>> 3];
+        for (int i = 0; i < rows; i++) {
+            if (values[i] == null) {
+                bitmap[i >>> 3] |= 1 << (i & 7);
+            }
+        }
+        out.write(bitmap, 0, bitmap.length);
+        switch (type) {
+            case LONG:
+                long previous = 0;
+                for (Object value : values) {
+                    if (value != null) {
+                        long v = (Long) value;
+                        writeVarLong(out, zigzag(v - previous));
+                        previous = v;
+                    }
+                }
+                break;
+            case DOUBLE:
+                for (Object value : values) {
+                    if (value != null) {
+                        long bits = Double.doubleToLongBits((Double) value);
+                        for (int shift = 56; shift >= 0; shift -= 8) {
+                            out.write((int) (bits >>> shift));
+                        }
+                    }
+                }
+                break;
+            default:
+                Map<String, Integer> dictionary = new HashMap<>();
+                List<String> entries = new ArrayList<>();
+                int[] indexes = new int[rows];
+                for (int i = 0; i < rows; i++) {
+                    if (values[i] != null) {
+                        String v = (String) values[i];
+                        Integer index = dictionary.get(v);
+                        if (index == null) {
+                            index = entries.size();
+                            dictionary.put(v, index);
+                            entries.add(v);
+                        }
+                        indexes[i] = index;
+                    }
+                }
+                writeVarLong(out, entries.size());
+                for (String entry : entries) {
+                    byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+                    writeVarLong(out, bytes.length);
+                    out.write(bytes, 0, bytes.length);
+                }
+                for (int i = 0; i < rows; i++) {
+                    if (values[i] != null) {
+                        writeVarLong(out, indexes[i]);
+                    }
+                }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * <p>decode.</p>
+     *
+     * @param type a {@link link.thingscloud.freeswitch.cdr.converter.ColumnType} object.
+     * @param data 未压缩的列数据
+     * @param rows 行数
+     * @return a {@link link.thingscloud.freeswitch.cdr.converter.ColumnVector} object.
+     */
+    public static ColumnVector decode(ColumnType type, byte[] data, int rows) {
+        ColumnVector vector = new ColumnVector(type, rows);
+        int[] pos = {(rows + 7) >>> 3};
+        for (int i = 0; i < rows; i++) {
+            vector.nulls[i] = (data[i >>> 3] & (1 << (i & 7))) != 0;
+        }
+        switch (type) {
+            case LONG:
+                long previous = 0;
+                for (int i = 0; i < rows; i++) {
+                    if (!vector.nulls[i]) {
+                        previous += unzigzag(readVarLong(data, pos));
+                        vector.longs[i] = previous;
+                    }
+                }
+                break;
+            case DOUBLE:
+                for (int i = 0; i < rows; i++) {
+                    if (!vector.nulls[i]) {
+                        long bits = 0;
+                        for (int j = 0; j < 8; j++) {
+                            bits = (bits << 8) | (data[pos[0]++] & 0xFF);
+                        }
+                        vector.doubles[i] = Double.longBitsToDouble(bits);
+                    }
+                }
+                break;
+            default:
+                String[] entries = new String[(int) readVarLong(data, pos)];
+                for (int i = 0; i < entries.length; i++) {
+                    int length = (int) readVarLong(data, pos);
+                    entries[i] = new String(data, pos[0], length, StandardCharsets.UTF_8);
+                    pos[0] += length;
+                }
+                for (int i = 0; i < rows; i++) {
+                    if (!vector.nulls[i]) {
+                        vector.strings[i] = entries[(int) readVarLong(data, pos)];
+                    }
+                }
+        }
+        return vector;
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarLong(byte[] data, int[] pos) {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            byte b = data[pos[0]++];
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+            shift += 7;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package link.thingscloud.freeswitch.cdr.converter;
+
+import link.thingscloud.freeswitch.cdr.parser.ParserEngine;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * <p>ConverterOptions class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Data
+@Accessors(chain = true)
+public class ConverterOptions {
+    /**
+     * 目录、.zip、.tar、.tar.gz / .tgz 或 .cdr.xml 文件
+     */
+    private List<File> inputs = new ArrayList<>();
+    private File output;
+    /**
+     * 额外输出为 var.&lt;name&gt; 列的通道变量
+     */
+    private List<String> variables = new ArrayList<>();
+    private ParserEngine engine = ParserEngine.STAX;
+    /**
+     * ForkJoinPool 并行度
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int rowsPerGroup = 8192;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private String suffix = ".cdr.xml";
+}
@@ -0,0 +1,76 @@
+package link.thingscloud.freeswitch.cdr.converter;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.Deflater;
+
+/**
+ * <p>RowGroup class.</p>
+ * <p>
+ * 一个行组内各列编码并 deflate 后的数据, 在 ForkJoinPool 中按列并行编码.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+final class RowGroup {
+
+    final int rows;
+    final int[] rawLengths;
+    final byte[][] chunks;
+
+    private RowGroup(int rows, int columns) {
+        this.rows = rows;
+        this.rawLengths = new int[columns];
+        this.chunks = new byte[columns][];
+    }
+
+    /**
+     * 需在 ForkJoinPool 中调用
+     */
+    static RowGroup encode(List<CdrColumn> columns, Cdr[] cdrs, int level) {
+        RowGroup group = new RowGroup(cdrs.length, columns.size());
+        List<RecursiveAction> tasks = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            int column = i;
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    CdrColumn cdrColumn = columns.get(column);
+                    Object[] values = new Object[cdrs.length];
+                    for (int row = 0; row < cdrs.length; row++) {
+                        values[row] = cdrColumn.getExtractor().apply(cdrs[row]);
+                    }
+                    byte[] raw = ColumnVector.encode(cdrColumn.getType(), values);
+                    group.rawLengths[column] = raw.length;
+                    group.chunks[column] = deflate(raw, level);
+                }
+            });
+        }
+        ForkJoinTask.invokeAll(tasks);
+        return group;
+    }
+
+    private static byte[] deflate(byte[] raw, int level) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] out = new byte[Math.max(64, raw.length / 2)];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, out.length << 1);
+                }
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            return Arrays.copyOf(out, length);
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package link.thingscloud.freeswitch.cdr.converter;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.parser.CdrParser;
+import link.thingscloud.freeswitch.cdr.parser.ParseOptions;
+import link.thingscloud.freeswitch.cdr.parser.ParserEngine;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * <p>CdrConverterTest class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class CdrConverterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void convertDirZipAndTar() throws Exception {
+        File[] examples = new File("../example").listFiles((d, name) -> name.endsWith(".cdr.xml"));
+        Assert.assertNotNull(examples);
+        Arrays.sort(examples);
+
+        File zip = folder.newFile("cdrs.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            for (File example : examples) {
+                out.putNextEntry(new ZipEntry("2022/07/" + example.getName()));
+                out.write(Files.readAllBytes(example.toPath()));
+                out.closeEntry();
+            }
+        }
+        File tar = folder.newFile("cdrs.tar.gz");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(tar))) {
+            for (File example : examples) {
+                writeTarEntry(out, "xml_cdr/" + example.getName(), Files.readAllBytes(example.toPath()));
+            }
+            writeTarEntry(out, "xml_cdr/readme.txt", "x".getBytes(StandardCharsets.UTF_8));
+            out.write(new byte[1024]);
+        }
+
+        File output = folder.newFile("cdrs.col");
+        ConverterOptions options = new ConverterOptions()
+                .setInputs(Arrays.asList(new File("../example"), zip, tar))
+                .setOutput(output)
+                .setVariables(Arrays.asList("uuid", "sip_call_id", "not_exists"))
+                .setParallelism(2)
+                .setRowsPerGroup(4);
+        CdrConverter converter = new CdrConverter(options);
+        Assert.assertEquals(examples.length * 3L, converter.convert());
+        Assert.assertEquals(0, converter.getFailedCount());
+
+        List<Cdr> expected = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            for (File example : examples) {
+                expected.add(CdrParser.parse(Files.readAllBytes(example.toPath()), ParserEngine.DOM4J, new ParseOptions().setTypedStats(true)));
+            }
+        }
+        int row = 0;
+        try (CdrColumnarReader reader = new CdrColumnarReader(Files.newInputStream(output.toPath()))) {
+            Assert.assertEquals(converter.getSchema().getColumns().size(), reader.getColumns().size());
+            while (reader.next(null)) {
+                for (int i = 0; i < reader.getRowCount(); i++, row++) {
+                    Cdr cdr = expected.get(row);
+                    for (CdrColumn column : converter.getSchema().getColumns()) {
+                        Assert.assertEquals(column.getName(), column.getExtractor().apply(cdr), reader.getColumn(column.getName()).get(i));
+                    }
+                }
+            }
+        }
+        Assert.assertEquals(expected.size(), row);
+        Assert.assertNotNull(expected.get(0).getCallflows().get(0).getTimes().getCreatedTime());
+
+        // 只读取选中的列
+        try (CdrColumnarReader reader = new CdrColumnarReader(new ByteArrayInputStream(Files.readAllBytes(output.toPath())))) {
+            Assert.assertTrue(reader.next(Collections.singleton("in_mos")));
+            Assert.assertNull(reader.getColumn("core_uuid"));
+            CdrColumn mos = converter.getSchema().getColumns().stream().filter(c -> "in_mos".equals(c.getName())).findFirst().get();
+            Assert.assertEquals(mos.getExtractor().apply(expected.get(0)), reader.getColumn("in_mos").get(0));
+        }
+    }
+
+    @Test
+    public void parseArgs() {
+        ConverterOptions options = CdrConverter.parseArgs(new String[]{"-o", "out.col", "-v", "a,b", "-e", "lazy", "-p", "3", "in1", "in2.tar.gz"});
+        Assert.assertEquals(new File("out.col"), options.getOutput());
+        Assert.assertEquals(Arrays.asList("a", "b"), options.getVariables());
+        Assert.assertEquals(ParserEngine.LAZY, options.getEngine());
+        Assert.assertEquals(3, options.getParallelism());
+        Assert.assertEquals(2, options.getInputs().size());
+        Assert.assertEquals(2, CdrConverter.run(new String[]{"in1"}));
+    }
+
+    private static void writeTarEntry(OutputStream out, String name, byte[] data) throws IOException {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        octal(header, 100, 8, 0644);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, data.length);
+        octal(header, 136, 12, 0);
+        header[156] = '0';
+        System.arraycopy("ustar\00000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        int checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        octal(header, 148, 7, checksum);
+        out.write(header);
+        out.write(data);
+        out.write(new byte[(512 - data.length % 512) % 512]);
+    }
+
+    private static void octal(byte[] header, int offset, int length, long value) {
+        String s = Long.toOctalString(value);
+        while (s.length() < length - 1) {
+            s = "0" + s;
+        }
+        System.arraycopy(s.getBytes(StandardCharsets.US_ASCII), 0, header, offset, length - 1);
+    }
+}
@@ -1,12 +1,33 @@
 package link.thingscloud.freeswitch.cdr.spring.boot.starter.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import link.thingscloud.freeswitch.cdr.archive.CdrArchiveWriter;
+import link.thingscloud.freeswitch.cdr.handler.BatchCdrHandler;
 import link.thingscloud.freeswitch.cdr.handler.CdrHandler;
+import link.thingscloud.freeswitch.cdr.metrics.CdrMetrics;
+import link.thingscloud.freeswitch.cdr.quality.CallQualityAggregator;
+import link.thingscloud.freeswitch.cdr.spring.boot.starter.handler.ArchiveCdrHandler;
 import link.thingscloud.freeswitch.cdr.spring.boot.starter.handler.SimpleCdrHandler;
+import link.thingscloud.freeswitch.cdr.spring.boot.starter.jdbc.JdbcCdrHandler;
+import link.thingscloud.freeswitch.cdr.spring.boot.starter.jdbc.JdbcCdrOptions;
+import link.thingscloud.freeswitch.cdr.spring.boot.starter.metrics.MicrometerCdrMetrics;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * <p>FreeswitchCdrAutoConfiguration class.</p>
  *
@@ -15,6 +36,8 @@ import org.springframework.context.annotation.Configuration;
  */
 @Configuration
 @ComponentScan({"link.thingscloud.freeswitch.cdr"})
+@AutoConfigureAfter(name = {"org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration",
+        "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration"})
 public class FreeswitchCdrAutoConfiguration {
 
 
@@ -24,9 +47,129 @@ public class FreeswitchCdrAutoConfiguration {
      * @return a {@link link.thingscloud.freeswitch.cdr.handler.CdrHandler} object.
      */
     @Bean
-    @ConditionalOnMissingBean(CdrHandler.class)
+    @ConditionalOnMissingBean({CdrHandler.class, BatchCdrHandler.class})
     public CdrHandler cdrHandler() {
         return new SimpleCdrHandler();
     }
 
+    /**
+     * 存在 Micrometer 与 MeterRegistry(如引入 spring-boot-starter-actuator)时注册埋点, cdr.metrics.enabled=false 关闭.
+     */
+    @Configuration
+    @ConditionalOnClass(MeterRegistry.class)
+    @ConditionalOnBean(MeterRegistry.class)
+    @ConditionalOnProperty(name = "cdr.metrics.enabled", havingValue = "true", matchIfMissing = true)
+    static class MetricsConfiguration {
+
+        /**
+         * <p>cdrMetrics.</p>
+         *
+         * @param registry            a {@link io.micrometer.core.instrument.MeterRegistry} object.
+         * @param percentiles         a double array.
+         * @param percentileHistogram a boolean.
+         * @return a {@link link.thingscloud.freeswitch.cdr.metrics.CdrMetrics} object.
+         */
+        @Bean
+        @ConditionalOnMissingBean(CdrMetrics.class)
+        public CdrMetrics cdrMetrics(MeterRegistry registry,
+                                     @Value("${cdr.metrics.percentiles:0.5,0.95,0.99}") double[] percentiles,
+                                     @Value("${cdr.metrics.percentile-histogram:false}") boolean percentileHistogram) {
+            return new MicrometerCdrMetrics(registry, percentiles, percentileHistogram);
+        }
+    }
+
+    /**
+     * cdr.archive.enabled=true 时注册 ArchiveCdrHandler, 写入本地滚动归档.
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "cdr.archive.enabled", havingValue = "true")
+    static class ArchiveConfiguration {
+
+        /**
+         * bean 名称即 cdr.handler.archiveCdrHandler.* 中的 handler 名称.
+         *
+         * @param dir            a {@link java.lang.String} object.
+         * @param segmentSize    a long.
+         * @param rollIntervalMs a long.
+         * @param blockSize      a int.
+         * @param sync           a boolean.
+         * @return a {@link link.thingscloud.freeswitch.cdr.spring.boot.starter.handler.ArchiveCdrHandler} object.
+         * @throws java.io.IOException if any.
+         */
+        @Bean
+        public ArchiveCdrHandler archiveCdrHandler(@Value("${cdr.archive.dir:cdr-archive}") String dir,
+                                                   @Value("${cdr.archive.segment-size:67108864}") long segmentSize,
+                                                   @Value("${cdr.archive.roll-interval-ms:3600000}") long rollIntervalMs,
+                                                   @Value("${cdr.archive.block-size:262144}") int blockSize,
+                                                   @Value("${cdr.archive.sync:true}") boolean sync) throws IOException {
+            return new ArchiveCdrHandler(new CdrArchiveWriter(new File(dir), segmentSize, rollIntervalMs, blockSize, sync));
+        }
+    }
+
+    /**
+     * cdr.quality.enabled=true 时注册 CallQualityAggregator, 查询接口为 GET /freeswitch/cdr/quality.
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "cdr.quality.enabled", havingValue = "true")
+    static class QualityConfiguration {
+
+        /**
+         * <p>callQualityAggregator.</p>
+         *
+         * @param dimensions 逗号分隔的维度变量名
+         * @param maxSeries  a int.
+         * @return a {@link link.thingscloud.freeswitch.cdr.quality.CallQualityAggregator} object.
+         */
+        @Bean
+        public CallQualityAggregator callQualityAggregator(@Value("${cdr.quality.dimensions:sip_gateway_name}") String dimensions,
+                                                           @Value("${cdr.quality.max-series:1000}") int maxSeries) {
+            return new CallQualityAggregator(split(dimensions), maxSeries);
+        }
+    }
+
+    /**
+     * cdr.jdbc.enabled=true 时注册 JdbcCdrHandler, 写入容器中的 DataSource.
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "cdr.jdbc.enabled", havingValue = "true")
+    static class JdbcConfiguration {
+
+        /**
+         * bean 名称即 cdr.handler.jdbcCdrHandler.* 中的 handler 名称.
+         *
+         * @param dataSource       a {@link javax.sql.DataSource} object.
+         * @param table            a {@link java.lang.String} object.
+         * @param statsTable       a {@link java.lang.String} object.
+         * @param variables        逗号分隔的变量名
+         * @param rowsPerStatement a int.
+         * @param createTables     a boolean.
+         * @param maxRetries       a int.
+         * @param retryBackoffMs   a long.
+         * @return a {@link link.thingscloud.freeswitch.cdr.spring.boot.starter.jdbc.JdbcCdrHandler} object.
+         */
+        @Bean
+        public JdbcCdrHandler jdbcCdrHandler(DataSource dataSource,
+                                             @Value("${cdr.jdbc.table:cdr}") String table,
+                                             @Value("${cdr.jdbc.stats-table:cdr_call_stats}") String statsTable,
+                                             @Value("${cdr.jdbc.variables:}") String variables,
+                                             @Value("${cdr.jdbc.rows-per-statement:50}") int rowsPerStatement,
+                                             @Value("${cdr.jdbc.create-tables:false}") boolean createTables,
+                                             @Value("${cdr.jdbc.max-retries:3}") int maxRetries,
+                                             @Value("${cdr.jdbc.retry-backoff-ms:1000}") long retryBackoffMs) {
+            return new JdbcCdrHandler(dataSource, new JdbcCdrOptions().setTable(table).setStatsTable(statsTable)
+                    .setVariables(split(variables)).setRowsPerStatement(rowsPerStatement).setCreateTables(createTables)
+                    .setMaxRetries(maxRetries).setRetryBackoffMs(retryBackoffMs));
+        }
+    }
+
+    private static List<String> split(String value) {
+        List<String> list = new ArrayList<>();
+        for (String item : StringUtils.split(value, ',')) {
+            if (StringUtils.isNotBlank(item)) {
+                list.add(item.trim());
+            }
+        }
+        return list;
+    }
+
 }
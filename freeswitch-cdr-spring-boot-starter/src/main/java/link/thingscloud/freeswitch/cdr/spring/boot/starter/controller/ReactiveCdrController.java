@@ -0,0 +1,163 @@
+package link.thingscloud.freeswitch.cdr.spring.boot.starter.controller;
+
+import link.thingscloud.freeswitch.cdr.exception.CdrRejectedException;
+import link.thingscloud.freeswitch.cdr.service.CdrService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.DispatcherHandler;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * <p>ReactiveCdrController class.</p>
+ * <p>
+ * reactive(WebFlux/Netty) 应用的接入, 与 servlet 的 CdrController 路径、拒绝语义一致.
+ * 请求体按 DataBuffer 到达顺序拷贝进一个按 Content-Length 预分配的数组并立即释放, 不占用 Netty 缓冲、不阻塞 event loop;
+ * 接入队列满时直接拒绝. 开启 spool 时入队前需要落盘(fsync), 此时切换到 boundedElastic 线程.
+ * <p>
+ * 注意: 请求体先完整缓冲为 byte[] 再交给 {@link CdrService#handle(byte[])} 解码, 并非流式送入解码器,
+ * 每个请求在内存中占用一份完整请求体, 上限为 cdr.reactive.max-body-size(超出返回 413).
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Slf4j
+@RestController
+@RequestMapping("/freeswitch")
+@ConditionalOnClass(DispatcherHandler.class)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCdrController {
+
+    @Autowired
+    private CdrService cdrService;
+
+    @Value("${cdr.reject.status:503}")
+    private int rejectStatus;
+
+    @Value("${cdr.reject.retry-after:5}")
+    private int rejectRetryAfter;
+
+    @Value("${cdr.spool.enabled:false}")
+    private boolean spoolEnabled;
+
+    @Value("${cdr.reactive.max-body-size:16777216}")
+    private int maxBodySize;
+
+    /**
+     * <p>cdr.</p>
+     *
+     * @param exchange a {@link org.springframework.web.server.ServerWebExchange} object.
+     * @return a {@link reactor.core.publisher.Mono} object.
+     */
+    @RequestMapping("/cdr")
+    public Mono<Void> cdr(ServerWebExchange exchange) {
+        long contentLength = exchange.getRequest().getHeaders().getContentLength();
+        if (contentLength > maxBodySize) {
+            return Mono.error(new BodyTooLargeException());
+        }
+        Mono<byte[]> body = exchange.getRequest().getBody()
+                .collect(() -> new Body(contentLength > 0 ? (int) contentLength : 4096), this::append)
+                .map(Body::toBytes);
+        if (spoolEnabled) {
+            body = body.publishOn(Schedulers.boundedElastic());
+        }
+        return body.doOnNext(reqBytes -> {
+            if (log.isDebugEnabled()) {
+                log.debug("cdr httpHeaders : [{}]", exchange.getRequest().getHeaders());
+                log.debug("cdr reqText     : [{}]", new String(reqBytes, StandardCharsets.UTF_8));
+            }
+            cdrService.handle(reqBytes);
+        }).then();
+    }
+
+    /**
+     * 未识别元素/属性按路径计数, 用于发现 FreeSWITCH 新版本新增的字段.
+     *
+     * @return path -&gt; count
+     */
+    @GetMapping("/cdr/unknown-elements")
+    public Map<String, Long> unknownElements() {
+        return cdrService.getUnknownElementCounts();
+    }
+
+    /**
+     * 队列已满时返回 503(或配置的 429), mod_xml_cdr 按 retries / delay 重试.
+     *
+     * @param e a {@link link.thingscloud.freeswitch.cdr.exception.CdrRejectedException} object.
+     * @return a {@link org.springframework.http.ResponseEntity} object.
+     */
+    @ExceptionHandler(CdrRejectedException.class)
+    public ResponseEntity<Void> rejected(CdrRejectedException e) {
+        return ResponseEntity.status(rejectStatus)
+                .header(HttpHeaders.RETRY_AFTER, Integer.toString(rejectRetryAfter))
+                .build();
+    }
+
+    /**
+     * 请求体超过 cdr.reactive.max-body-size.
+     *
+     * @param e a {@link BodyTooLargeException} object.
+     * @return a {@link org.springframework.http.ResponseEntity} object.
+     */
+    @ExceptionHandler(BodyTooLargeException.class)
+    public ResponseEntity<Void> tooLarge(BodyTooLargeException e) {
+        log.warn("freeswitch cdr request body exceeds max body size : [{}].", maxBodySize);
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+    }
+
+    private void append(Body body, DataBuffer buffer) {
+        try {
+            int length = buffer.readableByteCount();
+            if (body.length + length > maxBodySize) {
+                throw new BodyTooLargeException();
+            }
+            body.ensureCapacity(body.length + length);
+            buffer.read(body.bytes, body.length, length);
+            body.length += length;
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    private static final class Body {
+        private byte[] bytes;
+        private int length;
+
+        Body(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length << 1));
+            }
+        }
+
+        byte[] toBytes() {
+            return length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+        }
+    }
+
+    static final class BodyTooLargeException extends RuntimeException {
+        BodyTooLargeException() {
+            super("freeswitch cdr request body is too large.", null, false, false);
+        }
+    }
+}
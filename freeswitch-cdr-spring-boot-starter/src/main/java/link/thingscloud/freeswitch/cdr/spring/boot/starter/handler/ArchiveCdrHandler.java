@@ -0,0 +1,55 @@
+package link.thingscloud.freeswitch.cdr.spring.boot.starter.handler;
+
+import link.thingscloud.freeswitch.cdr.archive.CdrArchiveWriter;
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.handler.BatchCdrHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * <p>ArchiveCdrHandler class.</p>
+ * <p>
+ * 将话单写入本地滚动归档({@link CdrArchiveWriter}), 运行在独立的攒批线程上, 每批顺序写入一个或多个压缩块.
+ * 攒批条数、等待时间与有界队列按 cdr.handler.archiveCdrHandler.* 配置.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Slf4j
+public class ArchiveCdrHandler implements BatchCdrHandler, DisposableBean {
+
+    private final CdrArchiveWriter writer;
+
+    /**
+     * <p>Constructor for ArchiveCdrHandler.</p>
+     *
+     * @param writer a {@link link.thingscloud.freeswitch.cdr.archive.CdrArchiveWriter} object.
+     */
+    public ArchiveCdrHandler(CdrArchiveWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void handleCdrs(List<Cdr> cdrs) {
+        try {
+            writer.append(cdrs);
+        } catch (IOException e) {
+            throw new UncheckedIOException("archive " + cdrs.size() + " cdrs failure", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void destroy() throws IOException {
+        writer.close();
+    }
+}
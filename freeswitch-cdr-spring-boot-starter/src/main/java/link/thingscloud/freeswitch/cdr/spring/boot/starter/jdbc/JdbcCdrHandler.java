@@ -0,0 +1,392 @@
+package link.thingscloud.freeswitch.cdr.spring.boot.starter.jdbc;
+
+import link.thingscloud.freeswitch.cdr.domain.Audio;
+import link.thingscloud.freeswitch.cdr.domain.CallerProfile;
+import link.thingscloud.freeswitch.cdr.domain.Callflow;
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.domain.Inbound;
+import link.thingscloud.freeswitch.cdr.domain.Outbound;
+import link.thingscloud.freeswitch.cdr.domain.Times;
+import link.thingscloud.freeswitch.cdr.handler.BatchCdrHandler;
+import link.thingscloud.freeswitch.cdr.handler.CdrProjectionAware;
+import link.thingscloud.freeswitch.cdr.parser.CdrProjection;
+import link.thingscloud.freeswitch.cdr.parser.CdrSection;
+import link.thingscloud.freeswitch.cdr.util.NumberUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.InitializingBean;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * <p>JdbcCdrHandler class.</p>
+ * <p>
+ * 将话单写入关系数据库: 话单表保存 Cdr 根节点、channel_data、第一个 callflow 的 caller_profile / times 及配置的变量,
+ * call-stats 表保存 audio inbound / outbound 数值统计. 作为 BatchCdrHandler 运行在独立的攒批线程上,
+ * 攒批条数、等待时间与有界队列按 cdr.handler.jdbcCdrHandler.* 配置; 每批一个事务,
+ * 按 rowsPerStatement 行拼成多行 INSERT 后以 JDBC batch 提交, 失败时整批回滚并重试.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Slf4j
+public class JdbcCdrHandler implements BatchCdrHandler, CdrProjectionAware, InitializingBean {
+
+    /**
+     * 变量列名前缀
+     */
+    public static final String VARIABLE_PREFIX = "var_";
+
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+    private final DataSource dataSource;
+    private final JdbcCdrOptions options;
+    private final List<JdbcColumn> cdrColumns;
+    private final List<JdbcColumn> statsColumns;
+    private final String cdrSql;
+    private final String statsSql;
+
+    /**
+     * <p>Constructor for JdbcCdrHandler.</p>
+     *
+     * @param dataSource a {@link javax.sql.DataSource} object.
+     * @param options    a {@link link.thingscloud.freeswitch.cdr.spring.boot.starter.jdbc.JdbcCdrOptions} object.
+     */
+    public JdbcCdrHandler(DataSource dataSource, JdbcCdrOptions options) {
+        if (options.getRowsPerStatement() <= 0) {
+            throw new IllegalArgumentException("rowsPerStatement must be positive : " + options.getRowsPerStatement());
+        }
+        checkTableName(options.getTable());
+        if (StringUtils.isNotBlank(options.getStatsTable())) {
+            checkTableName(options.getStatsTable());
+        }
+        this.dataSource = dataSource;
+        this.options = options;
+        this.cdrColumns = cdrColumns(options.getVariables());
+        this.statsColumns = StringUtils.isBlank(options.getStatsTable()) ? Collections.emptyList() : statsColumns();
+        this.cdrSql = insertSql(options.getTable(), cdrColumns, options.getRowsPerStatement());
+        this.statsSql = statsColumns.isEmpty() ? null : insertSql(options.getStatsTable(), statsColumns, options.getRowsPerStatement());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterPropertiesSet() throws SQLException {
+        log.info("jdbc cdr handler table : [{}], stats table : [{}], variables : {}, rows per statement : [{}].",
+                options.getTable(), options.getStatsTable(), options.getVariables(), options.getRowsPerStatement());
+        if (!options.isCreateTables()) {
+            return;
+        }
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(createTableSql(options.getTable(), cdrColumns));
+            if (statsSql != null) {
+                statement.execute(createTableSql(options.getStatsTable(), statsColumns));
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CdrProjection getCdrProjection() {
+        Set<CdrSection> sections = EnumSet.of(CdrSection.CHANNEL_DATA, CdrSection.CALLFLOW_CALLER_PROFILE, CdrSection.CALLFLOW_TIMES);
+        if (statsSql != null) {
+            sections.add(CdrSection.CALL_STATS);
+        }
+        Set<String> variables = new LinkedHashSet<>();
+        variables.add("uuid");
+        variables.addAll(options.getVariables());
+        return CdrProjection.of(sections, variables);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * 整批写入失败时重试 maxRetries 次, 仍失败则抛出异常, 由攒批线程记录失败并继续处理下一批.
+     * {@link SQLNonTransientException}(数据、约束等确定性错误)不重试.
+     */
+    @Override
+    public void handleCdrs(List<Cdr> cdrs) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                write(cdrs);
+                return;
+            } catch (SQLException e) {
+                if (attempt >= options.getMaxRetries() || e instanceof SQLNonTransientException) {
+                    throw new IllegalStateException("jdbc cdr handler write " + cdrs.size() + " cdrs failure", e);
+                }
+                log.warn("jdbc cdr handler write {} cdrs failure, retry {} after {}ms : {}",
+                        cdrs.size(), attempt + 1, options.getRetryBackoffMs(), e.getMessage());
+                try {
+                    Thread.sleep(options.getRetryBackoffMs());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("jdbc cdr handler interrupted", e);
+                }
+            }
+        }
+    }
+
+    private void write(List<Cdr> cdrs) throws SQLException {
+        List<Cdr> withStats = statsSql == null ? Collections.emptyList() : withStats(cdrs);
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                insert(connection, options.getTable(), cdrColumns, cdrSql, cdrs);
+                if (!withStats.isEmpty()) {
+                    insert(connection, options.getStatsTable(), statsColumns, statsSql, withStats);
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                rollback(connection);
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * 整 rowsPerStatement 行的部分复用同一条多行 INSERT 走 JDBC batch, 余下的行单独一条 INSERT
+     */
+    private void insert(Connection connection, String table, List<JdbcColumn> columns, String sql, List<Cdr> cdrs) throws SQLException {
+        int rows = options.getRowsPerStatement();
+        int full = cdrs.size() / rows;
+        if (full > 0) {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (int i = 0; i < full; i++) {
+                    bind(ps, columns, cdrs, i * rows, rows);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+        int rest = cdrs.size() - full * rows;
+        if (rest > 0) {
+            try (PreparedStatement ps = connection.prepareStatement(insertSql(table, columns, rest))) {
+                bind(ps, columns, cdrs, full * rows, rest);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement ps, List<JdbcColumn> columns, List<Cdr> cdrs, int from, int rows) throws SQLException {
+        int index = 1;
+        for (int i = from; i < from + rows; i++) {
+            Cdr cdr = cdrs.get(i);
+            for (JdbcColumn column : columns) {
+                column.bind(ps, index++, cdr);
+            }
+        }
+    }
+
+    private static void rollback(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            log.warn("jdbc cdr handler rollback failure : {}", e.getMessage());
+        }
+    }
+
+    private static List<Cdr> withStats(List<Cdr> cdrs) {
+        List<Cdr> list = new ArrayList<>(cdrs.size());
+        for (Cdr cdr : cdrs) {
+            if (audio(cdr) != null) {
+                list.add(cdr);
+            }
+        }
+        return list;
+    }
+
+    static String insertSql(String table, List<JdbcColumn> columns, int rows) {
+        StringBuilder sql = new StringBuilder(64 + columns.size() * (24 + rows * 2));
+        sql.append("INSERT INTO ").append(table).append(" (");
+        StringBuilder values = new StringBuilder(columns.size() * 2 + 2).append('(');
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+                values.append(',');
+            }
+            sql.append(columns.get(i).getName());
+            values.append('?');
+        }
+        values.append(')');
+        sql.append(") VALUES ");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(values);
+        }
+        return sql.toString();
+    }
+
+    static String createTableSql(String table, List<JdbcColumn> columns) {
+        StringBuilder sql = new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(table).append(" (");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(columns.get(i).getName()).append(' ').append(columns.get(i).getDdlType());
+        }
+        return sql.append(')').toString();
+    }
+
+    private static void checkTableName(String table) {
+        if (table == null || !TABLE_NAME.matcher(table).matches()) {
+            throw new IllegalArgumentException("invalid table name : " + table);
+        }
+    }
+
+    static List<JdbcColumn> cdrColumns(List<String> variables) {
+        List<JdbcColumn> columns = new ArrayList<>(24 + variables.size());
+        columns.add(JdbcColumn.varchar("core_uuid", 64, Cdr::getCoreUuid));
+        columns.add(JdbcColumn.varchar("uuid", 64, cdr -> variable(cdr, "uuid")));
+        columns.add(JdbcColumn.varchar("switchname", 128, Cdr::getSwitchname));
+        columns.add(JdbcColumn.varchar("direction", 16, cdr -> cdr.getChannelData() == null ? null : StringUtils.trim(cdr.getChannelData().getDirection())));
+        columns.add(profile("caller_id_name", CallerProfile::getCallerIdName));
+        columns.add(profile("caller_id_number", CallerProfile::getCallerIdNumber));
+        columns.add(profile("destination_number", CallerProfile::getDestinationNumber));
+        columns.add(profile("context", CallerProfile::getContext));
+        columns.add(profile("network_addr", CallerProfile::getNetworkAddr));
+        columns.add(time("created_time", Times::getCreatedTime));
+        columns.add(time("profile_created_time", Times::getProfileCreatedTime));
+        columns.add(time("progress_time", Times::getProgressTime));
+        columns.add(time("progress_media_time", Times::getProgressMediaTime));
+        columns.add(time("answered_time", Times::getAnsweredTime));
+        columns.add(time("bridged_time", Times::getBridgedTime));
+        columns.add(time("last_hold_time", Times::getLastHoldTime));
+        columns.add(time("hold_accum_time", Times::getHoldAccumTime));
+        columns.add(time("hangup_time", Times::getHangupTime));
+        columns.add(time("resurrect_time", Times::getResurrectTime));
+        columns.add(time("transfer_time", Times::getTransferTime));
+        for (String name : variables) {
+            columns.add(JdbcColumn.varchar(variableColumn(name), 255, cdr -> variable(cdr, name)));
+        }
+        return columns;
+    }
+
+    /**
+     * 取 Inbound / Outbound 的 String 字段, 与 cdr.parser.typed-stats 无关
+     */
+    static List<JdbcColumn> statsColumns() {
+        List<JdbcColumn> columns = new ArrayList<>(32);
+        columns.add(JdbcColumn.varchar("core_uuid", 64, Cdr::getCoreUuid));
+        columns.add(JdbcColumn.varchar("uuid", 64, cdr -> variable(cdr, "uuid")));
+        columns.add(inboundLong("in_raw_bytes", Inbound::getRawBytes));
+        columns.add(inboundLong("in_media_bytes", Inbound::getMediaBytes));
+        columns.add(inboundLong("in_packet_count", Inbound::getPacketCount));
+        columns.add(inboundLong("in_media_packet_count", Inbound::getMediaPacketCount));
+        columns.add(inboundLong("in_skip_packet_count", Inbound::getSkipPacketCount));
+        columns.add(inboundLong("in_jitter_packet_count", Inbound::getJitterPacketCount));
+        columns.add(inboundLong("in_dtmf_packet_count", Inbound::getDtmfPacketCount));
+        columns.add(inboundLong("in_cng_packet_count", Inbound::getCngPacketCount));
+        columns.add(inboundLong("in_flush_packet_count", Inbound::getFlushPacketCount));
+        columns.add(inboundLong("in_largest_jb_size", Inbound::getLargestJbSize));
+        columns.add(inboundLong("in_flaw_total", Inbound::getFlawTotal));
+        columns.add(inboundDouble("in_jitter_min_variance", Inbound::getJitterMinVariance));
+        columns.add(inboundDouble("in_jitter_max_variance", Inbound::getJitterMaxVariance));
+        columns.add(inboundDouble("in_jitter_loss_rate", Inbound::getJitterLossRate));
+        columns.add(inboundDouble("in_jitter_burst_rate", Inbound::getJitterBurstRate));
+        columns.add(inboundDouble("in_mean_interval", Inbound::getMeanInterval));
+        columns.add(inboundDouble("in_quality_percentage", Inbound::getQualityPercentage));
+        columns.add(inboundDouble("in_mos", Inbound::getMos));
+        columns.add(outboundLong("out_raw_bytes", Outbound::getRawBytes));
+        columns.add(outboundLong("out_media_bytes", Outbound::getMediaBytes));
+        columns.add(outboundLong("out_packet_count", Outbound::getPacketCount));
+        columns.add(outboundLong("out_media_packet_count", Outbound::getMediaPacketCount));
+        columns.add(outboundLong("out_skip_packet_count", Outbound::getSkipPacketCount));
+        columns.add(outboundLong("out_dtmf_packet_count", Outbound::getDtmfPacketCount));
+        columns.add(outboundLong("out_cng_packet_count", Outbound::getCngPacketCount));
+        columns.add(outboundLong("out_rtcp_packet_count", Outbound::getRtcpPacketCount));
+        columns.add(outboundLong("out_rtcp_octet_count", Outbound::getRtcpOctetCount));
+        return columns;
+    }
+
+    /**
+     * <p>variableColumn.</p>
+     *
+     * @param variable 变量名
+     * @return 列名
+     */
+    public static String variableColumn(String variable) {
+        return VARIABLE_PREFIX + variable.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+
+    private static JdbcColumn profile(String name, Function<CallerProfile, String> getter) {
+        return JdbcColumn.varchar(name, 255, cdr -> {
+            Callflow callflow = callflow(cdr);
+            return callflow == null || callflow.getCallerProfile() == null ? null : getter.apply(callflow.getCallerProfile());
+        });
+    }
+
+    private static JdbcColumn time(String name, Function<Times, Long> getter) {
+        return JdbcColumn.bigint(name, cdr -> {
+            Callflow callflow = callflow(cdr);
+            return callflow == null || callflow.getTimes() == null ? null : getter.apply(callflow.getTimes());
+        });
+    }
+
+    private static JdbcColumn inboundLong(String name, Function<Inbound, String> getter) {
+        return JdbcColumn.bigint(name, cdr -> {
+            Audio audio = audio(cdr);
+            return audio == null || audio.getInbound() == null ? null : toLong(getter.apply(audio.getInbound()));
+        });
+    }
+
+    private static JdbcColumn inboundDouble(String name, Function<Inbound, String> getter) {
+        return JdbcColumn.doublePrecision(name, cdr -> {
+            Audio audio = audio(cdr);
+            return audio == null || audio.getInbound() == null ? null : toDouble(getter.apply(audio.getInbound()));
+        });
+    }
+
+    private static JdbcColumn outboundLong(String name, Function<Outbound, String> getter) {
+        return JdbcColumn.bigint(name, cdr -> {
+            Audio audio = audio(cdr);
+            return audio == null || audio.getOutbound() == null ? null : toLong(getter.apply(audio.getOutbound()));
+        });
+    }
+
+    private static Long toLong(String value) {
+        return value == null || value.isEmpty() ? null : NumberUtil.toLong(value);
+    }
+
+    private static Double toDouble(String value) {
+        return value == null || value.isEmpty() ? null : NumberUtil.parseDouble(value, Double.NaN);
+    }
+
+    private static Callflow callflow(Cdr cdr) {
+        List<Callflow> callflows = cdr.getCallflows();
+        return callflows == null || callflows.isEmpty() ? null : callflows.get(0);
+    }
+
+    private static Audio audio(Cdr cdr) {
+        return cdr.getCallStats() == null ? null : cdr.getCallStats().getAudio();
+    }
+
+    private static String variable(Cdr cdr, String name) {
+        if (cdr.getVariables() == null) {
+            return null;
+        }
+        Map<String, String> table = cdr.getVariables().getVariableTable();
+        return table == null ? null : table.get(name);
+    }
+}
@@ -0,0 +1,45 @@
+package link.thingscloud.freeswitch.cdr.spring.boot.starter.jdbc;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>JdbcCdrOptions class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Data
+@Accessors(chain = true)
+public class JdbcCdrOptions {
+
+    /**
+     * 话单表, 每条话单一行
+     */
+    private String table = "cdr";
+    /**
+     * call-stats 表, 每条带 audio 统计的话单一行; 空表示不写入
+     */
+    private String statsTable = "cdr_call_stats";
+    /**
+     * 额外写入话单表的通道变量, 列名为 var_&lt;变量名&gt;(非字母数字替换为 _)
+     */
+    private List<String> variables = new ArrayList<>();
+    /**
+     * 单条 INSERT 的 VALUES 行数, 同一批次内的多条 INSERT 再按 JDBC batch 提交
+     */
+    private int rowsPerStatement = 50;
+    /**
+     * 启动时 CREATE TABLE IF NOT EXISTS
+     */
+    private boolean createTables = false;
+    /**
+     * 写入失败(整批回滚)后的重试次数
+     */
+    private int maxRetries = 3;
+    private long retryBackoffMs = 1000;
+
+}
@@ -0,0 +1,82 @@
+package link.thingscloud.freeswitch.cdr.spring.boot.starter.jdbc;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.function.Function;
+
+/**
+ * <p>JdbcColumn class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+final class JdbcColumn {
+
+    private final String name;
+    private final int sqlType;
+    private final String ddlType;
+    /**
+     * VARCHAR 长度(字符数), 其余类型为 0
+     */
+    private final int length;
+    /**
+     * 从 Cdr 取值(Long / Double / String, 可为 null)
+     */
+    private final Function<Cdr, Object> extractor;
+
+    private JdbcColumn(String name, int sqlType, String ddlType, int length, Function<Cdr, Object> extractor) {
+        this.name = name;
+        this.sqlType = sqlType;
+        this.ddlType = ddlType;
+        this.length = length;
+        this.extractor = extractor;
+    }
+
+    static JdbcColumn varchar(String name, int length, Function<Cdr, Object> extractor) {
+        return new JdbcColumn(name, Types.VARCHAR, "VARCHAR(" + length + ")", length, extractor);
+    }
+
+    static JdbcColumn bigint(String name, Function<Cdr, Object> extractor) {
+        return new JdbcColumn(name, Types.BIGINT, "BIGINT", 0, extractor);
+    }
+
+    static JdbcColumn doublePrecision(String name, Function<Cdr, Object> extractor) {
+        return new JdbcColumn(name, Types.DOUBLE, "DOUBLE PRECISION", 0, extractor);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getDdlType() {
+        return ddlType;
+    }
+
+    /**
+     * 按列类型绑定参数, null 及 NaN 写入 NULL; 字符串超过列长度时截断, 避免单条超长值导致整批失败
+     */
+    void bind(PreparedStatement ps, int index, Cdr cdr) throws SQLException {
+        Object value = extractor.apply(cdr);
+        if (value == null || (value instanceof Double && ((Double) value).isNaN())) {
+            ps.setNull(index, sqlType);
+        } else if (sqlType == Types.BIGINT) {
+            ps.setLong(index, (Long) value);
+        } else if (sqlType == Types.DOUBLE) {
+            ps.setDouble(index, (Double) value);
+        } else {
+            ps.setString(index, truncate((String) value, length));
+        }
+    }
+
+    static String truncate(String value, int length) {
+        if (value.length() <= length) {
+            return value;
+        }
+        // 不拆开代理对
+        int end = Character.isHighSurrogate(value.charAt(length - 1)) ? length - 1 : length;
+        return value.substring(0, end);
+    }
+}
@@ -0,0 +1,203 @@
+package link.thingscloud.freeswitch.cdr.spring.boot.starter.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.metrics.CdrMetrics;
+import link.thingscloud.freeswitch.cdr.parser.ParserEngine;
+import link.thingscloud.freeswitch.cdr.parser.UnknownElements;
+import link.thingscloud.freeswitch.cdr.service.CdrHandlerMonitor;
+import link.thingscloud.freeswitch.cdr.service.CdrService;
+import org.springframework.util.ClassUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * <p>MicrometerCdrMetrics class.</p>
+ * <p>
+ * 基于 Micrometer 的 {@link CdrMetrics} 实现, 配合 spring-boot-starter-actuator 与 micrometer-registry-prometheus 通过 /actuator/prometheus 暴露.
+ * <ul>
+ * <li>cdr.requests{outcome=accepted|rejected|duplicate} : 接入请求数</li>
+ * <li>cdr.parse{engine,switchname} / cdr.parse.failures{engine} : 解码与解析耗时、失败数</li>
+ * <li>cdr.handler{handler,class,switchname} / cdr.handler.failures{handler,class} : CdrHandler 耗时、异常数</li>
+ * <li>cdr.handler.batch{handler,class} / cdr.handler.batch.size{handler,class} : BatchCdrHandler 批次耗时、批次大小</li>
+ * <li>cdr.queue.size / cdr.queue.capacity / cdr.unknown.elements / cdr.dispatch.fallback</li>
+ * <li>cdr.handler.queue.size / cdr.handler.queue.capacity / cdr.handler.dropped{handler,type} : 各 handler 隔离执行器</li>
+ * </ul>
+ * Timer 按 tag 组合缓存, 热路径上不重复构建 Meter.Id.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class MicrometerCdrMetrics implements CdrMetrics {
+
+    private static final String UNKNOWN = "unknown";
+
+    private final MeterRegistry registry;
+    private final double[] percentiles;
+    private final boolean percentileHistogram;
+    private final Counter accepted;
+    private final Counter rejected;
+    private final Counter duplicate;
+    private final Map<ParserEngine, Map<String, Timer>> parseTimers = new ConcurrentHashMap<>();
+    private final Map<ParserEngine, Counter> parseFailures = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Timer>> handlerTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> handlerFailures = new ConcurrentHashMap<>();
+    private final Map<String, Timer> batchTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> batchSizes = new ConcurrentHashMap<>();
+
+    /**
+     * <p>Constructor for MicrometerCdrMetrics.</p>
+     *
+     * @param registry            a {@link io.micrometer.core.instrument.MeterRegistry} object.
+     * @param percentiles         客户端计算的分位数, 如 0.5, 0.95, 0.99
+     * @param percentileHistogram 是否发布直方图桶(Prometheus 服务端 histogram_quantile 聚合用)
+     */
+    public MicrometerCdrMetrics(MeterRegistry registry, double[] percentiles, boolean percentileHistogram) {
+        this.registry = registry;
+        this.percentiles = percentiles;
+        this.percentileHistogram = percentileHistogram;
+        this.accepted = Counter.builder("cdr.requests").tag("outcome", "accepted")
+                .description("freeswitch cdr requests").register(registry);
+        this.rejected = Counter.builder("cdr.requests").tag("outcome", "rejected")
+                .description("freeswitch cdr requests").register(registry);
+        this.duplicate = Counter.builder("cdr.requests").tag("outcome", "duplicate")
+                .description("freeswitch cdr requests").register(registry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void bind(CdrService cdrService) {
+        gauge("cdr.queue.size", Tags.empty(), cdrService, CdrService::getQueueSize);
+        gauge("cdr.queue.capacity", Tags.empty(), cdrService, CdrService::getQueueCapacity);
+        FunctionCounter.builder("cdr.unknown.elements", cdrService, service -> UnknownElements.getTotal())
+                .description("unknown cdr elements and attributes").register(registry);
+        FunctionCounter.builder("cdr.dispatch.fallback", cdrService, CdrService::getDispatchFallbackCount)
+                .description("striped cdrs dispatched by core-uuid because the key and uuid are missing").register(registry);
+        // 直接绑定各执行器, 采集时不构建统计快照
+        for (CdrHandlerMonitor monitor : cdrService.getHandlerMonitors()) {
+            Tags tags = Tags.of("handler", monitor.getName(), "type", monitor.getType());
+            gauge("cdr.handler.queue.size", tags, monitor, CdrHandlerMonitor::getQueueSize);
+            gauge("cdr.handler.queue.capacity", tags, monitor, CdrHandlerMonitor::getQueueCapacity);
+            FunctionCounter.builder("cdr.handler.dropped", monitor, CdrHandlerMonitor::getDropped)
+                    .tags(tags).description("cdrs dropped because the handler queue is full").register(registry);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void accepted() {
+        accepted.increment();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rejected() {
+        rejected.increment();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void duplicate() {
+        duplicate.increment();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void parsed(ParserEngine engine, Cdr cdr, long latencyNanos) {
+        String switchname = switchname(cdr);
+        Map<String, Timer> timers = parseTimers.computeIfAbsent(engine, key -> new ConcurrentHashMap<>());
+        Timer timer = timers.get(switchname);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(switchname,
+                    key -> timer("cdr.parse", Tags.of("engine", engine.name(), "switchname", switchname)));
+        }
+        timer.record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void parseFailed(ParserEngine engine) {
+        parseFailures.computeIfAbsent(engine, key -> Counter.builder("cdr.parse.failures").tag("engine", engine.name())
+                .description("freeswitch cdr parse failures").register(registry)).increment();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handled(String name, Class<?> handlerClass, Cdr cdr, long latencyNanos, boolean success) {
+        String switchname = switchname(cdr);
+        Map<String, Timer> timers = handlerTimers.computeIfAbsent(name, key -> new ConcurrentHashMap<>());
+        Timer timer = timers.get(switchname);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(switchname,
+                    key -> timer("cdr.handler", Tags.of("handler", name, "class", className(handlerClass), "switchname", switchname)));
+        }
+        timer.record(latencyNanos, TimeUnit.NANOSECONDS);
+        if (!success) {
+            failures(name, handlerClass).increment();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void batchHandled(String name, Class<?> handlerClass, int size, long latencyNanos, boolean success) {
+        batchTimers.computeIfAbsent(name, key -> timer("cdr.handler.batch", Tags.of("handler", name, "class", className(handlerClass))))
+                .record(latencyNanos, TimeUnit.NANOSECONDS);
+        batchSizes.computeIfAbsent(name, key -> DistributionSummary.builder("cdr.handler.batch.size")
+                .tags("handler", name, "class", className(handlerClass))
+                .description("cdrs per batch").register(registry)).record(size);
+        if (!success) {
+            failures(name, handlerClass).increment(size);
+        }
+    }
+
+    private Counter failures(String name, Class<?> handlerClass) {
+        return handlerFailures.computeIfAbsent(name, key -> Counter.builder("cdr.handler.failures")
+                .tags("handler", name, "class", className(handlerClass))
+                .description("cdrs whose handler threw an exception").register(registry));
+    }
+
+    private Timer timer(String name, Tags tags) {
+        return Timer.builder(name).tags(tags)
+                .publishPercentiles(percentiles)
+                .publishPercentileHistogram(percentileHistogram)
+                .register(registry);
+    }
+
+    private <T> void gauge(String name, Tags tags, T obj, ToDoubleFunction<T> f) {
+        Gauge.builder(name, obj, f).tags(tags).register(registry);
+    }
+
+    private static String switchname(Cdr cdr) {
+        String switchname = cdr == null ? null : cdr.getSwitchname();
+        return switchname == null || switchname.isEmpty() ? UNKNOWN : switchname;
+    }
+
+    private static String className(Class<?> handlerClass) {
+        return ClassUtils.getUserClass(handlerClass).getName();
+    }
+}
@@ -0,0 +1,164 @@
+package link.thingscloud.freeswitch.cdr.spring.boot.starter.controller;
+
+import link.thingscloud.freeswitch.cdr.domain.CdrHandlerStats;
+import link.thingscloud.freeswitch.cdr.exception.CdrRejectedException;
+import link.thingscloud.freeswitch.cdr.service.CdrHandlerMonitor;
+import link.thingscloud.freeswitch.cdr.service.CdrService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.boot.web.reactive.context.AnnotationConfigReactiveWebApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.config.EnableWebFlux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>ReactiveCdrControllerTest class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class ReactiveCdrControllerTest {
+
+    private final StubService cdrService = new StubService();
+    private AnnotationConfigReactiveWebApplicationContext context;
+    private WebTestClient client;
+
+    @After
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    public void accept() {
+        start(new HashMap<>(4));
+        byte[] body = new byte[10000];
+        Arrays.fill(body, (byte) 'a');
+        post(body).expectStatus().isOk();
+        Assert.assertEquals(1, cdrService.received.size());
+        Assert.assertArrayEquals(body, cdrService.received.get(0));
+    }
+
+    @Test
+    public void rejectWithDefaultStatus() {
+        start(new HashMap<>(4));
+        cdrService.reject = true;
+        post("uuid=u1".getBytes(StandardCharsets.UTF_8))
+                .expectStatus().isEqualTo(503)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "5");
+    }
+
+    @Test
+    public void rejectWithConfiguredStatus() {
+        Map<String, Object> properties = new HashMap<>(4);
+        properties.put("cdr.reject.status", "429");
+        properties.put("cdr.reject.retry-after", "7");
+        start(properties);
+        cdrService.reject = true;
+        post("uuid=u1".getBytes(StandardCharsets.UTF_8))
+                .expectStatus().isEqualTo(429)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "7");
+    }
+
+    @Test
+    public void bodyTooLarge() {
+        Map<String, Object> properties = new HashMap<>(4);
+        properties.put("cdr.reactive.max-body-size", "64");
+        start(properties);
+        post(new byte[64]).expectStatus().isOk();
+        post(new byte[65]).expectStatus().isEqualTo(413);
+        Assert.assertEquals(1, cdrService.received.size());
+    }
+
+    private WebTestClient.ResponseSpec post(byte[] body) {
+        return client.post().uri("/freeswitch/cdr")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .bodyValue(body)
+                .exchange();
+    }
+
+    private void start(Map<String, Object> properties) {
+        context = new AnnotationConfigReactiveWebApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+        context.register(WebConfig.class, ReactiveCdrController.class);
+        context.getBeanFactory().registerSingleton("cdrService", cdrService);
+        context.refresh();
+        client = WebTestClient.bindToApplicationContext(context).build();
+    }
+
+    @Configuration
+    @EnableWebFlux
+    static class WebConfig {
+    }
+
+    private static final class StubService implements CdrService {
+        private final List<byte[]> received = new ArrayList<>();
+        private volatile boolean reject;
+
+        @Override
+        public void handle(String reqText) {
+            handle(reqText.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void handle(byte[] reqBytes) {
+            if (reject) {
+                throw new CdrRejectedException("freeswitch cdr queue is full.");
+            }
+            received.add(reqBytes);
+        }
+
+        @Override
+        public int getQueueSize() {
+            return 0;
+        }
+
+        @Override
+        public int getQueueCapacity() {
+            return 0;
+        }
+
+        @Override
+        public long getRejectedCount() {
+            return 0;
+        }
+
+        @Override
+        public long getDuplicateCount() {
+            return 0;
+        }
+
+        @Override
+        public long getDispatchFallbackCount() {
+            return 0;
+        }
+
+        @Override
+        public List<CdrHandlerStats> getHandlerStats() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<CdrHandlerMonitor> getHandlerMonitors() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Map<String, Long> getUnknownElementCounts() {
+            return Collections.emptyMap();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package link.thingscloud.freeswitch.cdr.spring.boot.starter.jdbc;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.parser.CdrExamples;
+import link.thingscloud.freeswitch.cdr.parser.CdrParser;
+import org.apache.commons.lang3.StringUtils;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>JdbcCdrHandlerTest class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class JdbcCdrHandlerTest {
+
+    private JdbcDataSource dataSource;
+    private List<Cdr> examples;
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        examples = CdrExamples.cdrs();
+    }
+
+    @Test
+    public void handleCdrs() throws Exception {
+        JdbcCdrHandler handler = handler(3);
+        List<Cdr> cdrs = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            cdrs.add(examples.get(i % examples.size()));
+        }
+        // 2 条 3 行 INSERT + 1 条 1 行 INSERT
+        handler.handleCdrs(cdrs);
+        handler.handleCdrs(examples.subList(0, 1));
+
+        Assert.assertEquals(8, count("SELECT COUNT(*) FROM cdr"));
+        long withStats = cdrs.stream().filter(JdbcCdrHandlerTest::hasAudio).count() + (hasAudio(examples.get(0)) ? 1 : 0);
+        Assert.assertEquals(withStats, count("SELECT COUNT(*) FROM cdr_call_stats"));
+
+        Cdr cdr = examples.get(0);
+        String uuid = cdr.getVariables().getVariableTable().get("uuid");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT * FROM cdr WHERE uuid = '" + uuid + "'")) {
+            Assert.assertTrue(rs.next());
+            Assert.assertEquals(cdr.getCoreUuid(), rs.getString("core_uuid"));
+            Assert.assertEquals(cdr.getChannelData().getDirection().trim(), rs.getString("direction"));
+            Assert.assertEquals(cdr.getCallflows().get(0).getCallerProfile().getDestinationNumber(), rs.getString("destination_number"));
+            Assert.assertEquals(cdr.getCallflows().get(0).getTimes().getCreatedTime().longValue(), rs.getLong("created_time"));
+            Assert.assertEquals(cdr.getVariables().getVariableTable().get("hangup_cause"), rs.getString("var_hangup_cause"));
+            Assert.assertEquals(cdr.getVariables().getVariableTable().get("sip_call_id"), rs.getString("var_sip_call_id"));
+        }
+    }
+
+    @Test
+    public void rollbackBatch() throws Exception {
+        JdbcCdrHandler handler = handler(2);
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE UNIQUE INDEX cdr_uk ON cdr (core_uuid, uuid)");
+        }
+        handler.handleCdrs(examples.subList(0, 1));
+        try {
+            // 批内第二条唯一索引冲突, 整批回滚
+            handler.handleCdrs(Arrays.asList(examples.get(1), examples.get(0)));
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getCause() instanceof SQLException);
+        }
+        Assert.assertEquals(1, count("SELECT COUNT(*) FROM cdr"));
+    }
+
+    @Test
+    public void truncateLongValues() throws Exception {
+        JdbcCdrHandler handler = handler(2);
+        // 独立解析一份, 修改不影响 examples
+        Cdr cdr = CdrParser.parse(CdrExamples.xml(CdrExamples.files()[0]));
+        cdr.getVariables().getVariableTable().put("sip_call_id", StringUtils.repeat('x', 300));
+        // 截断处为代理对时整体去掉
+        cdr.getCallflows().forEach(callflow -> callflow.getCallerProfile().setCallerIdName(StringUtils.repeat('a', 254) + "😀"));
+        handler.handleCdrs(Arrays.asList(examples.get(0), cdr));
+
+        Assert.assertEquals(2, count("SELECT COUNT(*) FROM cdr"));
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT var_sip_call_id, caller_id_name FROM cdr WHERE var_sip_call_id LIKE 'x%'")) {
+            Assert.assertTrue(rs.next());
+            Assert.assertEquals(StringUtils.repeat('x', 255), rs.getString(1));
+            Assert.assertEquals(StringUtils.repeat('a', 254), rs.getString(2));
+        }
+    }
+
+    @Test
+    public void largeBatches() throws Exception {
+        JdbcCdrHandler handler = handler(50);
+        List<Cdr> batch = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            batch.add(examples.get(i % examples.size()));
+        }
+        for (int i = 0; i < 10; i++) {
+            handler.handleCdrs(batch);
+        }
+        Assert.assertEquals(5000, count("SELECT COUNT(*) FROM cdr"));
+    }
+
+    private JdbcCdrHandler handler(int rowsPerStatement) {
+        JdbcCdrHandler handler = new JdbcCdrHandler(dataSource, new JdbcCdrOptions().setCreateTables(true).setMaxRetries(0)
+                .setRowsPerStatement(rowsPerStatement).setVariables(Arrays.asList("hangup_cause", "sip_call_id")));
+        try {
+            handler.afterPropertiesSet();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return handler;
+    }
+
+    private static boolean hasAudio(Cdr cdr) {
+        return cdr.getCallStats() != null && cdr.getCallStats().getAudio() != null;
+    }
+
+    private long count(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package link.thingscloud.freeswitch.cdr.spring.boot.starter.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.domain.CdrHandlerStats;
+import link.thingscloud.freeswitch.cdr.parser.ParserEngine;
+import link.thingscloud.freeswitch.cdr.service.CdrHandlerMonitor;
+import link.thingscloud.freeswitch.cdr.service.CdrService;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>MicrometerCdrMetricsTest class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class MicrometerCdrMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private MicrometerCdrMetrics metrics;
+
+    @Before
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new MicrometerCdrMetrics(registry, new double[]{0.5, 0.99}, false);
+    }
+
+    @Test
+    public void timers() {
+        metrics.accepted();
+        metrics.accepted();
+        metrics.rejected();
+        metrics.duplicate();
+        Assert.assertEquals(2, registry.get("cdr.requests").tag("outcome", "accepted").counter().count(), 0);
+        Assert.assertEquals(1, registry.get("cdr.requests").tag("outcome", "rejected").counter().count(), 0);
+        Assert.assertEquals(1, registry.get("cdr.requests").tag("outcome", "duplicate").counter().count(), 0);
+
+        Cdr cdr = new Cdr().setSwitchname("fs-1");
+        metrics.parsed(ParserEngine.STAX, cdr, TimeUnit.MILLISECONDS.toNanos(2));
+        metrics.parsed(ParserEngine.STAX, new Cdr(), TimeUnit.MILLISECONDS.toNanos(4));
+        metrics.parseFailed(ParserEngine.STAX);
+        Timer parse = registry.get("cdr.parse").tags("engine", "STAX", "switchname", "fs-1").timer();
+        Assert.assertEquals(1, parse.count());
+        Assert.assertEquals(2, parse.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        Assert.assertEquals(1, registry.get("cdr.parse").tags("engine", "STAX", "switchname", "unknown").timer().count());
+        Assert.assertEquals(1, registry.get("cdr.parse.failures").tag("engine", "STAX").counter().count(), 0);
+
+        metrics.handled("jdbc", String.class, cdr, TimeUnit.MILLISECONDS.toNanos(3), true);
+        metrics.handled("jdbc", String.class, cdr, TimeUnit.MILLISECONDS.toNanos(5), false);
+        Timer handler = registry.get("cdr.handler").tags("handler", "jdbc", "class", "java.lang.String", "switchname", "fs-1").timer();
+        Assert.assertEquals(2, handler.count());
+        Assert.assertEquals(5, handler.max(TimeUnit.MILLISECONDS), 0.001);
+        Assert.assertEquals(1, registry.get("cdr.handler.failures").tag("handler", "jdbc").counter().count(), 0);
+
+        metrics.batchHandled("batch", String.class, 10, TimeUnit.MILLISECONDS.toNanos(7), false);
+        Assert.assertEquals(1, registry.get("cdr.handler.batch").tag("handler", "batch").timer().count());
+        Assert.assertEquals(10, registry.get("cdr.handler.batch.size").tag("handler", "batch").summary().totalAmount(), 0);
+        Assert.assertEquals(10, registry.get("cdr.handler.failures").tag("handler", "batch").counter().count(), 0);
+    }
+
+    @Test
+    public void gauges() {
+        StubMonitor record = new StubMonitor("jdbc", "record", 100);
+        StubMonitor batch = new StubMonitor("kafka", "batch", 50);
+        StubService service = new StubService(Arrays.asList(record, batch));
+        metrics.bind(service);
+
+        service.queueSize = 3;
+        record.queueSize = 7;
+        record.dropped = 2;
+        batch.queueSize = 11;
+        Assert.assertEquals(3, registry.get("cdr.queue.size").gauge().value(), 0);
+        Assert.assertEquals(1024, registry.get("cdr.queue.capacity").gauge().value(), 0);
+        Assert.assertEquals(7, registry.get("cdr.handler.queue.size").tags("handler", "jdbc", "type", "record").gauge().value(), 0);
+        Assert.assertEquals(100, registry.get("cdr.handler.queue.capacity").tags("handler", "jdbc", "type", "record").gauge().value(), 0);
+        Assert.assertEquals(2, registry.get("cdr.handler.dropped").tags("handler", "jdbc", "type", "record").functionCounter().count(), 0);
+        Assert.assertEquals(11, registry.get("cdr.handler.queue.size").tags("handler", "kafka", "type", "batch").gauge().value(), 0);
+        Assert.assertEquals(50, registry.get("cdr.handler.queue.capacity").tags("handler", "kafka", "type", "batch").gauge().value(), 0);
+        Assert.assertEquals(0, registry.get("cdr.handler.dropped").tags("handler", "kafka", "type", "batch").functionCounter().count(), 0);
+
+        service.fallback = 5;
+        Assert.assertEquals(5, registry.get("cdr.dispatch.fallback").functionCounter().count(), 0);
+        // 采集只读执行器计数, 不构建统计快照
+        Assert.assertEquals(0, service.statsCalls);
+    }
+
+    private static final class StubMonitor implements CdrHandlerMonitor {
+        private final String name;
+        private final String type;
+        private final int queueCapacity;
+        private volatile int queueSize;
+        private volatile long dropped;
+
+        private StubMonitor(String name, String type, int queueCapacity) {
+            this.name = name;
+            this.type = type;
+            this.queueCapacity = queueCapacity;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        @Override
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        @Override
+        public long getDropped() {
+            return dropped;
+        }
+    }
+
+    private static final class StubService implements CdrService {
+        private final List<CdrHandlerMonitor> monitors;
+        private volatile int queueSize;
+        private volatile long fallback;
+        private volatile int statsCalls;
+
+        private StubService(List<CdrHandlerMonitor> monitors) {
+            this.monitors = monitors;
+        }
+
+        @Override
+        public void handle(String reqText) {
+        }
+
+        @Override
+        public void handle(byte[] reqBytes) {
+        }
+
+        @Override
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        @Override
+        public int getQueueCapacity() {
+            return 1024;
+        }
+
+        @Override
+        public long getRejectedCount() {
+            return 0;
+        }
+
+        @Override
+        public long getDuplicateCount() {
+            return 0;
+        }
+
+        @Override
+        public long getDispatchFallbackCount() {
+            return fallback;
+        }
+
+        @Override
+        public List<CdrHandlerStats> getHandlerStats() {
+            statsCalls++;
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<CdrHandlerMonitor> getHandlerMonitors() {
+            return monitors;
+        }
+
+        @Override
+        public Map<String, Long> getUnknownElementCounts() {
+            return Collections.emptyMap();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package link.thingscloud.freeswitch.cdr.archive;
+
+import link.thingscloud.freeswitch.cdr.dedup.CdrDedupCache;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>CdrArchiveIndex class.</p>
+ * <p>
+ * 单个段的 uuid 查找索引. 段关闭时由 {@link CdrArchiveWriter} 根据块索引(.idx)生成有序索引文件(.uix),
+ * 条目按 uuid 哈希排序、定长, 查找时在文件上二分, 不在内存中保留 uuid; 尚未关闭的段没有 .uix,
+ * 打开时读取 .idx 在内存中排序, 内存只与单个段的条数相关.
+ * <p>
+ * 有序索引格式: [int magic][int count][int blocks][long minTime][long maxTime]([long hash][long blockOffset][int ordinal]){count},
+ * 哈希相同的条目保持写入顺序, 哈希冲突由调用方比较块内话单的 uuid 排除.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Slf4j
+final class CdrArchiveIndex {
+
+    static final String SORTED_SUFFIX = ".uix";
+    static final int SORTED_MAGIC = 0x43445549;
+    static final int HEADER_SIZE = 28;
+    static final int ENTRY_SIZE = 20;
+
+    private final CdrArchiveSegment segment;
+    private final File sortedFile;
+    private final List<Entry> entries;
+
+    private CdrArchiveIndex(CdrArchiveSegment segment, File sortedFile, List<Entry> entries) {
+        this.segment = segment;
+        this.sortedFile = sortedFile;
+        this.entries = entries;
+    }
+
+    /**
+     * 有 .uix 时只读取头部, 否则读取 .idx 在内存中排序
+     */
+    static CdrArchiveIndex open(File segmentFile) throws IOException {
+        CdrArchiveSegment segment = new CdrArchiveSegment().setSequence(CdrArchiveWriter.sequence(segmentFile)).setFile(segmentFile);
+        File sortedFile = CdrArchiveWriter.sibling(segmentFile, SORTED_SUFFIX);
+        if (sortedFile.exists() && readHeader(sortedFile, segment)) {
+            return new CdrArchiveIndex(segment, sortedFile, null);
+        }
+        return new CdrArchiveIndex(segment, null, scan(segmentFile, segment));
+    }
+
+    /**
+     * 由 .idx 生成段的有序索引, 经临时文件原子替换.
+     */
+    static void seal(File segmentFile) throws IOException {
+        CdrArchiveSegment segment = new CdrArchiveSegment();
+        List<Entry> entries = scan(segmentFile, segment);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + entries.size() * ENTRY_SIZE);
+        buffer.putInt(SORTED_MAGIC).putInt(entries.size()).putInt(segment.getBlocks())
+                .putLong(segment.getMinTime()).putLong(segment.getMaxTime());
+        for (Entry entry : entries) {
+            buffer.putLong(entry.hash).putLong(entry.offset).putInt(entry.ordinal);
+        }
+        buffer.flip();
+        File sortedFile = CdrArchiveWriter.sibling(segmentFile, SORTED_SUFFIX);
+        File tmp = new File(sortedFile.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(tmp.toPath(), sortedFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static long hash(String uuid) {
+        return CdrDedupCache.hash(uuid);
+    }
+
+    CdrArchiveSegment getSegment() {
+        return segment;
+    }
+
+    /**
+     * 哈希等于 hash 的条目, 按写入顺序
+     */
+    List<Location> find(long hash) throws IOException {
+        List<Location> locations = new ArrayList<>(1);
+        if (entries != null) {
+            int lo = 0;
+            int hi = entries.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (entries.get(mid).hash < hash) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            for (int i = lo; i < entries.size() && entries.get(i).hash == hash; i++) {
+                locations.add(new Location(entries.get(i).offset, entries.get(i).ordinal));
+            }
+            return locations;
+        }
+        int count = segment.getCount();
+        try (FileChannel channel = FileChannel.open(sortedFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(ENTRY_SIZE);
+            int lo = 0;
+            int hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (readEntry(channel, buffer, mid).getLong(0) < hash) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            for (int i = lo; i < count; i++) {
+                readEntry(channel, buffer, i);
+                if (buffer.getLong(0) != hash) {
+                    break;
+                }
+                locations.add(new Location(buffer.getLong(8), buffer.getInt(16)));
+            }
+        }
+        return locations;
+    }
+
+    private static ByteBuffer readEntry(FileChannel channel, ByteBuffer buffer, int i) throws IOException {
+        buffer.clear();
+        if (!CdrArchiveReader.readFully(channel, buffer, HEADER_SIZE + (long) i * ENTRY_SIZE)) {
+            throw new EOFException("cdr archive sorted index truncated at entry : " + i);
+        }
+        return buffer;
+    }
+
+    private static boolean readHeader(File sortedFile, CdrArchiveSegment segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(sortedFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (CdrArchiveReader.readFully(channel, header, 0)) {
+                header.flip();
+                int magic = header.getInt();
+                int count = header.getInt();
+                if (magic == SORTED_MAGIC && count >= 0 && channel.size() == HEADER_SIZE + (long) count * ENTRY_SIZE) {
+                    segment.setCount(count).setBlocks(header.getInt()).setMinTime(header.getLong()).setMaxTime(header.getLong());
+                    return true;
+                }
+            }
+        }
+        log.warn("cdr archive sorted index : [{}] corrupted, fall back to block index.", sortedFile);
+        return false;
+    }
+
+    /**
+     * 读取 .idx 并按哈希排序(稳定排序保持写入顺序), 截断的索引尾部及指向段外的块按崩溃残留忽略
+     */
+    private static List<Entry> scan(File segmentFile, CdrArchiveSegment segment) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        File indexFile = CdrArchiveWriter.sibling(segmentFile, CdrArchiveWriter.INDEX_SUFFIX);
+        if (!indexFile.exists()) {
+            log.warn("cdr archive index : [{}] not exists.", indexFile);
+            return entries;
+        }
+        long segmentSize = segmentFile.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 65536))) {
+            while (true) {
+                long offset = in.readLong();
+                int count = in.readInt();
+                long minTime = in.readLong();
+                long maxTime = in.readLong();
+                String[] uuids = new String[count];
+                for (int i = 0; i < count; i++) {
+                    uuids[i] = in.readUTF();
+                }
+                if (offset >= segmentSize) {
+                    break;
+                }
+                for (int i = 0; i < count; i++) {
+                    entries.add(new Entry(hash(uuids[i]), offset, i));
+                }
+                segment.setBlocks(segment.getBlocks() + 1).setCount(segment.getCount() + count);
+                if (minTime > 0) {
+                    segment.setMinTime(segment.getMinTime() == 0 ? minTime : Math.min(segment.getMinTime(), minTime));
+                    segment.setMaxTime(Math.max(segment.getMaxTime(), maxTime));
+                }
+            }
+        } catch (EOFException e) {
+            // 索引末尾不完整
+        }
+        entries.sort(Comparator.comparingLong(entry -> entry.hash));
+        return entries;
+    }
+
+    /**
+     * 话单在段内的位置: 块偏移及块内序号
+     */
+    static final class Location {
+        final long offset;
+        final int ordinal;
+
+        private Location(long offset, int ordinal) {
+            this.offset = offset;
+            this.ordinal = ordinal;
+        }
+    }
+
+    private static final class Entry {
+        private final long hash;
+        private final long offset;
+        private final int ordinal;
+
+        private Entry(long hash, long offset, int ordinal) {
+            this.hash = hash;
+            this.offset = offset;
+            this.ordinal = ordinal;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package link.thingscloud.freeswitch.cdr.archive;
+
+import link.thingscloud.freeswitch.cdr.codec.CdrBinaryReader;
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * <p>CdrArchiveReader class.</p>
+ * <p>
+ * 读取 {@link CdrArchiveWriter} 写入的归档目录. 构造时只读取已关闭段的有序索引头部(段信息), 按 uuid 查找时
+ * 从新到旧逐段在有序索引上二分查找, 命中后定位读取并解压一个块; 指定时间范围时只查找时间范围相交的段.
+ * 尚未关闭的段在构造时读取块索引, 只反映构造时已写入索引的内容, 截断的索引尾部或块按崩溃残留忽略.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Slf4j
+public class CdrArchiveReader {
+
+    private final TreeMap<Long, CdrArchiveIndex> segments = new TreeMap<>();
+
+    /**
+     * <p>Constructor for CdrArchiveReader.</p>
+     *
+     * @param dir archive directory
+     * @throws java.io.IOException if any.
+     */
+    public CdrArchiveReader(File dir) throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(CdrArchiveWriter.SEGMENT_SUFFIX));
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                CdrArchiveIndex index = CdrArchiveIndex.open(file);
+                segments.put(index.getSegment().getSequence(), index);
+            }
+        }
+    }
+
+    /**
+     * 按 uuid 读取话单, 同一 uuid 写入多次时取最后一次.
+     *
+     * @param uuid variables.uuid
+     * @return a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object, 不存在时为 null
+     * @throws java.io.IOException if any.
+     */
+    public Cdr get(String uuid) throws IOException {
+        return get(uuid, segments.descendingMap().values());
+    }
+
+    /**
+     * 按 uuid 读取话单, 只查找时间范围与 [from, to] 相交的段.
+     *
+     * @param uuid variables.uuid
+     * @param from 起始时间(微秒, 含)
+     * @param to   结束时间(微秒, 含)
+     * @return a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object, 不存在时为 null
+     * @throws java.io.IOException if any.
+     */
+    public Cdr get(String uuid, long from, long to) throws IOException {
+        List<CdrArchiveIndex> indexes = new ArrayList<>();
+        for (CdrArchiveIndex index : segments.descendingMap().values()) {
+            if (index.getSegment().overlaps(from, to)) {
+                indexes.add(index);
+            }
+        }
+        return get(uuid, indexes);
+    }
+
+    private Cdr get(String uuid, Collection<CdrArchiveIndex> indexes) throws IOException {
+        long hash = CdrArchiveIndex.hash(uuid);
+        for (CdrArchiveIndex index : indexes) {
+            List<CdrArchiveIndex.Location> locations = index.find(hash);
+            if (locations.isEmpty()) {
+                continue;
+            }
+            File file = index.getSegment().getFile();
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                // 段内同一 uuid 写入多次时取最后一次
+                for (int i = locations.size() - 1; i >= 0; i--) {
+                    CdrArchiveIndex.Location location = locations.get(i);
+                    Block block = readBlock(channel, location.offset);
+                    if (block == null) {
+                        throw new IOException("cdr archive block corrupted : " + file + "@" + location.offset);
+                    }
+                    for (int j = 0; j < location.ordinal; j++) {
+                        block.skip();
+                    }
+                    Cdr cdr = block.next();
+                    if (cdr != null && uuid.equals(CdrArchiveWriter.uuid(cdr))) {
+                        return cdr;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * <p>getSegments.</p>
+     *
+     * @return 全部段, 按写入顺序
+     */
+    public List<CdrArchiveSegment> getSegments() {
+        List<CdrArchiveSegment> list = new ArrayList<>(segments.size());
+        for (CdrArchiveIndex index : segments.values()) {
+            list.add(index.getSegment());
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * <p>getSegments.</p>
+     *
+     * @param from 起始时间(微秒, 含)
+     * @param to   结束时间(微秒, 含)
+     * @return 时间范围与 [from, to] 相交的段
+     */
+    public List<CdrArchiveSegment> getSegments(long from, long to) {
+        List<CdrArchiveSegment> list = new ArrayList<>();
+        for (CdrArchiveIndex index : segments.values()) {
+            if (index.getSegment().overlaps(from, to)) {
+                list.add(index.getSegment());
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 顺序读取段内全部话单, 遇到截断或损坏的块时停止.
+     *
+     * @param segment  a {@link link.thingscloud.freeswitch.cdr.archive.CdrArchiveSegment} object.
+     * @param consumer a {@link java.util.function.Consumer} object.
+     * @throws java.io.IOException if any.
+     */
+    public void forEach(CdrArchiveSegment segment, Consumer<Cdr> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.getFile().toPath(), StandardOpenOption.READ)) {
+            long position = 0;
+            long size = channel.size();
+            while (position < size) {
+                Block block = readBlock(channel, position);
+                if (block == null) {
+                    log.warn("cdr archive segment : [{}] corrupted at : [{}], skip remaining.", segment.getFile(), position);
+                    return;
+                }
+                position += CdrArchiveWriter.BLOCK_HEADER_SIZE + compressedLength(channel, position);
+                for (Cdr cdr = block.next(); cdr != null; cdr = block.next()) {
+                    consumer.accept(cdr);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>size.</p>
+     *
+     * @return 已索引的话单数量, 同一 uuid 写入多次时重复计数
+     */
+    public int size() {
+        int size = 0;
+        for (CdrArchiveIndex index : segments.values()) {
+            size += index.getSegment().getCount();
+        }
+        return size;
+    }
+
+    /**
+     * 读取并解压 offset 处的块, 头部不符、截断或校验失败时返回 null
+     */
+    private static Block readBlock(FileChannel channel, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(CdrArchiveWriter.BLOCK_HEADER_SIZE);
+        if (!readFully(channel, header, offset)) {
+            return null;
+        }
+        header.flip();
+        int magic = header.getInt();
+        byte encoding = header.get();
+        int rawLength = header.getInt();
+        int compressedLength = header.getInt();
+        header.getInt();
+        int crc = header.getInt();
+        if (magic != CdrArchiveWriter.BLOCK_MAGIC || encoding != CdrArchiveWriter.ENCODING_BINARY || rawLength < 0 || compressedLength < 0) {
+            return null;
+        }
+        ByteBuffer compressed = ByteBuffer.allocate(compressedLength);
+        if (!readFully(channel, compressed, offset + CdrArchiveWriter.BLOCK_HEADER_SIZE)) {
+            return null;
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(compressed.array(), 0, compressedLength);
+        if ((int) crc32.getValue() != crc) {
+            return null;
+        }
+        byte[] raw = new byte[rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array(), 0, compressedLength);
+            int n = 0;
+            while (n < rawLength && !inflater.finished()) {
+                int read = inflater.inflate(raw, n, rawLength - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return null;
+                }
+                n += read;
+            }
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+        return new Block(raw);
+    }
+
+    private static int compressedLength(FileChannel channel, long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        readFully(channel, buffer, offset + 9);
+        buffer.flip();
+        return buffer.getInt();
+    }
+
+    static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                return false;
+            }
+            position += n;
+        }
+        return true;
+    }
+
+    /**
+     * 解压后的块, 按写入顺序逐条读取
+     */
+    private static final class Block {
+        private final CdrBinaryReader reader;
+
+        private Block(byte[] raw) {
+            this.reader = new CdrBinaryReader(new ByteArrayInputStream(raw));
+        }
+
+        private Cdr next() throws IOException {
+            return reader.read();
+        }
+
+        private void skip() throws IOException {
+            reader.skip();
+        }
+    }
+}
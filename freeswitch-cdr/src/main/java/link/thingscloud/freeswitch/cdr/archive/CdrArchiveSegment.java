@@ -0,0 +1,37 @@
+package link.thingscloud.freeswitch.cdr.archive;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.io.File;
+
+/**
+ * <p>CdrArchiveSegment class.</p>
+ * <p>
+ * 由索引文件得到的段信息, 时间为第一个 callflow 的 created_time(微秒), 没有话单带时间时为 0.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Data
+@Accessors(chain = true)
+public class CdrArchiveSegment {
+
+    private long sequence;
+    private File file;
+    private int blocks;
+    private int count;
+    private long minTime;
+    private long maxTime;
+
+    /**
+     * <p>overlaps.</p>
+     *
+     * @param from 起始时间(微秒, 含)
+     * @param to   结束时间(微秒, 含)
+     * @return 段内话单时间范围是否与 [from, to] 相交
+     */
+    public boolean overlaps(long from, long to) {
+        return count > 0 && minTime <= to && maxTime >= from;
+    }
+}
@@ -0,0 +1,349 @@
+package link.thingscloud.freeswitch.cdr.archive;
+
+import link.thingscloud.freeswitch.cdr.codec.CdrBinaryWriter;
+import link.thingscloud.freeswitch.cdr.domain.Callflow;
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * <p>CdrArchiveWriter class.</p>
+ * <p>
+ * 话单归档: 顺序追加到滚动的段文件, 段按大小或时间滚动, 启动后总是新开一段, 不续写已有段.
+ * 段内为 deflate 压缩块, 一次 append 的话单写成一个或多个块, 块之间互不依赖, 读取单条话单只需定位并解压一个块.
+ * 每段一个索引文件, 每块一条索引: 块偏移、条数、created_time 范围及每条话单的 uuid.
+ * 开启 sync 时先 force 段文件再写入并 force 该批次的索引, 索引指向的块总是已经落盘.
+ * 段关闭时由索引生成按 uuid 哈希排序的有序索引(见 {@link CdrArchiveIndex}), 启动时为上次未正常关闭的段补齐.
+ * <p>
+ * 块格式: [int magic][byte encoding][int rawLength][int compressedLength][int count][int crc32(compressed)][compressed],
+ * encoding 为 {@link #ENCODING_BINARY}, 解压后为一个 {@link link.thingscloud.freeswitch.cdr.codec.CdrCodec} 流(块内共享字符串字典).
+ * 索引格式: ([long blockOffset][int count][long minTime][long maxTime](uuid modified UTF-8){count})*.
+ * 非线程安全, 由单一写线程(BatchCdrHandler 攒批线程)调用.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Slf4j
+public class CdrArchiveWriter implements Closeable {
+
+    static final String SEGMENT_SUFFIX = ".arc";
+    static final String INDEX_SUFFIX = ".idx";
+    static final int BLOCK_MAGIC = 0x43445242;
+    static final int BLOCK_HEADER_SIZE = 21;
+    static final byte ENCODING_BINARY = 2;
+
+    private final File dir;
+    private final long segmentSize;
+    private final long rollIntervalMs;
+    private final int blockSize;
+    private final boolean sync;
+
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final CRC32 crc = new CRC32();
+    private final ByteArrayOutputStream raw;
+    private CdrBinaryWriter rawOut;
+    private final ByteArrayOutputStream pendingIndex = new ByteArrayOutputStream(4096);
+    private final DataOutputStream indexOut = new DataOutputStream(pendingIndex);
+    private final List<String> blockUuids = new ArrayList<>();
+    private byte[] compressed;
+    private long blockMinTime;
+    private long blockMaxTime;
+
+    private long nextSequence;
+    private Segment active;
+
+    /**
+     * <p>Constructor for CdrArchiveWriter.</p>
+     *
+     * @param dir            归档目录
+     * @param segmentSize    当前段达到该字节数后滚动到新段
+     * @param rollIntervalMs 当前段打开超过该时长(毫秒)后滚动到新段, 0 表示不按时间滚动
+     * @param blockSize      块未压缩内容达到该字节数后结束该块
+     * @param sync           每次 append 后 fsync 段文件与索引
+     * @throws java.io.IOException if any.
+     */
+    public CdrArchiveWriter(File dir, long segmentSize, long rollIntervalMs, int blockSize, boolean sync) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.rollIntervalMs = rollIntervalMs;
+        this.blockSize = blockSize;
+        this.sync = sync;
+        this.raw = new ByteArrayOutputStream(blockSize + 4096);
+        this.compressed = new byte[blockSize + 4096];
+        Files.createDirectories(dir.toPath());
+        this.nextSequence = lastSequence(dir) + 1;
+        sealAll(dir);
+    }
+
+    /**
+     * 追加一批话单, 返回时已写入段文件(sync 时已落盘).
+     *
+     * @param cdrs a {@link java.util.List} object.
+     * @throws java.io.IOException if any.
+     */
+    public void append(List<Cdr> cdrs) throws IOException {
+        if (cdrs.isEmpty()) {
+            return;
+        }
+        if (active != null && rollIntervalMs > 0 && System.currentTimeMillis() - active.openedAt >= rollIntervalMs) {
+            closeActive();
+        }
+        try {
+            for (Cdr cdr : cdrs) {
+                // 每块一个独立的流, 块之间不共享字典
+                if (rawOut == null) {
+                    rawOut = new CdrBinaryWriter(raw);
+                }
+                rawOut.write(cdr);
+                long time = time(cdr);
+                if (time > 0) {
+                    blockMinTime = blockMinTime == 0 ? time : Math.min(blockMinTime, time);
+                    blockMaxTime = Math.max(blockMaxTime, time);
+                }
+                blockUuids.add(uuid(cdr));
+                if (raw.size() >= blockSize) {
+                    writeBlock();
+                }
+            }
+            writeBlock();
+            if (active != null) {
+                flushIndex(active);
+            }
+        } catch (IOException | RuntimeException e) {
+            discard();
+            throw e;
+        }
+    }
+
+    /**
+     * <p>getActiveFile.</p>
+     *
+     * @return 当前写入的段文件, 尚未写入时为 null
+     */
+    public File getActiveFile() {
+        return active == null ? null : active.file;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * 关闭当前段, 之后再 append 时新开一段.
+     */
+    @Override
+    public void close() throws IOException {
+        if (active != null) {
+            closeActive();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (blockUuids.isEmpty()) {
+            return;
+        }
+        Segment segment = active != null ? active : (active = openSegment());
+        deflater.reset();
+        deflater.setInput(raw.toByteArray());
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                byte[] bigger = new byte[compressed.length * 2];
+                System.arraycopy(compressed, 0, bigger, 0, length);
+                compressed = bigger;
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        crc.reset();
+        crc.update(compressed, 0, length);
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        header.putInt(BLOCK_MAGIC).put(ENCODING_BINARY).putInt(raw.size()).putInt(length)
+                .putInt(blockUuids.size()).putInt((int) crc.getValue()).flip();
+        ByteBuffer[] buffers = {header, ByteBuffer.wrap(compressed, 0, length)};
+        long offset = segment.size;
+        long remaining = BLOCK_HEADER_SIZE + (long) length;
+        while (remaining > 0) {
+            remaining -= segment.channel.write(buffers);
+        }
+        segment.size += BLOCK_HEADER_SIZE + length;
+
+        indexOut.writeLong(offset);
+        indexOut.writeInt(blockUuids.size());
+        indexOut.writeLong(blockMinTime);
+        indexOut.writeLong(blockMaxTime);
+        for (String uuid : blockUuids) {
+            indexOut.writeUTF(uuid);
+        }
+        raw.reset();
+        rawOut = null;
+        blockUuids.clear();
+        blockMinTime = 0;
+        blockMaxTime = 0;
+        if (segment.size >= segmentSize) {
+            closeActive();
+        }
+    }
+
+    /**
+     * 段文件落盘后再写入索引, 崩溃时最多丢失未索引的尾部块
+     */
+    private void flushIndex(Segment segment) throws IOException {
+        if (pendingIndex.size() == 0) {
+            return;
+        }
+        if (sync) {
+            segment.channel.force(false);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(pendingIndex.toByteArray());
+        while (buffer.hasRemaining()) {
+            segment.indexChannel.write(buffer);
+        }
+        pendingIndex.reset();
+        if (sync) {
+            segment.indexChannel.force(false);
+        }
+    }
+
+    /**
+     * 写入失败后丢弃未完成的块与索引并放弃当前段, 重试时写入新段
+     */
+    private void discard() {
+        raw.reset();
+        rawOut = null;
+        blockUuids.clear();
+        pendingIndex.reset();
+        blockMinTime = 0;
+        blockMaxTime = 0;
+        if (active != null) {
+            active.close();
+            active = null;
+        }
+    }
+
+    private void closeActive() throws IOException {
+        Segment segment = active;
+        active = null;
+        try {
+            flushIndex(segment);
+            segment.channel.force(false);
+            segment.indexChannel.force(false);
+        } finally {
+            segment.close();
+        }
+        CdrArchiveIndex.seal(segment.file);
+        log.debug("cdr archive close segment : [{}], size : [{}].", segment.file, segment.size);
+    }
+
+    private Segment openSegment() throws IOException {
+        String name = String.format("%020d", nextSequence++);
+        Segment segment = new Segment(new File(dir, name + SEGMENT_SUFFIX), new File(dir, name + INDEX_SUFFIX));
+        segment.channel = FileChannel.open(segment.file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segment.indexChannel = FileChannel.open(segment.indexFile.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        log.debug("cdr archive open segment : [{}]", segment.file);
+        return segment;
+    }
+
+    /**
+     * 崩溃或写入失败放弃的段没有有序索引, 不再续写, 直接生成
+     */
+    private static void sealAll(File dir) throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!sibling(file, CdrArchiveIndex.SORTED_SUFFIX).exists()) {
+                log.info("cdr archive seal unclosed segment : [{}]", file);
+                CdrArchiveIndex.seal(file);
+            }
+        }
+    }
+
+    static File sibling(File segmentFile, String suffix) {
+        String name = segmentFile.getName();
+        return new File(segmentFile.getParentFile(), name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + suffix);
+    }
+
+    static long lastSequence(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SEGMENT_SUFFIX));
+        long last = 0;
+        if (files != null) {
+            for (File file : files) {
+                last = Math.max(last, sequence(file));
+            }
+        }
+        return last;
+    }
+
+    static long sequence(File file) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * 索引 key: variables.uuid, 缺失时取第一个 callflow 的 unique-id
+     */
+    static String uuid(Cdr cdr) {
+        if (cdr.getVariables() != null) {
+            Map<String, String> table = cdr.getVariables().getVariableTable();
+            String uuid = table == null ? null : table.get("uuid");
+            if (uuid != null) {
+                return uuid;
+            }
+        }
+        Callflow callflow = callflow(cdr);
+        return callflow == null || callflow.getUniqueId() == null ? "" : callflow.getUniqueId();
+    }
+
+    /**
+     * 第一个 callflow 的 created_time(微秒), 缺失时为 0
+     */
+    static long time(Cdr cdr) {
+        Callflow callflow = callflow(cdr);
+        if (callflow == null || callflow.getTimes() == null || callflow.getTimes().getCreatedTime() == null) {
+            return 0;
+        }
+        return callflow.getTimes().getCreatedTime();
+    }
+
+    private static Callflow callflow(Cdr cdr) {
+        List<Callflow> callflows = cdr.getCallflows();
+        return callflows == null || callflows.isEmpty() ? null : callflows.get(0);
+    }
+
+    private static final class Segment {
+        private final File file;
+        private final File indexFile;
+        private final long openedAt = System.currentTimeMillis();
+        private FileChannel channel;
+        private FileChannel indexChannel;
+        private long size;
+
+        private Segment(File file, File indexFile) {
+            this.file = file;
+            this.indexFile = indexFile;
+        }
+
+        private void close() {
+            try {
+                channel.close();
+                indexChannel.close();
+            } catch (IOException e) {
+                log.warn("cdr archive close segment : [{}] failure : ", file, e);
+            }
+        }
+    }
+}
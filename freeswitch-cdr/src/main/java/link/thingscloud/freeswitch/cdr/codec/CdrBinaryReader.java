@@ -0,0 +1,564 @@
+package link.thingscloud.freeswitch.cdr.codec;
+
+import link.thingscloud.freeswitch.cdr.domain.*;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>CdrBinaryReader class.</p>
+ * <p>
+ * 顺序读取 {@link CdrBinaryWriter} 写入的流. 字段序号与 writer 一致, 不认识的字段(更新的 schema)按对象长度跳过.
+ * 非线程安全.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class CdrBinaryReader implements Closeable {
+
+    private final InputStream in;
+    private final List<String> dictionary = new ArrayList<>(1024);
+    private int schemaVersion = -1;
+
+    private byte[] buf = new byte[16384];
+    private int pos;
+    private int limit;
+
+    /**
+     * <p>Constructor for CdrBinaryReader.</p>
+     *
+     * @param in a {@link java.io.InputStream} object.
+     */
+    public CdrBinaryReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * 读取下一条 record.
+     *
+     * @return a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object, 流结束时为 null
+     * @throws java.io.IOException 格式不正确或版本不支持
+     */
+    public Cdr read() throws IOException {
+        return nextRecord() ? readCdr() : null;
+    }
+
+    /**
+     * 跳过下一条 record, 只登记其新增的字典项.
+     *
+     * @return 流结束时为 false
+     * @throws java.io.IOException 格式不正确或版本不支持
+     */
+    public boolean skip() throws IOException {
+        return nextRecord();
+    }
+
+    /**
+     * 读入下一条 record 并登记新增字典项, 之后 pos 指向 Cdr 对象
+     */
+    private boolean nextRecord() throws IOException {
+        if (schemaVersion < 0) {
+            readHeader();
+        }
+        int first = in.read();
+        if (first < 0) {
+            return false;
+        }
+        long length = first & 0x7F;
+        for (int shift = 7; (first & 0x80) != 0; shift += 7) {
+            first = in.read();
+            if (first < 0 || shift > 28) {
+                throw new IOException("cdr binary record length corrupted");
+            }
+            length |= (long) (first & 0x7F) << shift;
+        }
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IOException("cdr binary record too large : " + length);
+        }
+        fill((int) length);
+        int entries = readInt();
+        for (int i = 0; i < entries; i++) {
+            dictionary.add(readUtf8());
+        }
+        return true;
+    }
+
+    /**
+     * <p>Getter for the field <code>schemaVersion</code>.</p>
+     *
+     * @return 写入方的 schema 版本, 读取第一条 record 前为 -1
+     */
+    public int getSchemaVersion() {
+        return schemaVersion;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readHeader() throws IOException {
+        fill(5);
+        int magic = (buf[0] & 0xFF) << 24 | (buf[1] & 0xFF) << 16 | (buf[2] & 0xFF) << 8 | (buf[3] & 0xFF);
+        if (magic != CdrCodec.MAGIC) {
+            throw new IOException("not a cdr binary stream, magic : " + Integer.toHexString(magic));
+        }
+        if (buf[4] != CdrCodec.FORMAT_VERSION) {
+            throw new IOException("unsupported cdr binary format : " + buf[4]);
+        }
+        int b = in.read();
+        int version = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (b < 0 || shift > 28) {
+                throw new EOFException("cdr binary header truncated");
+            }
+            version |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            b = in.read();
+        }
+        schemaVersion = version;
+    }
+
+    private void fill(int length) throws IOException {
+        if (buf.length < length) {
+            buf = new byte[Math.max(length, buf.length * 2)];
+        }
+        int n = 0;
+        while (n < length) {
+            int read = in.read(buf, n, length - n);
+            if (read < 0) {
+                throw new EOFException("cdr binary record truncated");
+            }
+            n += read;
+        }
+        pos = 0;
+        limit = length;
+    }
+
+    private Cdr readCdr() throws IOException {
+        int end = readObjectEnd();
+        long mask = readVarLong();
+        Cdr cdr = new Cdr();
+        if (has(mask, 0)) {
+            cdr.setCoreUuid(readString());
+        }
+        if (has(mask, 1)) {
+            cdr.setSwitchname(readString());
+        }
+        if (has(mask, 2)) {
+            String[] values = readStrings(5);
+            cdr.setChannelData(new ChannelData().setState(values[0]).setDirection(values[1]).setStateNumber(values[2])
+                    .setFlags(values[3]).setCaps(values[4]));
+        }
+        if (has(mask, 3)) {
+            cdr.setCallStats(readCallStats());
+        }
+        if (has(mask, 4)) {
+            int variablesEnd = readObjectEnd();
+            long variablesMask = readVarLong();
+            Variables variables = new Variables();
+            if (has(variablesMask, 0)) {
+                int size = readInt();
+                VariableTable table = new VariableTable(size);
+                readMap(table, size);
+                variables.setVariableTable(table);
+            }
+            skipTo(variablesEnd);
+            cdr.setVariables(variables);
+        }
+        if (has(mask, 5)) {
+            int appLogEnd = readObjectEnd();
+            long appLogMask = readVarLong();
+            AppLog appLog = new AppLog();
+            if (has(appLogMask, 0)) {
+                appLog.setApplications(readApplications());
+            }
+            skipTo(appLogEnd);
+            cdr.setAppLog(appLog);
+        }
+        if (has(mask, 6)) {
+            cdr.setHoldRecord(readHoldRecord());
+        }
+        if (has(mask, 7)) {
+            int size = readInt();
+            List<Callflow> callflows = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                callflows.add(readCallflow());
+            }
+            cdr.setCallflows(callflows);
+        }
+        if (has(mask, 8)) {
+            int size = readInt();
+            Map<String, String> extensions = new LinkedHashMap<>(size * 2);
+            readMap(extensions, size);
+            cdr.setExtensions(extensions);
+        }
+        skipTo(end);
+        return cdr;
+    }
+
+    private CallStats readCallStats() throws IOException {
+        int end = readObjectEnd();
+        long mask = readVarLong();
+        CallStats callStats = new CallStats();
+        if (has(mask, 0)) {
+            int audioEnd = readObjectEnd();
+            long audioMask = readVarLong();
+            Audio audio = new Audio();
+            if (has(audioMask, 0)) {
+                audio.setInbound(readInbound());
+            }
+            if (has(audioMask, 1)) {
+                audio.setOutbound(readOutbound());
+            }
+            if (has(audioMask, 2)) {
+                audio.setErrorLog(readErrorLog());
+            }
+            skipTo(audioEnd);
+            callStats.setAudio(audio);
+        }
+        skipTo(end);
+        return callStats;
+    }
+
+    private Inbound readInbound() throws IOException {
+        int end = readObjectEnd();
+        long mask = readVarLong();
+        String[] v = readNonNull(mask, 18);
+        Inbound in = new Inbound().setRawBytes(v[0]).setMediaBytes(v[1]).setPacketCount(v[2]).setMediaPacketCount(v[3])
+                .setSkipPacketCount(v[4]).setJitterPacketCount(v[5]).setDtmfPacketCount(v[6]).setCngPacketCount(v[7])
+                .setFlushPacketCount(v[8]).setLargestJbSize(v[9]).setJitterMinVariance(v[10]).setJitterMaxVariance(v[11])
+                .setJitterLossRate(v[12]).setJitterBurstRate(v[13]).setMeanInterval(v[14]).setFlawTotal(v[15])
+                .setQualityPercentage(v[16]).setMos(v[17]);
+        if (has(mask, 18)) {
+            int statsEnd = readObjectEnd();
+            long m = readVarLong();
+            in.setStats(new InboundStats().setRawBytes(readLong(m, 0)).setMediaBytes(readLong(m, 1))
+                    .setPacketCount(readLong(m, 2)).setMediaPacketCount(readLong(m, 3)).setSkipPacketCount(readLong(m, 4))
+                    .setJitterPacketCount(readLong(m, 5)).setDtmfPacketCount(readLong(m, 6)).setCngPacketCount(readLong(m, 7))
+                    .setFlushPacketCount(readLong(m, 8)).setLargestJbSize(readLong(m, 9))
+                    .setJitterMinVariance(readDouble(m, 10)).setJitterMaxVariance(readDouble(m, 11))
+                    .setJitterLossRate(readDouble(m, 12)).setJitterBurstRate(readDouble(m, 13))
+                    .setMeanInterval(readDouble(m, 14)).setFlawTotal(readLong(m, 15))
+                    .setQualityPercentage(readDouble(m, 16)).setMos(readDouble(m, 17)));
+            skipTo(statsEnd);
+        }
+        skipTo(end);
+        return in;
+    }
+
+    private Outbound readOutbound() throws IOException {
+        int end = readObjectEnd();
+        long mask = readVarLong();
+        String[] v = readNonNull(mask, 9);
+        Outbound out = new Outbound().setRawBytes(v[0]).setMediaBytes(v[1]).setPacketCount(v[2]).setMediaPacketCount(v[3])
+                .setSkipPacketCount(v[4]).setDtmfPacketCount(v[5]).setCngPacketCount(v[6]).setRtcpPacketCount(v[7])
+                .setRtcpOctetCount(v[8]);
+        if (has(mask, 9)) {
+            int statsEnd = readObjectEnd();
+            long m = readVarLong();
+            out.setStats(new OutboundStats().setRawBytes(readLong(m, 0)).setMediaBytes(readLong(m, 1))
+                    .setPacketCount(readLong(m, 2)).setMediaPacketCount(readLong(m, 3)).setSkipPacketCount(readLong(m, 4))
+                    .setDtmfPacketCount(readLong(m, 5)).setCngPacketCount(readLong(m, 6))
+                    .setRtcpPacketCount(readLong(m, 7)).setRtcpOctetCount(readLong(m, 8)));
+            skipTo(statsEnd);
+        }
+        skipTo(end);
+        return out;
+    }
+
+    private ErrorLog readErrorLog() throws IOException {
+        int end = readObjectEnd();
+        long mask = readVarLong();
+        ErrorLog errorLog = new ErrorLog();
+        if (has(mask, 0)) {
+            int size = readInt();
+            List<ErrorPeriod> periods = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int itemEnd = readObjectEnd();
+                long itemMask = readVarLong();
+                String[] v = readNonNull(itemMask, 5);
+                ErrorPeriod period = new ErrorPeriod().setStart(v[0]).setStop(v[1]).setFlaws(v[2])
+                        .setConsecutiveFlaws(v[3]).setDurationMsec(v[4]);
+                if (has(itemMask, 5)) {
+                    int statsEnd = readObjectEnd();
+                    long m = readVarLong();
+                    period.setStats(new ErrorPeriodStats().setStart(readLong(m, 0)).setStop(readLong(m, 1))
+                            .setFlaws(readLong(m, 2)).setConsecutiveFlaws(readLong(m, 3)).setDurationMsec(readLong(m, 4)));
+                    skipTo(statsEnd);
+                }
+                skipTo(itemEnd);
+                periods.add(period);
+            }
+            errorLog.setErrorPeriods(periods);
+        }
+        skipTo(end);
+        return errorLog;
+    }
+
+    private HoldRecord readHoldRecord() throws IOException {
+        int end = readObjectEnd();
+        long mask = readVarLong();
+        HoldRecord holdRecord = new HoldRecord();
+        if (has(mask, 0)) {
+            int size = readInt();
+            List<Hold> holds = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int itemEnd = readObjectEnd();
+                long m = readVarLong();
+                Hold hold = new Hold();
+                if (has(m, 0)) {
+                    hold.setOn(readZigZag());
+                }
+                if (has(m, 1)) {
+                    hold.setOff(readZigZag());
+                }
+                if (has(m, 2)) {
+                    hold.setBridgedTo(readString());
+                }
+                skipTo(itemEnd);
+                holds.add(hold);
+            }
+            holdRecord.setHolds(holds);
+        }
+        skipTo(end);
+        return holdRecord;
+    }
+
+    private List<Application> readApplications() throws IOException {
+        int size = readInt();
+        List<Application> applications = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int itemEnd = readObjectEnd();
+            long m = readVarLong();
+            Application application = new Application();
+            if (has(m, 0)) {
+                application.setAppName(readString());
+            }
+            if (has(m, 1)) {
+                application.setAppData(readString());
+            }
+            if (has(m, 2)) {
+                application.setAppStamp(readZigZag());
+            }
+            skipTo(itemEnd);
+            applications.add(application);
+        }
+        return applications;
+    }
+
+    private Callflow readCallflow() throws IOException {
+        int end = readObjectEnd();
+        long mask = readVarLong();
+        String[] v = readNonNull(mask, 4);
+        Callflow callflow = new Callflow().setDialplan(v[0]).setUniqueId(v[1]).setCloneOf(v[2]).setProfileIndex(v[3]);
+        if (has(mask, 4)) {
+            int itemEnd = readObjectEnd();
+            long m = readVarLong();
+            Extension extension = new Extension();
+            if (has(m, 0)) {
+                extension.setName(readString());
+            }
+            if (has(m, 1)) {
+                extension.setNumber(readString());
+            }
+            if (has(m, 2)) {
+                extension.setApplications(readApplications());
+            }
+            skipTo(itemEnd);
+            callflow.setExtension(extension);
+        }
+        if (has(mask, 5)) {
+            callflow.setCallerProfile(readCallerProfile());
+        }
+        if (has(mask, 6)) {
+            int itemEnd = readObjectEnd();
+            long m = readVarLong();
+            Long[] t = new Long[11];
+            for (int i = 0; i < t.length; i++) {
+                if (has(m, i)) {
+                    t[i] = readZigZag();
+                }
+            }
+            skipTo(itemEnd);
+            callflow.setTimes(new Times().setCreatedTime(t[0]).setProfileCreatedTime(t[1]).setProgressTime(t[2])
+                    .setProgressMediaTime(t[3]).setAnsweredTime(t[4]).setBridgedTime(t[5]).setLastHoldTime(t[6])
+                    .setHoldAccumTime(t[7]).setHangupTime(t[8]).setResurrectTime(t[9]).setTransferTime(t[10]));
+        }
+        skipTo(end);
+        return callflow;
+    }
+
+    private CallerProfile readCallerProfile() throws IOException {
+        int end = readObjectEnd();
+        long mask = readVarLong();
+        String[] v = readNonNull(mask, 16);
+        CallerProfile profile = new CallerProfile().setUsername(v[0]).setDialplan(v[1]).setCallerIdName(v[2])
+                .setCallerIdNumber(v[3]).setCalleeIdName(v[4]).setCalleeIdNumber(v[5]).setAni(v[6]).setAniii(v[7])
+                .setNetworkAddr(v[8]).setRdnis(v[9]).setDestinationNumber(v[10]).setUuid(v[11]).setSource(v[12])
+                .setTransferSource(v[13]).setContext(v[14]).setChanName(v[15]);
+        if (has(mask, 16)) {
+            String[] p = readWrapped();
+            profile.setOriginator(new Originator().setOriginatorCallerProfile(p == null ? null : new OriginatorCallerProfile()
+                    .setUsername(p[0]).setDialplan(p[1]).setCallerIdName(p[2]).setCallerIdNumber(p[3]).setCalleeIdName(p[4])
+                    .setCalleeIdNumber(p[5]).setAni(p[6]).setAniii(p[7]).setNetworkAddr(p[8]).setRdnis(p[9])
+                    .setDestinationNumber(p[10]).setUuid(p[11]).setSource(p[12]).setContext(p[13]).setChanName(p[14])));
+        }
+        if (has(mask, 17)) {
+            String[] p = readWrapped();
+            profile.setOriginatee(new Originatee().setOriginateeCallerProfile(p == null ? null : new OriginateeCallerProfile()
+                    .setUsername(p[0]).setDialplan(p[1]).setCallerIdName(p[2]).setCallerIdNumber(p[3]).setCalleeIdName(p[4])
+                    .setCalleeIdNumber(p[5]).setAni(p[6]).setAniii(p[7]).setNetworkAddr(p[8]).setRdnis(p[9])
+                    .setDestinationNumber(p[10]).setUuid(p[11]).setSource(p[12]).setContext(p[13]).setChanName(p[14])));
+        }
+        if (has(mask, 18)) {
+            String[] p = readWrapped();
+            profile.setOrigination(new Origination().setOriginationCallerProfile(p == null ? null : new OriginationCallerProfile()
+                    .setUsername(p[0]).setDialplan(p[1]).setCallerIdName(p[2]).setCallerIdNumber(p[3]).setCalleeIdName(p[4])
+                    .setCalleeIdNumber(p[5]).setAni(p[6]).setAniii(p[7]).setNetworkAddr(p[8]).setRdnis(p[9])
+                    .setDestinationNumber(p[10]).setUuid(p[11]).setSource(p[12]).setContext(p[13]).setChanName(p[14])));
+        }
+        skipTo(end);
+        return profile;
+    }
+
+    private String[] readWrapped() throws IOException {
+        int end = readObjectEnd();
+        long mask = readVarLong();
+        String[] profile = has(mask, 0) ? readStrings(15) : null;
+        skipTo(end);
+        return profile;
+    }
+
+    /**
+     * 只含字符串字段的对象, 新版本追加的字段被忽略
+     */
+    private String[] readStrings(int count) throws IOException {
+        int end = readObjectEnd();
+        String[] values = readNonNull(readVarLong(), count);
+        skipTo(end);
+        return values;
+    }
+
+    private String[] readNonNull(long mask, int count) throws IOException {
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            if (has(mask, i)) {
+                values[i] = readString();
+            }
+        }
+        return values;
+    }
+
+    private void readMap(Map<String, String> map, int size) throws IOException {
+        for (int i = 0; i < size; i++) {
+            String key = readString();
+            map.put(key, readString());
+        }
+    }
+
+    private static boolean has(long mask, int index) {
+        return (mask & (1L << index)) != 0;
+    }
+
+    private int readObjectEnd() throws IOException {
+        int length = readInt();
+        if (length > limit - pos) {
+            throw new EOFException("cdr binary object truncated");
+        }
+        return pos + length;
+    }
+
+    private void skipTo(int end) throws IOException {
+        if (pos > end) {
+            throw new IOException("cdr binary object overrun");
+        }
+        pos = end;
+    }
+
+    private String readString() throws IOException {
+        long tag = readVarLong();
+        if (tag == CdrBinaryWriter.TAG_NULL) {
+            return null;
+        }
+        if (tag == CdrBinaryWriter.TAG_LONG) {
+            return Long.toString(readZigZag());
+        }
+        if (tag == CdrBinaryWriter.TAG_INLINE) {
+            return readUtf8();
+        }
+        long id = tag - CdrBinaryWriter.TAG_DICTIONARY;
+        if (id >= dictionary.size()) {
+            throw new IOException("cdr binary dictionary id out of range : " + id);
+        }
+        return dictionary.get((int) id);
+    }
+
+    private String readUtf8() throws IOException {
+        int length = readInt();
+        if (length > limit - pos) {
+            throw new EOFException("cdr binary string truncated");
+        }
+        String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return value;
+    }
+
+    private long readLong(long mask, int index) throws IOException {
+        return has(mask, index) ? readZigZag() : 0;
+    }
+
+    private double readDouble(long mask, int index) throws IOException {
+        if (!has(mask, index)) {
+            return 0;
+        }
+        if (limit - pos < 8) {
+            throw new EOFException("cdr binary double truncated");
+        }
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits = bits << 8 | (buf[pos++] & 0xFF);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    private long readZigZag() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private int readInt() throws IOException {
+        long value = readVarLong();
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("cdr binary length out of range : " + value);
+        }
+        return (int) value;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos >= limit) {
+                throw new EOFException("cdr binary varint truncated");
+            }
+            byte b = buf[pos++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("cdr binary varint too long");
+    }
+}
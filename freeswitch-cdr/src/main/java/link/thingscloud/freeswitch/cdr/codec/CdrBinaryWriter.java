@@ -0,0 +1,624 @@
+package link.thingscloud.freeswitch.cdr.codec;
+
+import link.thingscloud.freeswitch.cdr.domain.*;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>CdrBinaryWriter class.</p>
+ * <p>
+ * 按 {@link CdrCodec} 格式向输出流顺序写入话单, 字段序号即本类各 write 方法中的写入顺序, 只能在末尾追加.
+ * 同一个 writer 写入的话单共享字符串字典, 非线程安全.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class CdrBinaryWriter implements Closeable, Flushable {
+
+    /**
+     * 字典项上限, 达到后新字符串内联写出
+     */
+    public static final int MAX_DICTIONARY = 65536;
+    /**
+     * 进入字典的字符串最大长度, 更长的字符串(如 sdp)通常不会重复
+     */
+    public static final int MAX_DICTIONARY_LENGTH = 64;
+
+    static final int TAG_NULL = 0;
+    static final int TAG_LONG = 1;
+    static final int TAG_INLINE = 2;
+    static final int TAG_DICTIONARY = 3;
+
+    private final OutputStream out;
+    private final Map<String, Integer> dictionary = new HashMap<>(1024);
+    private final List<String> added = new ArrayList<>();
+    private boolean headerWritten;
+
+    private byte[] buf = new byte[16384];
+    private int pos;
+
+    /**
+     * <p>Constructor for CdrBinaryWriter.</p>
+     *
+     * @param out a {@link java.io.OutputStream} object.
+     */
+    public CdrBinaryWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * 写入一条 record, 首次写入时先写流头部.
+     *
+     * @param cdr a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object.
+     * @throws java.io.IOException if any.
+     */
+    public void write(Cdr cdr) throws IOException {
+        if (!headerWritten) {
+            pos = 0;
+            writeInt(CdrCodec.MAGIC);
+            writeByte(CdrCodec.FORMAT_VERSION);
+            writeVarLong(CdrCodec.SCHEMA_VERSION);
+            out.write(buf, 0, pos);
+            headerWritten = true;
+        }
+        pos = 0;
+        added.clear();
+        writeCdr(cdr);
+        int body = pos;
+        // record 头部(长度与新增字典项)写在 body 之后, 再分两段输出
+        writeVarLong(added.size());
+        for (String value : added) {
+            writeUtf8(value);
+        }
+        int entries = pos - body;
+        int length = entries + body;
+        writeVarLong(length);
+        out.write(buf, body + entries, pos - body - entries);
+        out.write(buf, body, entries);
+        out.write(buf, 0, body);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeCdr(Cdr cdr) {
+        int start = begin();
+        writeVarLong(bit(cdr.getCoreUuid(), 0) | bit(cdr.getSwitchname(), 1) | bit(cdr.getChannelData(), 2)
+                | bit(cdr.getCallStats(), 3) | bit(cdr.getVariables(), 4) | bit(cdr.getAppLog(), 5)
+                | bit(cdr.getHoldRecord(), 6) | bit(cdr.getCallflows(), 7) | bit(cdr.getExtensions(), 8));
+        writeNonNull(cdr.getCoreUuid());
+        writeNonNull(cdr.getSwitchname());
+        if (cdr.getChannelData() != null) {
+            ChannelData data = cdr.getChannelData();
+            writeStrings(data.getState(), data.getDirection(), data.getStateNumber(), data.getFlags(), data.getCaps());
+        }
+        if (cdr.getCallStats() != null) {
+            writeCallStats(cdr.getCallStats());
+        }
+        if (cdr.getVariables() != null) {
+            int variables = begin();
+            Map<String, String> table = cdr.getVariables().getVariableTable();
+            writeVarLong(bit(table, 0));
+            if (table != null) {
+                writeMap(table);
+            }
+            end(variables);
+        }
+        if (cdr.getAppLog() != null) {
+            int appLog = begin();
+            writeVarLong(bit(cdr.getAppLog().getApplications(), 0));
+            if (cdr.getAppLog().getApplications() != null) {
+                writeApplications(cdr.getAppLog().getApplications());
+            }
+            end(appLog);
+        }
+        if (cdr.getHoldRecord() != null) {
+            writeHoldRecord(cdr.getHoldRecord());
+        }
+        if (cdr.getCallflows() != null) {
+            writeVarLong(cdr.getCallflows().size());
+            for (Callflow callflow : cdr.getCallflows()) {
+                writeCallflow(callflow);
+            }
+        }
+        if (cdr.getExtensions() != null) {
+            writeMap(cdr.getExtensions());
+        }
+        end(start);
+    }
+
+    private void writeCallStats(CallStats callStats) {
+        int start = begin();
+        Audio audio = callStats.getAudio();
+        writeVarLong(bit(audio, 0));
+        if (audio != null) {
+            int audioStart = begin();
+            writeVarLong(bit(audio.getInbound(), 0) | bit(audio.getOutbound(), 1) | bit(audio.getErrorLog(), 2));
+            if (audio.getInbound() != null) {
+                writeInbound(audio.getInbound());
+            }
+            if (audio.getOutbound() != null) {
+                writeOutbound(audio.getOutbound());
+            }
+            if (audio.getErrorLog() != null) {
+                writeErrorLog(audio.getErrorLog());
+            }
+            end(audioStart);
+        }
+        end(start);
+    }
+
+    private void writeInbound(Inbound in) {
+        int start = begin();
+        String[] values = {in.getRawBytes(), in.getMediaBytes(), in.getPacketCount(), in.getMediaPacketCount(),
+                in.getSkipPacketCount(), in.getJitterPacketCount(), in.getDtmfPacketCount(), in.getCngPacketCount(),
+                in.getFlushPacketCount(), in.getLargestJbSize(), in.getJitterMinVariance(), in.getJitterMaxVariance(),
+                in.getJitterLossRate(), in.getJitterBurstRate(), in.getMeanInterval(), in.getFlawTotal(),
+                in.getQualityPercentage(), in.getMos()};
+        writeVarLong(mask(values) | bit(in.getStats(), 18));
+        writeNonNull(values);
+        if (in.getStats() != null) {
+            InboundStats s = in.getStats();
+            int stats = begin();
+            long[] longs = {s.getRawBytes(), s.getMediaBytes(), s.getPacketCount(), s.getMediaPacketCount(),
+                    s.getSkipPacketCount(), s.getJitterPacketCount(), s.getDtmfPacketCount(), s.getCngPacketCount(),
+                    s.getFlushPacketCount(), s.getLargestJbSize()};
+            double[] doubles = {s.getJitterMinVariance(), s.getJitterMaxVariance(), s.getJitterLossRate(),
+                    s.getJitterBurstRate(), s.getMeanInterval()};
+            long flawTotal = s.getFlawTotal();
+            double[] quality = {s.getQualityPercentage(), s.getMos()};
+            writeVarLong(mask(longs, 0) | mask(doubles, 10) | (flawTotal != 0 ? 1L << 15 : 0) | mask(quality, 16));
+            writeNonZero(longs);
+            writeNonZero(doubles);
+            if (flawTotal != 0) {
+                writeZigZag(flawTotal);
+            }
+            writeNonZero(quality);
+            end(stats);
+        }
+        end(start);
+    }
+
+    private void writeOutbound(Outbound out) {
+        int start = begin();
+        String[] values = {out.getRawBytes(), out.getMediaBytes(), out.getPacketCount(), out.getMediaPacketCount(),
+                out.getSkipPacketCount(), out.getDtmfPacketCount(), out.getCngPacketCount(), out.getRtcpPacketCount(),
+                out.getRtcpOctetCount()};
+        writeVarLong(mask(values) | bit(out.getStats(), 9));
+        writeNonNull(values);
+        if (out.getStats() != null) {
+            OutboundStats s = out.getStats();
+            int stats = begin();
+            long[] longs = {s.getRawBytes(), s.getMediaBytes(), s.getPacketCount(), s.getMediaPacketCount(),
+                    s.getSkipPacketCount(), s.getDtmfPacketCount(), s.getCngPacketCount(), s.getRtcpPacketCount(),
+                    s.getRtcpOctetCount()};
+            writeVarLong(mask(longs, 0));
+            writeNonZero(longs);
+            end(stats);
+        }
+        end(start);
+    }
+
+    private void writeErrorLog(ErrorLog errorLog) {
+        int start = begin();
+        List<ErrorPeriod> periods = errorLog.getErrorPeriods();
+        writeVarLong(bit(periods, 0));
+        if (periods != null) {
+            writeVarLong(periods.size());
+            for (ErrorPeriod period : periods) {
+                int item = begin();
+                String[] values = {period.getStart(), period.getStop(), period.getFlaws(), period.getConsecutiveFlaws(),
+                        period.getDurationMsec()};
+                writeVarLong(mask(values) | bit(period.getStats(), 5));
+                writeNonNull(values);
+                if (period.getStats() != null) {
+                    ErrorPeriodStats s = period.getStats();
+                    int stats = begin();
+                    long[] longs = {s.getStart(), s.getStop(), s.getFlaws(), s.getConsecutiveFlaws(), s.getDurationMsec()};
+                    writeVarLong(mask(longs, 0));
+                    writeNonZero(longs);
+                    end(stats);
+                }
+                end(item);
+            }
+        }
+        end(start);
+    }
+
+    private void writeHoldRecord(HoldRecord holdRecord) {
+        int start = begin();
+        List<Hold> holds = holdRecord.getHolds();
+        writeVarLong(bit(holds, 0));
+        if (holds != null) {
+            writeVarLong(holds.size());
+            for (Hold hold : holds) {
+                int item = begin();
+                writeVarLong(bit(hold.getOn(), 0) | bit(hold.getOff(), 1) | bit(hold.getBridgedTo(), 2));
+                writeLong(hold.getOn());
+                writeLong(hold.getOff());
+                writeNonNull(hold.getBridgedTo());
+                end(item);
+            }
+        }
+        end(start);
+    }
+
+    private void writeApplications(List<Application> applications) {
+        writeVarLong(applications.size());
+        for (Application application : applications) {
+            int item = begin();
+            writeVarLong(bit(application.getAppName(), 0) | bit(application.getAppData(), 1) | bit(application.getAppStamp(), 2));
+            writeNonNull(application.getAppName());
+            writeNonNull(application.getAppData());
+            writeLong(application.getAppStamp());
+            end(item);
+        }
+    }
+
+    private void writeCallflow(Callflow callflow) {
+        int start = begin();
+        String[] values = {callflow.getDialplan(), callflow.getUniqueId(), callflow.getCloneOf(), callflow.getProfileIndex()};
+        writeVarLong(mask(values) | bit(callflow.getExtension(), 4) | bit(callflow.getCallerProfile(), 5) | bit(callflow.getTimes(), 6));
+        writeNonNull(values);
+        if (callflow.getExtension() != null) {
+            Extension extension = callflow.getExtension();
+            int item = begin();
+            writeVarLong(bit(extension.getName(), 0) | bit(extension.getNumber(), 1) | bit(extension.getApplications(), 2));
+            writeNonNull(extension.getName());
+            writeNonNull(extension.getNumber());
+            if (extension.getApplications() != null) {
+                writeApplications(extension.getApplications());
+            }
+            end(item);
+        }
+        if (callflow.getCallerProfile() != null) {
+            writeCallerProfile(callflow.getCallerProfile());
+        }
+        if (callflow.getTimes() != null) {
+            Times t = callflow.getTimes();
+            int item = begin();
+            Long[] times = {t.getCreatedTime(), t.getProfileCreatedTime(), t.getProgressTime(), t.getProgressMediaTime(),
+                    t.getAnsweredTime(), t.getBridgedTime(), t.getLastHoldTime(), t.getHoldAccumTime(), t.getHangupTime(),
+                    t.getResurrectTime(), t.getTransferTime()};
+            writeVarLong(mask(times));
+            for (Long time : times) {
+                writeLong(time);
+            }
+            end(item);
+        }
+        end(start);
+    }
+
+    private void writeCallerProfile(CallerProfile p) {
+        int start = begin();
+        String[] values = {p.getUsername(), p.getDialplan(), p.getCallerIdName(), p.getCallerIdNumber(),
+                p.getCalleeIdName(), p.getCalleeIdNumber(), p.getAni(), p.getAniii(), p.getNetworkAddr(), p.getRdnis(),
+                p.getDestinationNumber(), p.getUuid(), p.getSource(), p.getTransferSource(), p.getContext(), p.getChanName()};
+        writeVarLong(mask(values) | bit(p.getOriginator(), 16) | bit(p.getOriginatee(), 17) | bit(p.getOrigination(), 18));
+        writeNonNull(values);
+        if (p.getOriginator() != null) {
+            OriginatorCallerProfile profile = p.getOriginator().getOriginatorCallerProfile();
+            writeWrapped(profile == null ? null : new String[]{profile.getUsername(), profile.getDialplan(),
+                    profile.getCallerIdName(), profile.getCallerIdNumber(), profile.getCalleeIdName(),
+                    profile.getCalleeIdNumber(), profile.getAni(), profile.getAniii(), profile.getNetworkAddr(),
+                    profile.getRdnis(), profile.getDestinationNumber(), profile.getUuid(), profile.getSource(),
+                    profile.getContext(), profile.getChanName()});
+        }
+        if (p.getOriginatee() != null) {
+            OriginateeCallerProfile profile = p.getOriginatee().getOriginateeCallerProfile();
+            writeWrapped(profile == null ? null : new String[]{profile.getUsername(), profile.getDialplan(),
+                    profile.getCallerIdName(), profile.getCallerIdNumber(), profile.getCalleeIdName(),
+                    profile.getCalleeIdNumber(), profile.getAni(), profile.getAniii(), profile.getNetworkAddr(),
+                    profile.getRdnis(), profile.getDestinationNumber(), profile.getUuid(), profile.getSource(),
+                    profile.getContext(), profile.getChanName()});
+        }
+        if (p.getOrigination() != null) {
+            OriginationCallerProfile profile = p.getOrigination().getOriginationCallerProfile();
+            writeWrapped(profile == null ? null : new String[]{profile.getUsername(), profile.getDialplan(),
+                    profile.getCallerIdName(), profile.getCallerIdNumber(), profile.getCalleeIdName(),
+                    profile.getCalleeIdNumber(), profile.getAni(), profile.getAniii(), profile.getNetworkAddr(),
+                    profile.getRdnis(), profile.getDestinationNumber(), profile.getUuid(), profile.getSource(),
+                    profile.getContext(), profile.getChanName()});
+        }
+        end(start);
+    }
+
+    /**
+     * Originator / Originatee / Origination: 只有一个 caller profile 字段的包装对象
+     */
+    private void writeWrapped(String[] profile) {
+        int start = begin();
+        writeVarLong(profile == null ? 0 : 1);
+        if (profile != null) {
+            writeStrings(profile);
+        }
+        end(start);
+    }
+
+    private void writeStrings(String... values) {
+        int start = begin();
+        writeVarLong(mask(values));
+        writeNonNull(values);
+        end(start);
+    }
+
+    private void writeMap(Map<String, String> map) {
+        writeVarLong(map.size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            writeString(entry.getKey());
+            writeString(entry.getValue());
+        }
+    }
+
+    private void writeNonNull(String value) {
+        if (value != null) {
+            writeString(value);
+        }
+    }
+
+    private void writeNonNull(String[] values) {
+        for (String value : values) {
+            if (value != null) {
+                writeString(value);
+            }
+        }
+    }
+
+    private void writeNonZero(long[] values) {
+        for (long value : values) {
+            if (value != 0) {
+                writeZigZag(value);
+            }
+        }
+    }
+
+    private void writeNonZero(double[] values) {
+        for (double value : values) {
+            long bits = Double.doubleToRawLongBits(value);
+            if (bits != 0) {
+                writeLongFixed(bits);
+            }
+        }
+    }
+
+    private static long bit(Object value, int index) {
+        return value == null ? 0 : 1L << index;
+    }
+
+    private static long mask(Object[] values) {
+        long mask = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    private static long mask(long[] values, int offset) {
+        long mask = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != 0) {
+                mask |= 1L << (offset + i);
+            }
+        }
+        return mask;
+    }
+
+    private static long mask(double[] values, int offset) {
+        long mask = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (Double.doubleToRawLongBits(values[i]) != 0) {
+                mask |= 1L << (offset + i);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 预留 1 字节对象长度, 返回对象起始位置
+     */
+    private int begin() {
+        ensure(1);
+        return pos++;
+    }
+
+    /**
+     * 回填对象长度, 长度超过 1 字节 varint 时后移对象内容
+     */
+    private void end(int start) {
+        int length = pos - start - 1;
+        int size = varLongSize(length);
+        if (size > 1) {
+            ensure(size - 1);
+            System.arraycopy(buf, start + 1, buf, start + size, length);
+            pos += size - 1;
+        }
+        // 空间已预留, 不能经过 ensure(扩容只复制 pos 之前的内容)
+        int i = start;
+        long value = length;
+        while ((value & ~0x7FL) != 0) {
+            buf[i++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[i] = (byte) value;
+    }
+
+    private void writeString(String value) {
+        if (value == null) {
+            writeVarLong(TAG_NULL);
+            return;
+        }
+        long number = canonicalLong(value);
+        if (number != Long.MIN_VALUE) {
+            writeVarLong(TAG_LONG);
+            writeZigZag(number);
+            return;
+        }
+        Integer id = dictionary.get(value);
+        if (id == null && value.length() <= MAX_DICTIONARY_LENGTH && dictionary.size() < MAX_DICTIONARY) {
+            id = dictionary.size();
+            dictionary.put(value, id);
+            added.add(value);
+        }
+        if (id != null) {
+            writeVarLong(TAG_DICTIONARY + (long) id);
+        } else {
+            writeVarLong(TAG_INLINE);
+            writeUtf8(value);
+        }
+    }
+
+    /**
+     * 规范十进制整数(无前导 0 与 +, 不为 -0, 不溢出)返回其值, 否则返回 Long.MIN_VALUE
+     */
+    static long canonicalLong(String value) {
+        int length = value.length();
+        if (length == 0 || length > 19) {
+            return Long.MIN_VALUE;
+        }
+        int i = 0;
+        boolean negative = value.charAt(0) == '-';
+        if (negative) {
+            if (length == 1 || value.charAt(1) == '0') {
+                return Long.MIN_VALUE;
+            }
+            i = 1;
+        } else if (value.charAt(0) == '0' && length > 1) {
+            return Long.MIN_VALUE;
+        }
+        long result = 0;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return Long.MIN_VALUE;
+            }
+            // 19 位数字可能溢出
+            if (result > (Long.MAX_VALUE - (c - '0')) / 10) {
+                return Long.MIN_VALUE;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return negative ? -result : result;
+    }
+
+    private void writeLong(Long value) {
+        if (value != null) {
+            writeZigZag(value);
+        }
+    }
+
+    private void writeZigZag(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    private void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+    }
+
+    private static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private void writeLongFixed(long value) {
+        ensure(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buf[pos++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void writeInt(int value) {
+        ensure(4);
+        buf[pos++] = (byte) (value >>> 24);
+        buf[pos++] = (byte) (value >>> 16);
+        buf[pos++] = (byte) (value >>> 8);
+        buf[pos++] = (byte) value;
+    }
+
+    private void writeByte(int value) {
+        ensure(1);
+        buf[pos++] = (byte) value;
+    }
+
+    private void writeUtf8(String value) {
+        int length = value.length();
+        int bytes = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+        writeVarLong(bytes);
+        ensure(bytes);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // 孤立代理项编码为 '?', 与 String.getBytes(UTF_8) 一致
+                buf[pos++] = '?';
+            } else {
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void ensure(int n) {
+        if (pos + n > buf.length) {
+            byte[] bigger = new byte[Math.max(buf.length * 2, pos + n)];
+            System.arraycopy(buf, 0, bigger, 0, pos);
+            buf = bigger;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package link.thingscloud.freeswitch.cdr.codec;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * <p>CdrCodec class.</p>
+ * <p>
+ * Cdr 二进制编码. 流格式: [int magic "FSCD"][byte format][varint schema](record)*,
+ * record 为 [varint length][varint n](新增字典项 string){n}[Cdr 对象].
+ * <ul>
+ * <li>对象: [varint length][varint 字段位图][位图中各字段按序号依次编码], 位图第 i 位表示第 i 个字段非 null(基本类型为非 0);</li>
+ * <li>字符串: varint 标记, 0 为 null, 1 为规范十进制整数(后跟 zigzag varint), 2 为内联 UTF-8(后跟长度与字节), n &gt;= 3 为字典项 n - 3;</li>
+ * <li>字典: 流内共享, 由写入方在 record 头部声明新增项, 变量名等短字符串只在首次出现时写出;</li>
+ * <li>Long 为 zigzag varint, double 为 8 字节, List / Map 为 varint 数量后跟元素.</li>
+ * </ul>
+ * 兼容规则: 字段只追加不修改, 新增字段时递增 {@link #SCHEMA_VERSION}; 旧版本读取时按对象长度跳过不认识的字段,
+ * 新版本读取旧数据时缺失字段为 null. 不兼容的修改递增 {@link #FORMAT_VERSION}, 读取方拒绝不支持的 format.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public final class CdrCodec {
+
+    /**
+     * 流头部 magic, "FSCD"
+     */
+    public static final int MAGIC = 0x46534344;
+    /**
+     * 不兼容修改时递增
+     */
+    public static final int FORMAT_VERSION = 1;
+    /**
+     * 追加字段时递增
+     */
+    public static final int SCHEMA_VERSION = 1;
+
+    private CdrCodec() {
+    }
+
+    /**
+     * 编码为只包含一条 record 的独立流.
+     *
+     * @param cdr a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object.
+     * @return an array of {@link byte} objects.
+     */
+    public static byte[] encode(Cdr cdr) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        try (CdrBinaryWriter writer = new CdrBinaryWriter(out)) {
+            writer.write(cdr);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 解码 {@link #encode(Cdr)} 的结果, 多条 record 时只返回第一条.
+     *
+     * @param bytes an array of {@link byte} objects.
+     * @return a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object.
+     * @throws java.io.IOException 格式不正确或版本不支持
+     */
+    public static Cdr decode(byte[] bytes) throws IOException {
+        return decode(bytes, 0, bytes.length);
+    }
+
+    /**
+     * <p>decode.</p>
+     *
+     * @param bytes  an array of {@link byte} objects.
+     * @param offset a int.
+     * @param length a int.
+     * @return a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object.
+     * @throws java.io.IOException 格式不正确或版本不支持
+     */
+    public static Cdr decode(byte[] bytes, int offset, int length) throws IOException {
+        try (CdrBinaryReader reader = new CdrBinaryReader(new ByteArrayInputStream(bytes, offset, length))) {
+            Cdr cdr = reader.read();
+            if (cdr == null) {
+                throw new IOException("cdr binary stream is empty");
+            }
+            return cdr;
+        }
+    }
+}
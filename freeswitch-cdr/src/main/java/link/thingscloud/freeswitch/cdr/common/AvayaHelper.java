@@ -1,13 +1,13 @@
 package link.thingscloud.freeswitch.cdr.common;
 
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 
-import java.util.IllegalFormatFlagsException;
-
 /**
  * <p>AvayaHelper class.</p>
+ * <p>
+ * User-to-User 报文为十六进制: [协议标识 1 字节]([tag 1 字节][length 1 字节][value])*, 可带 ;encoding=hex 后缀.
+ * 按 TLV 逐项遍历, 一次遍历同时取得 shared uui(C8) 与 ucid(FA), 不会误匹配 value 中的 C8 / FA.
  *
  * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
  * @version $Id: $Id
@@ -17,6 +17,11 @@ public class AvayaHelper {
 
     private static final String EMPTY = "";
 
+    private static final int TAG_SHARED = 0xC8;
+    private static final int TAG_UCID = 0xFA;
+
+    private static final ImmutablePair<String, String> EMPTY_PAIR = new ImmutablePair<>(EMPTY, EMPTY);
+
     private AvayaHelper() {
     }
 
@@ -28,7 +33,7 @@ public class AvayaHelper {
      */
     public static ImmutablePair<String, String> decode(String data) {
         log.debug("decode data : {}", data);
-        return new ImmutablePair<>(decodeShared(data), decodeUcid(data));
+        return walk(data, true, true);
     }
 
     /**
@@ -39,70 +44,118 @@ public class AvayaHelper {
      * @return 随路数据
      */
     public static String decodeShared(String data) {
-        log.debug("decode shared data : {}", data);
         // 04C80B4646464646464646464646
         //       4646464646464646464646
-        return decodeHex(getHexData(data, "C8"));
+        return walk(data, true, false).getLeft();
     }
 
     /**
      * 获取ucid
-     * opcode : C8
+     * opcode : FA
      *
      * @param data 随路数据原始报文, User-to-User字段内容
      * @return ucid
      */
     public static String decodeUcid(String data) {
-        if (StringUtils.isBlank(data)) {
-            return EMPTY;
+        // 00FA08 0064 01B6 5D005B91 -> 00100 00438 1560304529
+        return walk(data, false, true).getRight();
+    }
+
+    private static ImmutablePair<String, String> walk(String data, boolean decodeShared, boolean decodeUcid) {
+        if (data == null) {
+            return EMPTY_PAIR;
         }
-        log.debug("decode ucid data : {}", data);
-        // 006403895D75D362
-        String ucidHex = getHexData(data, "FA");
-        // 截取十六进制
-        String group1Hex = ucidHex.substring(0, 4);
-        String group2Hex = ucidHex.substring(4, 8);
-        String group3Hex = ucidHex.substring(8);
-        // 转成十进制
-        int group1 = hexToDecimal(group1Hex);
-        int group2 = hexToDecimal(group2Hex);
-        int group3 = hexToDecimal(group3Hex);
-        return append(group1, 5) + append(group2, 5) + append(group3, 10);
+        int end = hexEnd(data);
+        // 跳过协议标识(00 / 04), 兼容没有协议标识的报文
+        int pos = end >= 2 && !isTag(hexByte(data, 0)) ? 2 : 0;
+        String shared = EMPTY;
+        String ucid = EMPTY;
+        while (pos + 4 <= end) {
+            int tag = hexByte(data, pos);
+            int length = hexByte(data, pos + 2);
+            int value = pos + 4;
+            pos = value + length * 2;
+            if (pos > end) {
+                // 长度超出报文, 之后的内容无法定位
+                break;
+            }
+            if (tag == TAG_SHARED && decodeShared && shared.isEmpty()) {
+                shared = ascii(data, value, length);
+            } else if (tag == TAG_UCID && decodeUcid && ucid.isEmpty() && length > 4 && length <= 8) {
+                ucid = ucid(data, value, length);
+            }
+        }
+        return shared.isEmpty() && ucid.isEmpty() ? EMPTY_PAIR : new ImmutablePair<>(shared, ucid);
+    }
+
+    private static boolean isTag(int b) {
+        return b == TAG_SHARED || b == TAG_UCID;
     }
 
-    private static String getHexData(String data, String token) {
-        int index = data.indexOf(token);
-        if (index == -1) {
-            return EMPTY;
+    /**
+     * 十六进制部分的结束位置(偶数), 之后为 ;encoding=hex 或 %3Bencoding%3Dhex 等后缀
+     */
+    private static int hexEnd(String data) {
+        int i = 0;
+        int length = data.length();
+        while (i < length && hex(data.charAt(i)) >= 0) {
+            i++;
         }
-        String strLen = data.substring(index + 2, index + 4);
-        int len = hexToDecimal(strLen) * 2;
-        if (data.length() < index + 4 + len) {
-            throw new IllegalFormatFlagsException("");
+        return i & ~1;
+    }
+
+    /**
+     * 每个字节按单个字符输出
+     */
+    private static String ascii(String data, int from, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) hexByte(data, from + i * 2);
         }
-        return data.substring(index + 4, index + 4 + len);
+        return new String(chars);
+    }
+
+    /**
+     * 2 字节 + 2 字节 + 剩余字节, 分别补零为 5 + 5 + 10 位十进制
+     */
+    private static String ucid(String data, int from, int length) {
+        char[] digits = new char[20];
+        fill(digits, 0, 5, bytes(data, from, 2));
+        fill(digits, 5, 5, bytes(data, from + 4, 2));
+        fill(digits, 10, 10, bytes(data, from + 8, length - 4));
+        return new String(digits);
     }
 
-    private static int hexToDecimal(String hex) {
-        return Integer.valueOf(hex, 16);
+    private static long bytes(String data, int from, int count) {
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            value = (value << 8) | hexByte(data, from + i * 2);
+        }
+        return value;
     }
 
-    private static String append(int value, int maxLen) {
-        StringBuilder strValue = new StringBuilder(Integer.toString(value));
-        while (strValue.length() < maxLen) {
-            strValue.insert(0, "0");
+    private static void fill(char[] digits, int offset, int width, long value) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
         }
-        return strValue.toString();
     }
 
-    private static String decodeHex(String hexStr) {
-        StringBuilder sb = new StringBuilder();
-        int pos = 0;
-        while (pos < hexStr.length()) {
-            sb.append((char) hexToDecimal(hexStr.substring(pos, pos + 2)));
-            pos += 2;
+    private static int hexByte(String data, int pos) {
+        return hex(data.charAt(pos)) << 4 | hex(data.charAt(pos + 1));
+    }
+
+    private static int hex(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
         }
-        return sb.toString();
+        return -1;
     }
 
 }
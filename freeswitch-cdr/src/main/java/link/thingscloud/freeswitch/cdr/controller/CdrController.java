@@ -1,39 +1,82 @@
 package link.thingscloud.freeswitch.cdr.controller;
 
+import link.thingscloud.freeswitch.cdr.exception.CdrRejectedException;
 import link.thingscloud.freeswitch.cdr.service.CdrService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
 /**
  * <p>CdrController class.</p>
+ * <p>
+ * servlet 接入, reactive 应用由 starter 中的 ReactiveCdrController 接入.
  *
  * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
  * @version $Id: $Id
  */
 @Slf4j
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/freeswitch")
 public class CdrController {
 
     @Autowired
     private CdrService cdrService;
 
+    @Value("${cdr.reject.status:503}")
+    private int rejectStatus;
+
+    @Value("${cdr.reject.retry-after:5}")
+    private int rejectRetryAfter;
+
     /**
      * <p>cdr.</p>
      *
      * @param httpHeaders a {@link org.springframework.http.HttpHeaders} object.
-     * @param reqText     a {@link java.lang.String} object.
+     * @param reqBytes    raw request body, decoded lazily by the parser.
      */
     @RequestMapping("/cdr")
-    public void cdr(@RequestHeader HttpHeaders httpHeaders, @RequestBody String reqText) {
-        log.debug("cdr httpHeaders : [{}]", httpHeaders);
-        log.debug("cdr reqText     : [{}]", reqText);
-        cdrService.handle(reqText);
+    public void cdr(@RequestHeader HttpHeaders httpHeaders, @RequestBody byte[] reqBytes) {
+        if (log.isDebugEnabled()) {
+            log.debug("cdr httpHeaders : [{}]", httpHeaders);
+            log.debug("cdr reqText     : [{}]", new String(reqBytes, StandardCharsets.UTF_8));
+        }
+        cdrService.handle(reqBytes);
+    }
+
+    /**
+     * 未识别元素/属性按路径计数, 用于发现 FreeSWITCH 新版本新增的字段.
+     *
+     * @return path -&gt; count
+     */
+    @GetMapping("/cdr/unknown-elements")
+    public Map<String, Long> unknownElements() {
+        return cdrService.getUnknownElementCounts();
+    }
+
+    /**
+     * 队列已满时返回 503(或配置的 429), mod_xml_cdr 按 retries / delay 重试.
+     *
+     * @param e a {@link link.thingscloud.freeswitch.cdr.exception.CdrRejectedException} object.
+     * @return a {@link org.springframework.http.ResponseEntity} object.
+     */
+    @ExceptionHandler(CdrRejectedException.class)
+    public ResponseEntity<Void> rejected(CdrRejectedException e) {
+        return ResponseEntity.status(rejectStatus)
+                .header(HttpHeaders.RETRY_AFTER, Integer.toString(rejectRetryAfter))
+                .build();
     }
 
 }
@@ -0,0 +1,55 @@
+package link.thingscloud.freeswitch.cdr.controller;
+
+import link.thingscloud.freeswitch.cdr.domain.QualitySnapshot;
+import link.thingscloud.freeswitch.cdr.quality.CallQualityAggregator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * <p>QualityController class.</p>
+ * <p>
+ * 实时通话质量查询, servlet 与 reactive 应用均可用; cdr.quality.enabled=true 时注册.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@RestController
+@ConditionalOnProperty(name = "cdr.quality.enabled", havingValue = "true")
+@RequestMapping("/freeswitch")
+public class QualityController {
+
+    @Autowired
+    private CallQualityAggregator aggregator;
+
+    /**
+     * GET /freeswitch/cdr/quality?window=5m&amp;dimension=sip_gateway_name
+     *
+     * @param window    1m / 5m / 1h 或分钟数, 最大 60 分钟
+     * @param dimension 维度变量名, 为空时只返回汇总项
+     * @return 按话单数降序
+     */
+    @GetMapping("/cdr/quality")
+    public List<QualitySnapshot> quality(@RequestParam(defaultValue = "5m") String window,
+                                         @RequestParam(required = false) String dimension) {
+        return aggregator.query(CallQualityAggregator.parseWindow(window), dimension);
+    }
+
+    /**
+     * 窗口或维度不合法时返回 400.
+     *
+     * @param e a {@link java.lang.IllegalArgumentException} object.
+     * @return a {@link org.springframework.http.ResponseEntity} object.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+}
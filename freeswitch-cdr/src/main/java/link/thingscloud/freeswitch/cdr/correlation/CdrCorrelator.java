@@ -0,0 +1,552 @@
+package link.thingscloud.freeswitch.cdr.correlation;
+
+import link.thingscloud.freeswitch.cdr.domain.*;
+import link.thingscloud.freeswitch.cdr.handler.CallRecordHandler;
+import link.thingscloud.freeswitch.cdr.parser.CdrProjection;
+import link.thingscloud.freeswitch.cdr.parser.CdrSection;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>CdrCorrelator class.</p>
+ * <p>
+ * 把 FreeSWITCH 每条腿各自推送的话单合并为一通呼叫({@link CallRecord}):
+ * <ul>
+ * <li>B 腿按 variables.originate_signal_bond(缺失时取 callflow 中 originator 的 uuid)归入发起腿;</li>
+ * <li>发起腿按 variables.originated_legs(缺失时取 callflow 中 originatee 的 uuid)确定需要等待的腿;</li>
+ * <li>发起腿及其列出的腿全部到达时立即输出, 否则自第一条腿到达起 timeoutMs 后输出部分记录.</li>
+ * </ul>
+ * 等待中的通话按到达顺序保存, 内存中的腿数超过 maxLegs 时最早通话的腿按 {@link link.thingscloud.freeswitch.cdr.codec.CdrCodec}
+ * 编码写入 spillDir, 输出时读回; 未配置 spillDir 时直接按超时输出. 超时后才到达的腿单独成为一条部分记录.
+ * 等待中的腿只在内存(及本进程的溢出文件)中, 关闭时全部按部分记录输出.
+ * <p>
+ * 等待表由一把锁保护, 锁内只做内存操作; 溢出文件的写入、读回以及 handler 回调都在锁外进行.
+ * handler 在调用 {@link #add(Cdr)} / {@link #expire()} 的线程上同步回调, CdrServiceImpl 为每个 handler 包装独立的有界执行器.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Slf4j
+public class CdrCorrelator implements Closeable {
+
+    /**
+     * 关联所需的段落与变量
+     */
+    public static final CdrProjection PROJECTION = CdrProjection.of(
+            EnumSet.of(CdrSection.VARIABLES, CdrSection.CALLFLOW_CALLER_PROFILE),
+            Arrays.asList("uuid", "originate_signal_bond", "originated_legs"));
+
+    private final CorrelatorOptions options;
+    private final List<CallRecordHandler> handlers;
+    private final LongSupplier clock;
+    private final CorrelationSpill spill;
+    /**
+     * 发起腿 uuid -&gt; 等待中的通话, 按第一条腿到达的顺序
+     */
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>(1024);
+    private int legsInMemory;
+    private boolean relieving;
+
+    private final LongAdder completeCount = new LongAdder();
+    private final LongAdder incompleteCount = new LongAdder();
+    private final LongAdder spilledCount = new LongAdder();
+
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * <p>Constructor for CdrCorrelator.</p>
+     *
+     * @param options  a {@link link.thingscloud.freeswitch.cdr.correlation.CorrelatorOptions} object.
+     * @param handlers a {@link java.util.List} object.
+     * @throws java.io.IOException 创建溢出目录失败
+     */
+    public CdrCorrelator(CorrelatorOptions options, List<CallRecordHandler> handlers) throws IOException {
+        this(options, handlers, System::currentTimeMillis);
+    }
+
+    CdrCorrelator(CorrelatorOptions options, List<CallRecordHandler> handlers, LongSupplier clock) throws IOException {
+        this.options = options;
+        this.handlers = new ArrayList<>(handlers);
+        this.clock = clock;
+        this.spill = options.getSpillDir() == null ? null : new CorrelationSpill(options.getSpillDir(), options.getSpillSegmentSize());
+    }
+
+    /**
+     * 启动超时检查线程.
+     */
+    public void start() {
+        long period = Math.max(100L, Math.min(1000L, options.getTimeoutMs() / 4));
+        sweeper = new ScheduledThreadPoolExecutor(1, new BasicThreadFactory.Builder().namingPattern("cdr-correlator-%d").daemon(true).build());
+        sweeper.scheduleWithFixedDelay(this::expire, period, period, TimeUnit.MILLISECONDS);
+        log.info("freeswitch cdr correlator timeout : [{}]ms, max legs : [{}], spill dir : [{}], call record handlers : [{}].",
+                options.getTimeoutMs(), options.getMaxLegs(), options.getSpillDir(), handlers.size());
+    }
+
+    /**
+     * 加入一条腿, 所属通话的腿已全部到达时在调用线程上输出.
+     *
+     * @param cdr a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object.
+     */
+    public void add(Cdr cdr) {
+        String uuid = legUuid(cdr);
+        String parent = parentUuid(cdr, uuid);
+        long now = clock.getAsLong();
+        if (uuid == null && parent == null) {
+            // 无法关联
+            Pending call = new Pending(null, now);
+            call.originator = cdr;
+            call.complete = true;
+            emit(Collections.singletonList(call));
+            return;
+        }
+        List<Pending> ready = new ArrayList<>(1);
+        List<Pending> victims = null;
+        synchronized (this) {
+            String key = parent != null ? parent : uuid;
+            Pending call = pending.get(key);
+            if (call == null) {
+                call = new Pending(key, now);
+                pending.put(key, call);
+            }
+            if (parent == null) {
+                call.originator = cdr;
+                call.hasOriginator = true;
+                call.expected = originatedLegs(cdr);
+            } else {
+                call.originatees.add(cdr);
+                if (uuid != null) {
+                    call.arrived.add(uuid);
+                }
+            }
+            legsInMemory++;
+            if (call.isComplete()) {
+                pending.remove(key);
+                detach(call, true);
+                ready.add(call);
+            } else if (legsInMemory > options.getMaxLegs() && !relieving) {
+                victims = relieve(ready);
+            }
+        }
+        if (victims != null) {
+            spill(victims, ready);
+        }
+        emit(ready);
+    }
+
+    /**
+     * 输出已超时的通话, 由超时检查线程定期调用.
+     */
+    public void expire() {
+        List<Pending> ready = new ArrayList<>();
+        synchronized (this) {
+            long deadline = clock.getAsLong() - options.getTimeoutMs();
+            Iterator<Pending> iterator = pending.values().iterator();
+            while (iterator.hasNext()) {
+                Pending call = iterator.next();
+                if (call.firstArrivalMillis > deadline) {
+                    break;
+                }
+                iterator.remove();
+                detach(call, false);
+                ready.add(call);
+            }
+        }
+        emit(ready);
+    }
+
+    /**
+     * <p>getPendingCalls.</p>
+     *
+     * @return 等待中的通话数
+     */
+    public synchronized int getPendingCalls() {
+        return pending.size();
+    }
+
+    /**
+     * <p>getLegsInMemory.</p>
+     *
+     * @return 内存中等待关联的腿数
+     */
+    public synchronized int getLegsInMemory() {
+        return legsInMemory;
+    }
+
+    /**
+     * <p>getSpilledLegs.</p>
+     *
+     * @return 当前在溢出文件中的腿数
+     */
+    public int getSpilledLegs() {
+        if (spill == null) {
+            return 0;
+        }
+        synchronized (spill) {
+            return spill.size();
+        }
+    }
+
+    /**
+     * <p>getCompleteCount.</p>
+     *
+     * @return 已输出的完整记录数
+     */
+    public long getCompleteCount() {
+        return completeCount.sum();
+    }
+
+    /**
+     * <p>getIncompleteCount.</p>
+     *
+     * @return 超时、内存不足或关闭时输出的部分记录数
+     */
+    public long getIncompleteCount() {
+        return incompleteCount.sum();
+    }
+
+    /**
+     * <p>getSpilledCount.</p>
+     *
+     * @return 累计写入溢出文件的腿数
+     */
+    public long getSpilledCount() {
+        return spilledCount.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * 等待中的通话全部按部分记录输出.
+     */
+    @Override
+    public void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        List<Pending> ready;
+        synchronized (this) {
+            ready = new ArrayList<>(pending.values());
+            pending.clear();
+            for (Pending call : ready) {
+                detach(call, false);
+            }
+        }
+        emit(ready);
+        if (spill != null) {
+            synchronized (spill) {
+                spill.close();
+            }
+        }
+    }
+
+    /**
+     * 从等待表中摘下的通话不再被修改, 其溢出的腿在锁外读回
+     */
+    private void detach(Pending call, boolean complete) {
+        call.detached = true;
+        call.complete = complete;
+        legsInMemory -= call.legsInMemory();
+    }
+
+    /**
+     * 内存中的腿数超过 maxLegs: 从最早的通话开始选出需要溢出的通话直到低于 90%, 未配置溢出目录时直接按部分记录输出.
+     * 同一时刻只有一个线程在写溢出文件.
+     */
+    private List<Pending> relieve(List<Pending> ready) {
+        int excess = legsInMemory - options.getMaxLegs() / 10 * 9;
+        List<Pending> victims = new ArrayList<>();
+        Iterator<Pending> iterator = pending.values().iterator();
+        while (excess > 0 && iterator.hasNext()) {
+            Pending call = iterator.next();
+            int legs = call.legsInMemory();
+            if (legs == 0) {
+                continue;
+            }
+            excess -= legs;
+            if (spill != null) {
+                victims.add(call);
+            } else {
+                iterator.remove();
+                detach(call, false);
+                ready.add(call);
+            }
+        }
+        if (victims.isEmpty()) {
+            return null;
+        }
+        relieving = true;
+        return victims;
+    }
+
+    /**
+     * 在锁外写入溢出文件, 写入期间腿仍留在内存中; 写入完成后通话仍在等待则换成溢出位置, 已输出则释放溢出位置.
+     * 写入失败的通话按部分记录输出.
+     */
+    private void spill(List<Pending> victims, List<Pending> ready) {
+        List<CorrelationSpill.Location> discarded = new ArrayList<>();
+        try {
+            for (Pending call : victims) {
+                Cdr originator;
+                List<Cdr> originatees;
+                synchronized (this) {
+                    if (call.detached) {
+                        continue;
+                    }
+                    originator = call.originator;
+                    originatees = new ArrayList<>(call.originatees);
+                }
+                CorrelationSpill.Location originatorLocation = null;
+                List<CorrelationSpill.Location> locations = new ArrayList<>(originatees.size());
+                IOException failure = null;
+                synchronized (spill) {
+                    try {
+                        if (originator != null) {
+                            originatorLocation = spill.write(originator);
+                        }
+                        for (Cdr cdr : originatees) {
+                            locations.add(spill.write(cdr));
+                        }
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+                synchronized (this) {
+                    if (failure != null || call.detached) {
+                        if (originatorLocation != null) {
+                            discarded.add(originatorLocation);
+                        }
+                        discarded.addAll(locations);
+                        if (failure != null && !call.detached) {
+                            log.error("freeswitch cdr correlator spill failure, emit call : [{}] as incomplete, cause : ", call.id, failure);
+                            pending.remove(call.id);
+                            detach(call, false);
+                            ready.add(call);
+                        }
+                        continue;
+                    }
+                    if (originatorLocation != null) {
+                        if (call.originator == originator) {
+                            if (call.spilledOriginator != null) {
+                                discarded.add(call.spilledOriginator);
+                            }
+                            call.originator = null;
+                            call.spilledOriginator = originatorLocation;
+                            legsInMemory--;
+                            spilledCount.increment();
+                        } else {
+                            // 写入期间重复的发起腿到达
+                            discarded.add(originatorLocation);
+                        }
+                    }
+                    // originatees 只追加, 写入期间新到的腿在快照之后
+                    call.originatees.subList(0, locations.size()).clear();
+                    call.spilledOriginatees.addAll(locations);
+                    legsInMemory -= locations.size();
+                    spilledCount.add(locations.size());
+                }
+            }
+        } finally {
+            synchronized (this) {
+                relieving = false;
+            }
+            if (!discarded.isEmpty()) {
+                synchronized (spill) {
+                    for (CorrelationSpill.Location location : discarded) {
+                        try {
+                            spill.discard(location);
+                        } catch (IOException e) {
+                            log.warn("freeswitch cdr correlator discard spilled leg failure, cause : ", e);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private CallRecord toRecord(Pending call) {
+        Cdr originator = call.originator;
+        List<Cdr> originatees = new ArrayList<>(call.originatees.size() + call.spilledOriginatees.size());
+        if (call.spilledOriginator != null || !call.spilledOriginatees.isEmpty()) {
+            synchronized (spill) {
+                if (call.spilledOriginator != null) {
+                    Cdr spilled = load(call.spilledOriginator, call.id);
+                    originator = originator == null ? spilled : originator;
+                }
+                for (CorrelationSpill.Location location : call.spilledOriginatees) {
+                    Cdr cdr = load(location, call.id);
+                    if (cdr != null) {
+                        originatees.add(cdr);
+                    }
+                }
+            }
+        }
+        // 先溢出的腿先到达
+        originatees.addAll(call.originatees);
+        return new CallRecord().setId(call.id).setOriginator(originator).setOriginatees(originatees)
+                .setExpectedLegs(call.expected == null ? 0 : call.expected.size())
+                .setFirstArrivalMillis(call.firstArrivalMillis).setComplete(call.complete);
+    }
+
+    private Cdr load(CorrelationSpill.Location location, String id) {
+        try {
+            return spill.read(location);
+        } catch (IOException e) {
+            log.error("freeswitch cdr correlator read spilled leg of call : [{}] failure, cause : ", id, e);
+            return null;
+        }
+    }
+
+    /**
+     * 在锁外读回溢出的腿并回调
+     */
+    private void emit(List<Pending> calls) {
+        for (Pending call : calls) {
+            CallRecord record = toRecord(call);
+            (record.isComplete() ? completeCount : incompleteCount).increment();
+            for (CallRecordHandler handler : handlers) {
+                try {
+                    handler.handleCallRecord(record);
+                } catch (RuntimeException e) {
+                    log.error("freeswitch cdr call record handler : [{}] failure, call : [{}], cause : ", handler.getClass(), record.getId(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * variables.uuid, 缺失时取最后一个 callflow 的 caller profile uuid
+     */
+    static String legUuid(Cdr cdr) {
+        String uuid = variable(cdr, "uuid");
+        if (uuid != null || cdr.getCallflows() == null) {
+            return uuid;
+        }
+        for (int i = cdr.getCallflows().size() - 1; i >= 0; i--) {
+            CallerProfile profile = cdr.getCallflows().get(i).getCallerProfile();
+            if (profile != null && StringUtils.isNotEmpty(profile.getUuid())) {
+                return profile.getUuid();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * B 腿的发起腿 uuid, 发起腿返回 null
+     */
+    static String parentUuid(Cdr cdr, String uuid) {
+        String bond = variable(cdr, "originate_signal_bond");
+        if (bond != null && !bond.equals(uuid)) {
+            return bond;
+        }
+        if (cdr.getCallflows() != null) {
+            for (Callflow callflow : cdr.getCallflows()) {
+                CallerProfile profile = callflow.getCallerProfile();
+                OriginatorCallerProfile originator = profile == null || profile.getOriginator() == null
+                        ? null : profile.getOriginator().getOriginatorCallerProfile();
+                if (originator != null && StringUtils.isNotEmpty(originator.getUuid()) && !originator.getUuid().equals(uuid)) {
+                    return originator.getUuid();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * originated_legs 形如 uuid;name;number 或 ARRAY::uuid;name;number|:uuid;name;number
+     */
+    static Set<String> originatedLegs(Cdr cdr) {
+        Set<String> legs = new LinkedHashSet<>();
+        String value = variable(cdr, "originated_legs");
+        if (value != null) {
+            value = urlDecode(value);
+            if (value.startsWith("ARRAY::")) {
+                value = value.substring("ARRAY::".length());
+            }
+            for (String leg : StringUtils.splitByWholeSeparator(value, "|:")) {
+                String uuid = StringUtils.substringBefore(leg, ";").trim();
+                if (!uuid.isEmpty()) {
+                    legs.add(uuid);
+                }
+            }
+            return legs;
+        }
+        if (cdr.getCallflows() != null) {
+            for (Callflow callflow : cdr.getCallflows()) {
+                CallerProfile profile = callflow.getCallerProfile();
+                OriginateeCallerProfile originatee = profile == null || profile.getOriginatee() == null
+                        ? null : profile.getOriginatee().getOriginateeCallerProfile();
+                if (originatee != null && StringUtils.isNotEmpty(originatee.getUuid())) {
+                    legs.add(originatee.getUuid());
+                }
+            }
+        }
+        return legs;
+    }
+
+    private static String urlDecode(String value) {
+        if (value.indexOf('%') < 0) {
+            return value;
+        }
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+    private static String variable(Cdr cdr, String name) {
+        Variables variables = cdr.getVariables();
+        Map<String, String> table = variables == null ? null : variables.getVariableTable();
+        String value = table == null ? null : table.get(name);
+        return StringUtils.isEmpty(value) ? null : value;
+    }
+
+    private static final class Pending {
+        private final String id;
+        private final long firstArrivalMillis;
+        private Cdr originator;
+        private boolean hasOriginator;
+        private Set<String> expected;
+        private final Set<String> arrived = new HashSet<>(4);
+        private final List<Cdr> originatees = new ArrayList<>(2);
+        private CorrelationSpill.Location spilledOriginator;
+        private final List<CorrelationSpill.Location> spilledOriginatees = new ArrayList<>(0);
+        private boolean detached;
+        private boolean complete;
+
+        private Pending(String id, long firstArrivalMillis) {
+            this.id = id;
+            this.firstArrivalMillis = firstArrivalMillis;
+        }
+
+        private boolean isComplete() {
+            return hasOriginator && arrived.containsAll(expected);
+        }
+
+        private int legsInMemory() {
+            return (originator == null ? 0 : 1) + originatees.size();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package link.thingscloud.freeswitch.cdr.correlation;
+
+import link.thingscloud.freeswitch.cdr.codec.CdrCodec;
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>CorrelationSpill class.</p>
+ * <p>
+ * 等待关联的腿溢出到磁盘: 按 {@link CdrCodec} 编码追加到段文件, 位置保存在内存中. 段内的腿全部读回后删除该段,
+ * 当前段则截断重用. 只在本进程内有效, 启动时清理上次遗留的段文件. 非线程安全, 由 {@link CdrCorrelator} 以该对象加锁调用.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Slf4j
+final class CorrelationSpill implements Closeable {
+
+    private static final String SUFFIX = ".spill";
+
+    private final File dir;
+    private final long segmentSize;
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment current;
+    private long nextSequence;
+    private int size;
+
+    CorrelationSpill(File dir, long segmentSize) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(dir.toPath());
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    Location write(Cdr cdr) throws IOException {
+        byte[] bytes = CdrCodec.encode(cdr);
+        if (current == null || current.size >= segmentSize) {
+            current = new Segment(new File(dir, String.format("%020d", nextSequence++) + SUFFIX));
+            segments.add(current);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long position = current.size;
+        while (buffer.hasRemaining()) {
+            position += current.channel.write(buffer, position);
+        }
+        Location location = new Location(current, current.size, bytes.length);
+        current.size += bytes.length;
+        current.live++;
+        size++;
+        return location;
+    }
+
+    /**
+     * 读回并释放
+     */
+    Cdr read(Location location) throws IOException {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(location.length);
+            long position = location.offset;
+            while (buffer.hasRemaining()) {
+                int n = location.segment.channel.read(buffer, position);
+                if (n < 0) {
+                    throw new EOFException("correlation spill truncated : " + location.segment.file);
+                }
+                position += n;
+            }
+            return CdrCodec.decode(buffer.array());
+        } finally {
+            release(location);
+        }
+    }
+
+    /**
+     * 不读取直接释放
+     */
+    void discard(Location location) throws IOException {
+        release(location);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        for (Segment segment : segments) {
+            segment.delete();
+        }
+        segments.clear();
+        current = null;
+        size = 0;
+    }
+
+    private void release(Location location) throws IOException {
+        Segment segment = location.segment;
+        size--;
+        if (--segment.live > 0) {
+            return;
+        }
+        if (segment == current) {
+            segment.channel.truncate(0);
+            segment.size = 0;
+        } else {
+            segments.remove(segment);
+            segment.delete();
+        }
+    }
+
+    static final class Location {
+        private final Segment segment;
+        private final long offset;
+        private final int length;
+
+        private Location(Segment segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final class Segment {
+        private final File file;
+        private final FileChannel channel;
+        private long size;
+        private int live;
+
+        private Segment(File file) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        private void delete() {
+            try {
+                channel.close();
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                log.warn("correlation spill delete : [{}] failure, cause : ", file, e);
+            }
+        }
+    }
+}
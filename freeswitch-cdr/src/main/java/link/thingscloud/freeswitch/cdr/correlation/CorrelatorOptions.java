@@ -0,0 +1,36 @@
+package link.thingscloud.freeswitch.cdr.correlation;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.io.File;
+
+/**
+ * <p>CorrelatorOptions class.</p>
+ * <p>
+ * {@link CdrCorrelator} 选项.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Data
+@Accessors(chain = true)
+public class CorrelatorOptions {
+
+    /**
+     * 第一条腿到达后等待其余腿的时长, 超时输出部分记录
+     */
+    private long timeoutMs = 30000;
+    /**
+     * 内存中等待关联的腿数上限, 超过后最早的腿写入 spillDir
+     */
+    private int maxLegs = 100000;
+    /**
+     * 溢出目录, 为 null 时不落盘, 超过 maxLegs 时最早的通话直接按超时输出
+     */
+    private File spillDir;
+    /**
+     * 溢出段文件大小, 段内的腿全部输出后删除
+     */
+    private long spillSegmentSize = 64L * 1024 * 1024;
+}
@@ -0,0 +1,229 @@
+package link.thingscloud.freeswitch.cdr.dedup;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * <p>CdrDedupCache class.</p>
+ * <p>
+ * 固定内存、按时间过期的话单去重集合, 只保存 key 的 64 位哈希.
+ * <p>
+ * 两代开放寻址 long 表(线性探测): 新 key 写入当前代, 查询同时检查上一代; 当前代写满 ttl 或达到 maxKeys 时轮换,
+ * 上一代整体丢弃. key 至少保留 ttl(提前轮换时除外), 至多 2 * ttl; 每代槽位数为不小于 2 * maxKeys 的 2 的幂,
+ * 内存约 2 * 槽位数 * 8 字节, 与流量无关.
+ * 64 位哈希误判概率约为 n * n / 2^65, 每代 1000 万 key 时约 3e-6.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Slf4j
+public class CdrDedupCache {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long ttlMillis;
+    private final int maxKeys;
+    private final int mask;
+
+    private long[] current;
+    private long[] previous;
+    private int currentSize;
+    private int previousSize;
+    private long rotatedAt;
+    private long earlyRotations;
+
+    /**
+     * <p>Constructor for CdrDedupCache.</p>
+     *
+     * @param ttlMillis key 最短保留时间
+     * @param maxKeys   每代最多 key 数, 超过后提前轮换
+     */
+    public CdrDedupCache(long ttlMillis, int maxKeys) {
+        if (ttlMillis <= 0 || maxKeys <= 0 || maxKeys > 1 << 29) {
+            throw new IllegalArgumentException("cdr dedup ttl must be positive and max keys must be in (0, 2^29].");
+        }
+        this.ttlMillis = ttlMillis;
+        this.maxKeys = maxKeys;
+        // 装载因子不超过 0.5
+        int capacity = Integer.highestOneBit(maxKeys - 1 | 1) << 2;
+        this.mask = capacity - 1;
+        this.current = new long[capacity];
+        this.previous = new long[capacity];
+        this.rotatedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 标记 key, 已存在(重复)时返回 false.
+     *
+     * @param hash {@link #hash(byte[], int, int)} 的结果
+     * @return 首次出现返回 true
+     */
+    public boolean mark(long hash) {
+        return mark(hash, System.currentTimeMillis());
+    }
+
+    synchronized boolean mark(long hash, long now) {
+        long elapsed = now - rotatedAt;
+        if (elapsed >= ttlMillis) {
+            rotate(now);
+            if (elapsed >= 2 * ttlMillis) {
+                // 空闲超过两个 ttl, 两代均已过期
+                rotate(now);
+            }
+        }
+        if (indexOf(previous, hash) >= 0) {
+            return false;
+        }
+        int slot = slot(current, hash);
+        if (current[slot] == hash) {
+            return false;
+        }
+        if (currentSize >= maxKeys) {
+            earlyRotations++;
+            log.warn("freeswitch cdr dedup generation is full before ttl, max keys : [{}], early rotations : [{}].", maxKeys, earlyRotations);
+            rotate(now);
+            slot = slot(current, hash);
+        }
+        current[slot] = hash;
+        currentSize++;
+        return true;
+    }
+
+    /**
+     * 撤销标记, 用于请求被拒绝(FreeSWITCH 会重试)的场景.
+     *
+     * @param hash a long.
+     */
+    public synchronized void unmark(long hash) {
+        if (remove(current, hash)) {
+            currentSize--;
+        } else if (remove(previous, hash)) {
+            previousSize--;
+        }
+    }
+
+    /**
+     * <p>size.</p>
+     *
+     * @return 两代中的 key 数
+     */
+    public synchronized int size() {
+        return currentSize + previousSize;
+    }
+
+    /**
+     * <p>getEarlyRotations.</p>
+     *
+     * @return 因写满 maxKeys 提前轮换的次数, 持续增长说明 maxKeys 过小, 实际保留时间短于 ttl
+     */
+    public synchronized long getEarlyRotations() {
+        return earlyRotations;
+    }
+
+    /**
+     * 64 位哈希(FNV-1a 后再做 murmur3 fmix64 混合), 不会返回 0.
+     *
+     * @param bytes a byte array.
+     * @param from  起始下标
+     * @param to    结束下标(不含)
+     * @return a long.
+     */
+    public static long hash(byte[] bytes, int from, int to) {
+        return finish(update(FNV_OFFSET, bytes, from, to));
+    }
+
+    /**
+     * 多段拼接的哈希, 各段之间插入分隔符.
+     *
+     * @param parts 各段内容, null 视为空串
+     * @return a long.
+     */
+    public static long hash(String... parts) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                h = (h ^ '|') * FNV_PRIME;
+            }
+            if (parts[i] != null) {
+                byte[] bytes = parts[i].getBytes(StandardCharsets.UTF_8);
+                h = update(h, bytes, 0, bytes.length);
+            }
+        }
+        return finish(h);
+    }
+
+    static long update(long h, byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            h = (h ^ (bytes[i] & 0xFF)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        // 0 表示空槽
+        return h == 0 ? 1 : h;
+    }
+
+    private void rotate(long now) {
+        long[] recycled = previous;
+        previous = current;
+        previousSize = currentSize;
+        Arrays.fill(recycled, 0L);
+        current = recycled;
+        currentSize = 0;
+        rotatedAt = now;
+    }
+
+    /**
+     * 返回 hash 所在槽位, 不存在时返回应插入的空槽位
+     */
+    private int slot(long[] table, long hash) {
+        int i = home(hash);
+        while (table[i] != 0 && table[i] != hash) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private int indexOf(long[] table, long hash) {
+        int i = slot(table, hash);
+        return table[i] == hash ? i : -1;
+    }
+
+    private int home(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * 线性探测的后移删除, 不留墓碑
+     */
+    private boolean remove(long[] table, long hash) {
+        int i = indexOf(table, hash);
+        if (i < 0) {
+            return false;
+        }
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (table[j] == 0) {
+                table[i] = 0;
+                return true;
+            }
+            int k = home(table[j]);
+            // k 不在 (i, j] 区间内时, j 上的元素可以前移到 i
+            boolean between = i <= j ? (i < k && k <= j) : (i < k || k <= j);
+            if (!between) {
+                table[i] = table[j];
+                i = j;
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package link.thingscloud.freeswitch.cdr.domain;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.List;
+
+/**
+ * <p>CallRecord class.</p>
+ * <p>
+ * 一通呼叫的各腿话单: 发起腿(A 腿)及其 originate 出的腿(B 腿).
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Data
+@Accessors(chain = true)
+public class CallRecord {
+    /**
+     * 发起腿的 uuid
+     */
+    private String id;
+    /**
+     * 发起腿话单, 超时前未收到时为 null
+     */
+    private Cdr originator;
+    /**
+     * originate 出的各腿话单, 按到达顺序
+     */
+    private List<Cdr> originatees;
+    /**
+     * 发起腿 originated_legs 中列出的腿数
+     */
+    private int expectedLegs;
+    /**
+     * 发起腿与其列出的腿均已到达; false 表示超时或关闭时输出的部分记录
+     */
+    private boolean complete;
+    /**
+     * 第一条腿到达的时间(毫秒)
+     */
+    private long firstArrivalMillis;
+}
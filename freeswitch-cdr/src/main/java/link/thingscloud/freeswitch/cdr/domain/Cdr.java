@@ -4,7 +4,9 @@ import lombok.Data;
 import lombok.experimental.Accessors;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * <p>Cdr class.</p>
@@ -23,6 +25,10 @@ public class Cdr {
     private AppLog appLog;
     private HoldRecord holdRecord;
     private List<Callflow> callflows;
+    /**
+     * 未识别的元素/属性, 路径 -&gt; 文本(cdr.parser.capture-unknown 开启时填充), 同一路径多次出现时保留最后一个
+     */
+    private Map<String, String> extensions;
 
     /**
      * <p>addCallflow.</p>
@@ -35,4 +41,17 @@ public class Cdr {
         }
         callflows.add(callflow);
     }
+
+    /**
+     * <p>putExtension.</p>
+     *
+     * @param path  a {@link java.lang.String} object.
+     * @param value a {@link java.lang.String} object.
+     */
+    public void putExtension(String path, String value) {
+        if (extensions == null) {
+            extensions = new LinkedHashMap<>(8);
+        }
+        extensions.put(path, value);
+    }
 }
@@ -0,0 +1,46 @@
+package link.thingscloud.freeswitch.cdr.domain;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * <p>CdrHandlerStats class.</p>
+ * <p>
+ * 单个 handler 的隔离执行器统计快照.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Data
+@Accessors(chain = true)
+public class CdrHandlerStats {
+    /**
+     * handler bean 名称
+     */
+    private String name;
+    /**
+     * record / batch / call
+     */
+    private String type;
+    private int threads;
+    private int queueSize;
+    private int queueCapacity;
+    /**
+     * 已处理的话单数
+     */
+    private long handled;
+    /**
+     * handler 抛出异常的话单数
+     */
+    private long failed;
+    /**
+     * 队列满被丢弃的话单数(overflow=drop)
+     */
+    private long dropped;
+    /**
+     * handler 调用次数, batch 类型为批次数
+     */
+    private long invocations;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+}
@@ -17,4 +17,8 @@ public class ErrorPeriod {
     private String flaws;
     private String consecutiveFlaws;
     private String durationMsec;
+    /**
+     * 数值形式, 仅开启 cdr.parser.typed-stats 时非空
+     */
+    private ErrorPeriodStats stats;
 }
@@ -0,0 +1,22 @@
+package link.thingscloud.freeswitch.cdr.domain;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * <p>ErrorPeriodStats class.</p>
+ * <p>
+ * {@link ErrorPeriod} 的数值形式, 解析时一次性转换, 需开启 cdr.parser.typed-stats. 缺失或非法值为 0.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Data
+@Accessors(chain = true)
+public class ErrorPeriodStats {
+    private long start;
+    private long stop;
+    private long flaws;
+    private long consecutiveFlaws;
+    private long durationMsec;
+}
@@ -30,4 +30,8 @@ public class Inbound {
     private String flawTotal;
     private String qualityPercentage;
     private String mos;
+    /**
+     * 数值形式, 仅开启 cdr.parser.typed-stats 时非空
+     */
+    private InboundStats stats;
 }
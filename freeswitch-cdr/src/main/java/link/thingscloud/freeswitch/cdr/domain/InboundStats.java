@@ -0,0 +1,35 @@
+package link.thingscloud.freeswitch.cdr.domain;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * <p>InboundStats class.</p>
+ * <p>
+ * {@link Inbound} 的数值形式, 解析时一次性转换, 需开启 cdr.parser.typed-stats. 缺失或非法值为 0.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Data
+@Accessors(chain = true)
+public class InboundStats {
+    private long rawBytes;
+    private long mediaBytes;
+    private long packetCount;
+    private long mediaPacketCount;
+    private long skipPacketCount;
+    private long jitterPacketCount;
+    private long dtmfPacketCount;
+    private long cngPacketCount;
+    private long flushPacketCount;
+    private long largestJbSize;
+    private double jitterMinVariance;
+    private double jitterMaxVariance;
+    private double jitterLossRate;
+    private double jitterBurstRate;
+    private double meanInterval;
+    private long flawTotal;
+    private double qualityPercentage;
+    private double mos;
+}
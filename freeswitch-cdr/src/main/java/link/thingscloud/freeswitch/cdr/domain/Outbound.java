@@ -21,4 +21,8 @@ public class Outbound {
     private String cngPacketCount;
     private String rtcpPacketCount;
     private String rtcpOctetCount;
+    /**
+     * 数值形式, 仅开启 cdr.parser.typed-stats 时非空
+     */
+    private OutboundStats stats;
 }
@@ -0,0 +1,25 @@
+package link.thingscloud.freeswitch.cdr.domain;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * <p>QualityDistribution class.</p>
+ * <p>
+ * 一个指标在时间窗口内的分布, 分位数精度为直方图桶宽.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Data
+@Accessors(chain = true)
+public class QualityDistribution {
+    /**
+     * 有该指标的话单数
+     */
+    private long count;
+    private double mean;
+    private double p50;
+    private double p95;
+    private double p99;
+}
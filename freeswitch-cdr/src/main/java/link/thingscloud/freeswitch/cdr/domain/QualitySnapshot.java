@@ -0,0 +1,51 @@
+package link.thingscloud.freeswitch.cdr.domain;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.Map;
+
+/**
+ * <p>QualitySnapshot class.</p>
+ * <p>
+ * 一个维度取值(如某个网关)在时间窗口内的通话质量汇总.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Data
+@Accessors(chain = true)
+public class QualitySnapshot {
+    /**
+     * 维度变量名, 汇总为 *
+     */
+    private String dimension;
+    private String value;
+    private int windowMinutes;
+    private long calls;
+    /**
+     * billsec &gt; 0 的话单数
+     */
+    private long answered;
+    /**
+     * answered / calls
+     */
+    private double asr;
+    /**
+     * 平均通话时长(秒), billsec 之和 / answered
+     */
+    private double acd;
+    private long billsec;
+    /**
+     * 带 call-stats audio 的话单数
+     */
+    private long withStats;
+    private long flawTotal;
+    private QualityDistribution mos;
+    private QualityDistribution jitterLossRate;
+    private QualityDistribution qualityPercentage;
+    /**
+     * hangup_cause -&gt; count
+     */
+    private Map<String, Long> hangupCauses;
+}
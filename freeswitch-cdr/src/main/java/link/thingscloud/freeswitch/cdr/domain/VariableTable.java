@@ -0,0 +1,336 @@
+package link.thingscloud.freeswitch.cdr.domain;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * <p>VariableTable class.</p>
+ * <p>
+ * {@link Variables} 中 variableTable 的紧凑实现: 键值存放在按插入顺序排列的两个数组中, 另用开放寻址的 int 数组做索引,
+ * 没有 HashMap.Node 等每条目对象. 变量名经全局字典复用, 同名变量在所有话单间共享一个 String 实例,
+ * 字典上限 {@link #MAX_NAMES}, 超出后不再收录(仍可正常存取).
+ * <p>
+ * 迭代顺序为插入顺序, 重复 put 同一变量名时覆盖原值并保持原位置. 非线程安全.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class VariableTable extends AbstractMap<String, String> {
+
+    /**
+     * 全局变量名字典上限
+     */
+    public static final int MAX_NAMES = 8192;
+
+    private static final ConcurrentHashMap<String, String> NAMES = new ConcurrentHashMap<>(1024);
+
+    /**
+     * 解析器经 {@link Variables#putVariable} 使用默认容量, 典型话单约 200 个变量, 取 256 避免解析过程中扩容
+     */
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private String[] keys;
+    private String[] values;
+    private int size;
+    /**
+     * 开放寻址索引, 存放 position + 1, 0 表示空槽, 长度为 2 的幂且不低于容量的 2 倍
+     */
+    private int[] index;
+
+    private transient EntrySet entrySet;
+
+    /**
+     * <p>Constructor for VariableTable.</p>
+     */
+    public VariableTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * <p>Constructor for VariableTable.</p>
+     *
+     * @param capacity initial capacity
+     */
+    public VariableTable(int capacity) {
+        capacity = Math.max(capacity, 4);
+        keys = new String[capacity];
+        values = new String[capacity];
+        index = new int[tableSizeFor(capacity * 2)];
+    }
+
+    /**
+     * 返回字典中的规范实例, 字典已满时原样返回.
+     *
+     * @param name variable name
+     * @return canonical instance
+     */
+    public static String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        String canonical = NAMES.get(name);
+        if (canonical != null) {
+            return canonical;
+        }
+        if (NAMES.size() >= MAX_NAMES) {
+            return name;
+        }
+        canonical = NAMES.putIfAbsent(name, name);
+        return canonical == null ? name : canonical;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && position((String) key) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int pos = position((String) key);
+        return pos < 0 ? null : values[pos];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String put(String key, String value) {
+        Objects.requireNonNull(key, "key");
+        int mask = index.length - 1;
+        int slot = hash(key) & mask;
+        int entry;
+        while ((entry = index[slot]) != 0) {
+            String existing = keys[entry - 1];
+            if (existing == key || existing.equals(key)) {
+                String old = values[entry - 1];
+                values[entry - 1] = value;
+                return old;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == keys.length) {
+            grow();
+            return put(key, value);
+        }
+        keys[size] = intern(key);
+        values[size] = value;
+        index[slot] = ++size;
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String remove(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int pos = position((String) key);
+        if (pos < 0) {
+            return null;
+        }
+        String old = values[pos];
+        removeAt(pos);
+        return old;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        Arrays.fill(index, 0);
+        size = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEach(BiConsumer<? super String, ? super String> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(keys[i], values[i]);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        EntrySet es = entrySet;
+        return es == null ? (entrySet = new EntrySet()) : es;
+    }
+
+    private int position(String key) {
+        int mask = index.length - 1;
+        int slot = hash(key) & mask;
+        int entry;
+        while ((entry = index[slot]) != 0) {
+            String existing = keys[entry - 1];
+            if (existing == key || existing.equals(key)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void removeAt(int pos) {
+        int moved = size - pos - 1;
+        if (moved > 0) {
+            System.arraycopy(keys, pos + 1, keys, pos, moved);
+            System.arraycopy(values, pos + 1, values, pos, moved);
+        }
+        size--;
+        keys[size] = null;
+        values[size] = null;
+        rebuildIndex(index.length);
+    }
+
+    private void grow() {
+        int capacity = keys.length << 1;
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity);
+        rebuildIndex(tableSizeFor(capacity * 2));
+    }
+
+    private void rebuildIndex(int length) {
+        if (index.length == length) {
+            Arrays.fill(index, 0);
+        } else {
+            index = new int[length];
+        }
+        int mask = length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hash(keys[i]) & mask;
+            while (index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = i + 1;
+        }
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int cap) {
+        int n = Integer.highestOneBit(Math.max(cap - 1, 1)) << 1;
+        return n < 0 ? 1 << 30 : n;
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<String, String>> {
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+            return new Iterator<Entry<String, String>>() {
+                private int next;
+                private int last = -1;
+
+                @Override
+                public boolean hasNext() {
+                    return next < size;
+                }
+
+                @Override
+                public Entry<String, String> next() {
+                    if (next >= size) {
+                        throw new NoSuchElementException();
+                    }
+                    last = next++;
+                    return new TableEntry(last);
+                }
+
+                @Override
+                public void remove() {
+                    if (last < 0) {
+                        throw new IllegalStateException();
+                    }
+                    removeAt(last);
+                    next = last;
+                    last = -1;
+                }
+            };
+        }
+
+        @Override
+        public void clear() {
+            VariableTable.this.clear();
+        }
+    }
+
+    private final class TableEntry implements Entry<String, String> {
+        private final String key;
+        private String value;
+
+        private TableEntry(int pos) {
+            this.key = keys[pos];
+            this.value = values[pos];
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        public String setValue(String value) {
+            String old = this.value;
+            this.value = value;
+            put(key, value);
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return key.equals(e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+}
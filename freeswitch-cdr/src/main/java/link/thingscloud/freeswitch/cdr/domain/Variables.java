@@ -3,7 +3,6 @@ package link.thingscloud.freeswitch.cdr.domain;
 import lombok.Data;
 import lombok.experimental.Accessors;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -15,6 +14,9 @@ import java.util.Map;
 @Data
 @Accessors(chain = true)
 public class Variables {
+    /**
+     * 由解析器填充时为 {@link VariableTable}(紧凑存储, 变量名全局共享, 按插入顺序迭代)
+     */
     private Map<String, String> variableTable;
 
     /**
@@ -25,7 +27,7 @@ public class Variables {
      */
     public void putVariable(String key, String value) {
         if (variableTable == null) {
-            variableTable = new HashMap<>(256);
+            variableTable = new VariableTable();
         }
         variableTable.put(key, value);
     }
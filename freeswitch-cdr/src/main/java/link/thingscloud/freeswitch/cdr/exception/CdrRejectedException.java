@@ -0,0 +1,31 @@
+package link.thingscloud.freeswitch.cdr.exception;
+
+/**
+ * <p>CdrRejectedException class.</p>
+ * <p>
+ * 处理队列已满, 拒绝接收 CDR, 由 controller 转换为 503/429 以便 mod_xml_cdr 重试.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class CdrRejectedException extends RuntimeException {
+
+    /**
+     * <p>Constructor for CdrRejectedException.</p>
+     *
+     * @param message a {@link java.lang.String} object.
+     */
+    public CdrRejectedException(String message) {
+        super(message);
+    }
+
+    /**
+     * <p>Constructor for CdrRejectedException.</p>
+     *
+     * @param message a {@link java.lang.String} object.
+     * @param cause   a {@link java.lang.Throwable} object.
+     */
+    public CdrRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
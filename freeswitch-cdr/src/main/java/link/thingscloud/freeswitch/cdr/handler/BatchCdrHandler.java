@@ -0,0 +1,25 @@
+package link.thingscloud.freeswitch.cdr.handler;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+
+import java.util.List;
+
+/**
+ * <p>BatchCdrHandler interface.</p>
+ * <p>
+ * 批量处理话单, 由服务按 cdr.batch.max-size / cdr.batch.max-linger-ms 攒批后回调, 适用于 JDBC 批量插入、文件批量写入等场景.
+ * 与 {@link CdrHandler} 并存, 同一个 bean 只需实现其中一个.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public interface BatchCdrHandler {
+
+    /**
+     * <p>handleCdrs.</p>
+     *
+     * @param cdrs 非空批次, 按到达顺序排列, 调用方不再持有该 list.
+     */
+    void handleCdrs(List<Cdr> cdrs);
+
+}
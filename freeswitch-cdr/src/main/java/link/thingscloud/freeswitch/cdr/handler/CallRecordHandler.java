@@ -0,0 +1,23 @@
+package link.thingscloud.freeswitch.cdr.handler;
+
+import link.thingscloud.freeswitch.cdr.domain.CallRecord;
+
+/**
+ * <p>CallRecordHandler interface.</p>
+ * <p>
+ * 接收按通话合并后的各腿话单, 存在该类型的 bean 时开启腿关联. 每个 bean 独立的有界执行器,
+ * 线程数、队列容量与 overflow 按 cdr.handler.&lt;beanName&gt;.threads / queue-capacity / overflow 配置, 慢 handler 不阻塞解析.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public interface CallRecordHandler {
+
+    /**
+     * <p>handleCallRecord.</p>
+     *
+     * @param callRecord a {@link link.thingscloud.freeswitch.cdr.domain.CallRecord} object.
+     */
+    void handleCallRecord(CallRecord callRecord);
+
+}
@@ -0,0 +1,23 @@
+package link.thingscloud.freeswitch.cdr.handler;
+
+import link.thingscloud.freeswitch.cdr.parser.CdrProjection;
+
+/**
+ * <p>CdrProjectionAware interface.</p>
+ * <p>
+ * CdrHandler / BatchCdrHandler 可同时实现该接口, 声明自身所需的话单内容, 解析时取所有 handler 的并集.
+ * 未实现的 handler 使用 cdr.parser.projection.* 配置(默认全部内容).
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public interface CdrProjectionAware {
+
+    /**
+     * <p>getCdrProjection.</p>
+     *
+     * @return a {@link link.thingscloud.freeswitch.cdr.parser.CdrProjection} object.
+     */
+    CdrProjection getCdrProjection();
+
+}
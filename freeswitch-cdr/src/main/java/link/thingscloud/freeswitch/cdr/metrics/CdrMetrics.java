@@ -0,0 +1,91 @@
+package link.thingscloud.freeswitch.cdr.metrics;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.parser.ParserEngine;
+import link.thingscloud.freeswitch.cdr.service.CdrService;
+
+/**
+ * <p>CdrMetrics interface.</p>
+ * <p>
+ * 话单处理链路的埋点接口, 默认全部为空实现; 注册该类型的 bean 即可接入监控(starter 在存在 Micrometer 时自动注册).
+ * 回调在接入线程、解析线程、handler 线程中执行, 实现需线程安全且不能阻塞.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public interface CdrMetrics {
+
+    /**
+     * 空实现
+     */
+    CdrMetrics NOOP = new CdrMetrics() {
+    };
+
+    /**
+     * CdrService 初始化完成后回调一次, 可注册队列深度等 gauge.
+     *
+     * @param cdrService a {@link link.thingscloud.freeswitch.cdr.service.CdrService} object.
+     */
+    default void bind(CdrService cdrService) {
+    }
+
+    /**
+     * 请求已进入处理队列
+     */
+    default void accepted() {
+    }
+
+    /**
+     * 请求因队列已满或 spool 写入失败被拒绝
+     */
+    default void rejected() {
+    }
+
+    /**
+     * 请求被识别为重复而丢弃
+     */
+    default void duplicate() {
+    }
+
+    /**
+     * 解码并解析完成
+     *
+     * @param engine       解析引擎
+     * @param cdr          解析结果
+     * @param latencyNanos 解码与解析耗时
+     */
+    default void parsed(ParserEngine engine, Cdr cdr, long latencyNanos) {
+    }
+
+    /**
+     * 解析失败(ParserException)
+     *
+     * @param engine 解析引擎
+     */
+    default void parseFailed(ParserEngine engine) {
+    }
+
+    /**
+     * CdrHandler 处理完一条话单
+     *
+     * @param name         handler bean 名称
+     * @param handlerClass handler 类型
+     * @param cdr          话单
+     * @param latencyNanos handleCdr 耗时
+     * @param success      是否未抛出异常
+     */
+    default void handled(String name, Class<?> handlerClass, Cdr cdr, long latencyNanos, boolean success) {
+    }
+
+    /**
+     * BatchCdrHandler 处理完一个批次
+     *
+     * @param name         handler bean 名称
+     * @param handlerClass handler 类型
+     * @param size         批次话单数
+     * @param latencyNanos handleCdrs 耗时
+     * @param success      是否未抛出异常
+     */
+    default void batchHandled(String name, Class<?> handlerClass, int size, long latencyNanos, boolean success) {
+    }
+}
@@ -0,0 +1,740 @@
+package link.thingscloud.freeswitch.cdr.parser;
+
+import link.thingscloud.freeswitch.cdr.domain.*;
+import link.thingscloud.freeswitch.cdr.util.NumberUtil;
+
+/**
+ * <p>CdrAssigner class.</p>
+ * <p>
+ * 元素名常量以及叶子节点(文本/属性)到领域对象的赋值, 由 dom4j 与 StAX 两种解析引擎共用.
+ * 返回 false 表示未识别的名称, 由调用方决定如何上报.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+final class CdrAssigner {
+
+    static final String CORE_UUID = "core-uuid";
+    static final String SWITCHNAME = "switchname";
+
+    static final String CHANNEL_DATA = "channel_data";
+    static final String CALL_STATS = "call-stats";
+    static final String STATE = "state";
+    static final String DIRECTION = "direction";
+    static final String STATE_NUMBER = "state_number";
+    static final String FLAGS = "flags";
+    static final String CAPS = "caps";
+
+    static final String VARIABLES = "variables";
+
+    static final String APP_LOG = "app_log";
+
+    static final String HOLD_RECORD = "hold-record";
+
+    static final String CALLFLOW = "callflow";
+
+    static final String AUDIO = "audio";
+
+    static final String INBOUND = "inbound";
+    static final String OUTBOUND = "outbound";
+    static final String ERROR_LOG = "error-log";
+
+    static final String RAW_BYTES = "raw_bytes";
+    static final String MEDIA_BYTES = "media_bytes";
+    static final String PACKET_COUNT = "packet_count";
+    static final String MEDIA_PACKET_COUNT = "media_packet_count";
+    static final String SKIP_PACKET_COUNT = "skip_packet_count";
+    static final String JITTER_PACKET_COUNT = "jitter_packet_count";
+    static final String DTMF_PACKET_COUNT = "dtmf_packet_count";
+    static final String CNG_PACKET_COUNT = "cng_packet_count";
+    static final String FLUSH_PACKET_COUNT = "flush_packet_count";
+    static final String LARGEST_JB_SIZE = "largest_jb_size";
+    static final String JITTER_MIN_VARIANCE = "jitter_min_variance";
+    static final String JITTER_MAX_VARIANCE = "jitter_max_variance";
+    static final String JITTER_LOSS_RATE = "jitter_loss_rate";
+    static final String JITTER_BURST_RATE = "jitter_burst_rate";
+    static final String MEAN_INTERVAL = "mean_interval";
+    static final String FLAW_TOTAL = "flaw_total";
+    static final String QUALITY_PERCENTAGE = "quality_percentage";
+    static final String MOS = "mos";
+
+    static final String RTCP_PACKET_COUNT = "rtcp_packet_count";
+    static final String RTCP_OCTET_COUNT = "rtcp_octet_count";
+
+    static final String ERROR_PERIOD = "error-period";
+
+    static final String START = "start";
+    static final String STOP = "stop";
+    static final String FLAWS = "flaws";
+    static final String CONSECUTIVE_FLAWS = "consecutive-flaws";
+    static final String DURATION_MSEC = "duration-msec";
+
+    static final String HOLD = "hold";
+
+    static final String ON = "on";
+    static final String OFF = "off";
+    static final String BRIDGED_TO = "bridged-to";
+
+    static final String APPLICATION = "application";
+
+    static final String APP_NAME = "app_name";
+    static final String APP_DATA = "app_data";
+    static final String APP_STAMP = "app_stamp";
+
+    static final String DIALPLAN = "dialplan";
+    static final String UNIQUE_ID = "unique-id";
+    static final String CLONE_OF = "clone-of";
+    static final String PROFILE_INDEX = "profile_index";
+    static final String EXTENSION = "extension";
+    static final String CALLER_PROFILE = "caller_profile";
+    static final String TIMES = "times";
+
+    static final String NAME = "name";
+    static final String NUMBER = "number";
+
+    static final String USERNAME = "username";
+    static final String CALLER_ID_NAME = "caller_id_name";
+    static final String CALLER_ID_NUMBER = "caller_id_number";
+    static final String CALLEE_ID_NAME = "callee_id_name";
+    static final String CALLEE_ID_NUMBER = "callee_id_number";
+    static final String ANI = "ani";
+    static final String ANIII = "aniii";
+    static final String NETWORK_ADDR = "network_addr";
+    static final String RDNIS = "rdnis";
+    static final String DESTINATION_NUMBER = "destination_number";
+    static final String UUID = "uuid";
+    static final String SOURCE = "source";
+    static final String TRANSFER_SOURCE = "transfer_source";
+    static final String CONTEXT = "context";
+    static final String CHAN_NAME = "chan_name";
+    static final String ORIGINATOR = "originator";
+    static final String ORIGINATION = "origination";
+    static final String ORIGINATEE = "originatee";
+
+    static final String ORIGINATOR_CALLER_PROFILE = "originator_caller_profile";
+    static final String ORIGINATION_CALLER_PROFILE = "origination_caller_profile";
+    static final String ORIGINATEE_CALLER_PROFILE = "originatee_caller_profile";
+
+    static final String CREATED_TIME = "created_time";
+    static final String PROFILE_CREATED_TIME = "profile_created_time";
+    static final String PROGRESS_TIME = "progress_time";
+    static final String PROGRESS_MEDIA_TIME = "progress_media_time";
+    static final String ANSWERED_TIME = "answered_time";
+    static final String BRIDGED_TIME = "bridged_time";
+    static final String LAST_HOLD_TIME = "last_hold_time";
+    static final String HOLD_ACCUM_TIME = "hold_accum_time";
+    static final String HANGUP_TIME = "hangup_time";
+    static final String RESURRECT_TIME = "resurrect_time";
+    static final String TRANSFER_TIME = "transfer_time";
+
+    private CdrAssigner() {
+    }
+
+    static boolean assignCdrAttribute(Cdr cdr, String name, String value) {
+        if (CORE_UUID.equals(name)) {
+            cdr.setCoreUuid(value);
+        } else if (SWITCHNAME.equals(name)) {
+            cdr.setSwitchname(value);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    static boolean assignChannelData(ChannelData channelData, String name, String value) {
+        switch (name) {
+            case STATE:
+                channelData.setState(value);
+                break;
+            case DIRECTION:
+                channelData.setDirection(value);
+                break;
+            case STATE_NUMBER:
+                channelData.setStateNumber(value);
+                break;
+            case FLAGS:
+                channelData.setFlags(value);
+                break;
+            case CAPS:
+                channelData.setCaps(value);
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    static boolean assignInbound(Inbound inbound, String name, String value) {
+        switch (name) {
+            case RAW_BYTES:
+                inbound.setRawBytes(value);
+                break;
+            case MEDIA_BYTES:
+                inbound.setMediaBytes(value);
+                break;
+            case PACKET_COUNT:
+                inbound.setPacketCount(value);
+                break;
+            case MEDIA_PACKET_COUNT:
+                inbound.setMediaPacketCount(value);
+                break;
+            case SKIP_PACKET_COUNT:
+                inbound.setSkipPacketCount(value);
+                break;
+            case JITTER_PACKET_COUNT:
+                inbound.setJitterPacketCount(value);
+                break;
+            case DTMF_PACKET_COUNT:
+                inbound.setDtmfPacketCount(value);
+                break;
+            case CNG_PACKET_COUNT:
+                inbound.setCngPacketCount(value);
+                break;
+            case FLUSH_PACKET_COUNT:
+                inbound.setFlushPacketCount(value);
+                break;
+            case LARGEST_JB_SIZE:
+                inbound.setLargestJbSize(value);
+                break;
+            case JITTER_MIN_VARIANCE:
+                inbound.setJitterMinVariance(value);
+                break;
+            case JITTER_MAX_VARIANCE:
+                inbound.setJitterMaxVariance(value);
+                break;
+            case JITTER_LOSS_RATE:
+                inbound.setJitterLossRate(value);
+                break;
+            case JITTER_BURST_RATE:
+                inbound.setJitterBurstRate(value);
+                break;
+            case MEAN_INTERVAL:
+                inbound.setMeanInterval(value);
+                break;
+            case FLAW_TOTAL:
+                inbound.setFlawTotal(value);
+                break;
+            case QUALITY_PERCENTAGE:
+                inbound.setQualityPercentage(value);
+                break;
+            case MOS:
+                inbound.setMos(value);
+                break;
+            default:
+                return false;
+        }
+        if (inbound.getStats() != null) {
+            assignInboundStats(inbound.getStats(), name, value);
+        }
+        return true;
+    }
+
+    static boolean assignOutbound(Outbound outbound, String name, String value) {
+        switch (name) {
+            case RAW_BYTES:
+                outbound.setRawBytes(value);
+                break;
+            case MEDIA_BYTES:
+                outbound.setMediaBytes(value);
+                break;
+            case PACKET_COUNT:
+                outbound.setPacketCount(value);
+                break;
+            case MEDIA_PACKET_COUNT:
+                outbound.setMediaPacketCount(value);
+                break;
+            case SKIP_PACKET_COUNT:
+                outbound.setSkipPacketCount(value);
+                break;
+            case DTMF_PACKET_COUNT:
+                outbound.setDtmfPacketCount(value);
+                break;
+            case CNG_PACKET_COUNT:
+                outbound.setCngPacketCount(value);
+                break;
+            case RTCP_PACKET_COUNT:
+                outbound.setRtcpPacketCount(value);
+                break;
+            case RTCP_OCTET_COUNT:
+                outbound.setRtcpOctetCount(value);
+                break;
+            default:
+                return false;
+        }
+        if (outbound.getStats() != null) {
+            assignOutboundStats(outbound.getStats(), name, value);
+        }
+        return true;
+    }
+
+    static boolean assignErrorPeriod(ErrorPeriod errorPeriod, String name, String value) {
+        switch (name) {
+            case START:
+                errorPeriod.setStart(value);
+                break;
+            case STOP:
+                errorPeriod.setStop(value);
+                break;
+            case FLAWS:
+                errorPeriod.setFlaws(value);
+                break;
+            case CONSECUTIVE_FLAWS:
+                errorPeriod.setConsecutiveFlaws(value);
+                break;
+            case DURATION_MSEC:
+                errorPeriod.setDurationMsec(value);
+                break;
+            default:
+                return false;
+        }
+        if (errorPeriod.getStats() != null) {
+            assignErrorPeriodStats(errorPeriod.getStats(), name, value);
+        }
+        return true;
+    }
+
+    private static void assignInboundStats(InboundStats stats, String name, String value) {
+        switch (name) {
+            case RAW_BYTES:
+                stats.setRawBytes(NumberUtil.parseLong(value, 0L));
+                break;
+            case MEDIA_BYTES:
+                stats.setMediaBytes(NumberUtil.parseLong(value, 0L));
+                break;
+            case PACKET_COUNT:
+                stats.setPacketCount(NumberUtil.parseLong(value, 0L));
+                break;
+            case MEDIA_PACKET_COUNT:
+                stats.setMediaPacketCount(NumberUtil.parseLong(value, 0L));
+                break;
+            case SKIP_PACKET_COUNT:
+                stats.setSkipPacketCount(NumberUtil.parseLong(value, 0L));
+                break;
+            case JITTER_PACKET_COUNT:
+                stats.setJitterPacketCount(NumberUtil.parseLong(value, 0L));
+                break;
+            case DTMF_PACKET_COUNT:
+                stats.setDtmfPacketCount(NumberUtil.parseLong(value, 0L));
+                break;
+            case CNG_PACKET_COUNT:
+                stats.setCngPacketCount(NumberUtil.parseLong(value, 0L));
+                break;
+            case FLUSH_PACKET_COUNT:
+                stats.setFlushPacketCount(NumberUtil.parseLong(value, 0L));
+                break;
+            case LARGEST_JB_SIZE:
+                stats.setLargestJbSize(NumberUtil.parseLong(value, 0L));
+                break;
+            case JITTER_MIN_VARIANCE:
+                stats.setJitterMinVariance(NumberUtil.parseDouble(value, 0D));
+                break;
+            case JITTER_MAX_VARIANCE:
+                stats.setJitterMaxVariance(NumberUtil.parseDouble(value, 0D));
+                break;
+            case JITTER_LOSS_RATE:
+                stats.setJitterLossRate(NumberUtil.parseDouble(value, 0D));
+                break;
+            case JITTER_BURST_RATE:
+                stats.setJitterBurstRate(NumberUtil.parseDouble(value, 0D));
+                break;
+            case MEAN_INTERVAL:
+                stats.setMeanInterval(NumberUtil.parseDouble(value, 0D));
+                break;
+            case FLAW_TOTAL:
+                stats.setFlawTotal(NumberUtil.parseLong(value, 0L));
+                break;
+            case QUALITY_PERCENTAGE:
+                stats.setQualityPercentage(NumberUtil.parseDouble(value, 0D));
+                break;
+            case MOS:
+                stats.setMos(NumberUtil.parseDouble(value, 0D));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void assignOutboundStats(OutboundStats stats, String name, String value) {
+        switch (name) {
+            case RAW_BYTES:
+                stats.setRawBytes(NumberUtil.parseLong(value, 0L));
+                break;
+            case MEDIA_BYTES:
+                stats.setMediaBytes(NumberUtil.parseLong(value, 0L));
+                break;
+            case PACKET_COUNT:
+                stats.setPacketCount(NumberUtil.parseLong(value, 0L));
+                break;
+            case MEDIA_PACKET_COUNT:
+                stats.setMediaPacketCount(NumberUtil.parseLong(value, 0L));
+                break;
+            case SKIP_PACKET_COUNT:
+                stats.setSkipPacketCount(NumberUtil.parseLong(value, 0L));
+                break;
+            case DTMF_PACKET_COUNT:
+                stats.setDtmfPacketCount(NumberUtil.parseLong(value, 0L));
+                break;
+            case CNG_PACKET_COUNT:
+                stats.setCngPacketCount(NumberUtil.parseLong(value, 0L));
+                break;
+            case RTCP_PACKET_COUNT:
+                stats.setRtcpPacketCount(NumberUtil.parseLong(value, 0L));
+                break;
+            case RTCP_OCTET_COUNT:
+                stats.setRtcpOctetCount(NumberUtil.parseLong(value, 0L));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void assignErrorPeriodStats(ErrorPeriodStats stats, String name, String value) {
+        switch (name) {
+            case START:
+                stats.setStart(NumberUtil.parseLong(value, 0L));
+                break;
+            case STOP:
+                stats.setStop(NumberUtil.parseLong(value, 0L));
+                break;
+            case FLAWS:
+                stats.setFlaws(NumberUtil.parseLong(value, 0L));
+                break;
+            case CONSECUTIVE_FLAWS:
+                stats.setConsecutiveFlaws(NumberUtil.parseLong(value, 0L));
+                break;
+            case DURATION_MSEC:
+                stats.setDurationMsec(NumberUtil.parseLong(value, 0L));
+                break;
+            default:
+                break;
+        }
+    }
+
+    static boolean assignHoldAttribute(Hold hold, String name, String value) {
+        switch (name) {
+            case ON:
+                hold.setOn(NumberUtil.toLong(value));
+                break;
+            case OFF:
+                hold.setOff(NumberUtil.toLong(value));
+                break;
+            case BRIDGED_TO:
+                hold.setBridgedTo(value);
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    static boolean assignApplicationAttribute(Application application, String name, String value) {
+        switch (name) {
+            case APP_NAME:
+                application.setAppName(value);
+                break;
+            case APP_DATA:
+                application.setAppData(value);
+                break;
+            case APP_STAMP:
+                application.setAppStamp(NumberUtil.toLong(value));
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    static boolean assignCallflowAttribute(Callflow callflow, String name, String value) {
+        switch (name) {
+            case DIALPLAN:
+                callflow.setDialplan(value);
+                break;
+            case UNIQUE_ID:
+                callflow.setUniqueId(value);
+                break;
+            case CLONE_OF:
+                callflow.setCloneOf(value);
+                break;
+            case PROFILE_INDEX:
+                callflow.setProfileIndex(value);
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    static boolean assignExtensionAttribute(Extension extension, String name, String value) {
+        switch (name) {
+            case NAME:
+                extension.setName(value);
+                break;
+            case NUMBER:
+                extension.setNumber(value);
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * caller_profile 的文本子元素, originator / origination / originatee 由解析引擎处理.
+     */
+    static boolean assignCallerProfile(CallerProfile callerProfile, String name, String value) {
+        switch (name) {
+            case USERNAME:
+                callerProfile.setUsername(value);
+                break;
+            case DIALPLAN:
+                callerProfile.setDialplan(value);
+                break;
+            case CALLER_ID_NAME:
+                callerProfile.setCallerIdName(value);
+                break;
+            case CALLER_ID_NUMBER:
+                callerProfile.setCallerIdNumber(value);
+                break;
+            case CALLEE_ID_NAME:
+                callerProfile.setCalleeIdName(value);
+                break;
+            case CALLEE_ID_NUMBER:
+                callerProfile.setCalleeIdNumber(value);
+                break;
+            case ANI:
+                callerProfile.setAni(value);
+                break;
+            case ANIII:
+                callerProfile.setAniii(value);
+                break;
+            case NETWORK_ADDR:
+                callerProfile.setNetworkAddr(value);
+                break;
+            case RDNIS:
+                callerProfile.setRdnis(value);
+                break;
+            case DESTINATION_NUMBER:
+                callerProfile.setDestinationNumber(value);
+                break;
+            case UUID:
+                callerProfile.setUuid(value);
+                break;
+            case SOURCE:
+                callerProfile.setSource(value);
+                break;
+            case TRANSFER_SOURCE:
+                callerProfile.setTransferSource(value);
+                break;
+            case CONTEXT:
+                callerProfile.setContext(value);
+                break;
+            case CHAN_NAME:
+                callerProfile.setChanName(value);
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    static boolean assignOriginatorCallerProfile(OriginatorCallerProfile originatorCallerProfile, String name, String value) {
+        switch (name) {
+            case USERNAME:
+                originatorCallerProfile.setUsername(value);
+                break;
+            case DIALPLAN:
+                originatorCallerProfile.setDialplan(value);
+                break;
+            case CALLER_ID_NAME:
+                originatorCallerProfile.setCallerIdName(value);
+                break;
+            case CALLER_ID_NUMBER:
+                originatorCallerProfile.setCallerIdNumber(value);
+                break;
+            case CALLEE_ID_NAME:
+                originatorCallerProfile.setCalleeIdName(value);
+                break;
+            case CALLEE_ID_NUMBER:
+                originatorCallerProfile.setCalleeIdNumber(value);
+                break;
+            case ANI:
+                originatorCallerProfile.setAni(value);
+                break;
+            case ANIII:
+                originatorCallerProfile.setAniii(value);
+                break;
+            case NETWORK_ADDR:
+                originatorCallerProfile.setNetworkAddr(value);
+                break;
+            case RDNIS:
+                originatorCallerProfile.setRdnis(value);
+                break;
+            case DESTINATION_NUMBER:
+                originatorCallerProfile.setDestinationNumber(value);
+                break;
+            case UUID:
+                originatorCallerProfile.setUuid(value);
+                break;
+            case SOURCE:
+                originatorCallerProfile.setSource(value);
+                break;
+            case CONTEXT:
+                originatorCallerProfile.setContext(value);
+                break;
+            case CHAN_NAME:
+                originatorCallerProfile.setChanName(value);
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    static boolean assignOriginationCallerProfile(OriginationCallerProfile originationCallerProfile, String name, String value) {
+        switch (name) {
+            case USERNAME:
+                originationCallerProfile.setUsername(value);
+                break;
+            case DIALPLAN:
+                originationCallerProfile.setDialplan(value);
+                break;
+            case CALLER_ID_NAME:
+                originationCallerProfile.setCallerIdName(value);
+                break;
+            case CALLER_ID_NUMBER:
+                originationCallerProfile.setCallerIdNumber(value);
+                break;
+            case CALLEE_ID_NAME:
+                originationCallerProfile.setCalleeIdName(value);
+                break;
+            case CALLEE_ID_NUMBER:
+                originationCallerProfile.setCalleeIdNumber(value);
+                break;
+            case ANI:
+                originationCallerProfile.setAni(value);
+                break;
+            case ANIII:
+                originationCallerProfile.setAniii(value);
+                break;
+            case NETWORK_ADDR:
+                originationCallerProfile.setNetworkAddr(value);
+                break;
+            case RDNIS:
+                originationCallerProfile.setRdnis(value);
+                break;
+            case DESTINATION_NUMBER:
+                originationCallerProfile.setDestinationNumber(value);
+                break;
+            case UUID:
+                originationCallerProfile.setUuid(value);
+                break;
+            case SOURCE:
+                originationCallerProfile.setSource(value);
+                break;
+            case CONTEXT:
+                originationCallerProfile.setContext(value);
+                break;
+            case CHAN_NAME:
+                originationCallerProfile.setChanName(value);
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    static boolean assignOriginateeCallerProfile(OriginateeCallerProfile originateeCallerProfile, String name, String value) {
+        switch (name) {
+            case USERNAME:
+                originateeCallerProfile.setUsername(value);
+                break;
+            case DIALPLAN:
+                originateeCallerProfile.setDialplan(value);
+                break;
+            case CALLER_ID_NAME:
+                originateeCallerProfile.setCallerIdName(value);
+                break;
+            case CALLER_ID_NUMBER:
+                originateeCallerProfile.setCallerIdNumber(value);
+                break;
+            case CALLEE_ID_NAME:
+                originateeCallerProfile.setCalleeIdName(value);
+                break;
+            case CALLEE_ID_NUMBER:
+                originateeCallerProfile.setCalleeIdNumber(value);
+                break;
+            case ANI:
+                originateeCallerProfile.setAni(value);
+                break;
+            case ANIII:
+                originateeCallerProfile.setAniii(value);
+                break;
+            case NETWORK_ADDR:
+                originateeCallerProfile.setNetworkAddr(value);
+                break;
+            case RDNIS:
+                originateeCallerProfile.setRdnis(value);
+                break;
+            case DESTINATION_NUMBER:
+                originateeCallerProfile.setDestinationNumber(value);
+                break;
+            case UUID:
+                originateeCallerProfile.setUuid(value);
+                break;
+            case SOURCE:
+                originateeCallerProfile.setSource(value);
+                break;
+            case CONTEXT:
+                originateeCallerProfile.setContext(value);
+                break;
+            case CHAN_NAME:
+                originateeCallerProfile.setChanName(value);
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    static boolean assignTimes(Times times, String name, String value0) {
+        Long value = NumberUtil.toLong(value0);
+        switch (name) {
+            case CREATED_TIME:
+                times.setCreatedTime(value);
+                break;
+            case PROFILE_CREATED_TIME:
+                times.setProfileCreatedTime(value);
+                break;
+            case PROGRESS_TIME:
+                times.setProgressTime(value);
+                break;
+            case PROGRESS_MEDIA_TIME:
+                times.setProgressMediaTime(value);
+                break;
+            case ANSWERED_TIME:
+                times.setAnsweredTime(value);
+                break;
+            case BRIDGED_TIME:
+                times.setBridgedTime(value);
+                break;
+            case LAST_HOLD_TIME:
+                times.setLastHoldTime(value);
+                break;
+            case HOLD_ACCUM_TIME:
+                times.setHoldAccumTime(value);
+                break;
+            case HANGUP_TIME:
+                times.setHangupTime(value);
+                break;
+            case RESURRECT_TIME:
+                times.setResurrectTime(value);
+                break;
+            case TRANSFER_TIME:
+                times.setTransferTime(value);
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,227 @@
+package link.thingscloud.freeswitch.cdr.parser;
+
+import link.thingscloud.freeswitch.cdr.util.CdrDecodeUtil;
+import link.thingscloud.freeswitch.cdr.util.UrlDecodeInputStream;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>CdrEnvelope class.</p>
+ * <p>
+ * 不解析 xml 即可取得的话单标识: 表单 uuid 字段, 以及 cdr 字段开头根元素上的 core-uuid / switchname 属性.
+ * 只解码 cdr 字段的前 {@link #PREFIX} 字节, 开销与话单大小无关, 用于解析前的去重、路由、分片与准入判断.
+ * <pre>
+ * uuid=a_12d714e6-3c49-463a-8965-755b8f598032&amp;cdr=%3C%3Fxml+version%3D%221.0%22%3F%3E%0A%3Ccdr+core-uuid%3D%22...%22+switchname%3D%22...%22%3E...
+ * </pre>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Data
+@Accessors(chain = true)
+public class CdrEnvelope {
+
+    /**
+     * 查找根元素时最多解码的 cdr 字段字节数
+     */
+    public static final int PREFIX = 1024;
+
+    private static final byte[] ROOT = "<cdr".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * 表单 uuid 字段, mod_xml_cdr 为 a_&lt;uuid&gt; / b_&lt;uuid&gt;
+     */
+    private String uuid;
+    /**
+     * 根元素 core-uuid 属性
+     */
+    private String coreUuid;
+    /**
+     * 根元素 switchname 属性, 旧版本 FreeSWITCH 没有
+     */
+    private String switchname;
+
+    /**
+     * 去掉 a_ / b_ 前缀的通道 uuid, 与 variables.uuid 相同.
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    public String channelUuid() {
+        if (uuid != null && uuid.length() > 2 && uuid.charAt(1) == '_' && (uuid.charAt(0) == 'a' || uuid.charAt(0) == 'b')) {
+            return uuid.substring(2);
+        }
+        return uuid;
+    }
+
+    /**
+     * 从 application/x-www-form-urlencoded 原始字节读取.
+     *
+     * @param body 原始请求字节
+     * @return a {@link link.thingscloud.freeswitch.cdr.parser.CdrEnvelope} object, 字段缺失时对应属性为 null
+     */
+    public static CdrEnvelope read(byte[] body) {
+        CdrEnvelope envelope = new CdrEnvelope();
+        boolean root = false;
+        int pos = 0;
+        while (pos < body.length && (envelope.uuid == null || !root)) {
+            if (isField(body, pos, "uuid")) {
+                int end = CdrDecodeUtil.endOfField(body, pos + 5);
+                envelope.uuid = decode(body, pos + 5, end - pos - 5);
+                pos = end + 1;
+            } else if (isField(body, pos, "cdr")) {
+                root = true;
+                int from = pos + 4;
+                int window = endOfWindow(body, from);
+                envelope.readRoot(body, from, window);
+                // uuid 通常在 cdr 之前, 已取得时不再扫描 xml 剩余部分
+                pos = envelope.uuid == null ? CdrDecodeUtil.endOfField(body, window) + 1 : body.length;
+            } else {
+                pos = CdrDecodeUtil.endOfField(body, pos) + 1;
+            }
+        }
+        return envelope;
+    }
+
+    /**
+     * <p>read.</p>
+     *
+     * @param body 原始请求文本
+     * @return a {@link link.thingscloud.freeswitch.cdr.parser.CdrEnvelope} object.
+     */
+    public static CdrEnvelope read(String body) {
+        CdrEnvelope envelope = new CdrEnvelope();
+        boolean root = false;
+        int pos = 0;
+        while (pos < body.length() && (envelope.uuid == null || !root)) {
+            if (body.startsWith("uuid=", pos)) {
+                int end = body.indexOf('&', pos);
+                end = end < 0 ? body.length() : end;
+                byte[] value = body.substring(pos + 5, end).getBytes(StandardCharsets.UTF_8);
+                envelope.uuid = decode(value, 0, value.length);
+                pos = end + 1;
+            } else if (body.startsWith("cdr=", pos)) {
+                root = true;
+                byte[] prefix = body.substring(pos + 4, Math.min(body.length(), pos + 4 + PREFIX * 3)).getBytes(StandardCharsets.UTF_8);
+                envelope.readRoot(prefix, 0, endOfWindow(prefix, 0));
+                if (envelope.uuid != null) {
+                    break;
+                }
+                int end = body.indexOf('&', pos);
+                pos = end < 0 ? body.length() : end + 1;
+            } else {
+                int end = body.indexOf('&', pos);
+                pos = end < 0 ? body.length() : end + 1;
+            }
+        }
+        return envelope;
+    }
+
+    private static boolean isField(byte[] body, int pos, String name) {
+        int len = name.length();
+        if (pos + len >= body.length || body[pos + len] != '=') {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (body[pos + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * cdr 字段前 PREFIX * 3 个编码字节(每个解码字节至多 3 个编码字节)内的结束位置
+     */
+    private static int endOfWindow(byte[] body, int from) {
+        int limit = Math.min(body.length, from + PREFIX * 3);
+        for (int i = from; i < limit; i++) {
+            if (body[i] == '&') {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    private static String decode(byte[] body, int offset, int length) {
+        byte[] decoded = new byte[length];
+        int n = new UrlDecodeInputStream(body, offset, length).read(decoded, 0, length);
+        return new String(decoded, 0, Math.max(n, 0), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 解码 [from, to) 并读取根元素属性, 属性在窗口内不完整时忽略
+     */
+    private void readRoot(byte[] body, int from, int to) {
+        byte[] xml = new byte[PREFIX];
+        int n = Math.max(new UrlDecodeInputStream(body, from, to - from).read(xml, 0, PREFIX), 0);
+        int pos = indexOfRoot(xml, n);
+        if (pos < 0) {
+            return;
+        }
+        pos += ROOT.length;
+        while (pos < n) {
+            while (pos < n && isWhitespace(xml[pos])) {
+                pos++;
+            }
+            if (pos >= n || xml[pos] == '>' || xml[pos] == '/') {
+                return;
+            }
+            int nameStart = pos;
+            while (pos < n && xml[pos] != '=' && !isWhitespace(xml[pos])) {
+                pos++;
+            }
+            int nameEnd = pos;
+            while (pos < n && (isWhitespace(xml[pos]) || xml[pos] == '=')) {
+                pos++;
+            }
+            if (pos >= n || (xml[pos] != '"' && xml[pos] != '\'')) {
+                return;
+            }
+            byte quote = xml[pos++];
+            int valueStart = pos;
+            while (pos < n && xml[pos] != quote) {
+                pos++;
+            }
+            if (pos >= n) {
+                return;
+            }
+            String name = new String(xml, nameStart, nameEnd - nameStart, StandardCharsets.US_ASCII);
+            if ("core-uuid".equals(name)) {
+                coreUuid = unescape(new String(xml, valueStart, pos - valueStart, StandardCharsets.UTF_8));
+            } else if ("switchname".equals(name)) {
+                switchname = unescape(new String(xml, valueStart, pos - valueStart, StandardCharsets.UTF_8));
+            }
+            pos++;
+        }
+    }
+
+    private static int indexOfRoot(byte[] xml, int n) {
+        outer:
+        for (int i = 0; i + ROOT.length < n; i++) {
+            for (int j = 0; j < ROOT.length; j++) {
+                if (xml[i + j] != ROOT[j]) {
+                    continue outer;
+                }
+            }
+            byte next = xml[i + ROOT.length];
+            if (isWhitespace(next) || next == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('&') < 0) {
+            return value;
+        }
+        return value.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&apos;", "'").replace("&amp;", "&");
+    }
+}
@@ -4,7 +4,6 @@ import com.alibaba.fastjson.JSON;
 import link.thingscloud.freeswitch.cdr.domain.*;
 import link.thingscloud.freeswitch.cdr.exception.ParserException;
 import link.thingscloud.freeswitch.cdr.util.CdrDecodeUtil;
-import link.thingscloud.freeswitch.cdr.util.NumberUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.dom4j.Attribute;
@@ -12,10 +11,14 @@ import org.dom4j.Document;
 import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.BiConsumer;
 
+import static link.thingscloud.freeswitch.cdr.parser.CdrAssigner.*;
+
 /**
  * <p>CdrParser class.</p>
  *
@@ -25,29 +28,10 @@ import java.util.function.BiConsumer;
 @Slf4j
 public class CdrParser {
 
-    private static final String CORE_UUID = "core-uuid";
-    private static final String SWITCHNAME = "switchname";
-
-    private static final String CHANNEL_DATA = "channel_data";
-    private static final String CALL_STATS = "call-stats";
-    private static final String STATE = "state";
-    private static final String DIRECTION = "direction";
-    private static final String STATE_NUMBER = "state_number";
-    private static final String FLAGS = "flags";
-    private static final String CAPS = "caps";
-
-    private static final String VARIABLES = "variables";
-
-    private static final String APP_LOG = "app_log";
-
-    private static final String HOLD_RECORD = "hold-record";
-
-    private static final String CALLFLOW = "callflow";
-
-    private static ThreadLocal<String> local = new ThreadLocal<>();
-
     private static boolean isTraceEnabled = log.isTraceEnabled();
 
+    private static final ParseOptions DEFAULT_OPTIONS = new ParseOptions();
+
     private CdrParser() {
     }
 
@@ -65,9 +49,71 @@ public class CdrParser {
      * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
      */
     public static Cdr decodeThenParse(String reqText) throws ParserException {
+        return decodeThenParse(reqText, ParserEngine.DOM4J);
+    }
+
+    /**
+     * <p>decodeThenParse.</p>
+     *
+     * @param reqText req xml content
+     * @param engine  a {@link link.thingscloud.freeswitch.cdr.parser.ParserEngine} object.
+     * @return cdr
+     * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
+     */
+    public static Cdr decodeThenParse(String reqText, ParserEngine engine) throws ParserException {
+        return decodeThenParse(reqText, engine, DEFAULT_OPTIONS);
+    }
+
+    /**
+     * <p>decodeThenParse.</p>
+     *
+     * @param reqText req xml content
+     * @param engine  a {@link link.thingscloud.freeswitch.cdr.parser.ParserEngine} object.
+     * @param options a {@link link.thingscloud.freeswitch.cdr.parser.ParseOptions} object.
+     * @return cdr
+     * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
+     */
+    public static Cdr decodeThenParse(String reqText, ParserEngine engine, ParseOptions options) throws ParserException {
         String decodeText = CdrDecodeUtil.decode(reqText);
         String decodeXml = StringUtils.substringAfter(decodeText, "cdr=");
-        return parse(decodeXml);
+        return parse(decodeXml, engine, options);
+    }
+
+    /**
+     * <p>decodeThenParse.</p>
+     * <p>
+     * STAX 引擎直接在原始字节上边解码边解析, LAZY 引擎解码为字节后只建段落索引, DOM4J 引擎按 UTF-8 转为 String 后走原有流程.
+     *
+     * @param reqBytes req content bytes
+     * @param engine   a {@link link.thingscloud.freeswitch.cdr.parser.ParserEngine} object.
+     * @return cdr
+     * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
+     */
+    public static Cdr decodeThenParse(byte[] reqBytes, ParserEngine engine) throws ParserException {
+        return decodeThenParse(reqBytes, engine, DEFAULT_OPTIONS);
+    }
+
+    /**
+     * <p>decodeThenParse.</p>
+     *
+     * @param reqBytes req content bytes
+     * @param engine   a {@link link.thingscloud.freeswitch.cdr.parser.ParserEngine} object.
+     * @param options  a {@link link.thingscloud.freeswitch.cdr.parser.ParseOptions} object.
+     * @return cdr
+     * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
+     */
+    public static Cdr decodeThenParse(byte[] reqBytes, ParserEngine engine, ParseOptions options) throws ParserException {
+        if (engine == ParserEngine.STAX) {
+            return StaxCdrParser.decodeThenParse(reqBytes, options);
+        }
+        if (engine == ParserEngine.LAZY) {
+            byte[] xml = reqBytes == null ? null : CdrDecodeUtil.decodeFieldBytes(reqBytes, "cdr");
+            if (xml == null) {
+                throw new ParserException("cdr parse xml failed, cdr field not found.");
+            }
+            return LazyCdr.parse(xml, options);
+        }
+        return decodeThenParse(reqBytes == null ? null : new String(reqBytes, StandardCharsets.UTF_8), engine, options);
     }
 
     /**
@@ -78,16 +124,70 @@ public class CdrParser {
      * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
      */
     public static Cdr parse(String decodeXml) throws ParserException {
+        return parse(decodeXml, ParserEngine.DOM4J);
+    }
+
+    /**
+     * <p>parse.</p>
+     *
+     * @param decodeXml a {@link java.lang.String} object.
+     * @param engine    a {@link link.thingscloud.freeswitch.cdr.parser.ParserEngine} object.
+     * @return a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object.
+     * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
+     */
+    public static Cdr parse(String decodeXml, ParserEngine engine) throws ParserException {
+        return parse(decodeXml, engine, DEFAULT_OPTIONS);
+    }
+
+    /**
+     * <p>parse.</p>
+     * <p>
+     * 已解码的 xml 字节(如 mod_xml_cdr log-dir 下的 .cdr.xml 文件), UTF-8 编码.
+     *
+     * @param xml     decoded xml bytes
+     * @param engine  a {@link link.thingscloud.freeswitch.cdr.parser.ParserEngine} object.
+     * @param options a {@link link.thingscloud.freeswitch.cdr.parser.ParseOptions} object.
+     * @return a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object.
+     * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
+     */
+    public static Cdr parse(byte[] xml, ParserEngine engine, ParseOptions options) throws ParserException {
+        if (xml == null || xml.length == 0) {
+            throw new ParserException("cdr parse xml failed, xml is empty.");
+        }
+        if (engine == ParserEngine.STAX) {
+            return StaxCdrParser.parse(new ByteArrayInputStream(xml), options);
+        }
+        if (engine == ParserEngine.LAZY) {
+            return LazyCdr.parse(xml, options);
+        }
+        return parse(new String(xml, StandardCharsets.UTF_8), engine, options);
+    }
+
+    /**
+     * <p>parse.</p>
+     *
+     * @param decodeXml a {@link java.lang.String} object.
+     * @param engine    a {@link link.thingscloud.freeswitch.cdr.parser.ParserEngine} object.
+     * @param options   a {@link link.thingscloud.freeswitch.cdr.parser.ParseOptions} object.
+     * @return a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object.
+     * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
+     */
+    public static Cdr parse(String decodeXml, ParserEngine engine, ParseOptions options) throws ParserException {
+        if (engine == ParserEngine.STAX) {
+            return StaxCdrParser.parse(decodeXml, options);
+        }
         if (StringUtils.isBlank(decodeXml)) {
             throw new ParserException("cdr parse xml failed, strXml is blank.");
         }
-        local.set(decodeXml);
+        if (engine == ParserEngine.LAZY) {
+            return LazyCdr.parse(decodeXml.getBytes(StandardCharsets.UTF_8), options);
+        }
         try {
             Document document = DocumentHelper.parseText(decodeXml);
             Element rootElement = document.getRootElement();
 
             Cdr cdr = new Cdr();
-            assignCdrElement(cdr, rootElement);
+            assignCdrElement(rootElement, new Context(cdr, options == null ? DEFAULT_OPTIONS : options));
 
             if (isTraceEnabled) {
                 log.trace("cdr parse : [{}]", JSON.toJSONString(cdr, true));
@@ -95,432 +195,233 @@ public class CdrParser {
             return cdr;
         } catch (Exception e) {
             throw new ParserException("cdr parse xml failed.", e);
-        } finally {
-            local.remove();
         }
     }
 
 
-    private static void assignCdrElement(Cdr cdr, Element rootElement) {
+    private static void assignCdrElement(Element rootElement, Context ctx) {
+        Cdr cdr = ctx.cdr;
         // cdr 节点属性赋值
         attributes(rootElement, (name, value) -> {
-            if (CORE_UUID.equals(name)) {
-                cdr.setCoreUuid(value);
-            } else if (SWITCHNAME.equals(name)) {
-                cdr.setSwitchname(value);
-            } else {
-                log.warn("assignCdrElement found other attribute name : [{}], value : [{}], xml : [{}]", name, value, local.get());
+            if (!assignCdrAttribute(cdr, name, value)) {
+                ctx.unknown(UnknownElements.CDR_ATTR, name, value);
             }
         });
 
-        // cdr 节点下所有元素
+        // cdr 节点下所有元素, 按投影跳过未订阅的段落
+        CdrProjection projection = ctx.projection;
         elements(rootElement, (name, element) -> {
             switch (name) {
                 case CHANNEL_DATA:
+                    if (!projection.includes(CdrSection.CHANNEL_DATA)) {
+                        break;
+                    }
                     ChannelData channelData = new ChannelData();
                     cdr.setChannelData(channelData);
-                    assignChannelDataElement(channelData, element);
+                    assignChannelDataElement(channelData, element, ctx);
                     break;
                 case CALL_STATS:
+                    if (!projection.includes(CdrSection.CALL_STATS)) {
+                        break;
+                    }
                     CallStats callStats = new CallStats();
                     cdr.setCallStats(callStats);
-                    assignCallStatsElement(callStats, element);
+                    assignCallStatsElement(callStats, element, ctx);
                     break;
                 case VARIABLES:
+                    if (!projection.includes(CdrSection.VARIABLES)) {
+                        break;
+                    }
                     Variables variables = new Variables();
                     cdr.setVariables(variables);
-                    assignVariablesElement(variables, element);
+                    assignVariablesElement(variables, element, ctx);
                     break;
                 case APP_LOG:
+                    if (!projection.includes(CdrSection.APP_LOG)) {
+                        break;
+                    }
                     AppLog appLog = new AppLog();
                     cdr.setAppLog(appLog);
-                    assignAppLogElement(appLog, element);
+                    assignAppLogElement(appLog, element, ctx);
                     break;
                 case HOLD_RECORD:
+                    if (!projection.includes(CdrSection.HOLD_RECORD)) {
+                        break;
+                    }
                     HoldRecord holdRecord = new HoldRecord();
                     cdr.setHoldRecord(holdRecord);
-                    assignHoldRecordElement(holdRecord, element);
+                    assignHoldRecordElement(holdRecord, element, ctx);
                     break;
                 case CALLFLOW:
+                    if (!projection.includesCallflow()) {
+                        break;
+                    }
                     Callflow callflow = new Callflow();
                     cdr.addCallflow(callflow);
-                    assignCallflowElement(callflow, element);
+                    assignCallflowElement(callflow, element, ctx);
                     break;
                 default:
-                    log.warn("assignCdrElement found other element name : [{}], xml : [{}]", name, local.get());
+                    ctx.unknown(UnknownElements.CDR, name, element.getTextTrim());
                     break;
             }
         });
     }
 
 
-    private static void assignChannelDataElement(ChannelData channelData, Element rootElement) {
+    private static void assignChannelDataElement(ChannelData channelData, Element rootElement, Context ctx) {
         // channel_data 节点属性赋值
         elements(rootElement, (name, element) -> {
-            String value = element.getTextTrim();
-            switch (name) {
-                case STATE:
-                    channelData.setState(value);
-                    break;
-                case DIRECTION:
-                    channelData.setDirection(value);
-                    break;
-                case STATE_NUMBER:
-                    channelData.setStateNumber(value);
-                    break;
-                case FLAGS:
-                    channelData.setFlags(value);
-                    break;
-                case CAPS:
-                    channelData.setCaps(value);
-                    break;
-                default:
-                    log.warn("assignChannelDataElement found other element name : [{}], xml : [{}]", name, local.get());
-                    break;
+            if (!assignChannelData(channelData, name, element.getTextTrim())) {
+                ctx.unknown(UnknownElements.CHANNEL_DATA, name, element.getTextTrim());
             }
         });
     }
 
-    private static final String AUDIO = "audio";
-
-    private static void assignCallStatsElement(CallStats callStats, Element rootElement) {
+    private static void assignCallStatsElement(CallStats callStats, Element rootElement, Context ctx) {
         // call-stats 节点属性赋值
         elements(rootElement, (name, element) -> {
-            String value = element.getTextTrim();
-            switch (name) {
-                case AUDIO:
-                    Audio audio = new Audio();
-                    callStats.setAudio(audio);
-                    assignAudioElement(audio, element);
-                    break;
-                default:
-                    log.warn("assignCallStatsElement found other element name : [{}], xml : [{}]", name, local.get());
-                    break;
+            if (AUDIO.equals(name)) {
+                Audio audio = new Audio();
+                callStats.setAudio(audio);
+                assignAudioElement(audio, element, ctx);
+            } else {
+                ctx.unknown(UnknownElements.CALL_STATS, name, element.getTextTrim());
             }
         });
     }
 
-    private static final String INBOUND = "inbound";
-    private static final String OUTBOUND = "outbound";
-    private static final String ERROR_LOG = "error-log";
-
-    private static void assignAudioElement(Audio audio, Element rootElement) {
+    private static void assignAudioElement(Audio audio, Element rootElement, Context ctx) {
         // call-stats - audio 节点属性赋值
         elements(rootElement, (name, element) -> {
-            String value = element.getTextTrim();
             switch (name) {
                 case INBOUND:
                     Inbound inbound = new Inbound();
+                    if (ctx.options.isTypedStats()) {
+                        inbound.setStats(new InboundStats());
+                    }
                     audio.setInbound(inbound);
-                    assignInboundElement(inbound, element);
+                    assignInboundElement(inbound, element, ctx);
                     break;
                 case OUTBOUND:
                     Outbound outbound = new Outbound();
+                    if (ctx.options.isTypedStats()) {
+                        outbound.setStats(new OutboundStats());
+                    }
                     audio.setOutbound(outbound);
-                    assignOutboundElement(outbound, element);
+                    assignOutboundElement(outbound, element, ctx);
                     break;
                 case ERROR_LOG:
                     ErrorLog errorLog = new ErrorLog();
                     audio.setErrorLog(errorLog);
-                    assignErrorLogElement(errorLog, element);
+                    assignErrorLogElement(errorLog, element, ctx);
                     break;
                 default:
-                    log.warn("assignAudioElement found other element name : [{}], xml : [{}]", name, local.get());
+                    ctx.unknown(UnknownElements.AUDIO, name, element.getTextTrim());
                     break;
             }
         });
     }
 
-
-    private static final String RAW_BYTES = "raw_bytes";
-    private static final String MEDIA_BYTES = "media_bytes";
-    private static final String PACKET_COUNT = "packet_count";
-    private static final String MEDIA_PACKET_COUNT = "media_packet_count";
-    private static final String SKIP_PACKET_COUNT = "skip_packet_count";
-    private static final String JITTER_PACKET_COUNT = "jitter_packet_count";
-    private static final String DTMF_PACKET_COUNT = "dtmf_packet_count";
-    private static final String CNG_PACKET_COUNT = "cng_packet_count";
-    private static final String FLUSH_PACKET_COUNT = "flush_packet_count";
-    private static final String LARGEST_JB_SIZE = "largest_jb_size";
-    private static final String JITTER_MIN_VARIANCE = "jitter_min_variance";
-    private static final String JITTER_MAX_VARIANCE = "jitter_max_variance";
-    private static final String JITTER_LOSS_RATE = "jitter_loss_rate";
-    private static final String JITTER_BURST_RATE = "jitter_burst_rate";
-    private static final String MEAN_INTERVAL = "mean_interval";
-    private static final String FLAW_TOTAL = "flaw_total";
-    private static final String QUALITY_PERCENTAGE = "quality_percentage";
-    private static final String MOS = "mos";
-
-    private static void assignInboundElement(Inbound inbound, Element rootElement) {
+    private static void assignInboundElement(Inbound inbound, Element rootElement, Context ctx) {
         // call-stats - audio - inbound 节点属性赋值
         elements(rootElement, (name, element) -> {
-            String value = element.getTextTrim();
-            switch (name) {
-                case RAW_BYTES:
-                    inbound.setRawBytes(value);
-                    break;
-                case MEDIA_BYTES:
-                    inbound.setMediaBytes(value);
-                    break;
-                case PACKET_COUNT:
-                    inbound.setPacketCount(value);
-                    break;
-                case MEDIA_PACKET_COUNT:
-                    inbound.setMediaPacketCount(value);
-                    break;
-                case SKIP_PACKET_COUNT:
-                    inbound.setSkipPacketCount(value);
-                    break;
-                case JITTER_PACKET_COUNT:
-                    inbound.setJitterPacketCount(value);
-                    break;
-                case DTMF_PACKET_COUNT:
-                    inbound.setDtmfPacketCount(value);
-                    break;
-                case CNG_PACKET_COUNT:
-                    inbound.setCngPacketCount(value);
-                    break;
-                case FLUSH_PACKET_COUNT:
-                    inbound.setFlushPacketCount(value);
-                    break;
-                case LARGEST_JB_SIZE:
-                    inbound.setLargestJbSize(value);
-                    break;
-                case JITTER_MIN_VARIANCE:
-                    inbound.setJitterMinVariance(value);
-                    break;
-                case JITTER_MAX_VARIANCE:
-                    inbound.setJitterMaxVariance(value);
-                    break;
-                case JITTER_LOSS_RATE:
-                    inbound.setJitterLossRate(value);
-                    break;
-                case JITTER_BURST_RATE:
-                    inbound.setJitterBurstRate(value);
-                    break;
-                case MEAN_INTERVAL:
-                    inbound.setMeanInterval(value);
-                    break;
-                case FLAW_TOTAL:
-                    inbound.setFlawTotal(value);
-                    break;
-                case QUALITY_PERCENTAGE:
-                    inbound.setQualityPercentage(value);
-                    break;
-                case MOS:
-                    inbound.setMos(value);
-                    break;
-                default:
-                    log.warn("assignInboundElement found other element name : [{}], xml : [{}]", name, local.get());
-                    break;
+            if (!assignInbound(inbound, name, element.getTextTrim())) {
+                ctx.unknown(UnknownElements.INBOUND, name, element.getTextTrim());
             }
         });
     }
 
-    private static final String RTCP_PACKET_COUNT = "rtcp_packet_count";
-    private static final String RTCP_OCTET_COUNT = "rtcp_octet_count";
-
-    private static void assignOutboundElement(Outbound outbound, Element rootElement) {
+    private static void assignOutboundElement(Outbound outbound, Element rootElement, Context ctx) {
         // call-stats - audio - outbound 节点属性赋值
         elements(rootElement, (name, element) -> {
-            String value = element.getTextTrim();
-            switch (name) {
-                case RAW_BYTES:
-                    outbound.setRawBytes(value);
-                    break;
-                case MEDIA_BYTES:
-                    outbound.setMediaBytes(value);
-                    break;
-                case PACKET_COUNT:
-                    outbound.setPacketCount(value);
-                    break;
-                case MEDIA_PACKET_COUNT:
-                    outbound.setMediaPacketCount(value);
-                    break;
-                case SKIP_PACKET_COUNT:
-                    outbound.setSkipPacketCount(value);
-                    break;
-                case DTMF_PACKET_COUNT:
-                    outbound.setDtmfPacketCount(value);
-                    break;
-                case CNG_PACKET_COUNT:
-                    outbound.setCngPacketCount(value);
-                    break;
-                case RTCP_PACKET_COUNT:
-                    outbound.setRtcpPacketCount(value);
-                    break;
-                case RTCP_OCTET_COUNT:
-                    outbound.setRtcpOctetCount(value);
-                    break;
-                default:
-                    log.warn("assignOutboundElement found other element name : [{}], xml : [{}]", name, local.get());
-                    break;
+            if (!assignOutbound(outbound, name, element.getTextTrim())) {
+                ctx.unknown(UnknownElements.OUTBOUND, name, element.getTextTrim());
             }
         });
     }
 
-    private static final String ERROR_PERIOD = "error-period";
-
-    private static void assignErrorLogElement(ErrorLog errorLog, Element rootElement) {
+    private static void assignErrorLogElement(ErrorLog errorLog, Element rootElement, Context ctx) {
         // call-stats - audio - error-log 节点属性赋值
         elements(rootElement, (name, element) -> {
-            String value = element.getTextTrim();
-            switch (name) {
-                case ERROR_PERIOD:
-                    ErrorPeriod errorPeriod = new ErrorPeriod();
-                    errorLog.addErrorPeriod(errorPeriod);
-                    assignErrorPeriodElement(errorPeriod, element);
-                    break;
-                default:
-                    log.warn("assignErrorLogElement found other element name : [{}], xml : [{}]", name, local.get());
-                    break;
+            if (ERROR_PERIOD.equals(name)) {
+                ErrorPeriod errorPeriod = new ErrorPeriod();
+                if (ctx.options.isTypedStats()) {
+                    errorPeriod.setStats(new ErrorPeriodStats());
+                }
+                errorLog.addErrorPeriod(errorPeriod);
+                assignErrorPeriodElement(errorPeriod, element, ctx);
+            } else {
+                ctx.unknown(UnknownElements.ERROR_LOG, name, element.getTextTrim());
             }
         });
     }
 
-    private static final String START = "start";
-    private static final String STOP = "stop";
-    private static final String FLAWS = "flaws";
-    private static final String CONSECUTIVE_FLAWS = "consecutive-flaws";
-    private static final String DURATION_MSEC = "duration-msec";
-
-    private static void assignErrorPeriodElement(ErrorPeriod errorPeriod, Element rootElement) {
+    private static void assignErrorPeriodElement(ErrorPeriod errorPeriod, Element rootElement, Context ctx) {
         // call-stats - audio - error-log 节点属性赋值
         elements(rootElement, (name, element) -> {
-            String value = element.getTextTrim();
-            switch (name) {
-                case START:
-                    errorPeriod.setStart(value);
-                    break;
-                case STOP:
-                    errorPeriod.setStop(value);
-                    break;
-                case FLAWS:
-                    errorPeriod.setFlaws(value);
-                    break;
-                case CONSECUTIVE_FLAWS:
-                    errorPeriod.setConsecutiveFlaws(value);
-                    break;
-                case DURATION_MSEC:
-                    errorPeriod.setDurationMsec(value);
-                    break;
-                default:
-                    log.warn("assignErrorPeriodElement found other element name : [{}], xml : [{}]", name, local.get());
-                    break;
+            if (!assignErrorPeriod(errorPeriod, name, element.getTextTrim())) {
+                ctx.unknown(UnknownElements.ERROR_PERIOD, name, element.getTextTrim());
             }
         });
     }
 
-    private static void assignVariablesElement(Variables variables, Element rootElement) {
-        elements(rootElement, (name, element) -> variables.putVariable(name, element.getTextTrim()));
+    private static void assignVariablesElement(Variables variables, Element rootElement, Context ctx) {
+        elements(rootElement, (name, element) -> {
+            if (ctx.projection.includesVariable(name)) {
+                variables.putVariable(name, element.getTextTrim());
+            }
+        });
     }
 
-    private static final String HOLD = "hold";
-
-    private static void assignHoldRecordElement(HoldRecord holdRecord, Element rootElement) {
+    private static void assignHoldRecordElement(HoldRecord holdRecord, Element rootElement, Context ctx) {
         List<Hold> holds = new ArrayList<>(4);
         holdRecord.setHolds(holds);
         elements(rootElement, (name, element) -> {
             if (HOLD.equals(name)) {
-                assignHoldElement(holds, element);
+                assignHoldElement(holds, element, ctx);
             } else {
-                log.warn("assignHoldRecordElement found other element name : [{}], xml : [{}]", name, local.get());
+                ctx.unknown(UnknownElements.HOLD_RECORD, name, element.getTextTrim());
             }
         });
     }
 
-    private static final String ON = "on";
-    private static final String OFF = "off";
-    private static final String BRIDGED_TO = "bridged-to";
-
-    private static void assignHoldElement(final List<Hold> holds, final Element rootElement) {
+    private static void assignHoldElement(final List<Hold> holds, final Element rootElement, Context ctx) {
         Hold hold = new Hold();
         attributes(rootElement, (name, value) -> {
-            switch (name) {
-                case ON:
-                    hold.setOn(NumberUtil.toLong(value));
-                    break;
-                case OFF:
-                    hold.setOff(NumberUtil.toLong(value));
-                    break;
-                case BRIDGED_TO:
-                    hold.setBridgedTo(value);
-                    break;
-                default:
-                    log.warn("assignHoldElement found other attribute name : [{}], value : [{}], xml : [{}]", name, value, local.get());
-                    break;
+            if (!assignHoldAttribute(hold, name, value)) {
+                ctx.unknown(UnknownElements.HOLD_ATTR, name, value);
             }
         });
         holds.add(hold);
     }
 
-    private static final String APPLICATION = "application";
-
-    private static void assignAppLogElement(AppLog appLog, Element rootElement) {
+    private static void assignAppLogElement(AppLog appLog, Element rootElement, Context ctx) {
         List<Application> applications = new ArrayList<>();
         appLog.setApplications(applications);
         elements(rootElement, (name, element) -> {
             if (APPLICATION.equals(name)) {
-                assignApplicationElement(applications, element);
+                assignApplicationElement(applications, element, UnknownElements.APP_LOG_APPLICATION_ATTR, ctx);
             } else {
-                log.warn("assignAppLogElement found other element name : [{}], xml : [{}]", name, local.get());
+                ctx.unknown(UnknownElements.APP_LOG, name, element.getTextTrim());
             }
         });
     }
 
-    private static final String APP_NAME = "app_name";
-    private static final String APP_DATA = "app_data";
-    private static final String APP_STAMP = "app_stamp";
-
-
-    private static void assignApplicationElement(final List<Application> applications, final Element rootElement) {
+    private static void assignApplicationElement(final List<Application> applications, final Element rootElement, String path, Context ctx) {
         Application application = new Application();
         attributes(rootElement, (name, value) -> {
-            switch (name) {
-                case APP_NAME:
-                    application.setAppName(value);
-                    break;
-                case APP_DATA:
-                    application.setAppData(value);
-                    break;
-                case APP_STAMP:
-                    application.setAppStamp(NumberUtil.toLong(value));
-                    break;
-                default:
-                    log.warn("assignApplicationElement found other attribute name : [{}], value : [{}], xml : [{}]", name, value, local.get());
-                    break;
+            if (!assignApplicationAttribute(application, name, value)) {
+                ctx.unknown(path, name, value);
             }
         });
         applications.add(application);
     }
 
-    private static final String DIALPLAN = "dialplan";
-    private static final String UNIQUE_ID = "unique-id";
-    private static final String CLONE_OF = "clone-of";
-    private static final String PROFILE_INDEX = "profile_index";
-    private static final String EXTENSION = "extension";
-    private static final String CALLER_PROFILE = "caller_profile";
-    private static final String TIMES = "times";
-
-    private static void assignCallflowElement(Callflow callflow, Element rootElement) {
+    private static void assignCallflowElement(Callflow callflow, Element rootElement, Context ctx) {
         // 属性
         attributes(rootElement, (name, value) -> {
-            switch (name) {
-                case DIALPLAN:
-                    callflow.setDialplan(value);
-                    break;
-                case UNIQUE_ID:
-                    callflow.setUniqueId(value);
-                    break;
-                case CLONE_OF:
-                    callflow.setCloneOf(value);
-                    break;
-                case PROFILE_INDEX:
-                    callflow.setProfileIndex(value);
-                    break;
-                default:
-                    log.warn("assignCallflowElement found other attribute name : [{}], value : [{}], xml : [{}]", name, value, local.get());
-                    break;
+            if (!assignCallflowAttribute(callflow, name, value)) {
+                ctx.unknown(UnknownElements.CALLFLOW_ATTR, name, value);
             }
         });
 
@@ -528,45 +429,42 @@ public class CdrParser {
         elements(rootElement, (name, element) -> {
             switch (name) {
                 case EXTENSION:
+                    if (!ctx.projection.includes(CdrSection.CALLFLOW_EXTENSION)) {
+                        break;
+                    }
                     Extension extension = new Extension();
                     callflow.setExtension(extension);
-                    assignExtensionElement(extension, element);
+                    assignExtensionElement(extension, element, ctx);
                     break;
                 case CALLER_PROFILE:
+                    if (!ctx.projection.includes(CdrSection.CALLFLOW_CALLER_PROFILE)) {
+                        break;
+                    }
                     CallerProfile callerProfile = new CallerProfile();
                     callflow.setCallerProfile(callerProfile);
-                    assignCallerProfileElement(callerProfile, element);
+                    assignCallerProfileElement(callerProfile, element, ctx);
                     break;
                 case TIMES:
+                    if (!ctx.projection.includes(CdrSection.CALLFLOW_TIMES)) {
+                        break;
+                    }
                     Times times = new Times();
                     callflow.setTimes(times);
-                    assignTimesElement(times, element);
+                    assignTimesElement(times, element, ctx);
                     break;
                 default:
-                    log.warn("assignCallflowChildElement found other element name : [{}]], xml : [{}]", name, local.get());
+                    ctx.unknown(UnknownElements.CALLFLOW, name, element.getTextTrim());
                     break;
             }
 
         });
     }
 
-    private static final String NAME = "name";
-    private static final String NUMBER = "number";
-
-
-    private static void assignExtensionElement(Extension extension, Element rootElement) {
+    private static void assignExtensionElement(Extension extension, Element rootElement, Context ctx) {
         // 属性
         attributes(rootElement, (name, value) -> {
-            switch (name) {
-                case NAME:
-                    extension.setName(value);
-                    break;
-                case NUMBER:
-                    extension.setNumber(value);
-                    break;
-                default:
-                    log.warn("assignExtensionElement found other attribute name : [{}], value : [{}], xml : [{}]", name, value, local.get());
-                    break;
+            if (!assignExtensionAttribute(extension, name, value)) {
+                ctx.unknown(UnknownElements.EXTENSION_ATTR, name, value);
             }
         });
 
@@ -574,385 +472,135 @@ public class CdrParser {
         extension.setApplications(applications);
         elements(rootElement, (name, element) -> {
             if (APPLICATION.equals(name)) {
-                assignApplicationElement(applications, element);
+                assignApplicationElement(applications, element, UnknownElements.EXTENSION_APPLICATION_ATTR, ctx);
             } else {
-                log.warn("assignExtensionElement found other element name : [{}], xml : [{}]", name, local.get());
+                ctx.unknown(UnknownElements.EXTENSION, name, element.getTextTrim());
             }
         });
     }
 
-    private static final String USERNAME = "username";
-    private static final String CALLER_ID_NAME = "caller_id_name";
-    private static final String CALLER_ID_NUMBER = "caller_id_number";
-    private static final String CALLEE_ID_NAME = "callee_id_name";
-    private static final String CALLEE_ID_NUMBER = "callee_id_number";
-    private static final String ANI = "ani";
-    private static final String ANIII = "aniii";
-    private static final String NETWORK_ADDR = "network_addr";
-    private static final String RDNIS = "rdnis";
-    private static final String DESTINATION_NUMBER = "destination_number";
-    private static final String UUID = "uuid";
-    private static final String SOURCE = "source";
-    private static final String TRANSFER_SOURCE = "transfer_source";
-    private static final String CONTEXT = "context";
-    private static final String CHAN_NAME = "chan_name";
-    private static final String ORIGINATOR = "originator";
-    private static final String ORIGINATION = "origination";
-    private static final String ORIGINATEE = "originatee";
-
-    private static void assignCallerProfileElement(CallerProfile callerProfile, Element rootElement) {
+    private static void assignCallerProfileElement(CallerProfile callerProfile, Element rootElement, Context ctx) {
 
         elements(rootElement, (name, element) -> {
-            String value = element.getTextTrim();
             switch (name) {
-                case USERNAME:
-                    callerProfile.setUsername(value);
-                    break;
-                case DIALPLAN:
-                    callerProfile.setDialplan(value);
-                    break;
-                case CALLER_ID_NAME:
-                    callerProfile.setCallerIdName(value);
-                    break;
-                case CALLER_ID_NUMBER:
-                    callerProfile.setCallerIdNumber(value);
-                    break;
-                case CALLEE_ID_NAME:
-                    callerProfile.setCalleeIdName(value);
-                    break;
-                case CALLEE_ID_NUMBER:
-                    callerProfile.setCalleeIdNumber(value);
-                    break;
-                case ANI:
-                    callerProfile.setAni(value);
-                    break;
-                case ANIII:
-                    callerProfile.setAniii(value);
-                    break;
-                case NETWORK_ADDR:
-                    callerProfile.setNetworkAddr(value);
-                    break;
-                case RDNIS:
-                    callerProfile.setRdnis(value);
-                    break;
-                case DESTINATION_NUMBER:
-                    callerProfile.setDestinationNumber(value);
-                    break;
-                case UUID:
-                    callerProfile.setUuid(value);
-                    break;
-                case SOURCE:
-                    callerProfile.setSource(value);
-                    break;
-                case TRANSFER_SOURCE:
-                    callerProfile.setTransferSource(value);
-                    break;
-                case CONTEXT:
-                    callerProfile.setContext(value);
-                    break;
-                case CHAN_NAME:
-                    callerProfile.setChanName(value);
-                    break;
                 case ORIGINATOR:
                     Originator originator = new Originator();
                     callerProfile.setOriginator(originator);
-                    assignOriginatorElement(originator, element);
+                    assignOriginatorElement(originator, element, ctx);
                     break;
                 case ORIGINATION:
                     Origination origination = new Origination();
                     callerProfile.setOrigination(origination);
-                    assignOriginationElement(origination, element);
+                    assignOriginationElement(origination, element, ctx);
                     break;
                 case ORIGINATEE:
                     Originatee originatee = new Originatee();
                     callerProfile.setOriginatee(originatee);
-                    assignOriginateeElement(originatee, element);
+                    assignOriginateeElement(originatee, element, ctx);
                     break;
                 default:
-                    log.warn("assignCallerProfileElement found other element name : [{}], xml : [{}]", name, local.get());
+                    if (!assignCallerProfile(callerProfile, name, element.getTextTrim())) {
+                        ctx.unknown(UnknownElements.CALLER_PROFILE, name, element.getTextTrim());
+                    }
                     break;
             }
         });
 
     }
 
-    private static final String ORIGINATOR_CALLER_PROFILE = "originator_caller_profile";
-
-    private static void assignOriginatorElement(Originator originator, Element rootElement) {
+    private static void assignOriginatorElement(Originator originator, Element rootElement, Context ctx) {
         elements(rootElement, (name, element) -> {
             if (ORIGINATOR_CALLER_PROFILE.equals(name)) {
                 OriginatorCallerProfile originatorCallerProfile = new OriginatorCallerProfile();
                 originator.setOriginatorCallerProfile(originatorCallerProfile);
-                assignOriginatorCallerProfileElement(originatorCallerProfile, element);
+                assignOriginatorCallerProfileElement(originatorCallerProfile, element, ctx);
             } else {
-                log.warn("assignOriginatorElement found other element name : [{}], xml : [{}]", name, local.get());
+                ctx.unknown(UnknownElements.ORIGINATOR, name, element.getTextTrim());
             }
         });
     }
 
-    private static void assignOriginatorCallerProfileElement(OriginatorCallerProfile originatorCallerProfile, Element rootElement) {
+    private static void assignOriginatorCallerProfileElement(OriginatorCallerProfile originatorCallerProfile, Element rootElement, Context ctx) {
         elements(rootElement, (name, element) -> {
-            String value = element.getTextTrim();
-            switch (name) {
-                case USERNAME:
-                    originatorCallerProfile.setUsername(value);
-                    break;
-                case DIALPLAN:
-                    originatorCallerProfile.setDialplan(value);
-                    break;
-                case CALLER_ID_NAME:
-                    originatorCallerProfile.setCallerIdName(value);
-                    break;
-                case CALLER_ID_NUMBER:
-                    originatorCallerProfile.setCallerIdNumber(value);
-                    break;
-                case CALLEE_ID_NAME:
-                    originatorCallerProfile.setCalleeIdName(value);
-                    break;
-                case CALLEE_ID_NUMBER:
-                    originatorCallerProfile.setCalleeIdNumber(value);
-                    break;
-                case ANI:
-                    originatorCallerProfile.setAni(value);
-                    break;
-                case ANIII:
-                    originatorCallerProfile.setAniii(value);
-                    break;
-                case NETWORK_ADDR:
-                    originatorCallerProfile.setNetworkAddr(value);
-                    break;
-                case RDNIS:
-                    originatorCallerProfile.setRdnis(value);
-                    break;
-                case DESTINATION_NUMBER:
-                    originatorCallerProfile.setDestinationNumber(value);
-                    break;
-                case UUID:
-                    originatorCallerProfile.setUuid(value);
-                    break;
-                case SOURCE:
-                    originatorCallerProfile.setSource(value);
-                    break;
-                case CONTEXT:
-                    originatorCallerProfile.setContext(value);
-                    break;
-                case CHAN_NAME:
-                    originatorCallerProfile.setChanName(value);
-                    break;
-                default:
-                    log.warn("assignOriginationCallerProfileElement found other element name : [{}], xml : [{}]", name, local.get());
-                    break;
-
+            if (!assignOriginatorCallerProfile(originatorCallerProfile, name, element.getTextTrim())) {
+                ctx.unknown(UnknownElements.ORIGINATOR_CALLER_PROFILE, name, element.getTextTrim());
             }
         });
     }
 
-    private static final String ORIGINATION_CALLER_PROFILE = "origination_caller_profile";
-
-    private static void assignOriginationElement(Origination origination, Element rootElement) {
+    private static void assignOriginationElement(Origination origination, Element rootElement, Context ctx) {
         elements(rootElement, (name, element) -> {
             if (ORIGINATION_CALLER_PROFILE.equals(name)) {
                 OriginationCallerProfile originationCallerProfile = new OriginationCallerProfile();
                 origination.setOriginationCallerProfile(originationCallerProfile);
-                assignOriginationCallerProfileElement(originationCallerProfile, element);
+                assignOriginationCallerProfileElement(originationCallerProfile, element, ctx);
             } else {
-                log.warn("assignOriginationElement found other element name : [{}], xml : [{}]", name, local.get());
+                ctx.unknown(UnknownElements.ORIGINATION, name, element.getTextTrim());
             }
         });
 
     }
 
-    private static void assignOriginationCallerProfileElement(OriginationCallerProfile originationCallerProfile, Element rootElement) {
+    private static void assignOriginationCallerProfileElement(OriginationCallerProfile originationCallerProfile, Element rootElement, Context ctx) {
         elements(rootElement, (name, element) -> {
-            String value = element.getTextTrim();
-            switch (name) {
-                case USERNAME:
-                    originationCallerProfile.setUsername(value);
-                    break;
-                case DIALPLAN:
-                    originationCallerProfile.setDialplan(value);
-                    break;
-                case CALLER_ID_NAME:
-                    originationCallerProfile.setCallerIdName(value);
-                    break;
-                case CALLER_ID_NUMBER:
-                    originationCallerProfile.setCallerIdNumber(value);
-                    break;
-                case CALLEE_ID_NAME:
-                    originationCallerProfile.setCalleeIdName(value);
-                    break;
-                case CALLEE_ID_NUMBER:
-                    originationCallerProfile.setCalleeIdNumber(value);
-                    break;
-                case ANI:
-                    originationCallerProfile.setAni(value);
-                    break;
-                case ANIII:
-                    originationCallerProfile.setAniii(value);
-                    break;
-                case NETWORK_ADDR:
-                    originationCallerProfile.setNetworkAddr(value);
-                    break;
-                case RDNIS:
-                    originationCallerProfile.setRdnis(value);
-                    break;
-                case DESTINATION_NUMBER:
-                    originationCallerProfile.setDestinationNumber(value);
-                    break;
-                case UUID:
-                    originationCallerProfile.setUuid(value);
-                    break;
-                case SOURCE:
-                    originationCallerProfile.setSource(value);
-                    break;
-                case CONTEXT:
-                    originationCallerProfile.setContext(value);
-                    break;
-                case CHAN_NAME:
-                    originationCallerProfile.setChanName(value);
-                    break;
-                default:
-                    log.warn("assignOriginationCallerProfileElement found other element name : [{}], xml : [{}]", name, local.get());
-                    break;
-
+            if (!assignOriginationCallerProfile(originationCallerProfile, name, element.getTextTrim())) {
+                ctx.unknown(UnknownElements.ORIGINATION_CALLER_PROFILE, name, element.getTextTrim());
             }
         });
     }
 
-    private static final String ORIGINATEE_CALLER_PROFILE = "originatee_caller_profile";
-
-    private static void assignOriginateeElement(Originatee originatee, Element rootElement) {
+    private static void assignOriginateeElement(Originatee originatee, Element rootElement, Context ctx) {
         elements(rootElement, (name, element) -> {
             if (ORIGINATEE_CALLER_PROFILE.equals(name)) {
                 OriginateeCallerProfile originateeCallerProfile = new OriginateeCallerProfile();
                 originatee.setOriginateeCallerProfile(originateeCallerProfile);
-                assignOriginateeCallerProfileElement(originateeCallerProfile, element);
+                assignOriginateeCallerProfileElement(originateeCallerProfile, element, ctx);
             } else {
-                log.warn("assignOriginationElement found other element name : [{}], xml : [{}]", name, local.get());
+                ctx.unknown(UnknownElements.ORIGINATEE, name, element.getTextTrim());
             }
         });
 
     }
 
-    private static void assignOriginateeCallerProfileElement(OriginateeCallerProfile originateeCallerProfile, Element rootElement) {
+    private static void assignOriginateeCallerProfileElement(OriginateeCallerProfile originateeCallerProfile, Element rootElement, Context ctx) {
         elements(rootElement, (name, element) -> {
-            String value = element.getTextTrim();
-            switch (name) {
-                case USERNAME:
-                    originateeCallerProfile.setUsername(value);
-                    break;
-                case DIALPLAN:
-                    originateeCallerProfile.setDialplan(value);
-                    break;
-                case CALLER_ID_NAME:
-                    originateeCallerProfile.setCallerIdName(value);
-                    break;
-                case CALLER_ID_NUMBER:
-                    originateeCallerProfile.setCallerIdNumber(value);
-                    break;
-                case CALLEE_ID_NAME:
-                    originateeCallerProfile.setCalleeIdName(value);
-                    break;
-                case CALLEE_ID_NUMBER:
-                    originateeCallerProfile.setCalleeIdNumber(value);
-                    break;
-                case ANI:
-                    originateeCallerProfile.setAni(value);
-                    break;
-                case ANIII:
-                    originateeCallerProfile.setAniii(value);
-                    break;
-                case NETWORK_ADDR:
-                    originateeCallerProfile.setNetworkAddr(value);
-                    break;
-                case RDNIS:
-                    originateeCallerProfile.setRdnis(value);
-                    break;
-                case DESTINATION_NUMBER:
-                    originateeCallerProfile.setDestinationNumber(value);
-                    break;
-                case UUID:
-                    originateeCallerProfile.setUuid(value);
-                    break;
-                case SOURCE:
-                    originateeCallerProfile.setSource(value);
-                    break;
-                case CONTEXT:
-                    originateeCallerProfile.setContext(value);
-                    break;
-                case CHAN_NAME:
-                    originateeCallerProfile.setChanName(value);
-                    break;
-                default:
-                    log.warn("assignOriginateeCallerProfileElement found other element name : [{}], xml : [{}]", name, local.get());
-                    break;
-
+            if (!assignOriginateeCallerProfile(originateeCallerProfile, name, element.getTextTrim())) {
+                ctx.unknown(UnknownElements.ORIGINATEE_CALLER_PROFILE, name, element.getTextTrim());
             }
         });
     }
 
-    private static final String CREATED_TIME = "created_time";
-    private static final String PROFILE_CREATED_TIME = "profile_created_time";
-    private static final String PROGRESS_TIME = "progress_time";
-    private static final String PROGRESS_MEDIA_TIME = "progress_media_time";
-    private static final String ANSWERED_TIME = "answered_time";
-    private static final String BRIDGED_TIME = "bridged_time";
-    private static final String LAST_HOLD_TIME = "last_hold_time";
-    private static final String HOLD_ACCUM_TIME = "hold_accum_time";
-    private static final String HANGUP_TIME = "hangup_time";
-    private static final String RESURRECT_TIME = "resurrect_time";
-    private static final String TRANSFER_TIME = "transfer_time";
-
-    private static void assignTimesElement(Times times, Element rootElement) {
+    private static void assignTimesElement(Times times, Element rootElement, Context ctx) {
         elements(rootElement, (name, element) -> {
-            String value0 = element.getTextTrim();
-            Long value = NumberUtil.toLong(value0);
-            switch (name) {
-                case CREATED_TIME:
-                    times.setCreatedTime(value);
-                    break;
-                case PROFILE_CREATED_TIME:
-                    times.setProfileCreatedTime(value);
-                    break;
-                case PROGRESS_TIME:
-                    times.setProgressTime(value);
-                    break;
-                case PROGRESS_MEDIA_TIME:
-                    times.setProgressMediaTime(value);
-                    break;
-                case ANSWERED_TIME:
-                    times.setAnsweredTime(value);
-                    break;
-                case BRIDGED_TIME:
-                    times.setBridgedTime(value);
-                    break;
-                case LAST_HOLD_TIME:
-                    times.setLastHoldTime(value);
-                    break;
-                case HOLD_ACCUM_TIME:
-                    times.setHoldAccumTime(value);
-                    break;
-                case HANGUP_TIME:
-                    times.setHangupTime(value);
-                    break;
-                case RESURRECT_TIME:
-                    times.setResurrectTime(value);
-                    break;
-                case TRANSFER_TIME:
-                    times.setTransferTime(value);
-                    break;
-                default:
-                    log.warn("assignTimesElement found other element name : [{}], xml : [{}]", name, local.get());
-                    break;
+            if (!assignTimes(times, name, element.getTextTrim())) {
+                ctx.unknown(UnknownElements.TIMES, name, element.getTextTrim());
             }
         });
 
     }
 
+    /**
+     * 单次解析的上下文.
+     */
+    private static final class Context {
+        private final Cdr cdr;
+        private final ParseOptions options;
+        private final CdrProjection projection;
+
+        private Context(Cdr cdr, ParseOptions options) {
+            this.cdr = cdr;
+            this.options = options;
+            this.projection = options.getProjection() == null ? CdrProjection.all() : options.getProjection();
+        }
+
+        private void unknown(String parent, String name, String value) {
+            UnknownElements.record(cdr, options, parent, name, value);
+        }
+    }
+
     private static void attributes(Element element, BiConsumer<String, String> consumer) {
         List<Attribute> attributes = element.attributes();
         for (Attribute attribute : attributes) {
-            attribute.getName();
             consumer.accept(attribute.getName(), attribute.getValue());
         }
     }
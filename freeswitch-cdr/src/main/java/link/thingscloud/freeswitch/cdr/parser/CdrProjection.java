@@ -0,0 +1,177 @@
+package link.thingscloud.freeswitch.cdr.parser;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.*;
+
+/**
+ * <p>CdrProjection class.</p>
+ * <p>
+ * 解析投影: 只解析指定的段落与变量, 其余子树在解析时直接跳过, 对应字段为 null(变量不出现在 variableTable 中).
+ * cdr 根节点属性及 callflow 节点属性始终解析. 不可变, 可在线程间共享.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@ToString
+@EqualsAndHashCode
+public final class CdrProjection {
+
+    private static final CdrProjection ALL = new CdrProjection(EnumSet.allOf(CdrSection.class), null);
+
+    private final Set<CdrSection> sections;
+    /**
+     * null 表示全部变量
+     */
+    private final Set<String> variables;
+
+    private CdrProjection(EnumSet<CdrSection> sections, Set<String> variables) {
+        this.sections = Collections.unmodifiableSet(sections);
+        if (!sections.contains(CdrSection.VARIABLES)) {
+            variables = Collections.emptySet();
+        }
+        this.variables = variables == null ? null : Collections.unmodifiableSet(variables);
+    }
+
+    /**
+     * 解析全部内容.
+     *
+     * @return a {@link link.thingscloud.freeswitch.cdr.parser.CdrProjection} object.
+     */
+    public static CdrProjection all() {
+        return ALL;
+    }
+
+    /**
+     * <p>of.</p>
+     *
+     * @param sections  段落, null 表示全部段落
+     * @param variables 变量名, null 表示全部变量; 非空时自动包含 VARIABLES 段落
+     * @return a {@link link.thingscloud.freeswitch.cdr.parser.CdrProjection} object.
+     */
+    public static CdrProjection of(Collection<CdrSection> sections, Collection<String> variables) {
+        if (sections == null && variables == null) {
+            return ALL;
+        }
+        EnumSet<CdrSection> set = sections == null ? EnumSet.allOf(CdrSection.class) : EnumSet.noneOf(CdrSection.class);
+        if (sections != null) {
+            set.addAll(sections);
+        }
+        if (variables != null && !variables.isEmpty()) {
+            set.add(CdrSection.VARIABLES);
+        }
+        return new CdrProjection(set, variables == null ? null : new HashSet<>(variables));
+    }
+
+    /**
+     * 由逗号分隔的配置构造, 如 sections=CALL_STATS,CALLFLOW_TIMES, variables=hangup_cause,billsec.
+     *
+     * @param sections  段落, 空白表示全部段落
+     * @param variables 变量名, 空白表示全部变量
+     * @return a {@link link.thingscloud.freeswitch.cdr.parser.CdrProjection} object.
+     */
+    public static CdrProjection parse(String sections, String variables) {
+        List<CdrSection> sectionList = null;
+        if (StringUtils.isNotBlank(sections)) {
+            sectionList = new ArrayList<>();
+            for (String section : StringUtils.split(sections, ',')) {
+                if (StringUtils.isNotBlank(section)) {
+                    sectionList.add(CdrSection.valueOf(section.trim().toUpperCase(Locale.ROOT).replace('-', '_')));
+                }
+            }
+        }
+        List<String> variableList = null;
+        if (StringUtils.isNotBlank(variables)) {
+            variableList = new ArrayList<>();
+            for (String variable : StringUtils.split(variables, ',')) {
+                if (StringUtils.isNotBlank(variable)) {
+                    variableList.add(variable.trim());
+                }
+            }
+        }
+        return of(sectionList, variableList);
+    }
+
+    /**
+     * 合并两个投影, 结果包含两者所需的全部内容.
+     *
+     * @param other a {@link link.thingscloud.freeswitch.cdr.parser.CdrProjection} object.
+     * @return a {@link link.thingscloud.freeswitch.cdr.parser.CdrProjection} object.
+     */
+    public CdrProjection union(CdrProjection other) {
+        if (other == null || this == other || this == ALL) {
+            return this;
+        }
+        if (other == ALL) {
+            return ALL;
+        }
+        EnumSet<CdrSection> set = EnumSet.noneOf(CdrSection.class);
+        set.addAll(sections);
+        set.addAll(other.sections);
+        Set<String> names = null;
+        if (variables != null && other.variables != null) {
+            names = new HashSet<>(variables);
+            names.addAll(other.variables);
+        }
+        CdrProjection projection = new CdrProjection(set, names);
+        return ALL.equals(projection) ? ALL : projection;
+    }
+
+    /**
+     * <p>isAll.</p>
+     *
+     * @return 是否解析全部内容
+     */
+    public boolean isAll() {
+        return this == ALL || ALL.equals(this);
+    }
+
+    /**
+     * <p>includes.</p>
+     *
+     * @param section a {@link link.thingscloud.freeswitch.cdr.parser.CdrSection} object.
+     * @return a boolean.
+     */
+    public boolean includes(CdrSection section) {
+        return sections.contains(section);
+    }
+
+    /**
+     * <p>includesCallflow.</p>
+     *
+     * @return 是否需要解析 callflow 节点(任一 callflow 子段落)
+     */
+    public boolean includesCallflow() {
+        return includes(CdrSection.CALLFLOW_EXTENSION) || includes(CdrSection.CALLFLOW_CALLER_PROFILE) || includes(CdrSection.CALLFLOW_TIMES);
+    }
+
+    /**
+     * <p>includesVariable.</p>
+     *
+     * @param name variable name
+     * @return a boolean.
+     */
+    public boolean includesVariable(String name) {
+        return variables == null || variables.contains(name);
+    }
+
+    /**
+     * <p>Getter for the field <code>sections</code>.</p>
+     *
+     * @return a {@link java.util.Set} object.
+     */
+    public Set<CdrSection> getSections() {
+        return sections;
+    }
+
+    /**
+     * <p>Getter for the field <code>variables</code>.</p>
+     *
+     * @return a {@link java.util.Set} object, null 表示全部变量.
+     */
+    public Set<String> getVariables() {
+        return variables;
+    }
+}
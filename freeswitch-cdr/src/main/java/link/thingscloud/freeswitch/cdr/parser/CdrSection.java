@@ -0,0 +1,53 @@
+package link.thingscloud.freeswitch.cdr.parser;
+
+/**
+ * <p>CdrSection enum.</p>
+ * <p>
+ * 可按需解析的话单段落, 见 {@link CdrProjection}.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public enum CdrSection {
+    /**
+     * channel_data
+     */
+    CHANNEL_DATA,
+    /**
+     * callStats
+     */
+    CALL_STATS,
+    /**
+     * variables
+     */
+    VARIABLES,
+    /**
+     * app_log
+     */
+    APP_LOG,
+    /**
+     * hold-record
+     */
+    HOLD_RECORD,
+    /**
+     * callflow - extension
+     */
+    CALLFLOW_EXTENSION,
+    /**
+     * callflow - caller_profile
+     */
+    CALLFLOW_CALLER_PROFILE,
+    /**
+     * callflow - times
+     */
+    CALLFLOW_TIMES;
+
+    /**
+     * <p>isCallflow.</p>
+     *
+     * @return 是否属于 callflow 子段落
+     */
+    public boolean isCallflow() {
+        return this == CALLFLOW_EXTENSION || this == CALLFLOW_CALLER_PROFILE || this == CALLFLOW_TIMES;
+    }
+}
@@ -0,0 +1,440 @@
+package link.thingscloud.freeswitch.cdr.parser;
+
+import com.alibaba.fastjson.annotation.JSONField;
+import link.thingscloud.freeswitch.cdr.domain.*;
+import link.thingscloud.freeswitch.cdr.exception.ParserException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static link.thingscloud.freeswitch.cdr.parser.CdrAssigner.*;
+
+/**
+ * <p>LazyCdr class.</p>
+ * <p>
+ * 延迟解析的 Cdr: 创建时只扫描一遍解码后的 xml, 记录 cdr 根节点下各段落的偏移并解析根节点属性(coreUuid / switchname),
+ * 各段落(channel_data / call-stats / variables / app_log / hold-record / callflow)在对应 getter 首次调用时按 StAX 解析并缓存.
+ * 只按 switchname 等过滤的 handler 不再为 callflow、caller_profile 等付出解析成本.
+ * <p>
+ * getter 可在多个 handler 线程中并发调用, 每个段落只解析一次; 所有段落解析完成后释放 xml 缓冲区.
+ * 段落延迟解析失败时 getter 抛出 IllegalStateException. equals / hashCode / toString / getExtensions 及 JSON 序列化会触发全部段落解析.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class LazyCdr extends Cdr {
+
+    private static final int CHANNEL_DATA_INDEX = 0;
+    private static final int CALL_STATS_INDEX = 1;
+    private static final int VARIABLES_INDEX = 2;
+    private static final int APP_LOG_INDEX = 3;
+    private static final int HOLD_RECORD_INDEX = 4;
+    private static final int CALLFLOW_INDEX = 5;
+    /**
+     * 未识别的根节点子元素, 建索引时即解析
+     */
+    private static final int UNKNOWN_INDEX = 6;
+
+    private static final byte[][] NAMES = {
+            bytes(CHANNEL_DATA), bytes(CALL_STATS), bytes(VARIABLES), bytes(APP_LOG), bytes(HOLD_RECORD), bytes(CALLFLOW)
+    };
+
+    private static final int ALL_LOADED = (1 << NAMES.length) - 1;
+
+    private final ParseOptions options;
+
+    /**
+     * 解码后的 xml, 全部段落解析完成后置为 null
+     */
+    private byte[] xml;
+
+    /**
+     * 各段落的 [offset, length] 对, callflow 可出现多次, 末尾为未识别元素
+     */
+    private final int[][] offsets = new int[NAMES.length + 1][];
+    private final int[] counts = new int[NAMES.length + 1];
+
+    /**
+     * 已解析段落位图
+     */
+    private volatile int loaded;
+
+    private LazyCdr(byte[] xml, ParseOptions options) {
+        this.xml = xml;
+        this.options = options;
+    }
+
+    /**
+     * 索引段落偏移并解析根节点属性.
+     *
+     * @param xml     解码后的 xml(UTF-8), 之后不可再修改
+     * @param options a {@link link.thingscloud.freeswitch.cdr.parser.ParseOptions} object.
+     * @return a {@link link.thingscloud.freeswitch.cdr.parser.LazyCdr} object.
+     * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
+     */
+    public static LazyCdr parse(byte[] xml, ParseOptions options) throws ParserException {
+        if (xml == null || xml.length == 0) {
+            throw new ParserException("cdr parse xml failed, xml is empty.");
+        }
+        LazyCdr cdr = new LazyCdr(xml, options);
+        StaxCdrParser.parseRoot(cdr, xml, cdr.index(), options);
+        // 与 DOM4J / STAX 一致: 计数、输出样例并在 captureUnknown 时写入 extensions
+        for (int i = 0; i < cdr.counts[UNKNOWN_INDEX]; i += 2) {
+            StaxCdrParser.parseSection(cdr, xml, cdr.offsets[UNKNOWN_INDEX][i], cdr.offsets[UNKNOWN_INDEX][i + 1], options);
+        }
+        return cdr;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ChannelData getChannelData() {
+        load(CHANNEL_DATA_INDEX);
+        return super.getChannelData();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CallStats getCallStats() {
+        load(CALL_STATS_INDEX);
+        return super.getCallStats();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Variables getVariables() {
+        load(VARIABLES_INDEX);
+        return super.getVariables();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AppLog getAppLog() {
+        load(APP_LOG_INDEX);
+        return super.getAppLog();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HoldRecord getHoldRecord() {
+        load(HOLD_RECORD_INDEX);
+        return super.getHoldRecord();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Callflow> getCallflows() {
+        load(CALLFLOW_INDEX);
+        return super.getCallflows();
+    }
+
+    /**
+     * 未识别元素随段落解析收集, 调用时解析全部段落.
+     *
+     * @return a {@link java.util.Map} object.
+     */
+    @Override
+    public Map<String, String> getExtensions() {
+        for (int i = 0; i < NAMES.length; i++) {
+            load(i);
+        }
+        return super.getExtensions();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Cdr setChannelData(ChannelData channelData) {
+        super.setChannelData(channelData);
+        markLoaded(CHANNEL_DATA_INDEX);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Cdr setCallStats(CallStats callStats) {
+        super.setCallStats(callStats);
+        markLoaded(CALL_STATS_INDEX);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Cdr setVariables(Variables variables) {
+        super.setVariables(variables);
+        markLoaded(VARIABLES_INDEX);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Cdr setAppLog(AppLog appLog) {
+        super.setAppLog(appLog);
+        markLoaded(APP_LOG_INDEX);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Cdr setHoldRecord(HoldRecord holdRecord) {
+        super.setHoldRecord(holdRecord);
+        markLoaded(HOLD_RECORD_INDEX);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Cdr setCallflows(List<Callflow> callflows) {
+        super.setCallflows(callflows);
+        markLoaded(CALLFLOW_INDEX);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void addCallflow(Callflow callflow) {
+        load(CALLFLOW_INDEX);
+        super.addCallflow(callflow);
+    }
+
+    /**
+     * <p>isLoaded.</p>
+     *
+     * @return 是否所有段落均已解析
+     */
+    @JSONField(serialize = false)
+    public boolean isLoaded() {
+        return loaded == ALL_LOADED;
+    }
+
+    private void load(int index) {
+        if ((loaded & (1 << index)) != 0) {
+            return;
+        }
+        synchronized (this) {
+            if ((loaded & (1 << index)) != 0) {
+                return;
+            }
+            // 解析到临时对象, 避免经由本类 setter 重入
+            Cdr section = new Cdr();
+            try {
+                for (int i = 0; i < counts[index]; i += 2) {
+                    StaxCdrParser.parseSection(section, xml, offsets[index][i], offsets[index][i + 1], options);
+                }
+            } catch (ParserException e) {
+                throw new IllegalStateException("cdr parse section failed : " + new String(NAMES[index], StandardCharsets.US_ASCII), e);
+            }
+            if (section.getExtensions() != null) {
+                section.getExtensions().forEach(this::putExtension);
+            }
+            switch (index) {
+                case CHANNEL_DATA_INDEX:
+                    super.setChannelData(section.getChannelData());
+                    break;
+                case CALL_STATS_INDEX:
+                    super.setCallStats(section.getCallStats());
+                    break;
+                case VARIABLES_INDEX:
+                    super.setVariables(section.getVariables());
+                    break;
+                case APP_LOG_INDEX:
+                    super.setAppLog(section.getAppLog());
+                    break;
+                case HOLD_RECORD_INDEX:
+                    super.setHoldRecord(section.getHoldRecord());
+                    break;
+                default:
+                    super.setCallflows(section.getCallflows());
+                    break;
+            }
+            markLoaded(index);
+        }
+    }
+
+    private void markLoaded(int index) {
+        int value = loaded | (1 << index);
+        if (value == ALL_LOADED) {
+            xml = null;
+        }
+        loaded = value;
+    }
+
+    /**
+     * 扫描 cdr 根节点的直接子元素, 文本中的 '&lt;' 已转义, 只需处理声明、注释、CDATA 及属性值中的引号.
+     *
+     * @return 根节点开始标签结束位置
+     */
+    private int index() throws ParserException {
+        byte[] buf = xml;
+        int depth = 0;
+        int rootEnd = -1;
+        int section = -1;
+        int sectionStart = -1;
+        int i = 0;
+        while ((i = indexOf(buf, '<', i)) >= 0 && i + 1 < buf.length) {
+            byte c = buf[i + 1];
+            if (c == '?') {
+                i = skipPast(buf, i + 2, "?>");
+                continue;
+            }
+            if (c == '!') {
+                if (startsWith(buf, i, "<!--")) {
+                    i = skipPast(buf, i + 4, "-->");
+                } else if (startsWith(buf, i, "<![CDATA[")) {
+                    i = skipPast(buf, i + 9, "]]>");
+                } else {
+                    i = tagEnd(buf, i) + 1;
+                }
+                continue;
+            }
+            int gt = tagEnd(buf, i);
+            if (c == '/') {
+                depth--;
+                if (depth == 1 && section >= 0) {
+                    add(section, sectionStart, gt + 1 - sectionStart);
+                    section = -1;
+                } else if (depth == 0) {
+                    break;
+                }
+            } else {
+                boolean empty = buf[gt - 1] == '/';
+                if (depth == 0) {
+                    rootEnd = gt + 1;
+                    if (empty) {
+                        break;
+                    }
+                } else if (depth == 1) {
+                    section = section(buf, i + 1);
+                    sectionStart = i;
+                    if (empty && section >= 0) {
+                        add(section, sectionStart, gt + 1 - sectionStart);
+                        section = -1;
+                    }
+                }
+                if (!empty) {
+                    depth++;
+                }
+            }
+            i = gt + 1;
+        }
+        if (rootEnd < 0 || depth != 0) {
+            throw new ParserException("cdr parse xml failed, unbalanced xml.");
+        }
+        return rootEnd;
+    }
+
+    private void add(int section, int offset, int length) {
+        int[] pairs = offsets[section];
+        if (pairs == null) {
+            pairs = offsets[section] = new int[section == CALLFLOW_INDEX ? 8 : 2];
+        } else if (counts[section] == pairs.length) {
+            pairs = offsets[section] = Arrays.copyOf(pairs, pairs.length << 1);
+        }
+        pairs[counts[section]++] = offset;
+        pairs[counts[section]++] = length;
+    }
+
+    private static int section(byte[] buf, int from) {
+        int end = from;
+        while (end < buf.length && !isNameEnd(buf[end])) {
+            end++;
+        }
+        for (int i = 0; i < NAMES.length; i++) {
+            byte[] name = NAMES[i];
+            if (name.length == end - from && regionMatches(buf, from, name)) {
+                return i;
+            }
+        }
+        return UNKNOWN_INDEX;
+    }
+
+    private static boolean isNameEnd(byte b) {
+        return b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private static int tagEnd(byte[] buf, int from) throws ParserException {
+        byte quote = 0;
+        for (int i = from + 1; i < buf.length; i++) {
+            byte b = buf[i];
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return i;
+            }
+        }
+        throw new ParserException("cdr parse xml failed, unterminated tag at : " + from);
+    }
+
+    private static int skipPast(byte[] buf, int from, String end) throws ParserException {
+        for (int i = from, last = buf.length - end.length(); i <= last; i++) {
+            if (startsWith(buf, i, end)) {
+                return i + end.length();
+            }
+        }
+        throw new ParserException("cdr parse xml failed, missing : " + end);
+    }
+
+    private static int indexOf(byte[] buf, char c, int from) {
+        for (int i = from; i < buf.length; i++) {
+            if (buf[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] buf, int offset, String prefix) {
+        if (offset + prefix.length() > buf.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buf[offset + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionMatches(byte[] buf, int offset, byte[] name) {
+        for (int i = 0; i < name.length; i++) {
+            if (buf[offset + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] bytes(String name) {
+        return name.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,29 @@
+package link.thingscloud.freeswitch.cdr.parser;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * <p>ParseOptions class.</p>
+ * <p>
+ * 解析选项, dom4j 与 StAX 两种引擎共用, 默认值与未指定选项时的行为一致.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Data
+@Accessors(chain = true)
+public class ParseOptions {
+    /**
+     * 解析 call-stats 时同时填充 InboundStats / OutboundStats / ErrorPeriodStats 数值模型
+     */
+    private boolean typedStats;
+    /**
+     * 解析投影, 跳过未订阅的段落与变量, null 等同于 {@link CdrProjection#all()}
+     */
+    private CdrProjection projection = CdrProjection.all();
+    /**
+     * 将未识别的元素/属性写入 Cdr#getExtensions()
+     */
+    private boolean captureUnknown;
+}
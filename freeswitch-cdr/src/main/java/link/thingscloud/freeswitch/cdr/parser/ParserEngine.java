@@ -0,0 +1,26 @@
+package link.thingscloud.freeswitch.cdr.parser;
+
+/**
+ * <p>ParserEngine enum.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public enum ParserEngine {
+
+    /**
+     * 先构建 dom4j Document 再遍历赋值
+     */
+    DOM4J,
+
+    /**
+     * 基于 StAX(XMLStreamReader) 流式解析, 直接从事件流赋值, 不构建 Document
+     */
+    STAX,
+
+    /**
+     * 只索引段落偏移, 段落在 getter 首次调用时再按 StAX 解析, 返回 {@link LazyCdr}
+     */
+    LAZY
+
+}
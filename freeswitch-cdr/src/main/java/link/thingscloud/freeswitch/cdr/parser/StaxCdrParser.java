@@ -0,0 +1,691 @@
+package link.thingscloud.freeswitch.cdr.parser;
+
+import com.alibaba.fastjson.JSON;
+import link.thingscloud.freeswitch.cdr.domain.*;
+import link.thingscloud.freeswitch.cdr.exception.ParserException;
+import link.thingscloud.freeswitch.cdr.util.CdrDecodeUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static link.thingscloud.freeswitch.cdr.parser.CdrAssigner.*;
+
+/**
+ * <p>StaxCdrParser class.</p>
+ * <p>
+ * 基于 XMLStreamReader 的流式解析, 直接由事件流填充 Cdr, 不构建 dom4j Document.
+ * 文本取值与 dom4j Element#getTextTrim() 保持一致: 仅取直接子文本节点, 去除首尾空白并将连续空白合并为一个空格.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Slf4j
+public class StaxCdrParser {
+
+    private static final XMLInputFactory FACTORY = newFactory();
+
+    private static boolean isTraceEnabled = log.isTraceEnabled();
+
+    private static final ParseOptions DEFAULT_OPTIONS = new ParseOptions();
+
+    private StaxCdrParser() {
+    }
+
+    /**
+     * 直接在原始请求字节上定位 cdr= 字段, 边做 URL 解码边交给 XMLStreamReader, 不产生解码后的中间 String.
+     *
+     * @param reqBytes uuid=a_12d714e6-3c49-463a-8965-755b8f598032&amp;cdr=%3C%3Fxml... 原始字节
+     * @return a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object.
+     * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
+     */
+    public static Cdr decodeThenParse(byte[] reqBytes) throws ParserException {
+        return decodeThenParse(reqBytes, DEFAULT_OPTIONS);
+    }
+
+    /**
+     * <p>decodeThenParse.</p>
+     *
+     * @param reqBytes uuid=a_xxx&amp;cdr=%3C%3Fxml... 原始字节
+     * @param options  a {@link link.thingscloud.freeswitch.cdr.parser.ParseOptions} object.
+     * @return a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object.
+     * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
+     */
+    public static Cdr decodeThenParse(byte[] reqBytes, ParseOptions options) throws ParserException {
+        InputStream inputStream = reqBytes == null ? null : CdrDecodeUtil.decodeField(reqBytes, "cdr");
+        if (inputStream == null) {
+            throw new ParserException("cdr parse xml failed, cdr field not found.");
+        }
+        return parse(inputStream, options);
+    }
+
+    /**
+     * <p>parse.</p>
+     *
+     * @param decodeXml a {@link java.lang.String} object.
+     * @return a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object.
+     * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
+     */
+    public static Cdr parse(String decodeXml) throws ParserException {
+        return parse(decodeXml, DEFAULT_OPTIONS);
+    }
+
+    /**
+     * <p>parse.</p>
+     *
+     * @param decodeXml a {@link java.lang.String} object.
+     * @param options   a {@link link.thingscloud.freeswitch.cdr.parser.ParseOptions} object.
+     * @return a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object.
+     * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
+     */
+    public static Cdr parse(String decodeXml, ParseOptions options) throws ParserException {
+        if (StringUtils.isBlank(decodeXml)) {
+            throw new ParserException("cdr parse xml failed, strXml is blank.");
+        }
+        return parse(new StringReader(decodeXml), options);
+    }
+
+    /**
+     * <p>parse.</p>
+     *
+     * @param reader a {@link java.io.Reader} object.
+     * @return a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object.
+     * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
+     */
+    public static Cdr parse(Reader reader) throws ParserException {
+        return parse(reader, DEFAULT_OPTIONS);
+    }
+
+    /**
+     * <p>parse.</p>
+     *
+     * @param reader  a {@link java.io.Reader} object.
+     * @param options a {@link link.thingscloud.freeswitch.cdr.parser.ParseOptions} object.
+     * @return a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object.
+     * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
+     */
+    public static Cdr parse(Reader reader, ParseOptions options) throws ParserException {
+        try {
+            return parse(FACTORY.createXMLStreamReader(reader), options);
+        } catch (XMLStreamException e) {
+            throw new ParserException("cdr parse xml failed.", e);
+        }
+    }
+
+    /**
+     * <p>parse.</p>
+     *
+     * @param inputStream a {@link java.io.InputStream} object, encoded with UTF-8 unless the xml declaration says otherwise.
+     * @return a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object.
+     * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
+     */
+    public static Cdr parse(InputStream inputStream) throws ParserException {
+        return parse(inputStream, DEFAULT_OPTIONS);
+    }
+
+    /**
+     * <p>parse.</p>
+     *
+     * @param inputStream a {@link java.io.InputStream} object, encoded with UTF-8 unless the xml declaration says otherwise.
+     * @param options     a {@link link.thingscloud.freeswitch.cdr.parser.ParseOptions} object.
+     * @return a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object.
+     * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
+     */
+    public static Cdr parse(InputStream inputStream, ParseOptions options) throws ParserException {
+        try {
+            return parse(FACTORY.createXMLStreamReader(inputStream), options);
+        } catch (XMLStreamException e) {
+            throw new ParserException("cdr parse xml failed.", e);
+        }
+    }
+
+    private static Cdr parse(XMLStreamReader reader, ParseOptions options) throws ParserException {
+        try {
+            Cdr cdr = new Cdr();
+            Cursor cursor = new Cursor(reader, options == null ? DEFAULT_OPTIONS : options, cdr);
+            reader.nextTag();
+
+            assignCdrElement(cdr, cursor);
+
+            if (isTraceEnabled) {
+                log.trace("cdr parse : [{}]", JSON.toJSONString(cdr, true));
+            }
+            return cdr;
+        } catch (Exception e) {
+            throw new ParserException("cdr parse xml failed.", e);
+        } finally {
+            close(reader);
+        }
+    }
+
+    /**
+     * 只解析 cdr 根节点属性, length 截止到根节点开始标签结束即可, 供 {@link LazyCdr} 使用.
+     */
+    static void parseRoot(Cdr cdr, byte[] xml, int length, ParseOptions options) throws ParserException {
+        XMLStreamReader reader = null;
+        try {
+            reader = FACTORY.createXMLStreamReader(new ByteArrayInputStream(xml, 0, length));
+            reader.nextTag();
+            assignCdrAttributes(cdr, new Cursor(reader, options == null ? DEFAULT_OPTIONS : options, cdr));
+        } catch (XMLStreamException e) {
+            throw new ParserException("cdr parse xml failed.", e);
+        } finally {
+            close(reader);
+        }
+    }
+
+    /**
+     * 解析 cdr 根节点下的单个段落(offset 起的完整元素), 结果赋值到 cdr, 供 {@link LazyCdr} 使用.
+     */
+    static void parseSection(Cdr cdr, byte[] xml, int offset, int length, ParseOptions options) throws ParserException {
+        XMLStreamReader reader = null;
+        try {
+            reader = FACTORY.createXMLStreamReader(new ByteArrayInputStream(xml, offset, length), StandardCharsets.UTF_8.name());
+            reader.nextTag();
+            assignSection(cdr, reader.getLocalName(), new Cursor(reader, options == null ? DEFAULT_OPTIONS : options, cdr));
+        } catch (XMLStreamException e) {
+            throw new ParserException("cdr parse xml failed.", e);
+        } finally {
+            close(reader);
+        }
+    }
+
+    private static void close(XMLStreamReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            log.debug("close xml stream reader failure : ", e);
+        }
+    }
+
+    private static void assignCdrElement(Cdr cdr, Cursor cursor) throws XMLStreamException {
+        // cdr 节点属性赋值
+        assignCdrAttributes(cdr, cursor);
+
+        // cdr 节点下所有元素
+        cursor.elements(name -> assignSection(cdr, name, cursor));
+    }
+
+    private static void assignCdrAttributes(Cdr cdr, Cursor cursor) {
+        XMLStreamReader reader = cursor.reader;
+        for (int i = 0, count = reader.getAttributeCount(); i < count; i++) {
+            String name = reader.getAttributeLocalName(i);
+            String value = reader.getAttributeValue(i);
+            if (!assignCdrAttribute(cdr, name, value)) {
+                cursor.unknown(UnknownElements.CDR_ATTR, name, value);
+            }
+        }
+    }
+
+    private static void assignSection(Cdr cdr, String name, Cursor cursor) throws XMLStreamException {
+        switch (name) {
+            case CHANNEL_DATA:
+                if (!cursor.projection.includes(CdrSection.CHANNEL_DATA)) {
+                    cursor.skip();
+                    break;
+                }
+                ChannelData channelData = new ChannelData();
+                cdr.setChannelData(channelData);
+                cursor.elements(childName -> {
+                    String text = cursor.text();
+                    if (!assignChannelData(channelData, childName, text)) {
+                        cursor.unknown(UnknownElements.CHANNEL_DATA, childName, text);
+                    }
+                });
+                break;
+            case CALL_STATS:
+                if (!cursor.projection.includes(CdrSection.CALL_STATS)) {
+                    cursor.skip();
+                    break;
+                }
+                CallStats callStats = new CallStats();
+                cdr.setCallStats(callStats);
+                assignCallStatsElement(callStats, cursor);
+                break;
+            case VARIABLES:
+                if (!cursor.projection.includes(CdrSection.VARIABLES)) {
+                    cursor.skip();
+                    break;
+                }
+                Variables variables = new Variables();
+                cdr.setVariables(variables);
+                cursor.elements(childName -> {
+                    if (cursor.projection.includesVariable(childName)) {
+                        variables.putVariable(childName, cursor.text());
+                    } else {
+                        cursor.skip();
+                    }
+                });
+                break;
+            case APP_LOG:
+                if (!cursor.projection.includes(CdrSection.APP_LOG)) {
+                    cursor.skip();
+                    break;
+                }
+                AppLog appLog = new AppLog();
+                cdr.setAppLog(appLog);
+                appLog.setApplications(assignApplicationElements(cursor, UnknownElements.APP_LOG, UnknownElements.APP_LOG_APPLICATION_ATTR));
+                break;
+            case HOLD_RECORD:
+                if (!cursor.projection.includes(CdrSection.HOLD_RECORD)) {
+                    cursor.skip();
+                    break;
+                }
+                HoldRecord holdRecord = new HoldRecord();
+                cdr.setHoldRecord(holdRecord);
+                assignHoldRecordElement(holdRecord, cursor);
+                break;
+            case CALLFLOW:
+                if (!cursor.projection.includesCallflow()) {
+                    cursor.skip();
+                    break;
+                }
+                Callflow callflow = new Callflow();
+                cdr.addCallflow(callflow);
+                assignCallflowElement(callflow, cursor);
+                break;
+            default:
+                cursor.unknown(UnknownElements.CDR, name, cursor.text());
+                break;
+        }
+    }
+
+    private static void assignCallStatsElement(CallStats callStats, Cursor cursor) throws XMLStreamException {
+        cursor.elements(name -> {
+            if (AUDIO.equals(name)) {
+                Audio audio = new Audio();
+                callStats.setAudio(audio);
+                assignAudioElement(audio, cursor);
+            } else {
+                cursor.unknown(UnknownElements.CALL_STATS, name, cursor.text());
+            }
+        });
+    }
+
+    private static void assignAudioElement(Audio audio, Cursor cursor) throws XMLStreamException {
+        cursor.elements(name -> {
+            switch (name) {
+                case INBOUND:
+                    Inbound inbound = new Inbound();
+                    if (cursor.options.isTypedStats()) {
+                        inbound.setStats(new InboundStats());
+                    }
+                    audio.setInbound(inbound);
+                    cursor.elements(childName -> {
+                        String text = cursor.text();
+                        if (!assignInbound(inbound, childName, text)) {
+                            cursor.unknown(UnknownElements.INBOUND, childName, text);
+                        }
+                    });
+                    break;
+                case OUTBOUND:
+                    Outbound outbound = new Outbound();
+                    if (cursor.options.isTypedStats()) {
+                        outbound.setStats(new OutboundStats());
+                    }
+                    audio.setOutbound(outbound);
+                    cursor.elements(childName -> {
+                        String text = cursor.text();
+                        if (!assignOutbound(outbound, childName, text)) {
+                            cursor.unknown(UnknownElements.OUTBOUND, childName, text);
+                        }
+                    });
+                    break;
+                case ERROR_LOG:
+                    ErrorLog errorLog = new ErrorLog();
+                    audio.setErrorLog(errorLog);
+                    assignErrorLogElement(errorLog, cursor);
+                    break;
+                default:
+                    cursor.unknown(UnknownElements.AUDIO, name, cursor.text());
+                    break;
+            }
+        });
+    }
+
+    private static void assignErrorLogElement(ErrorLog errorLog, Cursor cursor) throws XMLStreamException {
+        cursor.elements(name -> {
+            if (ERROR_PERIOD.equals(name)) {
+                ErrorPeriod errorPeriod = new ErrorPeriod();
+                if (cursor.options.isTypedStats()) {
+                    errorPeriod.setStats(new ErrorPeriodStats());
+                }
+                errorLog.addErrorPeriod(errorPeriod);
+                cursor.elements(childName -> {
+                    String text = cursor.text();
+                    if (!assignErrorPeriod(errorPeriod, childName, text)) {
+                        cursor.unknown(UnknownElements.ERROR_PERIOD, childName, text);
+                    }
+                });
+            } else {
+                cursor.unknown(UnknownElements.ERROR_LOG, name, cursor.text());
+            }
+        });
+    }
+
+    private static void assignHoldRecordElement(HoldRecord holdRecord, Cursor cursor) throws XMLStreamException {
+        List<Hold> holds = new ArrayList<>(4);
+        holdRecord.setHolds(holds);
+        XMLStreamReader reader = cursor.reader;
+        cursor.elements(name -> {
+            if (HOLD.equals(name)) {
+                Hold hold = new Hold();
+                for (int i = 0, count = reader.getAttributeCount(); i < count; i++) {
+                    String attrName = reader.getAttributeLocalName(i);
+                    String value = reader.getAttributeValue(i);
+                    if (!assignHoldAttribute(hold, attrName, value)) {
+                        cursor.unknown(UnknownElements.HOLD_ATTR, attrName, value);
+                    }
+                }
+                holds.add(hold);
+                cursor.skip();
+            } else {
+                cursor.unknown(UnknownElements.HOLD_RECORD, name, cursor.text());
+            }
+        });
+    }
+
+    private static List<Application> assignApplicationElements(Cursor cursor, String path, String attrPath) throws XMLStreamException {
+        List<Application> applications = new ArrayList<>();
+        XMLStreamReader reader = cursor.reader;
+        cursor.elements(name -> {
+            if (APPLICATION.equals(name)) {
+                Application application = new Application();
+                for (int i = 0, count = reader.getAttributeCount(); i < count; i++) {
+                    String attrName = reader.getAttributeLocalName(i);
+                    String value = reader.getAttributeValue(i);
+                    if (!assignApplicationAttribute(application, attrName, value)) {
+                        cursor.unknown(attrPath, attrName, value);
+                    }
+                }
+                applications.add(application);
+                cursor.skip();
+            } else {
+                cursor.unknown(path, name, cursor.text());
+            }
+        });
+        return applications;
+    }
+
+    private static void assignCallflowElement(Callflow callflow, Cursor cursor) throws XMLStreamException {
+        // 属性
+        XMLStreamReader reader = cursor.reader;
+        for (int i = 0, count = reader.getAttributeCount(); i < count; i++) {
+            String name = reader.getAttributeLocalName(i);
+            String value = reader.getAttributeValue(i);
+            if (!assignCallflowAttribute(callflow, name, value)) {
+                cursor.unknown(UnknownElements.CALLFLOW_ATTR, name, value);
+            }
+        }
+
+        // 子元素
+        cursor.elements(name -> {
+            switch (name) {
+                case EXTENSION:
+                    if (!cursor.projection.includes(CdrSection.CALLFLOW_EXTENSION)) {
+                        cursor.skip();
+                        break;
+                    }
+                    Extension extension = new Extension();
+                    callflow.setExtension(extension);
+                    for (int i = 0, count = reader.getAttributeCount(); i < count; i++) {
+                        String attrName = reader.getAttributeLocalName(i);
+                        String value = reader.getAttributeValue(i);
+                        if (!assignExtensionAttribute(extension, attrName, value)) {
+                            cursor.unknown(UnknownElements.EXTENSION_ATTR, attrName, value);
+                        }
+                    }
+                    extension.setApplications(assignApplicationElements(cursor, UnknownElements.EXTENSION, UnknownElements.EXTENSION_APPLICATION_ATTR));
+                    break;
+                case CALLER_PROFILE:
+                    if (!cursor.projection.includes(CdrSection.CALLFLOW_CALLER_PROFILE)) {
+                        cursor.skip();
+                        break;
+                    }
+                    CallerProfile callerProfile = new CallerProfile();
+                    callflow.setCallerProfile(callerProfile);
+                    assignCallerProfileElement(callerProfile, cursor);
+                    break;
+                case TIMES:
+                    if (!cursor.projection.includes(CdrSection.CALLFLOW_TIMES)) {
+                        cursor.skip();
+                        break;
+                    }
+                    Times times = new Times();
+                    callflow.setTimes(times);
+                    cursor.elements(childName -> {
+                        String text = cursor.text();
+                        if (!assignTimes(times, childName, text)) {
+                            cursor.unknown(UnknownElements.TIMES, childName, text);
+                        }
+                    });
+                    break;
+                default:
+                    cursor.unknown(UnknownElements.CALLFLOW, name, cursor.text());
+                    break;
+            }
+        });
+    }
+
+    private static void assignCallerProfileElement(CallerProfile callerProfile, Cursor cursor) throws XMLStreamException {
+        cursor.elements(name -> {
+            switch (name) {
+                case ORIGINATOR:
+                    Originator originator = new Originator();
+                    callerProfile.setOriginator(originator);
+                    cursor.elements(childName -> {
+                        if (ORIGINATOR_CALLER_PROFILE.equals(childName)) {
+                            OriginatorCallerProfile profile = new OriginatorCallerProfile();
+                            originator.setOriginatorCallerProfile(profile);
+                            cursor.elements(leafName -> {
+                                String text = cursor.text();
+                                if (!assignOriginatorCallerProfile(profile, leafName, text)) {
+                                    cursor.unknown(UnknownElements.ORIGINATOR_CALLER_PROFILE, leafName, text);
+                                }
+                            });
+                        } else {
+                            cursor.unknown(UnknownElements.ORIGINATOR, childName, cursor.text());
+                        }
+                    });
+                    break;
+                case ORIGINATION:
+                    Origination origination = new Origination();
+                    callerProfile.setOrigination(origination);
+                    cursor.elements(childName -> {
+                        if (ORIGINATION_CALLER_PROFILE.equals(childName)) {
+                            OriginationCallerProfile profile = new OriginationCallerProfile();
+                            origination.setOriginationCallerProfile(profile);
+                            cursor.elements(leafName -> {
+                                String text = cursor.text();
+                                if (!assignOriginationCallerProfile(profile, leafName, text)) {
+                                    cursor.unknown(UnknownElements.ORIGINATION_CALLER_PROFILE, leafName, text);
+                                }
+                            });
+                        } else {
+                            cursor.unknown(UnknownElements.ORIGINATION, childName, cursor.text());
+                        }
+                    });
+                    break;
+                case ORIGINATEE:
+                    Originatee originatee = new Originatee();
+                    callerProfile.setOriginatee(originatee);
+                    cursor.elements(childName -> {
+                        if (ORIGINATEE_CALLER_PROFILE.equals(childName)) {
+                            OriginateeCallerProfile profile = new OriginateeCallerProfile();
+                            originatee.setOriginateeCallerProfile(profile);
+                            cursor.elements(leafName -> {
+                                String text = cursor.text();
+                                if (!assignOriginateeCallerProfile(profile, leafName, text)) {
+                                    cursor.unknown(UnknownElements.ORIGINATEE_CALLER_PROFILE, leafName, text);
+                                }
+                            });
+                        } else {
+                            cursor.unknown(UnknownElements.ORIGINATEE, childName, cursor.text());
+                        }
+                    });
+                    break;
+                default:
+                    String text = cursor.text();
+                    if (!assignCallerProfile(callerProfile, name, text)) {
+                        cursor.unknown(UnknownElements.CALLER_PROFILE, name, text);
+                    }
+                    break;
+            }
+        });
+    }
+
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
+    @FunctionalInterface
+    private interface ElementConsumer {
+        void accept(String name) throws XMLStreamException;
+    }
+
+    /**
+     * 包装 XMLStreamReader, 每次解析一个实例, 复用文本缓冲区.
+     */
+    private static final class Cursor {
+
+        private final XMLStreamReader reader;
+        private final ParseOptions options;
+        private final CdrProjection projection;
+        private final Cdr cdr;
+        private final StringBuilder buffer = new StringBuilder(128);
+
+        private Cursor(XMLStreamReader reader, ParseOptions options, Cdr cdr) {
+            this.reader = reader;
+            this.options = options;
+            this.cdr = cdr;
+            this.projection = options.getProjection() == null ? CdrProjection.all() : options.getProjection();
+        }
+
+        /**
+         * 遍历当前元素的直接子元素, consumer 必须消费完子元素(直到其 END_ELEMENT), 返回时位于当前元素的 END_ELEMENT.
+         */
+        private void elements(ElementConsumer consumer) throws XMLStreamException {
+            while (true) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    consumer.accept(reader.getLocalName());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 读取当前元素的直接文本(忽略嵌套元素内的文本)并规整空白, 返回时位于当前元素的 END_ELEMENT.
+         */
+        private String text() throws XMLStreamException {
+            StringBuilder sb = buffer;
+            sb.setLength(0);
+            int depth = 0;
+            while (true) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (depth == 0) {
+                            sb.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        }
+                        break;
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (depth == 0) {
+                            return trim(sb);
+                        }
+                        depth--;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        private void unknown(String parent, String name, String value) {
+            UnknownElements.record(cdr, options, parent, name, value);
+        }
+
+        /**
+         * 跳过当前元素(含子树), 返回时位于当前元素的 END_ELEMENT.
+         */
+        private void skip() throws XMLStreamException {
+            int depth = 0;
+            while (true) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth == 0) {
+                        return;
+                    }
+                    depth--;
+                }
+            }
+        }
+    }
+
+    /**
+     * 与 dom4j getTextTrim 相同的空白处理(StringTokenizer 默认分隔符).
+     */
+    static String trim(CharSequence text) {
+        int len = text.length();
+        if (len == 0) {
+            return StringUtils.EMPTY;
+        }
+        boolean normalized = true;
+        for (int i = 0; i < len; i++) {
+            char c = text.charAt(i);
+            if (isWhitespace(c) && (c != ' ' || i == 0 || i == len - 1 || isWhitespace(text.charAt(i + 1)))) {
+                normalized = false;
+                break;
+            }
+        }
+        if (normalized) {
+            return text.toString();
+        }
+        StringBuilder sb = new StringBuilder(len);
+        int i = 0;
+        while (i < len) {
+            while (i < len && isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < len && !isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (start < i) {
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(text, start, i);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+}
@@ -0,0 +1,153 @@
+package link.thingscloud.freeswitch.cdr.parser;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>UnknownElements class.</p>
+ * <p>
+ * 未识别元素/属性登记: 按路径计数, 每个新路径只输出一次 warn 日志(附截断的样例值), 不再输出整个话单.
+ * 路径形如 cdr/callflow/times/xxx(元素) 或 cdr/callflow@xxx(属性), 不同路径数上限 {@link #MAX_PATHS}, 超出部分计入 {@link #OVERFLOW_PATH}.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Slf4j
+public class UnknownElements {
+
+    /**
+     * 不同路径数上限
+     */
+    public static final int MAX_PATHS = 1024;
+
+    /**
+     * 超出上限后的计数路径
+     */
+    public static final String OVERFLOW_PATH = "(overflow)";
+
+    static final String CDR_ATTR = "cdr@";
+    static final String CDR = "cdr/";
+    static final String CHANNEL_DATA = "cdr/channel_data/";
+    static final String CALL_STATS = "cdr/call-stats/";
+    static final String AUDIO = "cdr/call-stats/audio/";
+    static final String INBOUND = "cdr/call-stats/audio/inbound/";
+    static final String OUTBOUND = "cdr/call-stats/audio/outbound/";
+    static final String ERROR_LOG = "cdr/call-stats/audio/error-log/";
+    static final String ERROR_PERIOD = "cdr/call-stats/audio/error-log/error-period/";
+    static final String HOLD_RECORD = "cdr/hold-record/";
+    static final String HOLD_ATTR = "cdr/hold-record/hold@";
+    static final String APP_LOG = "cdr/app_log/";
+    static final String APP_LOG_APPLICATION_ATTR = "cdr/app_log/application@";
+    static final String CALLFLOW_ATTR = "cdr/callflow@";
+    static final String CALLFLOW = "cdr/callflow/";
+    static final String EXTENSION_ATTR = "cdr/callflow/extension@";
+    static final String EXTENSION = "cdr/callflow/extension/";
+    static final String EXTENSION_APPLICATION_ATTR = "cdr/callflow/extension/application@";
+    static final String CALLER_PROFILE = "cdr/callflow/caller_profile/";
+    static final String ORIGINATOR = "cdr/callflow/caller_profile/originator/";
+    static final String ORIGINATOR_CALLER_PROFILE = "cdr/callflow/caller_profile/originator/originator_caller_profile/";
+    static final String ORIGINATION = "cdr/callflow/caller_profile/origination/";
+    static final String ORIGINATION_CALLER_PROFILE = "cdr/callflow/caller_profile/origination/origination_caller_profile/";
+    static final String ORIGINATEE = "cdr/callflow/caller_profile/originatee/";
+    static final String ORIGINATEE_CALLER_PROFILE = "cdr/callflow/caller_profile/originatee/originatee_caller_profile/";
+    static final String TIMES = "cdr/callflow/times/";
+
+    private static final int MAX_SAMPLE_LENGTH = 256;
+
+    /**
+     * parent -&gt; name -&gt; count, 两级结构避免每次拼接路径
+     */
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<String, LongAdder>> COUNTS = new ConcurrentHashMap<>();
+    private static final AtomicInteger PATHS = new AtomicInteger();
+    private static final LongAdder OVERFLOW = new LongAdder();
+
+    private UnknownElements() {
+    }
+
+    /**
+     * <p>record.</p>
+     *
+     * @param parent 父路径(以 / 或 @ 结尾)
+     * @param name   元素或属性名
+     * @param sample 样例值, 仅首次出现时输出
+     */
+    static void record(String parent, String name, String sample) {
+        ConcurrentHashMap<String, LongAdder> names = COUNTS.get(parent);
+        if (names == null) {
+            ConcurrentHashMap<String, LongAdder> created = new ConcurrentHashMap<>(8);
+            names = COUNTS.putIfAbsent(parent, created);
+            if (names == null) {
+                names = created;
+            }
+        }
+        LongAdder counter = names.get(name);
+        if (counter == null) {
+            if (PATHS.get() >= MAX_PATHS) {
+                OVERFLOW.increment();
+                return;
+            }
+            LongAdder created = new LongAdder();
+            counter = names.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+                PATHS.incrementAndGet();
+                log.warn("cdr parser found unknown element : [{}{}], sample : [{}], further occurrences are only counted.",
+                        parent, name, StringUtils.abbreviate(sample, MAX_SAMPLE_LENGTH));
+            }
+        }
+        counter.increment();
+    }
+
+    /**
+     * 登记并在开启 captureUnknown 时写入 Cdr#getExtensions().
+     */
+    static void record(Cdr cdr, ParseOptions options, String parent, String name, String value) {
+        record(parent, name, value);
+        if (options.isCaptureUnknown()) {
+            cdr.putExtension(parent + name, value);
+        }
+    }
+
+    /**
+     * <p>getCounts.</p>
+     *
+     * @return 路径 -&gt; 出现次数, 按路径排序
+     */
+    public static Map<String, Long> getCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        COUNTS.forEach((parent, names) -> names.forEach((name, counter) -> counts.put(parent + name, counter.sum())));
+        long overflow = OVERFLOW.sum();
+        if (overflow > 0) {
+            counts.put(OVERFLOW_PATH, overflow);
+        }
+        return counts;
+    }
+
+    /**
+     * <p>getTotal.</p>
+     *
+     * @return 所有未识别元素/属性出现总次数
+     */
+    public static long getTotal() {
+        long total = OVERFLOW.sum();
+        for (ConcurrentHashMap<String, LongAdder> names : COUNTS.values()) {
+            for (LongAdder counter : names.values()) {
+                total += counter.sum();
+            }
+        }
+        return total;
+    }
+
+    static void reset() {
+        COUNTS.clear();
+        PATHS.set(0);
+        OVERFLOW.reset();
+    }
+}
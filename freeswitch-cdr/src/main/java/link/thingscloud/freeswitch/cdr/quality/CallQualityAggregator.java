@@ -0,0 +1,249 @@
+package link.thingscloud.freeswitch.cdr.quality;
+
+import link.thingscloud.freeswitch.cdr.domain.*;
+import link.thingscloud.freeswitch.cdr.handler.CdrHandler;
+import link.thingscloud.freeswitch.cdr.handler.CdrProjectionAware;
+import link.thingscloud.freeswitch.cdr.parser.CdrProjection;
+import link.thingscloud.freeswitch.cdr.parser.CdrSection;
+import link.thingscloud.freeswitch.cdr.util.NumberUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>CallQualityAggregator class.</p>
+ * <p>
+ * 实时通话质量汇总: 按接收时间的分钟桶累计话单数、接通数(billsec &gt; 0)、billsec、hangup_cause 以及
+ * inbound 的 mos / jitter_loss_rate / quality_percentage 直方图与 flaw_total, 查询时合并最近 N 分钟(最多 60)的桶.
+ * 汇总项(*)之外, 每个维度变量(如 sip_gateway_name)的每个取值一个序列, 序列总数超过 maxSeries 后新取值计入 other.
+ * <p>
+ * 运行在处理线程池上, 每条话单为固定次数的 LongAdder 累加与原子加, 不加锁; 分钟切换时由一个线程 CAS 换入新桶.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Slf4j
+public class CallQualityAggregator implements CdrHandler, CdrProjectionAware {
+
+    /**
+     * 汇总序列的维度与取值
+     */
+    public static final String TOTAL = "*";
+    /**
+     * 超过 maxSeries 后的取值
+     */
+    public static final String OTHER = "other";
+    /**
+     * 最大查询窗口(分钟)
+     */
+    public static final int MAX_WINDOW_MINUTES = QualitySeries.MINUTES;
+
+    private static final long MINUTE_MILLIS = 60_000L;
+
+    private final List<String> dimensions;
+    private final int maxSeries;
+    private final LongSupplier clock;
+    private final QualitySeries total = new QualitySeries(TOTAL, TOTAL);
+    private final Map<String, ConcurrentHashMap<String, QualitySeries>> series = new ConcurrentHashMap<>();
+    private final AtomicInteger seriesCount = new AtomicInteger();
+
+    /**
+     * <p>Constructor for CallQualityAggregator.</p>
+     *
+     * @param dimensions 维度变量名
+     * @param maxSeries  所有维度的序列总数上限
+     */
+    public CallQualityAggregator(List<String> dimensions, int maxSeries) {
+        this(dimensions, maxSeries, System::currentTimeMillis);
+    }
+
+    CallQualityAggregator(List<String> dimensions, int maxSeries, LongSupplier clock) {
+        this.dimensions = new ArrayList<>(dimensions);
+        this.maxSeries = maxSeries;
+        this.clock = clock;
+        for (String dimension : this.dimensions) {
+            series.put(dimension, new ConcurrentHashMap<>(64));
+        }
+        log.info("call quality aggregator dimensions : {}, max series : [{}].", this.dimensions, maxSeries);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleCdr(Cdr cdr) {
+        long minute = clock.getAsLong() / MINUTE_MILLIS;
+        Map<String, String> variables = cdr.getVariables() == null ? null : cdr.getVariables().getVariableTable();
+        long billsec = variables == null ? 0L : NumberUtil.parseLong(variables.get("billsec"), 0L);
+        String cause = variables == null ? null : variables.get("hangup_cause");
+        Audio audio = cdr.getCallStats() == null ? null : cdr.getCallStats().getAudio();
+        Inbound inbound = audio == null ? null : audio.getInbound();
+        double mos = Double.NaN;
+        double lossRate = Double.NaN;
+        double quality = Double.NaN;
+        long flaws = 0L;
+        if (inbound != null) {
+            InboundStats stats = inbound.getStats();
+            if (stats != null) {
+                mos = stats.getMos();
+                lossRate = stats.getJitterLossRate();
+                quality = stats.getQualityPercentage();
+                flaws = stats.getFlawTotal();
+            } else {
+                mos = NumberUtil.parseDouble(inbound.getMos(), Double.NaN);
+                lossRate = NumberUtil.parseDouble(inbound.getJitterLossRate(), Double.NaN);
+                quality = NumberUtil.parseDouble(inbound.getQualityPercentage(), Double.NaN);
+                flaws = NumberUtil.parseLong(inbound.getFlawTotal(), 0L);
+            }
+        }
+        record(total, minute, billsec, cause, inbound != null, mos, lossRate, quality, flaws);
+        if (variables == null) {
+            return;
+        }
+        for (String dimension : dimensions) {
+            String value = variables.get(dimension);
+            if (StringUtils.isNotEmpty(value)) {
+                record(series(dimension, value), minute, billsec, cause, inbound != null, mos, lossRate, quality, flaws);
+            }
+        }
+    }
+
+    /**
+     * 查询最近 windowMinutes 分钟的汇总.
+     *
+     * @param windowMinutes 1 ~ {@link #MAX_WINDOW_MINUTES}
+     * @param dimension     维度变量名, 为空或 * 时只返回汇总项
+     * @return 按话单数降序
+     */
+    public List<QualitySnapshot> query(int windowMinutes, String dimension) {
+        if (windowMinutes < 1 || windowMinutes > MAX_WINDOW_MINUTES) {
+            throw new IllegalArgumentException("window minutes must be between 1 and " + MAX_WINDOW_MINUTES + " : " + windowMinutes);
+        }
+        long now = clock.getAsLong() / MINUTE_MILLIS;
+        if (StringUtils.isEmpty(dimension) || TOTAL.equals(dimension)) {
+            return Collections.singletonList(snapshot(total, now, windowMinutes));
+        }
+        Map<String, QualitySeries> values = series.get(dimension);
+        if (values == null) {
+            throw new IllegalArgumentException("unknown quality dimension : " + dimension + ", configured : " + dimensions);
+        }
+        List<QualitySnapshot> snapshots = new ArrayList<>(values.size());
+        for (QualitySeries item : values.values()) {
+            QualitySnapshot snapshot = snapshot(item, now, windowMinutes);
+            if (snapshot.getCalls() > 0) {
+                snapshots.add(snapshot);
+            }
+        }
+        snapshots.sort((a, b) -> Long.compare(b.getCalls(), a.getCalls()));
+        return snapshots;
+    }
+
+    /**
+     * 窗口参数: 1m / 5m / 1h 或分钟数.
+     *
+     * @param window a {@link java.lang.String} object.
+     * @return 分钟数
+     */
+    public static int parseWindow(String window) {
+        String value = StringUtils.trimToEmpty(window).toLowerCase();
+        int unit = 1;
+        if (value.endsWith("h")) {
+            unit = 60;
+            value = value.substring(0, value.length() - 1);
+        } else if (value.endsWith("m")) {
+            value = value.substring(0, value.length() - 1);
+        }
+        long minutes = NumberUtil.parseLong(value, -1L) * unit;
+        if (minutes < 1 || minutes > MAX_WINDOW_MINUTES) {
+            throw new IllegalArgumentException("invalid quality window : " + window);
+        }
+        return (int) minutes;
+    }
+
+    /**
+     * <p>Getter for the field <code>dimensions</code>.</p>
+     *
+     * @return a {@link java.util.List} object.
+     */
+    public List<String> getDimensions() {
+        return Collections.unmodifiableList(dimensions);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CdrProjection getCdrProjection() {
+        Set<String> variables = new LinkedHashSet<>();
+        variables.add("billsec");
+        variables.add("hangup_cause");
+        variables.addAll(dimensions);
+        return CdrProjection.of(EnumSet.of(CdrSection.CALL_STATS, CdrSection.VARIABLES), variables);
+    }
+
+    private QualitySeries series(String dimension, String value) {
+        ConcurrentHashMap<String, QualitySeries> values = series.get(dimension);
+        QualitySeries item = values.get(value);
+        if (item != null) {
+            return item;
+        }
+        if (seriesCount.get() >= maxSeries) {
+            return values.computeIfAbsent(OTHER, key -> new QualitySeries(dimension, OTHER));
+        }
+        return values.computeIfAbsent(value, key -> {
+            if (seriesCount.incrementAndGet() == maxSeries) {
+                log.warn("call quality series reach max : [{}], new values are counted as [{}].", maxSeries, OTHER);
+            }
+            return new QualitySeries(dimension, key);
+        });
+    }
+
+    private static void record(QualitySeries series, long minute, long billsec, String cause, boolean withStats,
+                               double mos, double lossRate, double quality, long flaws) {
+        QualityBucket bucket = series.bucket(minute);
+        if (bucket == null) {
+            return;
+        }
+        bucket.calls.increment();
+        if (billsec > 0) {
+            bucket.answered.increment();
+            bucket.billsec.add(billsec);
+        }
+        if (cause != null) {
+            bucket.hangupCause(cause);
+        }
+        if (!withStats) {
+            return;
+        }
+        bucket.withStats.increment();
+        if (flaws > 0) {
+            bucket.flawTotal.add(flaws);
+        }
+        // 未协商媒体时 mos 为 0, 不计入分布
+        if (mos > 0) {
+            bucket.mos.record(mos);
+        }
+        if (!Double.isNaN(lossRate)) {
+            bucket.jitterLossRate.record(lossRate);
+        }
+        if (quality > 0) {
+            bucket.qualityPercentage.record(quality);
+        }
+    }
+
+    private static QualitySnapshot snapshot(QualitySeries series, long now, int windowMinutes) {
+        QualityBucket.Merged merged = new QualityBucket.Merged();
+        series.mergeTo(merged, now, windowMinutes);
+        return merged.toSnapshot(series.dimension, series.value, windowMinutes);
+    }
+}
@@ -0,0 +1,87 @@
+package link.thingscloud.freeswitch.cdr.quality;
+
+import link.thingscloud.freeswitch.cdr.domain.QualitySnapshot;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>QualityBucket class.</p>
+ * <p>
+ * 一个维度取值在一分钟内的累计值, 计数用 LongAdder, 多个处理线程同时写入不争用同一变量.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+final class QualityBucket {
+
+    final long minute;
+    final LongAdder calls = new LongAdder();
+    final LongAdder answered = new LongAdder();
+    final LongAdder billsec = new LongAdder();
+    final LongAdder withStats = new LongAdder();
+    final LongAdder flawTotal = new LongAdder();
+    final QualityHistogram mos = new QualityHistogram(QualityHistogram.MOS);
+    final QualityHistogram jitterLossRate = new QualityHistogram(QualityHistogram.LOSS_RATE);
+    final QualityHistogram qualityPercentage = new QualityHistogram(QualityHistogram.PERCENTAGE);
+    final ConcurrentHashMap<String, LongAdder> hangupCauses = new ConcurrentHashMap<>(16);
+
+    QualityBucket(long minute) {
+        this.minute = minute;
+    }
+
+    void hangupCause(String cause) {
+        LongAdder adder = hangupCauses.get(cause);
+        if (adder == null) {
+            adder = hangupCauses.computeIfAbsent(cause, key -> new LongAdder());
+        }
+        adder.increment();
+    }
+
+    /**
+     * 多个分钟桶的合并结果
+     */
+    static final class Merged {
+        private long calls;
+        private long answered;
+        private long billsec;
+        private long withStats;
+        private long flawTotal;
+        private final double[] mos = QualityHistogram.MOS.newMerged();
+        private final double[] jitterLossRate = QualityHistogram.LOSS_RATE.newMerged();
+        private final double[] qualityPercentage = QualityHistogram.PERCENTAGE.newMerged();
+        private final Map<String, Long> hangupCauses = new HashMap<>();
+
+        void add(QualityBucket bucket) {
+            calls += bucket.calls.sum();
+            answered += bucket.answered.sum();
+            billsec += bucket.billsec.sum();
+            withStats += bucket.withStats.sum();
+            flawTotal += bucket.flawTotal.sum();
+            bucket.mos.mergeTo(mos);
+            bucket.jitterLossRate.mergeTo(jitterLossRate);
+            bucket.qualityPercentage.mergeTo(qualityPercentage);
+            bucket.hangupCauses.forEach((cause, count) -> hangupCauses.merge(cause, count.sum(), Long::sum));
+        }
+
+        QualitySnapshot toSnapshot(String dimension, String value, int windowMinutes) {
+            return new QualitySnapshot()
+                    .setDimension(dimension)
+                    .setValue(value)
+                    .setWindowMinutes(windowMinutes)
+                    .setCalls(calls)
+                    .setAnswered(answered)
+                    .setAsr(calls == 0 ? 0D : (double) answered / calls)
+                    .setAcd(answered == 0 ? 0D : (double) billsec / answered)
+                    .setBillsec(billsec)
+                    .setWithStats(withStats)
+                    .setFlawTotal(flawTotal)
+                    .setMos(QualityHistogram.MOS.toDistribution(mos))
+                    .setJitterLossRate(QualityHistogram.LOSS_RATE.toDistribution(jitterLossRate))
+                    .setQualityPercentage(QualityHistogram.PERCENTAGE.toDistribution(qualityPercentage))
+                    .setHangupCauses(hangupCauses);
+        }
+    }
+}
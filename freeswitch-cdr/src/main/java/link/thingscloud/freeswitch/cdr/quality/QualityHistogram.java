@@ -0,0 +1,105 @@
+package link.thingscloud.freeswitch.cdr.quality;
+
+import link.thingscloud.freeswitch.cdr.domain.QualityDistribution;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * <p>QualityHistogram class.</p>
+ * <p>
+ * 固定线性分桶的直方图, 超出范围的值计入首尾桶. 写入为一次原子加(不重试), 不同分钟、不同维度的直方图可按桶相加合并.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+final class QualityHistogram {
+
+    /**
+     * MOS 0 ~ 5.0, 桶宽 0.1
+     */
+    static final Layout MOS = new Layout(0D, 5D, 50);
+    /**
+     * jitter_loss_rate 0 ~ 10(%), 桶宽 0.1
+     */
+    static final Layout LOSS_RATE = new Layout(0D, 10D, 100);
+    /**
+     * quality_percentage 0 ~ 100, 桶宽 2
+     */
+    static final Layout PERCENTAGE = new Layout(0D, 100D, 50);
+
+    private final Layout layout;
+    private final AtomicLongArray counts;
+    private final DoubleAdder sum = new DoubleAdder();
+
+    QualityHistogram(Layout layout) {
+        this.layout = layout;
+        this.counts = new AtomicLongArray(layout.bins);
+    }
+
+    void record(double value) {
+        counts.getAndIncrement(layout.index(value));
+        sum.add(value);
+    }
+
+    /**
+     * 累加到 merged, merged[bins] 为 sum
+     */
+    void mergeTo(double[] merged) {
+        for (int i = 0; i < layout.bins; i++) {
+            merged[i] += counts.get(i);
+        }
+        merged[layout.bins] += sum.sum();
+    }
+
+    static final class Layout {
+        final double min;
+        final double width;
+        final int bins;
+
+        Layout(double min, double max, int bins) {
+            this.min = min;
+            this.width = (max - min) / bins;
+            this.bins = bins;
+        }
+
+        int index(double value) {
+            int index = (int) ((value - min) / width);
+            return index < 0 ? 0 : Math.min(index, bins - 1);
+        }
+
+        double[] newMerged() {
+            return new double[bins + 1];
+        }
+
+        /**
+         * 由合并后的桶计算分布, 分位数取所在桶的中点
+         */
+        QualityDistribution toDistribution(double[] merged) {
+            long count = 0;
+            for (int i = 0; i < bins; i++) {
+                count += (long) merged[i];
+            }
+            QualityDistribution distribution = new QualityDistribution().setCount(count);
+            if (count == 0) {
+                return distribution;
+            }
+            return distribution.setMean(merged[bins] / count)
+                    .setP50(quantile(merged, count, 0.5D))
+                    .setP95(quantile(merged, count, 0.95D))
+                    .setP99(quantile(merged, count, 0.99D));
+        }
+
+        private double quantile(double[] merged, long count, double q) {
+            long rank = (long) Math.ceil(q * count);
+            long seen = 0;
+            for (int i = 0; i < bins; i++) {
+                seen += (long) merged[i];
+                if (seen >= rank) {
+                    return min + (i + 0.5D) * width;
+                }
+            }
+            return min + (bins - 0.5D) * width;
+        }
+    }
+}
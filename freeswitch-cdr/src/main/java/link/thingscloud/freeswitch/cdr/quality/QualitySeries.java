@@ -0,0 +1,58 @@
+package link.thingscloud.freeswitch.cdr.quality;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>QualitySeries class.</p>
+ * <p>
+ * 一个维度取值最近 {@link #MINUTES} 分钟的环形分钟桶. 槽位中的桶属于更早的分钟时用 CAS 换成新桶,
+ * 同一时刻只有一个线程换入成功, 其余线程使用换入的桶; 不加锁.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+final class QualitySeries {
+
+    /**
+     * 最大查询窗口(分钟)
+     */
+    static final int MINUTES = 60;
+
+    final String dimension;
+    final String value;
+    private final AtomicReferenceArray<QualityBucket> buckets = new AtomicReferenceArray<>(MINUTES);
+
+    QualitySeries(String dimension, String value) {
+        this.dimension = dimension;
+        this.value = value;
+    }
+
+    /**
+     * @return minute 对应的桶, 该槽位已被更新的分钟占用(minute 早于一小时前)时返回 null
+     */
+    QualityBucket bucket(long minute) {
+        int slot = (int) (minute % MINUTES);
+        for (; ; ) {
+            QualityBucket bucket = buckets.get(slot);
+            if (bucket != null && bucket.minute >= minute) {
+                return bucket.minute == minute ? bucket : null;
+            }
+            QualityBucket fresh = new QualityBucket(minute);
+            if (buckets.compareAndSet(slot, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    /**
+     * 合并 (now - windowMinutes, now] 内的分钟桶
+     */
+    void mergeTo(QualityBucket.Merged merged, long now, int windowMinutes) {
+        for (long minute = now - windowMinutes + 1; minute <= now; minute++) {
+            QualityBucket bucket = buckets.get((int) (minute % MINUTES));
+            if (bucket != null && bucket.minute == minute) {
+                merged.add(bucket);
+            }
+        }
+    }
+}
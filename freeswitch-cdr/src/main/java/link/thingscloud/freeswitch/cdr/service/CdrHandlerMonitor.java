@@ -0,0 +1,48 @@
+package link.thingscloud.freeswitch.cdr.service;
+
+/**
+ * <p>CdrHandlerMonitor interface.</p>
+ * <p>
+ * 单个 handler 隔离执行器的实时读数, 直接读取执行器的计数器与队列, 不构建 {@link link.thingscloud.freeswitch.cdr.domain.CdrHandlerStats} 快照,
+ * 供监控 gauge 绑定.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public interface CdrHandlerMonitor {
+
+    /**
+     * handler bean 名称
+     *
+     * @return name
+     */
+    String getName();
+
+    /**
+     * record / batch / call
+     *
+     * @return type
+     */
+    String getType();
+
+    /**
+     * 当前排队的话单数
+     *
+     * @return queue size
+     */
+    int getQueueSize();
+
+    /**
+     * 队列容量
+     *
+     * @return queue capacity
+     */
+    int getQueueCapacity();
+
+    /**
+     * 队列满被丢弃的话单累计数
+     *
+     * @return dropped count
+     */
+    long getDropped();
+}
@@ -1,5 +1,10 @@
 package link.thingscloud.freeswitch.cdr.service;
 
+import link.thingscloud.freeswitch.cdr.domain.CdrHandlerStats;
+
+import java.util.List;
+import java.util.Map;
+
 /**
  * <p>CdrService interface.</p>
  *
@@ -12,7 +17,72 @@ public interface CdrService {
      * <p>handle.</p>
      *
      * @param reqText a {@link java.lang.String} object.
+     * @throws link.thingscloud.freeswitch.cdr.exception.CdrRejectedException if the queue is full.
      */
     void handle(String reqText);
 
+    /**
+     * <p>handle.</p>
+     *
+     * @param reqBytes raw request body, application/x-www-form-urlencoded.
+     * @throws link.thingscloud.freeswitch.cdr.exception.CdrRejectedException if the queue is full.
+     */
+    void handle(byte[] reqBytes);
+
+    /**
+     * 当前排队等待处理的 CDR 数量
+     *
+     * @return queue size
+     */
+    int getQueueSize();
+
+    /**
+     * <p>getQueueCapacity.</p>
+     *
+     * @return queue capacity
+     */
+    int getQueueCapacity();
+
+    /**
+     * 因队列已满被拒绝的 CDR 累计数量
+     *
+     * @return rejected count
+     */
+    long getRejectedCount();
+
+    /**
+     * 开启 cdr.dedup.enabled 时识别为重复(FreeSWITCH 重试)而丢弃的请求累计数量
+     *
+     * @return duplicate count
+     */
+    long getDuplicateCount();
+
+    /**
+     * STRIPED 模式下取不到分片 key 及 variables.uuid、回退到 core-uuid 的话单累计数量
+     *
+     * @return dispatch fallback count
+     */
+    long getDispatchFallbackCount();
+
+    /**
+     * 各 handler 隔离执行器的队列深度、耗时、丢弃数等统计
+     *
+     * @return handler stats
+     */
+    List<CdrHandlerStats> getHandlerStats();
+
+    /**
+     * 各 handler 隔离执行器的实时读数, 初始化完成后不再变化
+     *
+     * @return handler monitors
+     */
+    List<CdrHandlerMonitor> getHandlerMonitors();
+
+    /**
+     * 解析时遇到的未识别元素/属性, 按路径计数
+     *
+     * @return path -&gt; count
+     */
+    Map<String, Long> getUnknownElementCounts();
+
 }
@@ -0,0 +1,92 @@
+package link.thingscloud.freeswitch.cdr.service;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.domain.Variables;
+
+import java.util.Map;
+
+/**
+ * <p>DispatchKey enum.</p>
+ * <p>
+ * STRIPED 模式下用于选择分片的话单 key, 取不到时依次回退到 variables.uuid、core-uuid.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public enum DispatchKey {
+    /**
+     * cdr core-uuid 属性
+     */
+    CORE_UUID("core-uuid"),
+    /**
+     * variables.call_uuid, B 腿与 A 腿相同
+     */
+    CALL_UUID("call_uuid"),
+    /**
+     * variables.originate_signal_bond
+     */
+    ORIGINATE_SIGNAL_BOND("originate_signal_bond");
+
+    private final String key;
+
+    DispatchKey(String key) {
+        this.key = key;
+    }
+
+    /**
+     * <p>Getter for the field <code>key</code>.</p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * <p>resolve.</p>
+     *
+     * @param cdr a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object.
+     * @return key value, null if none of the fallbacks is present.
+     */
+    public String resolve(Cdr cdr) {
+        String value = this == CORE_UUID ? cdr.getCoreUuid() : variable(cdr, key);
+        if (value == null) {
+            value = variable(cdr, "uuid");
+        }
+        return value == null ? cdr.getCoreUuid() : value;
+    }
+
+    /**
+     * key 与 variables.uuid 都取不到, {@link #resolve} 回退到 core-uuid; 同一 FreeSWITCH 的话单 core-uuid 相同, 会集中到同一分片.
+     *
+     * @param cdr a {@link link.thingscloud.freeswitch.cdr.domain.Cdr} object.
+     * @return 是否回退到 core-uuid
+     */
+    public boolean isCoreUuidFallback(Cdr cdr) {
+        return this != CORE_UUID && variable(cdr, key) == null && variable(cdr, "uuid") == null;
+    }
+
+    /**
+     * 按 key 名称(core-uuid / call_uuid / originate_signal_bond)或枚举名查找.
+     *
+     * @param text a {@link java.lang.String} object.
+     * @return a {@link link.thingscloud.freeswitch.cdr.service.DispatchKey} object.
+     */
+    public static DispatchKey of(String text) {
+        for (DispatchKey dispatchKey : values()) {
+            if (dispatchKey.key.equalsIgnoreCase(text) || dispatchKey.name().equalsIgnoreCase(text)) {
+                return dispatchKey;
+            }
+        }
+        throw new IllegalArgumentException("unknown cdr dispatch key : " + text);
+    }
+
+    private static String variable(Cdr cdr, String name) {
+        Variables variables = cdr.getVariables();
+        if (variables == null) {
+            return null;
+        }
+        Map<String, String> variableTable = variables.getVariableTable();
+        return variableTable == null ? null : variableTable.get(name);
+    }
+}
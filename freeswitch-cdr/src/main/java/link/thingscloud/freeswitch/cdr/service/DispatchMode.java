@@ -0,0 +1,18 @@
+package link.thingscloud.freeswitch.cdr.service;
+
+/**
+ * <p>DispatchMode enum.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public enum DispatchMode {
+    /**
+     * handler 线程共享一个队列, 同一通话的话单可能并发处理
+     */
+    SHARED,
+    /**
+     * 按 {@link DispatchKey} 哈希到固定的单线程分片, 同一 key 的话单按分发顺序串行处理
+     */
+    STRIPED
+}
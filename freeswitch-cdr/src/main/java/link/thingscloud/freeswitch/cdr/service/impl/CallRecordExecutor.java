@@ -0,0 +1,120 @@
+package link.thingscloud.freeswitch.cdr.service.impl;
+
+import link.thingscloud.freeswitch.cdr.domain.CallRecord;
+import link.thingscloud.freeswitch.cdr.domain.CdrHandlerStats;
+import link.thingscloud.freeswitch.cdr.handler.CallRecordHandler;
+import link.thingscloud.freeswitch.cdr.service.CdrHandlerMonitor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>CallRecordExecutor class.</p>
+ * <p>
+ * 每个 {@link CallRecordHandler} 独立的有界执行器, 与 {@link CdrHandlerExecutor} 相同的隔离与 overflow 语义,
+ * 关联器在处理线程或超时检查线程上只做入队, 慢 handler 不阻塞解析.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Slf4j
+final class CallRecordExecutor implements CallRecordHandler, CdrHandlerMonitor {
+
+    private final String name;
+    private final CallRecordHandler handler;
+    private final int threads;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+    private final HandlerCounters counters = new HandlerCounters();
+
+    CallRecordExecutor(String name, CallRecordHandler handler, int threads, int queueCapacity, boolean dropOnOverflow) {
+        this.name = name;
+        this.handler = handler;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new BasicThreadFactory.Builder().namingPattern("cdr-call-record-" + name + "-%d").daemon(true).build(),
+                dropOnOverflow ? new ThreadPoolExecutor.AbortPolicy() : CdrHandlerExecutor::blockUntilQueued);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleCallRecord(CallRecord callRecord) {
+        try {
+            executor.execute(() -> {
+                long start = System.nanoTime();
+                boolean success = true;
+                try {
+                    handler.handleCallRecord(callRecord);
+                } catch (Throwable e) {
+                    success = false;
+                    log.error("freeswitch cdr call record handler[{}] handle exception : ", name, e);
+                } finally {
+                    counters.record(1, System.nanoTime() - start, success);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            counters.dropped.increment();
+            log.warn("freeswitch cdr call record handler[{}] queue is full, drop call : [{}], dropped count : [{}].", name, callRecord.getId(), counters.dropped.sum());
+        }
+    }
+
+    CdrHandlerStats stats() {
+        return counters.toStats().setName(name).setType(getType()).setThreads(threads)
+                .setQueueSize(executor.getQueue().size()).setQueueCapacity(queueCapacity);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getType() {
+        return "call";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDropped() {
+        return counters.dropped.sum();
+    }
+
+    void close() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("freeswitch cdr call record handler[{}] shutdown timeout, drop queue size : [{}].", name, executor.shutdownNow().size());
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package link.thingscloud.freeswitch.cdr.service.impl;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.domain.CdrHandlerStats;
+import link.thingscloud.freeswitch.cdr.handler.BatchCdrHandler;
+import link.thingscloud.freeswitch.cdr.metrics.CdrMetrics;
+import link.thingscloud.freeswitch.cdr.service.CdrHandlerMonitor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>CdrBatcher class.</p>
+ * <p>
+ * 为单个 {@link BatchCdrHandler} 攒批: 批次达到 maxSize, 或首条话单等待超过 maxLinger 时回调一次.
+ * 队列有界, 满时阻塞处理线程, 从而把背压传递到接入队列.
+ * 回调抛出异常的批次不执行 done, 话单留在 spool 中待重启后重放.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Slf4j
+final class CdrBatcher implements CdrHandlerMonitor {
+
+    // close() 放入队列唤醒攒批线程, 不回调
+    private static final Entry POISON = new Entry(null, null);
+
+    private final String name;
+    private final BatchCdrHandler handler;
+    private final int maxSize;
+    private final long maxLingerNanos;
+    private final BlockingQueue<Entry> queue;
+    private final int capacity;
+    private final Thread thread;
+    private final HandlerCounters counters = new HandlerCounters();
+    private final CdrMetrics metrics;
+    private volatile boolean running = true;
+
+    CdrBatcher(String name, BatchCdrHandler handler, int maxSize, long maxLingerMs, int capacity) {
+        this(name, handler, maxSize, maxLingerMs, capacity, CdrMetrics.NOOP);
+    }
+
+    CdrBatcher(String name, BatchCdrHandler handler, int maxSize, long maxLingerMs, int capacity, CdrMetrics metrics) {
+        this.name = name;
+        this.handler = handler;
+        this.metrics = metrics;
+        this.maxSize = maxSize;
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMs);
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = new BasicThreadFactory.Builder().namingPattern("cdr-batch-" + name + "-%d").daemon(true).build()
+                .newThread(this::loop);
+        this.thread.start();
+    }
+
+    /**
+     * 加入批次, done 在该话单所在批次回调完成后执行.
+     */
+    void add(Cdr cdr, Runnable done) {
+        try {
+            queue.put(new Entry(cdr, done));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            counters.dropped.increment();
+            log.warn("freeswitch cdr batch handler[{}] add interrupted, drop cdr : [{}].", name, cdr.getCoreUuid());
+            done.run();
+        }
+    }
+
+    CdrHandlerStats stats() {
+        return counters.toStats().setName(name).setType(getType()).setThreads(1)
+                .setQueueSize(queue.size()).setQueueCapacity(capacity);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getType() {
+        return "batch";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getQueueCapacity() {
+        return capacity;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDropped() {
+        return counters.dropped.sum();
+    }
+
+    /**
+     * 停止攒批, 等待进行中的批次回调完成后回调剩余话单, 超时才中断攒批线程.
+     */
+    void close() throws InterruptedException {
+        running = false;
+        // 队列满时攒批线程不会阻塞在 take 上, 放不进也无妨
+        queue.offer(POISON);
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+        if (thread.isAlive()) {
+            thread.interrupt();
+            thread.join(TimeUnit.SECONDS.toMillis(1));
+        }
+        if (thread.isAlive()) {
+            log.warn("freeswitch cdr batch handler[{}] shutdown timeout, leave queue size : [{}] in spool.", name, queue.size());
+            return;
+        }
+        List<Entry> batch = new ArrayList<>(maxSize);
+        while (queue.drainTo(batch, maxSize) > 0) {
+            flush(batch);
+        }
+    }
+
+    private void loop() {
+        List<Entry> batch = new ArrayList<>(maxSize);
+        while (running) {
+            try {
+                Entry first = queue.take();
+                if (first == POISON) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxLingerNanos;
+                while (running && batch.size() < maxSize) {
+                    queue.drainTo(batch, maxSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxSize || remaining <= 0) {
+                        break;
+                    }
+                    Entry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null || next == POISON) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // close() 等待超时后中断, 已取出的话单照常回调
+            }
+            flush(batch);
+        }
+    }
+
+    private void flush(List<Entry> batch) {
+        batch.remove(POISON);
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Cdr> cdrs = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            cdrs.add(entry.cdr);
+        }
+        long start = System.nanoTime();
+        boolean success = true;
+        try {
+            handler.handleCdrs(cdrs);
+        } catch (Throwable e) {
+            success = false;
+            log.error("freeswitch cdr batch handler[{}] handle {} cdrs exception : ", name, cdrs.size(), e);
+        }
+        long latency = System.nanoTime() - start;
+        counters.record(cdrs.size(), latency, success);
+        metrics.batchHandled(name, handler.getClass(), cdrs.size(), latency, success);
+        if (success) {
+            for (Entry entry : batch) {
+                entry.done.run();
+            }
+        }
+        batch.clear();
+    }
+
+    private static final class Entry {
+        private final Cdr cdr;
+        private final Runnable done;
+
+        private Entry(Cdr cdr, Runnable done) {
+            this.cdr = cdr;
+            this.done = done;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package link.thingscloud.freeswitch.cdr.service.impl;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.domain.CdrHandlerStats;
+import link.thingscloud.freeswitch.cdr.handler.CdrHandler;
+import link.thingscloud.freeswitch.cdr.metrics.CdrMetrics;
+import link.thingscloud.freeswitch.cdr.service.CdrHandlerMonitor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>CdrHandlerExecutor class.</p>
+ * <p>
+ * 每个 {@link CdrHandler} 独立的有界执行器(bulkhead), 慢 handler 只积压自己的队列.
+ * 队列满时 overflow=drop(默认)丢弃并计数, 分发线程不等待; overflow=block 阻塞分发线程(不丢话单, 但会拖慢解析与其它 handler).
+ * <p>
+ * striped 模式下为 threads 个单线程分片, 每个分片一个队列(容量 queueCapacity / threads), 按 key 哈希选择分片,
+ * 同一 key 的话单按提交顺序串行执行. 提交顺序即解析完成顺序, 并非 FreeSWITCH 的推送顺序.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Slf4j
+final class CdrHandlerExecutor implements CdrHandlerMonitor {
+
+    private final String name;
+    private final CdrHandler handler;
+    private final int threads;
+    private final int queueCapacity;
+    private final boolean dropOnOverflow;
+    private final ThreadPoolExecutor[] executors;
+    private final HandlerCounters counters = new HandlerCounters();
+    private final CdrMetrics metrics;
+
+    CdrHandlerExecutor(String name, CdrHandler handler, int threads, int queueCapacity, boolean dropOnOverflow, boolean striped, CdrMetrics metrics) {
+        this.name = name;
+        this.handler = handler;
+        this.metrics = metrics;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.dropOnOverflow = dropOnOverflow;
+        BasicThreadFactory threadFactory = new BasicThreadFactory.Builder().namingPattern("cdr-handler-" + name + "-%d").daemon(true).build();
+        if (striped) {
+            this.executors = new ThreadPoolExecutor[threads];
+            for (int i = 0; i < threads; i++) {
+                this.executors[i] = newExecutor(1, Math.max(1, queueCapacity / threads), threadFactory);
+            }
+        } else {
+            this.executors = new ThreadPoolExecutor[]{newExecutor(threads, queueCapacity, threadFactory)};
+        }
+    }
+
+    /**
+     * 提交话单, done 在 handler 返回或话单被丢弃后执行.
+     *
+     * @param key striped 模式下选择分片, shared 模式忽略
+     */
+    void submit(Cdr cdr, String key, Runnable done) {
+        ThreadPoolExecutor executor = executors.length == 1 ? executors[0] : executors[stripe(key, executors.length)];
+        try {
+            executor.execute(() -> {
+                long start = System.nanoTime();
+                boolean success = true;
+                try {
+                    handler.handleCdr(cdr);
+                } catch (Throwable e) {
+                    success = false;
+                    log.error("freeswitch cdr handler[{}] handle exception : ", name, e);
+                } finally {
+                    long latency = System.nanoTime() - start;
+                    counters.record(1, latency, success);
+                    metrics.handled(name, handler.getClass(), cdr, latency, success);
+                    done.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            counters.dropped.increment();
+            log.warn("freeswitch cdr handler[{}] queue is full, drop cdr : [{}], dropped count : [{}].", name, cdr.getCoreUuid(), counters.dropped.sum());
+            done.run();
+        }
+    }
+
+    CdrHandlerStats stats() {
+        return counters.toStats().setName(name).setType(getType()).setThreads(threads)
+                .setQueueSize(getQueueSize()).setQueueCapacity(queueCapacity);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getType() {
+        return "record";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getQueueSize() {
+        int size = 0;
+        for (ThreadPoolExecutor executor : executors) {
+            size += executor.getQueue().size();
+        }
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDropped() {
+        return counters.dropped.sum();
+    }
+
+    void close() throws InterruptedException {
+        for (ThreadPoolExecutor executor : executors) {
+            executor.shutdown();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (ThreadPoolExecutor executor : executors) {
+            if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                log.warn("freeswitch cdr handler[{}] shutdown timeout, drop queue size : [{}].", name, executor.shutdownNow().size());
+            }
+        }
+    }
+
+    private ThreadPoolExecutor newExecutor(int threads, int queueCapacity, BasicThreadFactory threadFactory) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory,
+                dropOnOverflow ? new ThreadPoolExecutor.AbortPolicy() : CdrHandlerExecutor::blockUntilQueued);
+    }
+
+    static int stripe(String key, int stripes) {
+        if (key == null) {
+            return 0;
+        }
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return (h & Integer.MAX_VALUE) % stripes;
+    }
+
+    static void blockUntilQueued(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("executor is shutdown.");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        }
+    }
+}
@@ -1,24 +1,59 @@
 package link.thingscloud.freeswitch.cdr.service.impl;
 
+import link.thingscloud.freeswitch.cdr.correlation.CdrCorrelator;
+import link.thingscloud.freeswitch.cdr.correlation.CorrelatorOptions;
+import link.thingscloud.freeswitch.cdr.dedup.CdrDedupCache;
 import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.domain.CdrHandlerStats;
+import link.thingscloud.freeswitch.cdr.exception.CdrRejectedException;
 import link.thingscloud.freeswitch.cdr.exception.ParserException;
+import link.thingscloud.freeswitch.cdr.handler.BatchCdrHandler;
+import link.thingscloud.freeswitch.cdr.handler.CallRecordHandler;
 import link.thingscloud.freeswitch.cdr.handler.CdrHandler;
+import link.thingscloud.freeswitch.cdr.handler.CdrProjectionAware;
+import link.thingscloud.freeswitch.cdr.metrics.CdrMetrics;
+import link.thingscloud.freeswitch.cdr.parser.CdrEnvelope;
 import link.thingscloud.freeswitch.cdr.parser.CdrParser;
+import link.thingscloud.freeswitch.cdr.parser.CdrProjection;
+import link.thingscloud.freeswitch.cdr.parser.CdrSection;
+import link.thingscloud.freeswitch.cdr.parser.ParseOptions;
+import link.thingscloud.freeswitch.cdr.parser.ParserEngine;
+import link.thingscloud.freeswitch.cdr.parser.UnknownElements;
+import link.thingscloud.freeswitch.cdr.service.CdrHandlerMonitor;
 import link.thingscloud.freeswitch.cdr.service.CdrService;
+import link.thingscloud.freeswitch.cdr.service.DispatchKey;
+import link.thingscloud.freeswitch.cdr.service.DispatchMode;
+import link.thingscloud.freeswitch.cdr.source.CdrFileSource;
+import link.thingscloud.freeswitch.cdr.source.FileSourceOptions;
+import link.thingscloud.freeswitch.cdr.spool.CdrSpool;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * <p>CdrServiceImpl class.</p>
@@ -28,61 +63,626 @@ import java.util.concurrent.ScheduledThreadPoolExecutor;
  */
 @Slf4j
 @Service
-public class CdrServiceImpl implements CdrService, ApplicationContextAware, InitializingBean {
+public class CdrServiceImpl implements CdrService, ApplicationContextAware, InitializingBean, DisposableBean {
+
+    private static final Runnable NOOP = () -> {
+    };
 
     @Value("${cdr.pool.size:8}")
     private int poolSize;
 
+    @Value("${cdr.pool.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${cdr.parser.engine:DOM4J}")
+    private ParserEngine parserEngine;
+
+    @Value("${cdr.parser.typed-stats:false}")
+    private boolean typedStats;
+
+    @Value("${cdr.parser.capture-unknown:false}")
+    private boolean captureUnknown;
+
+    @Value("${cdr.parser.projection.sections:}")
+    private String projectionSections;
+
+    @Value("${cdr.parser.projection.variables:}")
+    private String projectionVariables;
+
+    @Value("${cdr.dispatch.mode:SHARED}")
+    private DispatchMode dispatchMode;
+
+    @Value("${cdr.dispatch.key:call_uuid}")
+    private String dispatchKeyName;
+
+    @Value("${cdr.dispatch.stripes:0}")
+    private int dispatchStripes;
+
+    @Value("${cdr.batch.max-size:500}")
+    private int batchMaxSize;
+
+    @Value("${cdr.batch.max-linger-ms:200}")
+    private long batchMaxLingerMs;
+
+    @Value("${cdr.spool.enabled:false}")
+    private boolean spoolEnabled;
+
+    @Value("${cdr.spool.dir:cdr-spool}")
+    private String spoolDir;
+
+    @Value("${cdr.spool.segment-size:67108864}")
+    private long spoolSegmentSize;
+
+    @Value("${cdr.file-source.enabled:false}")
+    private boolean fileSourceEnabled;
+
+    @Value("${cdr.file-source.dir:}")
+    private String fileSourceDir;
+
+    @Value("${cdr.file-source.action:MOVE}")
+    private FileSourceOptions.Action fileSourceAction;
+
+    @Value("${cdr.file-source.done-dir:}")
+    private String fileSourceDoneDir;
+
+    @Value("${cdr.file-source.error-dir:}")
+    private String fileSourceErrorDir;
+
+    @Value("${cdr.file-source.threads:0}")
+    private int fileSourceThreads;
+
+    @Value("${cdr.file-source.settle-ms:1000}")
+    private long fileSourceSettleMs;
+
+    @Value("${cdr.file-source.watch:true}")
+    private boolean fileSourceWatch;
+
+    @Value("${cdr.dedup.enabled:false}")
+    private boolean dedupEnabled;
+
+    @Value("${cdr.dedup.ttl-ms:600000}")
+    private long dedupTtlMs;
+
+    @Value("${cdr.dedup.max-keys:1048576}")
+    private int dedupMaxKeys;
+
+    @Value("${cdr.correlation.timeout-ms:30000}")
+    private long correlationTimeoutMs;
+
+    @Value("${cdr.correlation.max-legs:100000}")
+    private int correlationMaxLegs;
+
+    @Value("${cdr.correlation.spill-dir:}")
+    private String correlationSpillDir;
+
+    @Value("${cdr.correlation.spill-segment-size:67108864}")
+    private long correlationSpillSegmentSize;
+
+    private DispatchKey dispatchKey;
+
+    private ParseOptions parseOptions;
+
     private ApplicationContext applicationContext;
 
-    private List<CdrHandler> cdrHandlers = new ArrayList<>(4);
+    private List<CdrHandlerExecutor> cdrHandlers = new ArrayList<>(4);
+
+    private List<CdrBatcher> cdrBatchers = new ArrayList<>(4);
+
+    private ThreadPoolExecutor poolExecutor;
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private CdrSpool cdrSpool;
+
+    private CdrFileSource cdrFileSource;
+
+    private CdrDedupCache dedupCache;
 
-    private final ExecutorService poolExecutor = new ScheduledThreadPoolExecutor(poolSize,
-            new BasicThreadFactory.Builder().namingPattern("pool-executor-%d").daemon(true).build());
+    private final LongAdder duplicateCount = new LongAdder();
+
+    private final LongAdder dispatchFallbackCount = new LongAdder();
+
+    private CdrCorrelator cdrCorrelator;
+
+    private List<CallRecordExecutor> callRecordExecutors = new ArrayList<>(2);
+
+    @Autowired(required = false)
+    private CdrMetrics cdrMetrics = CdrMetrics.NOOP;
 
     /**
      * {@inheritDoc}
      */
     @Override
     public void handle(String reqText) {
-        poolExecutor.execute(() -> {
-            try {
-                handleCdr(reqText);
-            } catch (ParserException e) {
-                log.error("handleCdr failure, cause : ", e);
-                log.error("handleCdr xml : [{}]", reqText);
-            }
-        });
+        if (cdrSpool != null) {
+            handle(reqText.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        long key = dedupKey(reqText);
+        if (isDuplicate(key)) {
+            return;
+        }
+        try {
+            execute(-1, () -> {
+                long start = System.nanoTime();
+                Cdr cdr;
+                try {
+                    cdr = CdrParser.decodeThenParse(reqText, parserEngine, parseOptions);
+                } catch (ParserException e) {
+                    cdrMetrics.parseFailed(parserEngine);
+                    log.error("handleCdr failure, cause : ", e);
+                    log.error("handleCdr xml : [{}]", reqText);
+                    return;
+                }
+                cdrMetrics.parsed(parserEngine, cdr, System.nanoTime() - start);
+                if (key == 0 && isDuplicate(cdr)) {
+                    return;
+                }
+                handleCdr(cdr, NOOP);
+            });
+        } catch (CdrRejectedException e) {
+            forget(key);
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handle(byte[] reqBytes) {
+        long key = dedupKey(reqBytes);
+        if (isDuplicate(key)) {
+            return;
+        }
+        try {
+            long seq = append(reqBytes);
+            execute(seq, () -> handleBytes(reqBytes, key == 0, acker(seq)));
+        } catch (CdrRejectedException e) {
+            // FreeSWITCH 会重试, 撤销去重标记
+            forget(key);
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getQueueSize() {
+        return poolExecutor.getQueue().size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDuplicateCount() {
+        return duplicateCount.sum();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDispatchFallbackCount() {
+        return dispatchFallbackCount.sum();
+    }
 
-    private void handleCdr(String xml) throws ParserException {
-        Cdr cdr = CdrParser.decodeThenParse(xml);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<CdrHandlerStats> getHandlerStats() {
+        List<CdrHandlerStats> stats = new ArrayList<>(cdrHandlers.size() + cdrBatchers.size() + callRecordExecutors.size());
+        cdrHandlers.forEach(cdrHandler -> stats.add(cdrHandler.stats()));
+        cdrBatchers.forEach(cdrBatcher -> stats.add(cdrBatcher.stats()));
+        callRecordExecutors.forEach(callRecordExecutor -> stats.add(callRecordExecutor.stats()));
+        return stats;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<CdrHandlerMonitor> getHandlerMonitors() {
+        List<CdrHandlerMonitor> monitors = new ArrayList<>(cdrHandlers.size() + cdrBatchers.size() + callRecordExecutors.size());
+        monitors.addAll(cdrHandlers);
+        monitors.addAll(cdrBatchers);
+        monitors.addAll(callRecordExecutors);
+        return monitors;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Long> getUnknownElementCounts() {
+        return UnknownElements.getCounts();
+    }
+
+    /**
+     * core-uuid + 通道 uuid 的哈希, 从请求开头读取(见 {@link CdrEnvelope}), 与解析后的 core-uuid + variables.uuid 一致;
+     * 未开启去重或请求中没有 uuid 字段返回 0
+     */
+    private long dedupKey(CdrEnvelope envelope) {
+        if (dedupCache == null || StringUtils.isEmpty(envelope.getUuid())) {
+            return 0;
+        }
+        return CdrDedupCache.hash(envelope.getCoreUuid(), envelope.channelUuid());
+    }
+
+    private long dedupKey(byte[] reqBytes) {
+        return dedupCache == null ? 0 : dedupKey(CdrEnvelope.read(reqBytes));
+    }
+
+    private long dedupKey(String reqText) {
+        return dedupCache == null ? 0 : dedupKey(CdrEnvelope.read(reqText));
+    }
+
+    private boolean isDuplicate(long key) {
+        if (key == 0 || dedupCache.mark(key)) {
+            return false;
+        }
+        duplicateCount.increment();
+        cdrMetrics.duplicate();
+        log.debug("freeswitch cdr duplicate request dropped, duplicate count : [{}].", duplicateCount);
+        return true;
+    }
+
+    /**
+     * 请求中没有 uuid 字段时, 解析后按相同的 key 去重
+     */
+    private boolean isDuplicate(Cdr cdr) {
+        if (dedupCache == null) {
+            return false;
+        }
+        String uuid = cdr.getVariables() == null || cdr.getVariables().getVariableTable() == null
+                ? null : cdr.getVariables().getVariableTable().get("uuid");
+        if (cdr.getCoreUuid() == null && uuid == null) {
+            return false;
+        }
+        return isDuplicate(CdrDedupCache.hash(cdr.getCoreUuid(), uuid));
+    }
+
+    private void forget(long key) {
+        if (key != 0) {
+            dedupCache.unmark(key);
+        }
+    }
+
+    private long append(byte[] reqBytes) {
+        if (cdrSpool == null) {
+            return -1;
+        }
+        try {
+            return cdrSpool.append(reqBytes);
+        } catch (IOException e) {
+            rejectedCount.increment();
+            cdrMetrics.rejected();
+            log.error("freeswitch cdr spool append failure : ", e);
+            throw new CdrRejectedException("freeswitch cdr spool append failure.", e);
+        }
+    }
+
+    private void ack(long seq) {
+        if (seq > 0 && cdrSpool != null) {
+            cdrSpool.ack(seq);
+        }
+    }
+
+    private Runnable acker(long seq) {
+        return seq > 0 && cdrSpool != null ? () -> cdrSpool.ack(seq) : NOOP;
+    }
+
+    private void execute(long seq, Runnable task) {
+        try {
+            poolExecutor.execute(task);
+            cdrMetrics.accepted();
+        } catch (RejectedExecutionException e) {
+            // 已落盘但未受理, FreeSWITCH 会重试, 从 spool 中移除
+            ack(seq);
+            rejectedCount.increment();
+            cdrMetrics.rejected();
+            log.warn("freeswitch cdr queue is full, queue size : [{}], rejected count : [{}].", getQueueSize(), getRejectedCount());
+            throw new CdrRejectedException("freeswitch cdr queue is full.", e);
+        }
+    }
+
+    private void replay() {
+        try {
+            cdrSpool.replay((seq, reqBytes) -> {
+                long key = dedupKey(reqBytes);
+                if (isDuplicate(key)) {
+                    // 重启期间 FreeSWITCH 重试的请求已先于重放被受理
+                    cdrSpool.ack(seq);
+                    return;
+                }
+                Runnable task = () -> handleBytes(reqBytes, key == 0, acker(seq));
+                while (!poolExecutor.isShutdown()) {
+                    try {
+                        poolExecutor.execute(task);
+                        return;
+                    } catch (RejectedExecutionException e) {
+                        try {
+                            TimeUnit.MILLISECONDS.sleep(100);
+                        } catch (InterruptedException ie) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                }
+            });
+        } catch (IOException e) {
+            log.error("freeswitch cdr spool replay failure : ", e);
+        }
+    }
+
+    private void handleBytes(byte[] reqBytes, boolean dedupParsed, Runnable done) {
+        long start = System.nanoTime();
+        Cdr cdr;
+        try {
+            cdr = CdrParser.decodeThenParse(reqBytes, parserEngine, parseOptions);
+        } catch (ParserException e) {
+            cdrMetrics.parseFailed(parserEngine);
+            log.error("handleCdr failure, cause : ", e);
+            log.error("handleCdr xml : [{}]", new String(reqBytes, StandardCharsets.UTF_8));
+            done.run();
+            return;
+        } catch (RuntimeException e) {
+            done.run();
+            throw e;
+        }
+        cdrMetrics.parsed(parserEngine, cdr, System.nanoTime() - start);
+        if (dedupParsed && isDuplicate(cdr)) {
+            done.run();
+            return;
+        }
+        handleCdr(cdr, done);
+    }
+
+    /**
+     * 分发到各 handler 的隔离执行器, done 在所有 CdrHandler 返回(或丢弃)且所有 BatchCdrHandler 成功回调该话单所在批次后执行一次.
+     */
+    private void handleCdr(Cdr cdr, Runnable done) {
         log.debug("handleCdr cdr : [{}]", cdr);
-        cdrHandlers.forEach(cdrHandler -> {
-            try {
-                cdrHandler.handleCdr(cdr);
-            } catch (Throwable e) {
-                log.error("freeswitch cdr handler[{}] handle exception : ", cdrHandler.getClass(), e);
+        if (cdrCorrelator != null) {
+            cdrCorrelator.add(cdr);
+        }
+        int count = cdrHandlers.size() + cdrBatchers.size();
+        if (count == 0) {
+            done.run();
+            return;
+        }
+        Runnable countdown = countdown(count, done);
+        String key = dispatchMode == DispatchMode.STRIPED ? dispatchKey(cdr) : null;
+        cdrHandlers.forEach(cdrHandler -> cdrHandler.submit(cdr, key, countdown));
+        cdrBatchers.forEach(cdrBatcher -> cdrBatcher.add(cdr, countdown));
+    }
+
+    /**
+     * 文件导入与 HTTP 接入共用去重 key, 同一话单两条途径只处理一次
+     */
+    private void handleFileCdr(Cdr cdr, Runnable done) {
+        if (isDuplicate(cdr)) {
+            done.run();
+            return;
+        }
+        handleCdr(cdr, done);
+    }
+
+    /**
+     * 回退到 core-uuid 时同一 FreeSWITCH 的话单集中到同一分片, 计数并按数量级告警
+     */
+    private String dispatchKey(Cdr cdr) {
+        if (dispatchKey.isCoreUuidFallback(cdr)) {
+            dispatchFallbackCount.increment();
+            long count = dispatchFallbackCount.sum();
+            if (count == 1 || count % 10000 == 0) {
+                log.warn("freeswitch cdr dispatch key : [{}] and uuid missing, fall back to core-uuid : [{}], fallback count : [{}].",
+                        dispatchKey.getKey(), cdr.getCoreUuid(), count);
             }
-        });
+        }
+        return dispatchKey.resolve(cdr);
+    }
+
+    private static Runnable countdown(int count, Runnable done) {
+        if (count == 1 || done == NOOP) {
+            return done;
+        }
+        AtomicInteger remaining = new AtomicInteger(count);
+        return () -> {
+            if (remaining.decrementAndGet() == 0) {
+                done.run();
+            }
+        };
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void afterPropertiesSet() {
-        log.info("freeswitch cdr[{}] start ...", poolSize);
+    public void afterPropertiesSet() throws IOException {
+        log.info("freeswitch cdr[{}] start, queue capacity : [{}], parser engine : [{}] ...", poolSize, queueCapacity, parserEngine);
+        parseOptions = new ParseOptions().setTypedStats(typedStats).setCaptureUnknown(captureUnknown);
+        poolExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new BasicThreadFactory.Builder().namingPattern("pool-executor-%d").daemon(true).build(),
+                new ThreadPoolExecutor.AbortPolicy());
+        Environment env = this.applicationContext.getEnvironment();
+        boolean striped = dispatchMode == DispatchMode.STRIPED;
+        dispatchKey = DispatchKey.of(dispatchKeyName);
+        // SHARED 默认与处理线程池同样的并发, 与各 handler 原先在全部处理线程上运行一致
+        int defaultThreads = striped ? (dispatchStripes > 0 ? dispatchStripes : Runtime.getRuntime().availableProcessors()) : poolSize;
+        if (striped) {
+            log.info("freeswitch cdr dispatch mode : [{}], key : [{}], stripes : [{}].", dispatchMode, dispatchKey.getKey(), defaultThreads);
+        }
         Map<String, CdrHandler> beansOfType =
                 this.applicationContext.getBeansOfType(CdrHandler.class);
-        for (CdrHandler handler : beansOfType.values()) {
-            log.info("freeswitch cdr add cdrHandler : [{}].", handler.getClass());
-            cdrHandlers.add(handler);
+        for (Map.Entry<String, CdrHandler> entry : beansOfType.entrySet()) {
+            String prefix = "cdr.handler." + entry.getKey() + ".";
+            int threads = env.getProperty(prefix + "threads", Integer.class, defaultThreads);
+            int capacity = env.getProperty(prefix + "queue-capacity", Integer.class, queueCapacity);
+            boolean drop = "drop".equalsIgnoreCase(env.getProperty(prefix + "overflow", "drop"));
+            log.info("freeswitch cdr add cdrHandler : [{}], class : [{}], threads : [{}], queue capacity : [{}], overflow : [{}].",
+                    entry.getKey(), entry.getValue().getClass(), threads, capacity, drop ? "drop" : "block");
+            cdrHandlers.add(new CdrHandlerExecutor(entry.getKey(), entry.getValue(), threads, capacity, drop, striped, cdrMetrics));
+        }
+        for (Map.Entry<String, BatchCdrHandler> entry : this.applicationContext.getBeansOfType(BatchCdrHandler.class).entrySet()) {
+            String prefix = "cdr.handler." + entry.getKey() + ".";
+            int maxSize = env.getProperty(prefix + "max-size", Integer.class, batchMaxSize);
+            long maxLingerMs = env.getProperty(prefix + "max-linger-ms", Long.class, batchMaxLingerMs);
+            int capacity = env.getProperty(prefix + "queue-capacity", Integer.class, queueCapacity);
+            log.info("freeswitch cdr add batchCdrHandler : [{}], class : [{}], max size : [{}], max linger : [{}]ms, queue capacity : [{}].",
+                    entry.getKey(), entry.getValue().getClass(), maxSize, maxLingerMs, capacity);
+            cdrBatchers.add(new CdrBatcher(entry.getKey(), entry.getValue(), maxSize, maxLingerMs, capacity, cdrMetrics));
+        }
+        Map<String, CallRecordHandler> callRecordHandlers = this.applicationContext.getBeansOfType(CallRecordHandler.class);
+        for (Map.Entry<String, CallRecordHandler> entry : callRecordHandlers.entrySet()) {
+            String prefix = "cdr.handler." + entry.getKey() + ".";
+            int threads = env.getProperty(prefix + "threads", Integer.class, poolSize);
+            int capacity = env.getProperty(prefix + "queue-capacity", Integer.class, queueCapacity);
+            boolean drop = "drop".equalsIgnoreCase(env.getProperty(prefix + "overflow", "drop"));
+            log.info("freeswitch cdr add callRecordHandler : [{}], class : [{}], threads : [{}], queue capacity : [{}], overflow : [{}].",
+                    entry.getKey(), entry.getValue().getClass(), threads, capacity, drop ? "drop" : "block");
+            callRecordExecutors.add(new CallRecordExecutor(entry.getKey(), entry.getValue(), threads, capacity, drop));
+        }
+        if (!callRecordExecutors.isEmpty()) {
+            cdrCorrelator = new CdrCorrelator(correlatorOptions(), new ArrayList<>(callRecordExecutors));
+            cdrCorrelator.start();
         }
-        if (CollectionUtils.isEmpty(cdrHandlers)) {
+        if (CollectionUtils.isEmpty(cdrHandlers) && CollectionUtils.isEmpty(cdrBatchers) && cdrCorrelator == null) {
             log.warn("freeswitch cdr cdrHandlers is empty, you can implements CdrHandler to handle cdr.");
         }
+        List<Object> handlerBeans = new ArrayList<>(beansOfType.values());
+        handlerBeans.addAll(this.applicationContext.getBeansOfType(BatchCdrHandler.class).values());
+        handlerBeans.addAll(callRecordHandlers.values());
+        parseOptions.setProjection(projection(handlerBeans));
+        if (!parseOptions.getProjection().isAll()) {
+            log.info("freeswitch cdr parser projection : [{}].", parseOptions.getProjection());
+        }
+        if (dedupEnabled) {
+            dedupCache = new CdrDedupCache(dedupTtlMs, dedupMaxKeys);
+            log.info("freeswitch cdr dedup ttl : [{}]ms, max keys : [{}].", dedupTtlMs, dedupMaxKeys);
+        }
+        if (spoolEnabled) {
+            cdrSpool = new CdrSpool(new File(spoolDir), spoolSegmentSize);
+            log.info("freeswitch cdr spool dir : [{}], segment size : [{}].", spoolDir, spoolSegmentSize);
+            new BasicThreadFactory.Builder().namingPattern("cdr-spool-replay-%d").daemon(true).build()
+                    .newThread(this::replay).start();
+        }
+        if (fileSourceEnabled) {
+            cdrFileSource = new CdrFileSource(fileSourceOptions(), parserEngine, parseOptions, dedupCache == null ? this::handleCdr : this::handleFileCdr, cdrMetrics);
+            cdrFileSource.start();
+        }
+        cdrMetrics.bind(this);
+    }
+
+    private FileSourceOptions fileSourceOptions() {
+        if (StringUtils.isBlank(fileSourceDir)) {
+            throw new IllegalArgumentException("cdr.file-source.dir is required when cdr.file-source.enabled=true.");
+        }
+        FileSourceOptions options = new FileSourceOptions().setDir(new File(fileSourceDir)).setAction(fileSourceAction)
+                .setSettleMs(fileSourceSettleMs).setWatch(fileSourceWatch);
+        if (StringUtils.isNotBlank(fileSourceDoneDir)) {
+            options.setDoneDir(new File(fileSourceDoneDir));
+        }
+        if (StringUtils.isNotBlank(fileSourceErrorDir)) {
+            options.setErrorDir(new File(fileSourceErrorDir));
+        }
+        if (fileSourceThreads > 0) {
+            options.setThreads(fileSourceThreads);
+        }
+        return options;
+    }
+
+    private CorrelatorOptions correlatorOptions() {
+        CorrelatorOptions options = new CorrelatorOptions().setTimeoutMs(correlationTimeoutMs).setMaxLegs(correlationMaxLegs)
+                .setSpillSegmentSize(correlationSpillSegmentSize);
+        if (StringUtils.isNotBlank(correlationSpillDir)) {
+            options.setSpillDir(new File(correlationSpillDir));
+        }
+        return options;
+    }
+
+    /**
+     * 所有 handler 所需内容的并集, 未声明 CdrProjectionAware 的 handler 使用 cdr.parser.projection.* 配置.
+     */
+    private CdrProjection projection(Collection<Object> beans) {
+        CdrProjection defaultProjection = CdrProjection.parse(projectionSections, projectionVariables);
+        CdrProjection projection = null;
+        for (Object bean : beans) {
+            CdrProjection declared = bean instanceof CdrProjectionAware ? ((CdrProjectionAware) bean).getCdrProjection() : null;
+            declared = declared == null ? defaultProjection : declared;
+            projection = projection == null ? declared : projection.union(declared);
+        }
+        if (projection == null) {
+            projection = defaultProjection;
+        }
+        if (dispatchMode == DispatchMode.STRIPED) {
+            // 分片 key 所需变量
+            projection = projection.union(CdrProjection.of(Collections.singleton(CdrSection.VARIABLES), Arrays.asList(dispatchKey.getKey(), "uuid")));
+        }
+        if (cdrCorrelator != null) {
+            // 关联 key
+            projection = projection.union(CdrCorrelator.PROJECTION);
+        }
+        if (dedupEnabled) {
+            // 请求中没有 uuid 字段时的去重 key
+            projection = projection.union(CdrProjection.of(Collections.singleton(CdrSection.VARIABLES), Collections.singletonList("uuid")));
+        }
+        return projection;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy() throws InterruptedException, IOException {
+        if (cdrFileSource != null) {
+            // 先停止读取, 已交给 handler 的话单处理完成后仍会移动 / 删除文件
+            cdrFileSource.stop();
+        }
+        poolExecutor.shutdown();
+        if (!poolExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("freeswitch cdr shutdown timeout, drop queue size : [{}].", poolExecutor.shutdownNow().size());
+        }
+        if (cdrCorrelator != null) {
+            // 等待中的通话按部分记录输出
+            cdrCorrelator.close();
+        }
+        for (CallRecordExecutor callRecordExecutor : callRecordExecutors) {
+            callRecordExecutor.close();
+        }
+        for (CdrHandlerExecutor cdrHandler : cdrHandlers) {
+            cdrHandler.close();
+        }
+        for (CdrBatcher cdrBatcher : cdrBatchers) {
+            cdrBatcher.close();
+        }
+        if (cdrSpool != null) {
+            // 未处理完的记录保留在 spool 中, 下次启动重放
+            cdrSpool.close();
+        }
+        if (cdrFileSource != null) {
+            cdrFileSource.close();
+        }
     }
 
     /** {@inheritDoc} */
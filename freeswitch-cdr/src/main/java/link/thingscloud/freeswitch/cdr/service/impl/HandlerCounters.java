@@ -0,0 +1,42 @@
+package link.thingscloud.freeswitch.cdr.service.impl;
+
+import link.thingscloud.freeswitch.cdr.domain.CdrHandlerStats;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>HandlerCounters class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+final class HandlerCounters {
+
+    final LongAdder handled = new LongAdder();
+    final LongAdder failed = new LongAdder();
+    final LongAdder dropped = new LongAdder();
+    final LongAdder invocations = new LongAdder();
+    final LongAdder totalLatencyNanos = new LongAdder();
+    final LongAccumulator maxLatencyNanos = new LongAccumulator(Long::max, 0L);
+
+    void record(int cdrs, long latencyNanos, boolean success) {
+        invocations.increment();
+        handled.add(cdrs);
+        if (!success) {
+            failed.add(cdrs);
+        }
+        totalLatencyNanos.add(latencyNanos);
+        maxLatencyNanos.accumulate(latencyNanos);
+    }
+
+    CdrHandlerStats toStats() {
+        return new CdrHandlerStats()
+                .setHandled(handled.sum())
+                .setFailed(failed.sum())
+                .setDropped(dropped.sum())
+                .setInvocations(invocations.sum())
+                .setTotalLatencyNanos(totalLatencyNanos.sum())
+                .setMaxLatencyNanos(maxLatencyNanos.get());
+    }
+}
@@ -0,0 +1,490 @@
+package link.thingscloud.freeswitch.cdr.source;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.exception.ParserException;
+import link.thingscloud.freeswitch.cdr.metrics.CdrMetrics;
+import link.thingscloud.freeswitch.cdr.parser.CdrParser;
+import link.thingscloud.freeswitch.cdr.parser.ParseOptions;
+import link.thingscloud.freeswitch.cdr.parser.ParserEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * <p>CdrFileSource class.</p>
+ * <p>
+ * 导入 mod_xml_cdr 写入 log-dir 的 a_&lt;uuid&gt;.cdr.xml 文件: 启动时扫描存量文件, 之后通过 WatchService 监听新文件.
+ * 文件由 threads 个线程并行读取、解析后交给 sink, sink 在所有 handler 处理完成后回调 done,
+ * 此时先追加 checkpoint 再按 action 移动或删除文件. 重启时 checkpoint 中仍存在的文件直接执行 action, 不再重复处理;
+ * 其余未完成的文件重新处理(至少一次语义). MOVE / DELETE 时 checkpoint 超过 checkpointCompactLines 行后重写,
+ * 只保留尚未移动 / 删除的文件名.
+ * <p>
+ * 读取解析队列有界, 满时扫描线程阻塞; handler 配置 overflow=block 或为 BatchCdrHandler 时, sink 在其队列满时阻塞读取线程, 从而按 handler 的处理速度导入.
+ * 解析失败的文件移动到 errorDir.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Slf4j
+public class CdrFileSource implements Closeable {
+
+    private final FileSourceOptions options;
+    private final Path dir;
+    private final Path doneDir;
+    private final Path errorDir;
+    private final Path checkpointPath;
+    private final ParserEngine engine;
+    private final ParseOptions parseOptions;
+    private final BiConsumer<Cdr, Runnable> sink;
+    private final CdrMetrics metrics;
+
+    /**
+     * 已提交(处理中)的文件名, action=NONE 时还包括已完成的文件名
+     */
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+    /**
+     * 等待静置的文件名
+     */
+    private final Set<String> settling = ConcurrentHashMap.newKeySet();
+    /**
+     * 已写入 checkpoint 但尚未移动 / 删除的文件名
+     */
+    private final Set<String> unapplied = ConcurrentHashMap.newKeySet();
+
+    private final ThreadPoolExecutor workers;
+    private final ExecutorService scanner;
+    private final ScheduledExecutorService scheduler;
+    private final LongAdder imported = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Object checkpointLock = new Object();
+
+    private Writer checkpoint;
+    private int checkpointLines;
+    private WatchService watchService;
+    private Thread watchThread;
+    private volatile boolean running = true;
+
+    /**
+     * <p>Constructor for CdrFileSource.</p>
+     *
+     * @param options      a {@link link.thingscloud.freeswitch.cdr.source.FileSourceOptions} object.
+     * @param engine       a {@link link.thingscloud.freeswitch.cdr.parser.ParserEngine} object.
+     * @param parseOptions a {@link link.thingscloud.freeswitch.cdr.parser.ParseOptions} object.
+     * @param sink         接收话单, 所有 handler 处理完成后执行第二个参数
+     * @throws java.io.IOException if any.
+     */
+    public CdrFileSource(FileSourceOptions options, ParserEngine engine, ParseOptions parseOptions, BiConsumer<Cdr, Runnable> sink) throws IOException {
+        this(options, engine, parseOptions, sink, CdrMetrics.NOOP);
+    }
+
+    /**
+     * <p>Constructor for CdrFileSource.</p>
+     *
+     * @param options      a {@link link.thingscloud.freeswitch.cdr.source.FileSourceOptions} object.
+     * @param engine       a {@link link.thingscloud.freeswitch.cdr.parser.ParserEngine} object.
+     * @param parseOptions a {@link link.thingscloud.freeswitch.cdr.parser.ParseOptions} object.
+     * @param sink         接收话单, 所有 handler 处理完成后执行第二个参数
+     * @param metrics      解析耗时与失败, 与 HTTP 接入共用
+     * @throws java.io.IOException if any.
+     */
+    public CdrFileSource(FileSourceOptions options, ParserEngine engine, ParseOptions parseOptions, BiConsumer<Cdr, Runnable> sink,
+                         CdrMetrics metrics) throws IOException {
+        this.options = options;
+        this.dir = options.getDir().toPath();
+        this.doneDir = (options.getDoneDir() == null ? new File(options.getDir(), "done") : options.getDoneDir()).toPath();
+        this.errorDir = (options.getErrorDir() == null ? new File(options.getDir(), "error") : options.getErrorDir()).toPath();
+        this.checkpointPath = (options.getCheckpointFile() == null ? new File(options.getDir(), ".checkpoint") : options.getCheckpointFile()).toPath();
+        this.engine = engine;
+        this.parseOptions = parseOptions;
+        this.sink = sink;
+        this.metrics = metrics;
+        Files.createDirectories(dir);
+        Files.createDirectories(errorDir);
+        if (options.getAction() == FileSourceOptions.Action.MOVE) {
+            Files.createDirectories(doneDir);
+        }
+        int threads = Math.max(1, options.getThreads());
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, options.getQueueCapacity())),
+                new BasicThreadFactory.Builder().namingPattern("cdr-file-source-%d").daemon(true).build(),
+                CdrFileSource::blockUntilQueued);
+        this.scanner = Executors.newSingleThreadExecutor(
+                new BasicThreadFactory.Builder().namingPattern("cdr-file-scan-%d").daemon(true).build());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder().namingPattern("cdr-file-settle-%d").daemon(true).build());
+    }
+
+    /**
+     * 恢复 checkpoint, 开始监听并在后台扫描存量文件.
+     *
+     * @throws java.io.IOException if any.
+     */
+    public void start() throws IOException {
+        recover();
+        if (options.isWatch()) {
+            // 先注册监听再扫描, 扫描期间新写入的文件不会遗漏
+            watchService = dir.getFileSystem().newWatchService();
+            dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+            watchThread = new BasicThreadFactory.Builder().namingPattern("cdr-file-watch-%d").daemon(true).build()
+                    .newThread(this::watchLoop);
+            watchThread.start();
+        }
+        scanner.execute(this::scan);
+        log.info("freeswitch cdr file source dir : [{}], action : [{}], threads : [{}], watch : [{}].",
+                dir, options.getAction(), workers.getCorePoolSize(), options.isWatch());
+    }
+
+    /**
+     * <p>getImportedCount.</p>
+     *
+     * @return 已完成(所有 handler 处理完成)的文件数
+     */
+    public long getImportedCount() {
+        return imported.sum();
+    }
+
+    /**
+     * <p>getFailedCount.</p>
+     *
+     * @return 解析失败移入 errorDir 的文件数
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * <p>getPendingCount.</p>
+     *
+     * @return 已提交但未完成的文件数
+     */
+    public int getPendingCount() {
+        return options.getAction() == FileSourceOptions.Action.NONE ? workers.getQueue().size() + workers.getActiveCount() : seen.size();
+    }
+
+    /**
+     * 停止扫描、监听与读取, 等待读取线程把已读取的话单交给 sink; 之后完成的话单仍会执行 action.
+     *
+     * @throws java.lang.InterruptedException if any.
+     */
+    public void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("freeswitch cdr file source close watch service failure : ", e);
+            }
+        }
+        scanner.shutdownNow();
+        scheduler.shutdownNow();
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("freeswitch cdr file source shutdown timeout, drop queue size : [{}].", workers.shutdownNow().size());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (checkpointLock) {
+            if (checkpoint != null) {
+                Writer writer = checkpoint;
+                checkpoint = null;
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * checkpoint 中的文件已处理完成: NONE 记入 seen, MOVE / DELETE 补做 action 后清空 checkpoint.
+     */
+    private void recover() throws IOException {
+        boolean keep = options.getAction() == FileSourceOptions.Action.NONE;
+        if (Files.exists(checkpointPath)) {
+            int entries = 0;
+            int applied = 0;
+            try (BufferedReader reader = Files.newBufferedReader(checkpointPath, StandardCharsets.UTF_8)) {
+                String name;
+                while ((name = reader.readLine()) != null) {
+                    if (name.isEmpty()) {
+                        continue;
+                    }
+                    entries++;
+                    if (keep) {
+                        seen.add(name);
+                    } else if (Files.exists(dir.resolve(name))) {
+                        apply(dir.resolve(name));
+                        applied++;
+                    }
+                }
+            }
+            checkpointLines = keep ? entries : 0;
+            log.info("freeswitch cdr file source recover checkpoint : [{}], entries : [{}], applied : [{}].", checkpointPath, entries, applied);
+        }
+        checkpoint = openCheckpoint(keep ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private Writer openCheckpoint(StandardOpenOption mode) throws IOException {
+        return Files.newBufferedWriter(checkpointPath, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode);
+    }
+
+    private void scan() {
+        long count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, path -> matches(path.getFileName().toString()))) {
+            for (Path file : stream) {
+                if (!running) {
+                    return;
+                }
+                settle(file);
+                count++;
+            }
+            log.info("freeswitch cdr file source scan dir : [{}], files : [{}].", dir, count);
+        } catch (IOException e) {
+            log.error("freeswitch cdr file source scan dir : [{}] failure : ", dir, e);
+        } catch (RejectedExecutionException e) {
+            log.debug("freeswitch cdr file source scan stopped.");
+        }
+    }
+
+    private void watchLoop() {
+        while (running) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    log.warn("freeswitch cdr file source watch overflow, rescan dir : [{}].", dir);
+                    scanner.execute(this::scan);
+                    continue;
+                }
+                Path name = (Path) event.context();
+                if (name != null && matches(name.toString()) && settling.add(name.toString())) {
+                    schedule(dir.resolve(name), options.getSettleMs());
+                }
+            }
+            if (!key.reset()) {
+                log.warn("freeswitch cdr file source watch key invalid, dir : [{}].", dir);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 最后修改时间距今不足 settleMs 的文件延迟读取, 否则提交读取.
+     */
+    private void settle(Path file) {
+        String name = file.getFileName().toString();
+        long age;
+        try {
+            age = System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            // 已被删除或移走
+            settling.remove(name);
+            return;
+        }
+        if (age < options.getSettleMs()) {
+            settling.add(name);
+            schedule(file, options.getSettleMs() - age);
+            return;
+        }
+        settling.remove(name);
+        submit(file);
+    }
+
+    private void schedule(Path file, long delayMs) {
+        try {
+            scheduler.schedule(() -> settle(file), Math.max(1, delayMs), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            settling.remove(file.getFileName().toString());
+        }
+    }
+
+    private void submit(Path file) {
+        String name = file.getFileName().toString();
+        if (!seen.add(name)) {
+            return;
+        }
+        try {
+            workers.execute(() -> process(file, name));
+        } catch (RejectedExecutionException e) {
+            seen.remove(name);
+            throw e;
+        }
+    }
+
+    private void process(Path file, String name) {
+        byte[] xml;
+        try {
+            xml = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            seen.remove(name);
+            return;
+        } catch (IOException e) {
+            seen.remove(name);
+            log.error("freeswitch cdr file source read file : [{}] failure : ", file, e);
+            return;
+        }
+        Cdr cdr;
+        long start = System.nanoTime();
+        try {
+            cdr = CdrParser.parse(xml, engine, parseOptions);
+        } catch (ParserException e) {
+            metrics.parseFailed(engine);
+            failed.increment();
+            log.error("freeswitch cdr file source parse file : [{}] failure, move to : [{}], cause : ", file, errorDir, e);
+            move(file, errorDir);
+            seen.remove(name);
+            return;
+        }
+        metrics.parsed(engine, cdr, System.nanoTime() - start);
+        try {
+            sink.accept(cdr, () -> complete(file, name));
+        } catch (RuntimeException e) {
+            seen.remove(name);
+            log.error("freeswitch cdr file source dispatch file : [{}] failure : ", file, e);
+        }
+    }
+
+    private void complete(Path file, String name) {
+        imported.increment();
+        boolean keep = options.getAction() == FileSourceOptions.Action.NONE;
+        synchronized (checkpointLock) {
+            if (checkpoint != null) {
+                try {
+                    checkpoint.write(name);
+                    checkpoint.write('\n');
+                    checkpoint.flush();
+                    checkpointLines++;
+                    if (!keep) {
+                        unapplied.add(name);
+                    }
+                } catch (IOException e) {
+                    log.error("freeswitch cdr file source write checkpoint : [{}] failure : ", checkpointPath, e);
+                }
+            }
+        }
+        if (!keep) {
+            apply(file);
+            seen.remove(name);
+            unapplied.remove(name);
+            compactCheckpoint();
+        }
+    }
+
+    /**
+     * MOVE / DELETE 时 checkpoint 只在 action 完成前有意义, 行数超过阈值后经临时文件原子替换, 只保留尚未执行 action 的文件名
+     */
+    private void compactCheckpoint() {
+        synchronized (checkpointLock) {
+            if (checkpoint == null || checkpointLines < Math.max(options.getCheckpointCompactLines(), 2 * unapplied.size())) {
+                return;
+            }
+            Path tmp = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+            try {
+                Writer writer = checkpoint;
+                checkpoint = null;
+                writer.close();
+                // unapplied 只在持锁时加入, 快照包含所有尚未执行 action 的文件
+                List<String> names = new ArrayList<>(unapplied);
+                Files.write(tmp, names, StandardCharsets.UTF_8);
+                Files.move(tmp, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                checkpointLines = names.size();
+                log.debug("freeswitch cdr file source compact checkpoint : [{}], entries : [{}].", checkpointPath, names.size());
+            } catch (IOException e) {
+                log.error("freeswitch cdr file source compact checkpoint : [{}] failure : ", checkpointPath, e);
+            } finally {
+                if (checkpoint == null) {
+                    try {
+                        checkpoint = openCheckpoint(StandardOpenOption.APPEND);
+                    } catch (IOException e) {
+                        log.error("freeswitch cdr file source reopen checkpoint : [{}] failure : ", checkpointPath, e);
+                    }
+                }
+            }
+        }
+    }
+
+    private void apply(Path file) {
+        if (options.getAction() == FileSourceOptions.Action.MOVE) {
+            move(file, doneDir);
+        } else if (options.getAction() == FileSourceOptions.Action.DELETE) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.error("freeswitch cdr file source delete file : [{}] failure : ", file, e);
+            }
+        }
+    }
+
+    private void move(Path file, Path target) {
+        try {
+            Files.move(file, target.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchFileException e) {
+            log.debug("freeswitch cdr file source file : [{}] is gone.", file);
+        } catch (IOException e) {
+            log.error("freeswitch cdr file source move file : [{}] to : [{}] failure : ", file, target, e);
+        }
+    }
+
+    private boolean matches(String name) {
+        return name.endsWith(options.getSuffix()) && !name.startsWith(".");
+    }
+
+    private static void blockUntilQueued(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("executor is shutdown.");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        }
+    }
+}
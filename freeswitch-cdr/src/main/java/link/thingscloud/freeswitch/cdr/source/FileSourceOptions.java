@@ -0,0 +1,79 @@
+package link.thingscloud.freeswitch.cdr.source;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.io.File;
+
+/**
+ * <p>FileSourceOptions class.</p>
+ * <p>
+ * {@link CdrFileSource} 选项.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Data
+@Accessors(chain = true)
+public class FileSourceOptions {
+
+    /**
+     * 处理完成后的动作
+     */
+    public enum Action {
+        /**
+         * 移动到 doneDir
+         */
+        MOVE,
+        /**
+         * 删除
+         */
+        DELETE,
+        /**
+         * 保留原文件, 只记录 checkpoint, 已处理的文件名常驻内存, 适合文件数不大的目录
+         */
+        NONE
+    }
+
+    /**
+     * mod_xml_cdr log-dir
+     */
+    private File dir;
+    /**
+     * 文件名后缀
+     */
+    private String suffix = ".cdr.xml";
+    private Action action = Action.MOVE;
+    /**
+     * MOVE 的目标目录, 默认 dir/done
+     */
+    private File doneDir;
+    /**
+     * 解析失败的文件移动到该目录, 默认 dir/error
+     */
+    private File errorDir;
+    /**
+     * 已完成文件名的追加日志, 默认 dir/.checkpoint
+     */
+    private File checkpointFile;
+    /**
+     * MOVE / DELETE 时 checkpoint 追加超过该行数后重写, 只保留已完成但尚未移动 / 删除的文件名
+     */
+    private int checkpointCompactLines = 10000;
+    /**
+     * 读取解析线程数
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+    /**
+     * 读取解析队列容量, 满时扫描线程阻塞
+     */
+    private int queueCapacity = 1024;
+    /**
+     * 监听到的新文件在最后修改后至少静置该时长才读取, 避免读到 FreeSWITCH 未写完的文件
+     */
+    private long settleMs = 1000;
+    /**
+     * 是否监听新文件, false 时只处理启动时已存在的文件
+     */
+    private boolean watch = true;
+}
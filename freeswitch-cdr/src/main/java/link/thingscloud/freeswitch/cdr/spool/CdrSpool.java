@@ -0,0 +1,409 @@
+package link.thingscloud.freeswitch.cdr.spool;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * <p>CdrSpool class.</p>
+ * <p>
+ * 追加写的分段磁盘日志: 应答 FreeSWITCH 之前先落盘原始报文, 所有 CdrHandler 处理完成后 ack,
+ * 段内记录全部 ack 且段已滚动后删除该段. 启动时重放未 ack 的记录(至少一次语义).
+ * <p>
+ * 多个写线程共享一次 fsync(group commit): 写入在锁内完成, 由后台线程在锁外 force, 写线程等待覆盖自己序号的 force 完成.
+ * <p>
+ * 记录格式: [int length][int crc32][long seq][payload], ack 文件为顺序写入的 long seq.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+@Slf4j
+public class CdrSpool implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String ACK_SUFFIX = ".ack";
+    private static final int HEADER_SIZE = 16;
+
+    private final File dir;
+    private final long segmentSize;
+
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition written = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+
+    private final Thread syncThread;
+
+    private Segment active;
+    private long lastSeq;
+    private long writtenSeq;
+    private long syncedSeq;
+    private IOException syncFailure;
+    private volatile boolean running = true;
+
+    /**
+     * <p>Constructor for CdrSpool.</p>
+     *
+     * @param dir         spool directory
+     * @param segmentSize roll to a new segment once the active one reaches this many bytes
+     * @throws java.io.IOException if any.
+     */
+    public CdrSpool(File dir, long segmentSize) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(dir.toPath());
+        recover();
+        lastSeq = writtenSeq = syncedSeq = segments.isEmpty() ? 0 : segments.lastEntry().getValue().lastSeq;
+        active = openSegment(lastSeq + 1);
+        syncThread = new BasicThreadFactory.Builder().namingPattern("cdr-spool-sync-%d").daemon(true).build()
+                .newThread(this::syncLoop);
+        syncThread.start();
+    }
+
+    /**
+     * 追加一条记录, 返回时记录已 fsync 落盘.
+     *
+     * @param payload 原始报文
+     * @return 记录序号, 用于 {@link #ack(long)}
+     * @throws java.io.IOException if any.
+     */
+    public long append(byte[] payload) throws IOException {
+        long seq;
+        lock.lock();
+        try {
+            ensureRunning();
+            seq = ++lastSeq;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(payload.length).putInt(crc(seq, payload)).putLong(seq).flip();
+            ByteBuffer[] buffers = {header, ByteBuffer.wrap(payload)};
+            long remaining = HEADER_SIZE + (long) payload.length;
+            while (remaining > 0) {
+                remaining -= active.channel.write(buffers);
+            }
+            active.size += HEADER_SIZE + payload.length;
+            active.lastSeq = seq;
+            active.outstanding++;
+            writtenSeq = seq;
+            if (active.size >= segmentSize) {
+                roll();
+            } else {
+                written.signal();
+            }
+            while (syncedSeq < seq) {
+                if (syncFailure != null) {
+                    throw syncFailure;
+                }
+                ensureRunning();
+                synced.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return seq;
+    }
+
+    /**
+     * 记录已被所有 handler 处理完成.
+     *
+     * @param seq {@link #append(byte[])} 返回的序号
+     */
+    public void ack(long seq) {
+        Map.Entry<Long, Segment> entry = segments.floorEntry(seq);
+        if (entry == null) {
+            log.warn("cdr spool ack unknown seq : [{}]", seq);
+            return;
+        }
+        Segment segment = entry.getValue();
+        lock.lock();
+        try {
+            if (segment.ackChannel == null) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(8);
+            buffer.putLong(seq).flip();
+            while (buffer.hasRemaining()) {
+                segment.ackChannel.write(buffer);
+            }
+            segment.outstanding--;
+            if (segment.sealed && segment.outstanding <= 0) {
+                delete(segment);
+            }
+        } catch (IOException e) {
+            log.warn("cdr spool ack seq : [{}] failure : ", seq, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 重放启动时发现的未 ack 记录, 调用方在处理完成后需 {@link #ack(long)}.
+     *
+     * @param consumer (seq, payload)
+     * @throws java.io.IOException if any.
+     */
+    public void replay(BiConsumer<Long, byte[]> consumer) throws IOException {
+        List<Segment> recovered = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            if (segment.recovered) {
+                recovered.add(segment);
+            }
+        }
+        for (Segment segment : recovered) {
+            Set<Long> acked = readAcks(segment.ackFile);
+            readRecords(segment.file, (seq, payload) -> {
+                if (!acked.contains(seq)) {
+                    consumer.accept(seq, payload);
+                }
+            });
+        }
+    }
+
+    /**
+     * <p>getSegmentCount.</p>
+     *
+     * @return segment files currently on disk
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+            active.channel.force(false);
+            syncedSeq = writtenSeq;
+            written.signalAll();
+            synced.signalAll();
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+        syncThread.interrupt();
+    }
+
+    private void syncLoop() {
+        while (running) {
+            long target;
+            FileChannel channel;
+            lock.lock();
+            try {
+                while (running && writtenSeq == syncedSeq) {
+                    written.awaitUninterruptibly();
+                }
+                if (!running) {
+                    return;
+                }
+                target = writtenSeq;
+                channel = active.channel;
+            } finally {
+                lock.unlock();
+            }
+            IOException failure = null;
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException e) {
+                // 段已滚动或关闭, 滚动/关闭时已 force
+            } catch (IOException e) {
+                log.error("cdr spool force failure : ", e);
+                failure = e;
+            }
+            lock.lock();
+            try {
+                if (failure != null) {
+                    syncFailure = failure;
+                } else if (target > syncedSeq) {
+                    syncedSeq = target;
+                }
+                synced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void roll() throws IOException {
+        Segment sealed = active;
+        sealed.channel.force(false);
+        syncedSeq = writtenSeq;
+        synced.signalAll();
+        sealed.sealed = true;
+        sealed.channel.close();
+        active = openSegment(lastSeq + 1);
+        if (sealed.outstanding <= 0) {
+            delete(sealed);
+        }
+        log.debug("cdr spool roll segment : [{}]", active.file);
+    }
+
+    private Segment openSegment(long firstSeq) throws IOException {
+        String name = String.format("%020d", firstSeq);
+        Segment segment = new Segment(new File(dir, name + SEGMENT_SUFFIX), new File(dir, name + ACK_SUFFIX), firstSeq);
+        segment.channel = FileChannel.open(segment.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segment.ackChannel = FileChannel.open(segment.ackFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segment.size = segment.channel.size();
+        segment.lastSeq = firstSeq - 1;
+        segments.put(firstSeq, segment);
+        return segment;
+    }
+
+    private void delete(Segment segment) {
+        segments.remove(segment.firstSeq);
+        segment.close();
+        if (!segment.file.delete() || !segment.ackFile.delete()) {
+            log.warn("cdr spool delete segment : [{}] failure.", segment.file);
+        }
+    }
+
+    private void recover() throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName().substring(0, file.getName().length() - SEGMENT_SUFFIX.length());
+            Segment segment = new Segment(file, new File(dir, name + ACK_SUFFIX), Long.parseLong(name));
+            segment.sealed = true;
+            segment.recovered = true;
+            segment.lastSeq = segment.firstSeq - 1;
+            Set<Long> acked = readAcks(segment.ackFile);
+            readRecords(file, (seq, payload) -> {
+                segment.lastSeq = Math.max(segment.lastSeq, seq);
+                if (!acked.contains(seq)) {
+                    segment.outstanding++;
+                }
+            });
+            if (segment.outstanding <= 0) {
+                segments.put(segment.firstSeq, segment);
+                delete(segment);
+                continue;
+            }
+            segment.ackChannel = FileChannel.open(segment.ackFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            segments.put(segment.firstSeq, segment);
+            log.info("cdr spool recover segment : [{}], outstanding : [{}].", file, segment.outstanding);
+        }
+    }
+
+    private static Set<Long> readAcks(File ackFile) throws IOException {
+        Set<Long> acked = new HashSet<>();
+        if (!ackFile.exists()) {
+            return acked;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(ackFile.toPath()));
+        while (buffer.remaining() >= 8) {
+            acked.add(buffer.getLong());
+        }
+        return acked;
+    }
+
+    private static void readRecords(File file, BiConsumer<Long, byte[]> consumer) throws IOException {
+        Path path = file.toPath();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (position + HEADER_SIZE <= size) {
+                header.clear();
+                readFully(channel, header, position);
+                header.flip();
+                int length = header.getInt();
+                int crc = header.getInt();
+                long seq = header.getLong();
+                if (length < 0 || position + HEADER_SIZE + length > size) {
+                    log.warn("cdr spool segment : [{}] torn record at : [{}], ignore tail.", file, position);
+                    return;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(channel, payload, position + HEADER_SIZE);
+                if (crc != crc(seq, payload.array())) {
+                    log.warn("cdr spool segment : [{}] crc mismatch at : [{}], ignore tail.", file, position);
+                    return;
+                }
+                consumer.accept(seq, payload.array());
+                position += HEADER_SIZE + length;
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+    }
+
+    private static int crc(long seq, byte[] payload) {
+        CRC32 crc32 = new CRC32();
+        for (int i = 0; i < 8; i++) {
+            crc32.update((int) (seq >>> (i * 8)));
+        }
+        crc32.update(payload, 0, payload.length);
+        return (int) crc32.getValue();
+    }
+
+    private void ensureRunning() throws IOException {
+        if (!running) {
+            throw new IOException("cdr spool is closed.");
+        }
+    }
+
+    private static final class Segment {
+        private final File file;
+        private final File ackFile;
+        private final long firstSeq;
+        private FileChannel channel;
+        private FileChannel ackChannel;
+        private long size;
+        private long lastSeq;
+        private long outstanding;
+        private boolean sealed;
+        private boolean recovered;
+
+        private Segment(File file, File ackFile, long firstSeq) {
+            this.file = file;
+            this.ackFile = ackFile;
+            this.firstSeq = firstSeq;
+        }
+
+        private void close() {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+                if (ackChannel != null) {
+                    ackChannel.close();
+                    ackChannel = null;
+                }
+            } catch (IOException e) {
+                log.warn("cdr spool close segment : [{}] failure : ", file, e);
+            }
+        }
+    }
+}
@@ -3,7 +3,9 @@ package link.thingscloud.freeswitch.cdr.util;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.InputStream;
 import java.net.URLDecoder;
+import java.util.Arrays;
 
 
 /**
@@ -47,4 +49,85 @@ public class CdrDecodeUtil {
         }
         return sb.toString();
     }
+
+    /**
+     * 在 application/x-www-form-urlencoded 原始字节中定位字段值的起始位置.
+     *
+     * @param body 原始请求字节
+     * @param name 字段名(ASCII)
+     * @return 字段值起始下标, 不存在返回 -1
+     */
+    public static int indexOfField(byte[] body, String name) {
+        int nameLen = name.length();
+        int fieldStart = 0;
+        while (fieldStart < body.length) {
+            if (fieldStart + nameLen < body.length && body[fieldStart + nameLen] == '=' && regionMatches(body, fieldStart, name)) {
+                return fieldStart + nameLen + 1;
+            }
+            int next = endOfField(body, fieldStart);
+            fieldStart = next + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * <p>endOfField.</p>
+     *
+     * @param body 原始请求字节
+     * @param from 字段值起始下标
+     * @return 字段值结束下标(不含), 即下一个 '&amp;' 的位置或 body.length
+     */
+    public static int endOfField(byte[] body, int from) {
+        for (int i = from; i < body.length; i++) {
+            if (body[i] == '&') {
+                return i;
+            }
+        }
+        return body.length;
+    }
+
+    /**
+     * 返回边读边解码指定字段值的输入流, 不产生中间 String.
+     * <p>
+     * 字段值读到 body 末尾: mod_xml_cdr 总把 cdr 作为最后一个字段, 未编码提交时其中可能含有 '&amp;'(如 &amp;amp;),
+     * 与 {@code substringAfter(decode(body), "cdr=")} 保持一致.
+     *
+     * @param body 原始请求字节
+     * @param name 字段名(ASCII)
+     * @return a {@link java.io.InputStream} object, 字段不存在返回 null
+     */
+    public static InputStream decodeField(byte[] body, String name) {
+        int start = indexOfField(body, name);
+        if (start < 0) {
+            return null;
+        }
+        return new UrlDecodeInputStream(body, start, body.length - start);
+    }
+
+    /**
+     * 解码指定字段值为字节数组(编码与解码后的 UTF-8 字节一致, 不经过 String), 与 {@link #decodeField} 相同读到 body 末尾.
+     *
+     * @param body 原始请求字节
+     * @param name 字段名(ASCII)
+     * @return 解码后的字节, 字段不存在返回 null
+     */
+    public static byte[] decodeFieldBytes(byte[] body, String name) {
+        int start = indexOfField(body, name);
+        if (start < 0) {
+            return null;
+        }
+        int length = body.length - start;
+        byte[] decoded = new byte[length];
+        int n = new UrlDecodeInputStream(body, start, length).read(decoded, 0, length);
+        return n == length ? decoded : Arrays.copyOf(decoded, Math.max(n, 0));
+    }
+
+    private static boolean regionMatches(byte[] body, int offset, String name) {
+        for (int i = 0, len = name.length(); i < len; i++) {
+            if (body[offset + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
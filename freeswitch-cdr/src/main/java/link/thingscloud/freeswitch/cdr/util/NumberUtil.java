@@ -11,6 +11,11 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class NumberUtil {
 
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
     private NumberUtil() {
     }
 
@@ -49,4 +54,105 @@ public class NumberUtil {
             return null;
         }
     }
+
+    /**
+     * 不产生中间对象地解析十进制整数, 空、非法或溢出时返回 defaultValue.
+     *
+     * @param cs           a {@link java.lang.CharSequence} object.
+     * @param defaultValue a long.
+     * @return a long.
+     */
+    public static long parseLong(CharSequence cs, long defaultValue) {
+        if (cs == null) {
+            return defaultValue;
+        }
+        int len = cs.length();
+        int i = 0;
+        boolean negative = false;
+        if (len > 0 && (cs.charAt(0) == '-' || cs.charAt(0) == '+')) {
+            negative = cs.charAt(0) == '-';
+            i++;
+        }
+        if (i == len) {
+            return defaultValue;
+        }
+        long result = 0;
+        for (; i < len; i++) {
+            int digit = cs.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < Long.MIN_VALUE / 10) {
+                return defaultValue;
+            }
+            // 以负数累加, 可表示 Long.MIN_VALUE
+            result = result * 10 - digit;
+            if (result > 0) {
+                return defaultValue;
+            }
+        }
+        if (negative) {
+            return result;
+        }
+        return result == Long.MIN_VALUE ? defaultValue : -result;
+    }
+
+    /**
+     * 解析十进制小数(如 4.50、400.00), 有效数字不超过 15 位且小数位不超过 22 位时不产生中间对象且结果与
+     * {@link Double#parseDouble(String)} 一致, 其余情况回退到 Double.parseDouble. 空或非法时返回 defaultValue.
+     *
+     * @param cs           a {@link java.lang.CharSequence} object.
+     * @param defaultValue a double.
+     * @return a double.
+     */
+    public static double parseDouble(CharSequence cs, double defaultValue) {
+        if (cs == null) {
+            return defaultValue;
+        }
+        int len = cs.length();
+        int i = 0;
+        boolean negative = false;
+        if (len > 0 && (cs.charAt(0) == '-' || cs.charAt(0) == '+')) {
+            negative = cs.charAt(0) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        boolean any = false;
+        for (; i < len; i++) {
+            char c = cs.charAt(i);
+            if (c >= '0' && c <= '9') {
+                any = true;
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (scale >= 0) {
+                    scale++;
+                }
+                if (digits > 15) {
+                    return parseDoubleSlow(cs, defaultValue);
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return parseDoubleSlow(cs, defaultValue);
+            }
+        }
+        if (!any) {
+            return defaultValue;
+        }
+        if (scale > 22) {
+            return parseDoubleSlow(cs, defaultValue);
+        }
+        // mantissa < 2^53 且 10^scale 可精确表示, 一次除法的结果即为正确舍入值
+        double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private static double parseDoubleSlow(CharSequence cs, double defaultValue) {
+        try {
+            return Double.parseDouble(cs.toString());
+        } catch (final NumberFormatException nfe) {
+            return defaultValue;
+        }
+    }
 }
@@ -0,0 +1,114 @@
+package link.thingscloud.freeswitch.cdr.util;
+
+import java.io.InputStream;
+
+/**
+ * <p>UrlDecodeInputStream class.</p>
+ * <p>
+ * 在原始请求字节上按 application/x-www-form-urlencoded 规则边读边解码 ('+' 为空格, %XX 为单字节),
+ * 不产生中间 String. 非法的 % 序列按原样输出.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class UrlDecodeInputStream extends InputStream {
+
+    private final byte[] buf;
+    private final int end;
+    private int pos;
+
+    /**
+     * <p>Constructor for UrlDecodeInputStream.</p>
+     *
+     * @param buf    encoded bytes
+     * @param offset start offset of the encoded value
+     * @param length length of the encoded value
+     */
+    public UrlDecodeInputStream(byte[] buf, int offset, int length) {
+        this.buf = buf;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read() {
+        if (pos >= end) {
+            return -1;
+        }
+        return decodeNext() & 0xFF;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (pos >= end) {
+            return -1;
+        }
+        int n = 0;
+        while (n < len && pos < end) {
+            b[off + n++] = decodeNext();
+        }
+        return n;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long skip(long n) {
+        long skipped = 0;
+        while (skipped < n && pos < end) {
+            decodeNext();
+            skipped++;
+        }
+        return skipped;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int available() {
+        // 解码后长度不超过剩余编码长度, 至少为其三分之一
+        return (end - pos + 2) / 3;
+    }
+
+    private byte decodeNext() {
+        byte c = buf[pos];
+        if (c == '+') {
+            pos++;
+            return ' ';
+        }
+        if (c == '%' && pos + 2 < end) {
+            int hi = hex(buf[pos + 1]);
+            int lo = hex(buf[pos + 2]);
+            if (hi >= 0 && lo >= 0) {
+                pos += 3;
+                return (byte) ((hi << 4) | lo);
+            }
+        }
+        pos++;
+        return c;
+    }
+
+    private static int hex(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,133 @@
+package link.thingscloud.freeswitch.cdr.archive;
+
+import com.alibaba.fastjson.JSON;
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.parser.CdrExamples;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>CdrArchiveTest class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class CdrArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<Cdr> examples;
+
+    @Before
+    public void setUp() throws Exception {
+        examples = CdrExamples.cdrs();
+    }
+
+    @Test
+    public void appendAndGet() throws Exception {
+        File dir = folder.newFolder();
+        List<Cdr> cdrs = copies(300);
+        CdrArchiveWriter writer = new CdrArchiveWriter(dir, 64 * 1024, 0, 16 * 1024, true);
+        for (int i = 0; i < cdrs.size(); i += 50) {
+            writer.append(cdrs.subList(i, i + 50));
+        }
+        writer.close();
+
+        CdrArchiveReader reader = new CdrArchiveReader(dir);
+        Assert.assertTrue(reader.getSegments().size() > 1);
+        Assert.assertEquals(cdrs.size(), reader.size());
+        for (Cdr cdr : cdrs) {
+            String uuid = CdrArchiveWriter.uuid(cdr);
+            Assert.assertEquals(JSON.toJSONString(cdr), JSON.toJSONString(reader.get(uuid)));
+        }
+        Assert.assertNull(reader.get("not-exists"));
+
+        int count = 0;
+        long minTime = Long.MAX_VALUE;
+        long maxTime = 0;
+        for (CdrArchiveSegment segment : reader.getSegments()) {
+            count += segment.getCount();
+            minTime = Math.min(minTime, segment.getMinTime());
+            maxTime = Math.max(maxTime, segment.getMaxTime());
+            List<Cdr> scanned = new ArrayList<>();
+            reader.forEach(segment, scanned::add);
+            Assert.assertEquals(segment.getCount(), scanned.size());
+        }
+        Assert.assertEquals(cdrs.size(), count);
+        long time = CdrArchiveWriter.time(cdrs.get(0));
+        Assert.assertTrue(time >= minTime && time <= maxTime);
+        Assert.assertFalse(reader.getSegments(time, time).isEmpty());
+        Assert.assertTrue(reader.getSegments(maxTime + 1, Long.MAX_VALUE).isEmpty());
+        String uuid = CdrArchiveWriter.uuid(cdrs.get(0));
+        Assert.assertNotNull(reader.get(uuid, time, time));
+        Assert.assertNull(reader.get(uuid, maxTime + 1, Long.MAX_VALUE));
+
+        // 重新打开时新开一段
+        writer = new CdrArchiveWriter(dir, 64 * 1024, 0, 16 * 1024, false);
+        writer.append(examples);
+        Assert.assertEquals(reader.getSegments().size() + 1, CdrArchiveWriter.sequence(writer.getActiveFile()));
+        writer.close();
+    }
+
+    @Test
+    public void unclosedSegment() throws Exception {
+        File dir = folder.newFolder();
+        CdrArchiveWriter writer = new CdrArchiveWriter(dir, 1 << 20, 0, 1 << 20, true);
+        List<Cdr> cdrs = copies(4);
+        writer.append(cdrs);
+        // 写入端未关闭: 读取块索引
+        File segment = writer.getActiveFile();
+        Assert.assertFalse(CdrArchiveWriter.sibling(segment, CdrArchiveIndex.SORTED_SUFFIX).exists());
+        CdrArchiveReader reader = new CdrArchiveReader(dir);
+        Assert.assertEquals(4, reader.size());
+        Assert.assertNotNull(reader.get(CdrArchiveWriter.uuid(cdrs.get(3))));
+
+        // 模拟崩溃后重启: 补齐有序索引
+        new CdrArchiveWriter(dir, 1 << 20, 0, 1 << 20, true).close();
+        Assert.assertTrue(CdrArchiveWriter.sibling(segment, CdrArchiveIndex.SORTED_SUFFIX).exists());
+        reader = new CdrArchiveReader(dir);
+        for (Cdr cdr : cdrs) {
+            Assert.assertEquals(JSON.toJSONString(cdr), JSON.toJSONString(reader.get(CdrArchiveWriter.uuid(cdr))));
+        }
+        writer.close();
+    }
+
+    @Test
+    public void truncatedTail() throws Exception {
+        File dir = folder.newFolder();
+        CdrArchiveWriter writer = new CdrArchiveWriter(dir, 1 << 20, 0, 1 << 20, true);
+        List<Cdr> cdrs = copies(4);
+        writer.append(cdrs.subList(0, 2));
+        writer.append(cdrs.subList(2, 4));
+        File segment = writer.getActiveFile();
+        writer.close();
+        // 模拟崩溃: 最后一块只写入一半
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - 10);
+        }
+        CdrArchiveReader reader = new CdrArchiveReader(dir);
+        Assert.assertNotNull(reader.get(CdrArchiveWriter.uuid(cdrs.get(1))));
+        List<Cdr> scanned = new ArrayList<>();
+        reader.forEach(reader.getSegments().get(0), scanned::add);
+        Assert.assertEquals(2, scanned.size());
+    }
+
+    private List<Cdr> copies(int n) {
+        List<Cdr> cdrs = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Cdr cdr = JSON.parseObject(JSON.toJSONString(examples.get(i % examples.size())), Cdr.class);
+            cdr.getVariables().putVariable("uuid", "uuid-" + i);
+            cdrs.add(cdr);
+        }
+        return cdrs;
+    }
+}
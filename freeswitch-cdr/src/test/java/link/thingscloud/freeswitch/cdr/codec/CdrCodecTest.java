@@ -0,0 +1,129 @@
+package link.thingscloud.freeswitch.cdr.codec;
+
+import com.alibaba.fastjson.JSON;
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.parser.CdrExamples;
+import link.thingscloud.freeswitch.cdr.parser.CdrParser;
+import link.thingscloud.freeswitch.cdr.parser.ParseOptions;
+import link.thingscloud.freeswitch.cdr.parser.ParserEngine;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>CdrCodecTest class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class CdrCodecTest {
+
+    private List<Cdr> examples;
+
+    @Before
+    public void setUp() throws Exception {
+        examples = new ArrayList<>();
+        ParseOptions options = new ParseOptions().setTypedStats(true);
+        for (String xml : CdrExamples.xmls()) {
+            examples.add(CdrParser.parse(xml));
+            examples.add(CdrParser.parse(xml, ParserEngine.STAX, options));
+        }
+        examples.add(new Cdr().setCoreUuid("core-uuid").setSwitchname("中文 😀"));
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        for (Cdr cdr : examples) {
+            byte[] bytes = CdrCodec.encode(cdr);
+            Assert.assertEquals(JSON.toJSONString(cdr), JSON.toJSONString(CdrCodec.decode(bytes)));
+        }
+        // 孤立的代理字符按 '?' 写入
+        Cdr cdr = CdrCodec.decode(CdrCodec.encode(new Cdr().setSwitchname("a\uD800b")));
+        Assert.assertEquals("a?b", cdr.getSwitchname());
+    }
+
+    @Test
+    public void stream() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CdrBinaryWriter writer = new CdrBinaryWriter(out)) {
+            for (int i = 0; i < 3; i++) {
+                for (Cdr cdr : examples) {
+                    writer.write(cdr);
+                }
+            }
+        }
+        try (CdrBinaryReader reader = new CdrBinaryReader(new ByteArrayInputStream(out.toByteArray()))) {
+            for (int i = 0; i < 3; i++) {
+                for (Cdr cdr : examples) {
+                    Assert.assertEquals(JSON.toJSONString(cdr), JSON.toJSONString(reader.read()));
+                }
+            }
+            Assert.assertNull(reader.read());
+            Assert.assertEquals(CdrCodec.SCHEMA_VERSION, reader.getSchemaVersion());
+        }
+    }
+
+    @Test
+    public void size() {
+        for (Cdr cdr : examples.subList(0, examples.size() - 1)) {
+            int json = JSON.toJSONString(cdr, true).getBytes(StandardCharsets.UTF_8).length;
+            int binary = CdrCodec.encode(cdr).length;
+            Assert.assertTrue(json + " / " + binary, binary * 3 < json * 2);
+        }
+        // 字典在流内共享, 后续话单只写入变量值与超过 MAX_DICTIONARY_LENGTH 的长字符串(sdp、via 等)
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long json = 0;
+        try (CdrBinaryWriter writer = new CdrBinaryWriter(out)) {
+            for (int i = 0; i < 100; i++) {
+                for (Cdr cdr : examples) {
+                    writer.write(cdr);
+                    json += JSON.toJSONString(cdr, true).getBytes(StandardCharsets.UTF_8).length;
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        Assert.assertTrue(json + " / " + out.size(), out.size() * 4 < json);
+    }
+
+    @Test
+    public void skipUnknownFields() throws Exception {
+        // schema 2 的写入方在 Cdr 上追加了第 9 个字段
+        byte[] bytes = {0x46, 0x53, 0x43, 0x44, 1, 2,
+                14, 0,
+                12, (byte) 0x83, 0x04, 2, 1, 'a', 1, 10, 2, 3, 'x', 'y', 'z'};
+        try (CdrBinaryReader reader = new CdrBinaryReader(new ByteArrayInputStream(bytes))) {
+            Cdr cdr = reader.read();
+            Assert.assertEquals("a", cdr.getCoreUuid());
+            Assert.assertEquals("5", cdr.getSwitchname());
+            Assert.assertNull(cdr.getVariables());
+            Assert.assertEquals(2, reader.getSchemaVersion());
+            Assert.assertNull(reader.read());
+        }
+    }
+
+    @Test
+    public void rejectUnsupported() {
+        byte[] bytes = CdrCodec.encode(examples.get(0));
+        bytes[4] = CdrCodec.FORMAT_VERSION + 1;
+        try {
+            CdrCodec.decode(bytes);
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("format"));
+        }
+        bytes = CdrCodec.encode(examples.get(0));
+        try {
+            CdrCodec.decode(bytes, 0, bytes.length - 10);
+            Assert.fail();
+        } catch (IOException ignored) {
+        }
+    }
+}
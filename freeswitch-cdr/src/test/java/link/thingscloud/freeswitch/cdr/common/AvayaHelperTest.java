@@ -0,0 +1,52 @@
+package link.thingscloud.freeswitch.cdr.common;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>AvayaHelperTest class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class AvayaHelperTest {
+
+    @Test
+    public void decode() {
+        assertDecode("", "00100004381560304529", "00FA08006401B65D005B91");
+        assertDecode("", "00100004381560304529", "00FA08006401B65D005B91;encoding=hex");
+        assertDecode("", "00100004381560304529", "00fa08006401b65d005b91%3Bencoding%3Dhex");
+        assertDecode("FFFFFFFFFFF", "00100009051568002914", "04C80B4646464646464646464646FA08006403895D75D362");
+        // 没有协议标识
+        assertDecode("FFFFFFFFFFF", "", "C80B4646464646464646464646");
+    }
+
+    @Test
+    public void decodeTlv() {
+        // value 中的 C8 / FA 不是 tag, 第 3 组超出 int 范围
+        assertDecode("", "00200640004294967295", "00FA0800C8FA00FFFFFFFF");
+        // 末尾 C8 长度超出报文, 只取 ucid
+        assertDecode("", "00100094041559794321", "04FA08006424BC5CF89291C808");
+        // 未知 tag 跳过
+        assertDecode("AB", "00100004381560304529", "04D003010203C8024142FA08006401B65D005B91");
+        Assert.assertEquals("AB", AvayaHelper.decodeShared("04C8024142FA08006401B65D005B91"));
+        Assert.assertEquals("00100004381560304529", AvayaHelper.decodeUcid("04C8024142FA08006401B65D005B91"));
+    }
+
+    @Test
+    public void decodeInvalid() {
+        assertDecode("", "", null);
+        assertDecode("", "", "");
+        assertDecode("", "", ";encoding=hex");
+        assertDecode("", "", "04C8");
+        assertDecode("", "", "04FA0400640064");
+        assertDecode("", "", "04C80B46464646");
+    }
+
+    private static void assertDecode(String shared, String ucid, String data) {
+        ImmutablePair<String, String> pair = AvayaHelper.decode(data);
+        Assert.assertEquals(data, shared, pair.getLeft());
+        Assert.assertEquals(data, ucid, pair.getRight());
+    }
+}
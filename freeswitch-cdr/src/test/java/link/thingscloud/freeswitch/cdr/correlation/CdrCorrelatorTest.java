@@ -0,0 +1,205 @@
+package link.thingscloud.freeswitch.cdr.correlation;
+
+import link.thingscloud.freeswitch.cdr.domain.CallRecord;
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.domain.Variables;
+import link.thingscloud.freeswitch.cdr.parser.CdrParser;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>CdrCorrelatorTest class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class CdrCorrelatorTest {
+
+    private static final String A_UUID = "4b3b36af-3d98-4670-bc14-0ee08890d7d6";
+    private static final String B_UUID = "4b32a965-e2fc-455e-8f46-eb723e8909fd";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+    private final List<CallRecord> records = new ArrayList<>();
+    private Cdr aLeg;
+
+    @Before
+    public void setUp() throws Exception {
+        File file = new File("../example/a_" + A_UUID + ".cdr.xml");
+        aLeg = CdrParser.parse(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void originatorFirst() throws Exception {
+        Assert.assertEquals(Collections.singleton(B_UUID), CdrCorrelator.originatedLegs(aLeg));
+        CdrCorrelator correlator = correlator(new CorrelatorOptions());
+        correlator.add(aLeg);
+        Assert.assertTrue(records.isEmpty());
+        Assert.assertEquals(1, correlator.getPendingCalls());
+        correlator.add(bLeg(B_UUID, A_UUID));
+        Assert.assertEquals(1, records.size());
+        CallRecord record = records.get(0);
+        Assert.assertTrue(record.isComplete());
+        Assert.assertEquals(A_UUID, record.getId());
+        Assert.assertSame(aLeg, record.getOriginator());
+        Assert.assertEquals(1, record.getOriginatees().size());
+        Assert.assertEquals(1, record.getExpectedLegs());
+        Assert.assertEquals(0, correlator.getPendingCalls());
+        Assert.assertEquals(0, correlator.getLegsInMemory());
+    }
+
+    @Test
+    public void originateeFirst() throws Exception {
+        CdrCorrelator correlator = correlator(new CorrelatorOptions());
+        correlator.add(bLeg(B_UUID, A_UUID));
+        correlator.add(bLeg("unrelated-b", "unrelated-a"));
+        Assert.assertTrue(records.isEmpty());
+        correlator.add(aLeg);
+        Assert.assertEquals(1, records.size());
+        Assert.assertTrue(records.get(0).isComplete());
+        Assert.assertEquals(1, correlator.getPendingCalls());
+        Assert.assertEquals(1, correlator.getCompleteCount());
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        CdrCorrelator correlator = correlator(new CorrelatorOptions().setTimeoutMs(1000));
+        correlator.add(aLeg);
+        clock.addAndGet(999);
+        correlator.expire();
+        Assert.assertTrue(records.isEmpty());
+        clock.addAndGet(1);
+        correlator.expire();
+        Assert.assertEquals(1, records.size());
+        Assert.assertFalse(records.get(0).isComplete());
+        Assert.assertSame(aLeg, records.get(0).getOriginator());
+        Assert.assertTrue(records.get(0).getOriginatees().isEmpty());
+        // 超时后到达的腿单独输出
+        correlator.add(bLeg(B_UUID, A_UUID));
+        correlator.close();
+        Assert.assertEquals(2, records.size());
+        Assert.assertNull(records.get(1).getOriginator());
+        Assert.assertEquals(1, records.get(1).getOriginatees().size());
+        Assert.assertEquals(2, correlator.getIncompleteCount());
+    }
+
+    @Test
+    public void spill() throws Exception {
+        File dir = folder.newFolder("spill");
+        CdrCorrelator correlator = correlator(new CorrelatorOptions().setMaxLegs(10).setSpillDir(dir));
+        for (int i = 0; i < 20; i++) {
+            correlator.add(bLeg("b-" + i, "a-" + i));
+        }
+        correlator.add(aLeg);
+        Assert.assertTrue(correlator.getLegsInMemory() <= 10);
+        Assert.assertTrue(correlator.getSpilledLegs() > 0);
+        Assert.assertEquals(21, correlator.getLegsInMemory() + correlator.getSpilledLegs());
+        Assert.assertEquals(0, records.size());
+
+        correlator.add(bLeg(B_UUID, A_UUID));
+        Assert.assertEquals(1, records.size());
+        Assert.assertEquals(A_UUID, records.get(0).getOriginator().getVariables().getVariableTable().get("uuid"));
+
+        clock.addAndGet(new CorrelatorOptions().getTimeoutMs());
+        correlator.expire();
+        Assert.assertEquals(21, records.size());
+        for (int i = 0; i < 20; i++) {
+            CallRecord record = records.get(i + 1);
+            Assert.assertEquals("a-" + i, record.getId());
+            Assert.assertEquals("b-" + i, record.getOriginatees().get(0).getVariables().getVariableTable().get("uuid"));
+        }
+        Assert.assertEquals(0, correlator.getSpilledLegs());
+        correlator.close();
+        String[] left = dir.list();
+        Assert.assertNotNull(left);
+        Assert.assertEquals(0, left.length);
+    }
+
+    @Test
+    public void concurrentSpill() throws Exception {
+        List<CallRecord> received = Collections.synchronizedList(new ArrayList<>());
+        CdrCorrelator correlator = new CdrCorrelator(new CorrelatorOptions().setMaxLegs(50).setSpillDir(folder.newFolder("concurrent")),
+                Collections.singletonList(received::add), clock::get);
+        int threads = 4;
+        int calls = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                for (int i = offset; i < calls; i += threads) {
+                    correlator.add(bLeg("b-" + i, "a-" + i));
+                }
+                for (int i = offset; i < calls; i += threads) {
+                    correlator.add(aLeg("a-" + i, "b-" + i));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        Assert.assertEquals(calls, received.size());
+        Assert.assertEquals(calls, correlator.getCompleteCount());
+        Assert.assertTrue(correlator.getSpilledCount() > 0);
+        for (CallRecord record : received) {
+            Assert.assertTrue(record.isComplete());
+            Assert.assertEquals(record.getId(), record.getOriginator().getVariables().getVariableTable().get("uuid"));
+            Assert.assertEquals(1, record.getOriginatees().size());
+            Assert.assertEquals(record.getId(), record.getOriginatees().get(0).getVariables().getVariableTable().get("originate_signal_bond"));
+        }
+        Assert.assertEquals(0, correlator.getPendingCalls());
+        Assert.assertEquals(0, correlator.getLegsInMemory());
+        Assert.assertEquals(0, correlator.getSpilledLegs());
+        correlator.close();
+    }
+
+    @Test
+    public void evictWithoutSpill() throws Exception {
+        CdrCorrelator correlator = correlator(new CorrelatorOptions().setMaxLegs(10));
+        for (int i = 0; i < 11; i++) {
+            correlator.add(bLeg("b-" + i, "a-" + i));
+        }
+        Assert.assertTrue(correlator.getLegsInMemory() <= 10);
+        Assert.assertEquals("a-0", records.get(0).getId());
+        Assert.assertFalse(records.get(0).isComplete());
+        Assert.assertEquals(11, records.size() + correlator.getPendingCalls());
+    }
+
+    private CdrCorrelator correlator(CorrelatorOptions options) throws Exception {
+        return new CdrCorrelator(options, Collections.singletonList(records::add), clock::get);
+    }
+
+    private static Cdr aLeg(String uuid, String leg) {
+        Map<String, String> variables = new HashMap<>(4);
+        variables.put("uuid", uuid);
+        variables.put("originated_legs", leg + ";Outbound Call;1000");
+        return new Cdr().setCoreUuid("core-uuid").setVariables(new Variables().setVariableTable(variables));
+    }
+
+    private static Cdr bLeg(String uuid, String bond) {
+        Map<String, String> variables = new HashMap<>(4);
+        variables.put("uuid", uuid);
+        variables.put("originate_signal_bond", bond);
+        return new Cdr().setCoreUuid("core-uuid").setVariables(new Variables().setVariableTable(variables));
+    }
+}
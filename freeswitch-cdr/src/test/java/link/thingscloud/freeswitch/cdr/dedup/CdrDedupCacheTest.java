@@ -0,0 +1,78 @@
+package link.thingscloud.freeswitch.cdr.dedup;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * <p>CdrDedupCacheTest class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class CdrDedupCacheTest {
+
+    @Test
+    public void markAndExpire() {
+        long t = System.currentTimeMillis();
+        CdrDedupCache cache = new CdrDedupCache(1000, 16);
+        long a = CdrDedupCache.hash("a_12d714e6-3c49-463a-8965-755b8f598032");
+        byte[] body = "uuid=a_12d714e6-3c49-463a-8965-755b8f598032&cdr=".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(a, CdrDedupCache.hash(body, 5, body.length - 5));
+
+        Assert.assertTrue(cache.mark(a, t));
+        Assert.assertFalse(cache.mark(a, t + 999));
+        // 已轮换到上一代, 仍然可见
+        Assert.assertFalse(cache.mark(a, t + 1500));
+        Assert.assertTrue(cache.mark(CdrDedupCache.hash("b"), t + 1500));
+        // 两代之后过期
+        Assert.assertTrue(cache.mark(a, t + 2600));
+        // 空闲超过两个 ttl
+        Assert.assertTrue(cache.mark(a, t + 10000));
+
+        cache.unmark(a);
+        Assert.assertTrue(cache.mark(a, t + 10001));
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void earlyRotation() {
+        CdrDedupCache cache = new CdrDedupCache(60000, 4);
+        for (int i = 0; i < 12; i++) {
+            Assert.assertTrue(cache.mark(CdrDedupCache.hash("k" + i), 0));
+        }
+        Assert.assertEquals(2, cache.getEarlyRotations());
+        Assert.assertFalse(cache.mark(CdrDedupCache.hash("k4"), 0));
+        Assert.assertTrue(cache.mark(CdrDedupCache.hash("k0"), 0));
+    }
+
+    @Test
+    public void unmarkKeepsProbeChains() {
+        CdrDedupCache cache = new CdrDedupCache(60000, 1 << 10);
+        Random random = new Random(7);
+        Set<Long> expected = new HashSet<>();
+        List<Long> keys = new ArrayList<>();
+        for (int i = 0; i < 200000; i++) {
+            // 少量 key 造成大量冲突与删除
+            long key = CdrDedupCache.hash("key-" + random.nextInt(800));
+            if (random.nextBoolean()) {
+                Assert.assertEquals(expected.add(key), cache.mark(key, 0));
+                keys.add(key);
+            } else {
+                cache.unmark(key);
+                expected.remove(key);
+            }
+            Assert.assertEquals(expected.size(), cache.size());
+        }
+        for (Long key : keys) {
+            Assert.assertEquals(!expected.contains(key), cache.mark(key, 0));
+            expected.add(key);
+        }
+    }
+}
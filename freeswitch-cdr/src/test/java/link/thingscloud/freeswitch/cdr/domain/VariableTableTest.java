@@ -0,0 +1,62 @@
+package link.thingscloud.freeswitch.cdr.domain;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>VariableTableTest class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class VariableTableTest {
+
+    @Test
+    public void behavesLikeMap() {
+        VariableTable table = new VariableTable(4);
+        Map<String, String> expected = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            table.put("var_" + i, "value_" + i);
+            expected.put("var_" + i, "value_" + i);
+        }
+        // 重复变量名覆盖
+        Assert.assertEquals("value_7", table.put("var_7", "x"));
+        expected.put("var_7", "x");
+        Assert.assertEquals("value_9", table.remove("var_9"));
+        expected.remove("var_9");
+
+        Assert.assertEquals(expected, table);
+        Assert.assertEquals(table, expected);
+        Assert.assertEquals(expected.hashCode(), table.hashCode());
+        Assert.assertNull(table.get("var_9"));
+        Assert.assertEquals("x", table.get("var_7"));
+
+        List<String> keys = new ArrayList<>(table.keySet());
+        Assert.assertEquals("var_0", keys.get(0));
+        Assert.assertEquals("var_10", keys.get(9));
+
+        Iterator<Map.Entry<String, String>> it = table.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getKey().endsWith("0")) {
+                it.remove();
+            }
+        }
+        expected.keySet().removeIf(key -> key.endsWith("0"));
+        Assert.assertEquals(expected, table);
+    }
+
+    @Test
+    public void internNames() {
+        VariableTable a = new VariableTable();
+        VariableTable b = new VariableTable();
+        a.put(new String("sip_call_id"), "1");
+        b.put(new String("sip_call_id"), "2");
+        Assert.assertSame(a.keySet().iterator().next(), b.keySet().iterator().next());
+    }
+}
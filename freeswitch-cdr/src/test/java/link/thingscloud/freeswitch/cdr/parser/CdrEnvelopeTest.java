@@ -0,0 +1,59 @@
+package link.thingscloud.freeswitch.cdr.parser;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>CdrEnvelopeTest class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class CdrEnvelopeTest {
+
+    @Test
+    public void readExamples() throws Exception {
+        for (File file : CdrExamples.files()) {
+            String xml = CdrExamples.xml(file);
+            String uuid = CdrExamples.uuid(file);
+            String reqText = "uuid=" + uuid + "&cdr=" + URLEncoder.encode(xml, "UTF-8");
+            Cdr cdr = CdrParser.parse(xml);
+            for (CdrEnvelope envelope : new CdrEnvelope[]{CdrEnvelope.read(reqText), CdrEnvelope.read(reqText.getBytes(StandardCharsets.UTF_8))}) {
+                Assert.assertEquals(uuid, envelope.getUuid());
+                Assert.assertEquals(cdr.getVariables().getVariableTable().get("uuid"), envelope.channelUuid());
+                Assert.assertEquals(cdr.getCoreUuid(), envelope.getCoreUuid());
+                Assert.assertEquals(cdr.getSwitchname(), envelope.getSwitchname());
+            }
+        }
+    }
+
+    @Test
+    public void readAttributes() throws Exception {
+        String xml = "<?xml version=\"1.0\"?>\n<!-- <cdrs> -->\n<cdr\n core-uuid='c1' other=\"a>b\" switchname=\"fs&amp;01\">\n<variables/></cdr>";
+        String reqText = "cdr=" + URLEncoder.encode(xml, "UTF-8") + "&uuid=b_u1";
+        CdrEnvelope envelope = CdrEnvelope.read(reqText.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals("b_u1", envelope.getUuid());
+        Assert.assertEquals("u1", envelope.channelUuid());
+        Assert.assertEquals("c1", envelope.getCoreUuid());
+        Assert.assertEquals("fs&01", envelope.getSwitchname());
+        Assert.assertEquals(envelope, CdrEnvelope.read(reqText));
+
+        // 根元素不在前 PREFIX 字节内时只取 uuid
+        StringBuilder padding = new StringBuilder();
+        while (padding.length() < CdrEnvelope.PREFIX) {
+            padding.append("<!-- padding -->");
+        }
+        reqText = "uuid=a_u2&cdr=" + URLEncoder.encode(padding + xml, "UTF-8");
+        envelope = CdrEnvelope.read(reqText.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals("a_u2", envelope.getUuid());
+        Assert.assertNull(envelope.getCoreUuid());
+        Assert.assertEquals(envelope, CdrEnvelope.read(reqText));
+
+        Assert.assertEquals(new CdrEnvelope(), CdrEnvelope.read("foo=bar&x"));
+    }
+}
@@ -0,0 +1,92 @@
+package link.thingscloud.freeswitch.cdr.parser;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.exception.ParserException;
+import org.junit.Assert;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>CdrExamples class.</p>
+ * <p>
+ * 测试共用的示例话单(仓库根目录 example/*.cdr.xml), 以 test-jar 提供给 starter 模块.
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public final class CdrExamples {
+
+    private static final String SUFFIX = ".cdr.xml";
+
+    private CdrExamples() {
+    }
+
+    /**
+     * 示例文件, 按文件名排序
+     *
+     * @return example files
+     */
+    public static File[] files() {
+        File[] files = new File("../example").listFiles((dir, name) -> name.endsWith(SUFFIX));
+        Assert.assertNotNull(files);
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * 文件名去掉 .cdr.xml, 即 mod_xml_cdr 请求中的 uuid 参数
+     *
+     * @param file example file
+     * @return uuid
+     */
+    public static String uuid(File file) {
+        return file.getName().substring(0, file.getName().length() - SUFFIX.length());
+    }
+
+    /**
+     * <p>xml.</p>
+     *
+     * @param file example file
+     * @return xml
+     * @throws java.io.IOException if any.
+     */
+    public static String xml(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * <p>xmls.</p>
+     *
+     * @return xml of each example
+     * @throws java.io.IOException if any.
+     */
+    public static String[] xmls() throws IOException {
+        File[] files = files();
+        String[] xmls = new String[files.length];
+        for (int i = 0; i < files.length; i++) {
+            xmls[i] = xml(files[i]);
+        }
+        return xmls;
+    }
+
+    /**
+     * 以默认引擎解析的示例话单
+     *
+     * @return cdrs
+     * @throws java.io.IOException if any.
+     * @throws link.thingscloud.freeswitch.cdr.exception.ParserException if any.
+     */
+    public static List<Cdr> cdrs() throws IOException, ParserException {
+        List<Cdr> cdrs = new ArrayList<>();
+        for (String xml : xmls()) {
+            cdrs.add(CdrParser.parse(xml));
+        }
+        return cdrs;
+    }
+}
@@ -1,11 +1,19 @@
 package link.thingscloud.freeswitch.cdr.parser;
 
 import com.alibaba.fastjson.JSON;
+import link.thingscloud.freeswitch.cdr.domain.Audio;
 import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.domain.ErrorPeriodStats;
+import link.thingscloud.freeswitch.cdr.domain.InboundStats;
 import link.thingscloud.freeswitch.cdr.exception.ParserException;
 import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
 /**
  * <p>CdrParserTest class.</p>
  *
@@ -35,6 +43,178 @@ public class CdrParserTest {
         System.out.println("per   : " + (end - start) / times + " ns" + ", " + (end - start) / 1000000 / times + " ms");
     }
 
+    /**
+     * <p>staxEqualsDom4j.</p>
+     *
+     * @throws java.lang.Exception if any.
+     */
+    @Test
+    public void staxEqualsDom4j() throws Exception {
+        Assert.assertEquals(CdrParser.decodeThenParse(encodeStr, ParserEngine.DOM4J),
+                CdrParser.decodeThenParse(encodeStr, ParserEngine.STAX));
+        Cdr stats = CdrParser.parse(statsXml, ParserEngine.STAX);
+        Assert.assertEquals(CdrParser.parse(statsXml, ParserEngine.DOM4J), stats);
+        Assert.assertEquals("inbound", stats.getChannelData().getDirection());
+        Assert.assertEquals("x y &amp; z", stats.getVariables().getVariableTable().get("a"));
+        Assert.assertEquals("4.50", stats.getCallStats().getAudio().getInbound().getMos());
+        for (String xml : CdrExamples.xmls()) {
+            Cdr expected = CdrParser.parse(xml, ParserEngine.DOM4J);
+            Cdr actual = CdrParser.parse(xml, ParserEngine.STAX);
+            Assert.assertEquals(expected, actual);
+            Assert.assertEquals(JSON.toJSONString(expected), JSON.toJSONString(actual));
+        }
+    }
+
+    /**
+     * <p>fusedDecodeEqualsDecodeThenParse.</p>
+     *
+     * @throws java.lang.Exception if any.
+     */
+    @Test
+    public void fusedDecodeEqualsDecodeThenParse() throws Exception {
+        Assert.assertEquals(CdrParser.decodeThenParse(encodeStr),
+                CdrParser.decodeThenParse(encodeStr.getBytes(StandardCharsets.UTF_8), ParserEngine.STAX));
+        for (String xml : CdrExamples.xmls()) {
+            String reqText = "uuid=a_4b3b36af&cdr=" + URLEncoder.encode(xml, "UTF-8");
+            Assert.assertEquals(CdrParser.decodeThenParse(reqText),
+                    CdrParser.decodeThenParse(reqText.getBytes(StandardCharsets.UTF_8), ParserEngine.STAX));
+        }
+    }
+
+    /**
+     * LAZY 引擎按需解析段落, 结果与 DOM4J 一致.
+     *
+     * @throws java.lang.Exception if any.
+     */
+    @Test
+    public void lazyEqualsDom4j() throws Exception {
+        for (String xml : CdrExamples.xmls()) {
+            Cdr expected = CdrParser.parse(xml, ParserEngine.DOM4J);
+            String reqText = "uuid=a_4b3b36af&cdr=" + URLEncoder.encode(xml, "UTF-8");
+            LazyCdr actual = (LazyCdr) CdrParser.decodeThenParse(reqText.getBytes(StandardCharsets.UTF_8), ParserEngine.LAZY);
+            Assert.assertEquals(expected.getSwitchname(), actual.getSwitchname());
+            Assert.assertEquals(expected.getChannelData(), actual.getChannelData());
+            Assert.assertFalse(actual.isLoaded());
+            Assert.assertEquals(expected, actual);
+            Assert.assertTrue(actual.isLoaded());
+            Assert.assertEquals(JSON.toJSONString(expected), JSON.toJSONString(actual));
+            Assert.assertEquals(expected, CdrParser.parse(xml, ParserEngine.LAZY));
+        }
+        Assert.assertEquals(CdrParser.parse(statsXml, ParserEngine.DOM4J), CdrParser.parse(statsXml, ParserEngine.LAZY));
+    }
+
+    /**
+     * <p>typedStats.</p>
+     *
+     * @throws java.lang.Exception if any.
+     */
+    @Test
+    public void typedStats() throws Exception {
+        Cdr plain = CdrParser.parse(statsXml, ParserEngine.STAX);
+        Assert.assertNull(plain.getCallStats().getAudio().getInbound().getStats());
+
+        ParseOptions options = new ParseOptions().setTypedStats(true);
+        for (ParserEngine engine : ParserEngine.values()) {
+            Cdr cdr = CdrParser.parse(statsXml, engine, options);
+            Audio audio = cdr.getCallStats().getAudio();
+            InboundStats inbound = audio.getInbound().getStats();
+            Assert.assertEquals(17200L, inbound.getRawBytes());
+            Assert.assertEquals(100L, inbound.getPacketCount());
+            Assert.assertEquals(4.5D, inbound.getMos(), 0D);
+            Assert.assertEquals(100D, inbound.getQualityPercentage(), 0D);
+            Assert.assertEquals("4.50", audio.getInbound().getMos());
+            Assert.assertNotNull(audio.getOutbound().getStats());
+            ErrorPeriodStats errorPeriod = audio.getErrorLog().getErrorPeriods().get(0).getStats();
+            Assert.assertEquals(1560303989016266L, errorPeriod.getStart());
+            Assert.assertEquals(2L, errorPeriod.getConsecutiveFlaws());
+            Assert.assertEquals(100L, errorPeriod.getDurationMsec());
+        }
+        Assert.assertEquals(CdrParser.parse(statsXml, ParserEngine.DOM4J, options), CdrParser.parse(statsXml, ParserEngine.STAX, options));
+    }
+
+    /**
+     * 投影只保留订阅的段落与变量, 两种引擎结果一致.
+     *
+     * @throws java.lang.Exception if any.
+     */
+    @Test
+    public void projection() throws Exception {
+        CdrProjection projection = CdrProjection.parse("CALL_STATS,CALLFLOW_TIMES", "hangup_cause,billsec");
+        ParseOptions options = new ParseOptions().setProjection(projection);
+        for (String xml : CdrExamples.xmls()) {
+            Cdr full = CdrParser.parse(xml, ParserEngine.DOM4J);
+            Cdr dom4j = CdrParser.parse(xml, ParserEngine.DOM4J, options);
+            Cdr stax = CdrParser.parse(xml, ParserEngine.STAX, options);
+            Assert.assertEquals(dom4j, stax);
+            Assert.assertNull(stax.getChannelData());
+            Assert.assertNull(stax.getAppLog());
+            Assert.assertEquals(full.getCoreUuid(), stax.getCoreUuid());
+            Assert.assertEquals(full.getCallStats(), stax.getCallStats());
+            Assert.assertEquals(full.getVariables().getVariableTable().get("billsec"), stax.getVariables().getVariableTable().get("billsec"));
+            Assert.assertTrue(stax.getVariables().getVariableTable().size() <= 2);
+            Assert.assertEquals(full.getCallflows().size(), stax.getCallflows().size());
+            Assert.assertEquals(full.getCallflows().get(0).getTimes(), stax.getCallflows().get(0).getTimes());
+            Assert.assertNull(stax.getCallflows().get(0).getCallerProfile());
+        }
+        Assert.assertTrue(projection.union(CdrProjection.all()).isAll());
+        Assert.assertTrue(CdrProjection.parse("", "").isAll());
+    }
+
+    /**
+     * 未识别元素只计数, 开启 captureUnknown 时写入 extensions.
+     *
+     * @throws java.lang.Exception if any.
+     */
+    @Test
+    public void unknownElements() throws Exception {
+        String xml = "<?xml version=\"1.0\"?>\n" +
+                "<cdr core-uuid=\"c1\" new-attr=\"x\">\n" +
+                "  <callflow dialplan=\"XML\">\n" +
+                "    <times><created_time>1</created_time><new_time> 42 </new_time></times>\n" +
+                "  </callflow>\n" +
+                "  <new_section><a>1</a>text</new_section>\n" +
+                "</cdr>";
+        UnknownElements.reset();
+        ParseOptions options = new ParseOptions().setCaptureUnknown(true);
+        for (ParserEngine engine : ParserEngine.values()) {
+            Cdr cdr = CdrParser.parse(xml, engine, options);
+            Assert.assertEquals(engine.name(), "42", cdr.getExtensions().get("cdr/callflow/times/new_time"));
+            Assert.assertEquals(engine.name(), "x", cdr.getExtensions().get("cdr@new-attr"));
+            Assert.assertEquals(engine.name(), "text", cdr.getExtensions().get("cdr/new_section"));
+            Assert.assertEquals(Long.valueOf(1), cdr.getCallflows().get(0).getTimes().getCreatedTime());
+            Assert.assertNull(CdrParser.parse(xml, engine).getExtensions());
+        }
+        Map<String, Long> counts = UnknownElements.getCounts();
+        Assert.assertEquals(6L, (long) counts.get("cdr/callflow/times/new_time"));
+        Assert.assertEquals(6L, (long) counts.get("cdr@new-attr"));
+        Assert.assertEquals(6L, (long) counts.get("cdr/new_section"));
+    }
+
+    @Test
+    public void unencodedAmpersand() throws Exception {
+        String body = "uuid=a_c1&cdr=<?xml version=\"1.0\"?>\n" +
+                "<cdr core-uuid=\"c1\"><variables><caller_id_name>A&amp;B</caller_id_name><uuid>u1</uuid></variables></cdr>";
+        for (ParserEngine engine : ParserEngine.values()) {
+            Cdr cdr = CdrParser.decodeThenParse(body.getBytes(StandardCharsets.UTF_8), engine, new ParseOptions());
+            Assert.assertEquals(engine.name(), "A&B", cdr.getVariables().getVariableTable().get("caller_id_name"));
+            Assert.assertEquals(engine.name(), "u1", cdr.getVariables().getVariableTable().get("uuid"));
+        }
+    }
+
+    private String statsXml = "<?xml version=\"1.0\"?>\n" +
+            "<cdr core-uuid=\"21483469-cecc-4e5f-a9eb-0402e56193aa\" switchname=\"fs01\">\n" +
+            "  <channel_data><state>CS_REPORTING</state><direction> inbound\n\t </direction></channel_data>\n" +
+            "  <call-stats><audio>\n" +
+            "    <inbound><raw_bytes>17200</raw_bytes><packet_count>100</packet_count><jitter_loss_rate>0.00</jitter_loss_rate>" +
+            "<flaw_total>0</flaw_total><quality_percentage>100.00</quality_percentage><mos>4.50</mos></inbound>\n" +
+            "    <outbound><raw_bytes>0</raw_bytes><rtcp_packet_count>0</rtcp_packet_count></outbound>\n" +
+            "    <error-log><error-period><start>1560303989016266</start><stop>1560303989116266</stop>" +
+            "<flaws>5</flaws><consecutive-flaws>2</consecutive-flaws><duration-msec>100</duration-msec></error-period></error-log>\n" +
+            "  </audio></call-stats>\n" +
+            "  <variables><a>x  <![CDATA[y &amp; z]]></a><b/><c>&lt;1&gt;</c></variables>\n" +
+            "  <hold-record><hold on=\"1\" off=\"2\" bridged-to=\"b\"/></hold-record>\n" +
+            "</cdr>";
+
     private void doParse() throws ParserException {
         Cdr cdr = CdrParser.decodeThenParse(encodeStr);
         System.out.println(JSON.toJSONString(cdr, true));
@@ -0,0 +1,142 @@
+package link.thingscloud.freeswitch.cdr.quality;
+
+import link.thingscloud.freeswitch.cdr.domain.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>CallQualityAggregatorTest class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class CallQualityAggregatorTest {
+
+    private static final long MINUTE = 60_000L;
+
+    private final AtomicLong clock = new AtomicLong(1_000 * MINUTE);
+
+    @Test
+    public void windows() {
+        CallQualityAggregator aggregator = new CallQualityAggregator(Collections.singletonList("sip_gateway_name"), 100, clock::get);
+        aggregator.handleCdr(cdr("gw1", "60", "NORMAL_CLEARING", "4.50", "0.00"));
+        aggregator.handleCdr(cdr("gw1", "0", "NO_ANSWER", null, null));
+        clock.addAndGet(3 * MINUTE);
+        aggregator.handleCdr(cdr("gw2", "30", "NORMAL_CLEARING", "3.20", "2.50"));
+
+        QualitySnapshot last = aggregator.query(1, null).get(0);
+        Assert.assertEquals(CallQualityAggregator.TOTAL, last.getDimension());
+        Assert.assertEquals(1, last.getCalls());
+        Assert.assertEquals(3.25D, last.getMos().getP50(), 1e-9);
+
+        QualitySnapshot all = aggregator.query(CallQualityAggregator.parseWindow("5m"), "*").get(0);
+        Assert.assertEquals(3, all.getCalls());
+        Assert.assertEquals(2, all.getAnswered());
+        Assert.assertEquals(2D / 3, all.getAsr(), 1e-9);
+        Assert.assertEquals(45D, all.getAcd(), 1e-9);
+        Assert.assertEquals(2, all.getWithStats());
+        Assert.assertEquals(2, all.getMos().getCount());
+        Assert.assertEquals(3.85D, all.getMos().getMean(), 1e-9);
+        Assert.assertEquals(4.55D, all.getMos().getP99(), 1e-9);
+        Assert.assertEquals(Long.valueOf(2), all.getHangupCauses().get("NORMAL_CLEARING"));
+
+        List<QualitySnapshot> gateways = aggregator.query(5, "sip_gateway_name");
+        Assert.assertEquals(2, gateways.size());
+        Assert.assertEquals("gw1", gateways.get(0).getValue());
+        Assert.assertEquals(0.5D, gateways.get(0).getAsr(), 1e-9);
+
+        // 一小时后旧分钟桶被替换
+        clock.addAndGet(60 * MINUTE);
+        Assert.assertEquals(0, aggregator.query(60, null).get(0).getCalls());
+        aggregator.handleCdr(cdr("gw1", "10", "NORMAL_CLEARING", "4.00", "0.00"));
+        Assert.assertEquals(1, aggregator.query(60, "sip_gateway_name").get(0).getCalls());
+    }
+
+    @Test
+    public void maxSeries() {
+        CallQualityAggregator aggregator = new CallQualityAggregator(Collections.singletonList("sip_gateway_name"), 2, clock::get);
+        for (int i = 0; i < 5; i++) {
+            aggregator.handleCdr(cdr("gw" + i, "1", "NORMAL_CLEARING", null, null));
+        }
+        List<QualitySnapshot> gateways = aggregator.query(1, "sip_gateway_name");
+        Assert.assertEquals(3, gateways.size());
+        Assert.assertEquals(CallQualityAggregator.OTHER, gateways.get(0).getValue());
+        Assert.assertEquals(3, gateways.get(0).getCalls());
+    }
+
+    @Test
+    public void parseWindow() {
+        Assert.assertEquals(1, CallQualityAggregator.parseWindow("1m"));
+        Assert.assertEquals(60, CallQualityAggregator.parseWindow("1h"));
+        Assert.assertEquals(15, CallQualityAggregator.parseWindow("15"));
+        for (String window : Arrays.asList("0m", "2h", "x", "")) {
+            try {
+                CallQualityAggregator.parseWindow(window);
+                Assert.fail(window);
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+
+    @Test
+    public void concurrent() throws Exception {
+        CallQualityAggregator aggregator = new CallQualityAggregator(Collections.singletonList("sip_gateway_name"), 100, clock::get);
+        int threads = 8;
+        int perThread = 50_000;
+        Cdr[] cdrs = {cdr("gw1", "60", "NORMAL_CLEARING", "4.50", "0.00"), cdr("gw2", "0", "NO_ANSWER", "4.10", "1.00")};
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        Future<?>[] futures = new Future<?>[threads];
+        for (int t = 0; t < threads; t++) {
+            futures[t] = executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    aggregator.handleCdr(cdrs[i & 1]);
+                    // 跨越分钟边界
+                    if (i == perThread / 2) {
+                        clock.compareAndSet(1_000 * MINUTE, 1_001 * MINUTE);
+                    }
+                }
+            });
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+        System.out.printf("call quality aggregator : %d cdrs, %d threads, %d cdr/s%n", threads * perThread, threads,
+                threads * perThread * TimeUnit.SECONDS.toNanos(1) / elapsed);
+
+        QualitySnapshot all = aggregator.query(5, null).get(0);
+        Assert.assertEquals(threads * perThread, all.getCalls());
+        Assert.assertEquals(threads * perThread / 2, all.getAnswered());
+        Assert.assertEquals(threads * perThread, all.getMos().getCount());
+        long gateways = 0;
+        for (QualitySnapshot snapshot : aggregator.query(5, "sip_gateway_name")) {
+            gateways += snapshot.getCalls();
+        }
+        Assert.assertEquals(threads * perThread, gateways);
+    }
+
+    private static Cdr cdr(String gateway, String billsec, String cause, String mos, String lossRate) {
+        VariableTable table = new VariableTable();
+        table.put("sip_gateway_name", gateway);
+        table.put("billsec", billsec);
+        table.put("hangup_cause", cause);
+        Cdr cdr = new Cdr().setVariables(new Variables().setVariableTable(table));
+        if (mos != null) {
+            cdr.setCallStats(new CallStats().setAudio(new Audio().setInbound(new Inbound().setMos(mos)
+                    .setJitterLossRate(lossRate).setQualityPercentage("100.00").setFlawTotal("0"))));
+        }
+        return cdr;
+    }
+}
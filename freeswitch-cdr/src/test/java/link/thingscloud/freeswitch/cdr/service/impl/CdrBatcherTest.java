@@ -0,0 +1,96 @@
+package link.thingscloud.freeswitch.cdr.service.impl;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>CdrBatcherTest class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class CdrBatcherTest {
+
+    @Test
+    public void flushBySize() throws InterruptedException {
+        List<Integer> sizes = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(10);
+        CdrBatcher batcher = new CdrBatcher("test", cdrs -> sizes.add(cdrs.size()), 5, TimeUnit.MINUTES.toMillis(1), 100);
+        for (int i = 0; i < 10; i++) {
+            batcher.add(new Cdr(), done::countDown);
+        }
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(10, sizes.stream().mapToInt(Integer::intValue).sum());
+        sizes.forEach(size -> Assert.assertTrue(size <= 5));
+        batcher.close();
+    }
+
+    @Test
+    public void flushByLinger() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(2);
+        CdrBatcher batcher = new CdrBatcher("test", cdrs -> {
+        }, 500, 50, 100);
+        batcher.add(new Cdr(), done::countDown);
+        batcher.add(new Cdr(), done::countDown);
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        batcher.close();
+    }
+
+    @Test
+    public void flushOnClose() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(3);
+        CdrBatcher batcher = new CdrBatcher("test", cdrs -> {
+        }, 500, TimeUnit.MINUTES.toMillis(1), 100);
+        for (int i = 0; i < 3; i++) {
+            batcher.add(new Cdr(), done::countDown);
+        }
+        batcher.close();
+        Assert.assertEquals(0, done.getCount());
+    }
+
+    @Test
+    public void closeWaitsForRunningBatch() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CdrBatcher batcher = new CdrBatcher("test", cdrs -> {
+            started.countDown();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                throw new IllegalStateException(e);
+            }
+        }, 1, TimeUnit.MINUTES.toMillis(1), 100);
+        batcher.add(new Cdr(), done::countDown);
+        batcher.add(new Cdr(), done::countDown);
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        batcher.close();
+        Assert.assertFalse(interrupted.get());
+        Assert.assertEquals(0, done.getCount());
+    }
+
+    @Test
+    public void failedBatchNotDone() throws InterruptedException {
+        CountDownLatch handled = new CountDownLatch(1);
+        AtomicInteger done = new AtomicInteger();
+        CdrBatcher batcher = new CdrBatcher("test", cdrs -> {
+            handled.countDown();
+            throw new IllegalStateException("write failure");
+        }, 2, TimeUnit.MINUTES.toMillis(1), 100);
+        batcher.add(new Cdr(), done::incrementAndGet);
+        batcher.add(new Cdr(), done::incrementAndGet);
+        Assert.assertTrue(handled.await(5, TimeUnit.SECONDS));
+        batcher.close();
+        Assert.assertEquals(0, done.get());
+        Assert.assertEquals(2, batcher.stats().getFailed());
+    }
+}
@@ -0,0 +1,143 @@
+package link.thingscloud.freeswitch.cdr.service.impl;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.domain.Variables;
+import link.thingscloud.freeswitch.cdr.metrics.CdrMetrics;
+import link.thingscloud.freeswitch.cdr.service.DispatchKey;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>CdrHandlerExecutorTest class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class CdrHandlerExecutorTest {
+
+    @Test
+    public void stalledHandlerIsolated() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CdrHandlerExecutor stalled = new CdrHandlerExecutor("stalled", cdr -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 1, 1, true, false, CdrMetrics.NOOP);
+        CountDownLatch handled = new CountDownLatch(10);
+        CdrHandlerExecutor fast = new CdrHandlerExecutor("fast", cdr -> handled.countDown(), 1, 100, true, false, CdrMetrics.NOOP);
+        AtomicInteger done = new AtomicInteger();
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            Cdr cdr = new Cdr();
+            // 与 CdrServiceImpl 相同, 处理线程依次提交给各 handler
+            stalled.submit(cdr, null, done::incrementAndGet);
+            fast.submit(cdr, null, done::incrementAndGet);
+        }
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 1);
+        Assert.assertTrue(handled.await(5, TimeUnit.SECONDS));
+        // 1 条执行中, 1 条排队, 其余丢弃
+        Assert.assertEquals(8, stalled.stats().getDropped());
+        Assert.assertEquals(1, stalled.stats().getQueueSize());
+        Assert.assertEquals(0, fast.stats().getDropped());
+        release.countDown();
+        stalled.close();
+        fast.close();
+        Assert.assertEquals(20, done.get());
+        Assert.assertEquals(2, stalled.stats().getHandled());
+    }
+
+    @Test
+    public void stripedDispatch() throws Exception {
+        // A 腿与 B 腿的 call_uuid / originate_signal_bond 相同
+        Cdr aLeg = cdr("a-1", "a-1", null);
+        Cdr bLeg = cdr("b-1", "a-1", "a-1");
+        for (DispatchKey dispatchKey : new DispatchKey[]{DispatchKey.CALL_UUID, DispatchKey.ORIGINATE_SIGNAL_BOND}) {
+            Assert.assertEquals(dispatchKey.resolve(aLeg), dispatchKey.resolve(bLeg));
+            Assert.assertFalse(dispatchKey.isCoreUuidFallback(bLeg));
+        }
+        Assert.assertTrue(DispatchKey.CALL_UUID.isCoreUuidFallback(new Cdr().setCoreUuid("core")));
+        Assert.assertEquals("core", DispatchKey.CALL_UUID.resolve(new Cdr().setCoreUuid("core")));
+
+        int stripes = 4;
+        String slowKey = "call-0";
+        String fastKey = null;
+        for (int i = 1; fastKey == null; i++) {
+            if (CdrHandlerExecutor.stripe("call-" + i, stripes) != CdrHandlerExecutor.stripe(slowKey, stripes)) {
+                fastKey = "call-" + i;
+            }
+        }
+        CountDownLatch fastHandled = new CountDownLatch(1);
+        Map<String, List<Integer>> order = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+        Map<String, Set<String>> threads = new ConcurrentHashMap<>();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        AtomicBoolean waited = new AtomicBoolean();
+        String finalFastKey = fastKey;
+        CdrHandlerExecutor executor = new CdrHandlerExecutor("striped", cdr -> {
+            String key = DispatchKey.CALL_UUID.resolve(cdr);
+            if (running.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet() > 1) {
+                overlapped.set(true);
+            }
+            threads.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread().getName());
+            try {
+                if (key.equals(finalFastKey)) {
+                    fastHandled.countDown();
+                } else if (!waited.getAndSet(true)) {
+                    // 第一条慢话单等待另一分片上的话单完成, 串行执行时超时
+                    waited.set(fastHandled.await(5, TimeUnit.SECONDS));
+                }
+                order.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>()))
+                        .add(Integer.parseInt(cdr.getVariables().getVariableTable().get("seq")));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.get(key).decrementAndGet();
+            }
+        }, stripes, 1000, false, true, CdrMetrics.NOOP);
+        CountDownLatch done = new CountDownLatch(101);
+        for (int i = 0; i < 100; i++) {
+            Cdr cdr = cdr("leg-" + i, slowKey, null);
+            cdr.getVariables().putVariable("seq", Integer.toString(i));
+            executor.submit(cdr, DispatchKey.CALL_UUID.resolve(cdr), done::countDown);
+        }
+        Cdr fast = cdr("fast", fastKey, null);
+        fast.getVariables().putVariable("seq", "0");
+        executor.submit(fast, DispatchKey.CALL_UUID.resolve(fast), done::countDown);
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.close();
+
+        Assert.assertTrue(waited.get());
+        Assert.assertFalse(overlapped.get());
+        Assert.assertEquals(1, threads.get(slowKey).size());
+        Assert.assertNotEquals(threads.get(slowKey), threads.get(fastKey));
+        List<Integer> slowOrder = order.get(slowKey);
+        Assert.assertEquals(100, slowOrder.size());
+        for (int i = 0; i < slowOrder.size(); i++) {
+            Assert.assertEquals(i, (int) slowOrder.get(i));
+        }
+    }
+
+    private static Cdr cdr(String uuid, String callUuid, String bond) {
+        Map<String, String> variables = new HashMap<>(8);
+        variables.put("uuid", uuid);
+        variables.put("call_uuid", callUuid);
+        if (bond != null) {
+            variables.put("originate_signal_bond", bond);
+        }
+        return new Cdr().setCoreUuid("core").setVariables(new Variables().setVariableTable(variables));
+    }
+}
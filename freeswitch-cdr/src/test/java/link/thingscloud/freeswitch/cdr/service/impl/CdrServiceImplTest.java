@@ -0,0 +1,185 @@
+package link.thingscloud.freeswitch.cdr.service.impl;
+
+import link.thingscloud.freeswitch.cdr.controller.CdrController;
+import link.thingscloud.freeswitch.cdr.domain.CdrHandlerStats;
+import link.thingscloud.freeswitch.cdr.exception.CdrRejectedException;
+import link.thingscloud.freeswitch.cdr.handler.CdrHandler;
+import link.thingscloud.freeswitch.cdr.service.CdrService;
+import link.thingscloud.freeswitch.cdr.spool.CdrSpool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import java.io.File;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * <p>CdrServiceImplTest class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class CdrServiceImplTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private AnnotationConfigWebApplicationContext context;
+    private CdrService cdrService;
+    private MockMvc mockMvc;
+    private File spoolDir;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    public void rejectWhenPoolIsFull() throws Exception {
+        spoolDir = folder.newFolder("spool");
+        Map<String, Object> properties = new HashMap<>(16);
+        properties.put("cdr.pool.size", "1");
+        properties.put("cdr.pool.queue-capacity", "1");
+        properties.put("cdr.dedup.enabled", "true");
+        properties.put("cdr.spool.enabled", "true");
+        properties.put("cdr.spool.dir", spoolDir.getPath());
+        // handler 队列满时阻塞处理线程, 使处理线程池被占满
+        properties.put("cdr.handler.blockingHandler.threads", "1");
+        properties.put("cdr.handler.blockingHandler.queue-capacity", "1");
+        properties.put("cdr.handler.blockingHandler.overflow", "block");
+        start(properties, "blockingHandler", cdr -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        cdrService.handle(body("u1"));
+        Assert.assertTrue(entered.await(5, TimeUnit.SECONDS));
+        cdrService.handle(body("u2"));
+        await(() -> handlerStats().getQueueSize() == 1);
+        // 处理线程阻塞在 handler 队列上
+        cdrService.handle(body("u3"));
+        await(() -> cdrService.getQueueSize() == 0);
+        cdrService.handle(body("u4"));
+        Assert.assertEquals(1, cdrService.getQueueSize());
+
+        try {
+            cdrService.handle(body("u5"));
+            Assert.fail();
+        } catch (CdrRejectedException e) {
+            Assert.assertEquals(1, cdrService.getRejectedCount());
+        }
+        mockMvc.perform(post("/freeswitch/cdr").contentType(MediaType.APPLICATION_FORM_URLENCODED).content(body("u6")))
+                .andExpect(status().is(503))
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "5"));
+        Assert.assertEquals(2, cdrService.getRejectedCount());
+
+        release.countDown();
+        await(() -> handlerStats().getHandled() == 4);
+        // 去重标记已撤销, FreeSWITCH 重试时照常受理
+        cdrService.handle(body("u5"));
+        mockMvc.perform(post("/freeswitch/cdr").contentType(MediaType.APPLICATION_FORM_URLENCODED).content(body("u6")))
+                .andExpect(status().isOk());
+        await(() -> handlerStats().getHandled() == 6);
+        Assert.assertEquals(0, cdrService.getDuplicateCount());
+        cdrService.handle(body("u1"));
+        Assert.assertEquals(1, cdrService.getDuplicateCount());
+
+        context.close();
+        // 被拒绝的请求已从 spool 中 ack, 不会重放
+        List<Long> replayed = new ArrayList<>();
+        try (CdrSpool spool = new CdrSpool(spoolDir, 1 << 20)) {
+            spool.replay((seq, payload) -> replayed.add(seq));
+        }
+        Assert.assertTrue(replayed.isEmpty());
+    }
+
+    @Test
+    public void dedupAcrossHttpAndFileSource() throws Exception {
+        File dir = folder.newFolder("log");
+        Map<String, Object> properties = new HashMap<>(8);
+        properties.put("cdr.dedup.enabled", "true");
+        properties.put("cdr.file-source.enabled", "true");
+        properties.put("cdr.file-source.dir", dir.getPath());
+        properties.put("cdr.file-source.settle-ms", "0");
+        start(properties, "countingHandler", cdr -> {
+        });
+
+        cdrService.handle(body("u1"));
+        await(() -> handlerStats().getHandled() == 1);
+        Files.write(new File(dir, "a_u1.cdr.xml").toPath(), xml("u1").getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(dir, "a_u2.cdr.xml").toPath(), xml("u2").getBytes(StandardCharsets.UTF_8));
+        // 文件处理完成后移动到 done
+        await(() -> new File(dir, "done/a_u1.cdr.xml").exists() && new File(dir, "done/a_u2.cdr.xml").exists());
+        Assert.assertEquals(2, handlerStats().getHandled());
+        Assert.assertEquals(1, cdrService.getDuplicateCount());
+    }
+
+    private void start(Map<String, Object> properties, String handlerName, CdrHandler handler) {
+        context = new AnnotationConfigWebApplicationContext();
+        context.setServletContext(new MockServletContext());
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+        context.register(WebConfig.class, CdrServiceImpl.class, CdrController.class);
+        context.addBeanFactoryPostProcessor(beanFactory -> beanFactory.registerSingleton(handlerName, handler));
+        context.refresh();
+        cdrService = context.getBean(CdrService.class);
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+    }
+
+    private CdrHandlerStats handlerStats() {
+        return cdrService.getHandlerStats().get(0);
+    }
+
+    private static String xml(String uuid) {
+        return "<?xml version=\"1.0\"?>\n<cdr core-uuid=\"core\"><variables><uuid>" + uuid + "</uuid></variables></cdr>";
+    }
+
+    private static byte[] body(String uuid) throws Exception {
+        return ("uuid=a_" + uuid + "&cdr=" + URLEncoder.encode(xml(uuid), "UTF-8")).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue(System.nanoTime() < deadline);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    @Configuration
+    @EnableWebMvc
+    static class WebConfig {
+    }
+}
@@ -0,0 +1,140 @@
+package link.thingscloud.freeswitch.cdr.source;
+
+import link.thingscloud.freeswitch.cdr.domain.Cdr;
+import link.thingscloud.freeswitch.cdr.metrics.CdrMetrics;
+import link.thingscloud.freeswitch.cdr.parser.CdrExamples;
+import link.thingscloud.freeswitch.cdr.parser.ParseOptions;
+import link.thingscloud.freeswitch.cdr.parser.ParserEngine;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * <p>CdrFileSourceTest class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class CdrFileSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void scanWatchAndMove() throws Exception {
+        File dir = folder.newFolder();
+        File[] examples = CdrExamples.files();
+        Files.copy(examples[0].toPath(), new File(dir, examples[0].getName()).toPath());
+        Files.write(new File(dir, "a_broken.cdr.xml").toPath(), "<cdr><oops".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(dir, "ignored.txt").toPath(), "x".getBytes(StandardCharsets.UTF_8));
+
+        List<Cdr> cdrs = new CopyOnWriteArrayList<>();
+        FileSourceOptions options = new FileSourceOptions().setDir(dir).setThreads(2).setSettleMs(200);
+        CdrFileSource source = new CdrFileSource(options, ParserEngine.STAX, new ParseOptions(), (cdr, done) -> {
+            cdrs.add(cdr);
+            done.run();
+        });
+        source.start();
+        await(() -> source.getImportedCount() == 1 && source.getFailedCount() == 1);
+
+        // 启动后写入的文件
+        for (int i = 1; i < examples.length; i++) {
+            Files.copy(examples[i].toPath(), new File(dir, examples[i].getName()).toPath());
+        }
+        await(() -> source.getImportedCount() == examples.length);
+        source.close();
+
+        Assert.assertEquals(examples.length, cdrs.size());
+        for (File example : examples) {
+            Assert.assertFalse(new File(dir, example.getName()).exists());
+            Assert.assertTrue(new File(dir, "done/" + example.getName()).exists());
+        }
+        Assert.assertTrue(new File(dir, "error/a_broken.cdr.xml").exists());
+        Assert.assertTrue(new File(dir, "ignored.txt").exists());
+        Assert.assertEquals(0, source.getPendingCount());
+    }
+
+    @Test
+    public void checkpointSkipsCompletedFiles() throws Exception {
+        File dir = folder.newFolder();
+        File[] examples = CdrExamples.files();
+        for (File example : examples) {
+            Files.copy(example.toPath(), new File(dir, example.getName()).toPath());
+        }
+        // 上次已完成但未来得及移动
+        Files.write(new File(dir, ".checkpoint").toPath(), (examples[0].getName() + "\n").getBytes(StandardCharsets.UTF_8));
+
+        List<Cdr> cdrs = new CopyOnWriteArrayList<>();
+        FileSourceOptions options = new FileSourceOptions().setDir(dir).setSettleMs(0).setWatch(false);
+        CdrFileSource source = new CdrFileSource(options, ParserEngine.DOM4J, new ParseOptions(), (cdr, done) -> {
+            cdrs.add(cdr);
+            done.run();
+        });
+        source.start();
+        await(() -> source.getImportedCount() == examples.length - 1);
+        source.close();
+
+        Assert.assertEquals(examples.length - 1, cdrs.size());
+        for (File example : examples) {
+            Assert.assertTrue(new File(dir, "done/" + example.getName()).exists());
+        }
+    }
+
+    @Test
+    public void compactCheckpointAndParseMetrics() throws Exception {
+        File dir = folder.newFolder();
+        File[] examples = CdrExamples.files();
+        int files = 50;
+        for (int i = 0; i < files; i++) {
+            Files.copy(examples[i % examples.length].toPath(), new File(dir, "a_" + i + ".cdr.xml").toPath());
+        }
+        Files.write(new File(dir, "a_broken.cdr.xml").toPath(), "<cdr><oops".getBytes(StandardCharsets.UTF_8));
+
+        LongAdder parsed = new LongAdder();
+        LongAdder parseFailed = new LongAdder();
+        CdrMetrics metrics = new CdrMetrics() {
+            @Override
+            public void parsed(ParserEngine engine, Cdr cdr, long latencyNanos) {
+                parsed.increment();
+            }
+
+            @Override
+            public void parseFailed(ParserEngine engine) {
+                parseFailed.increment();
+            }
+        };
+        FileSourceOptions options = new FileSourceOptions().setDir(dir).setThreads(4).setSettleMs(0).setWatch(false)
+                .setAction(FileSourceOptions.Action.DELETE).setCheckpointCompactLines(8);
+        CdrFileSource source = new CdrFileSource(options, ParserEngine.STAX, new ParseOptions(), (cdr, done) -> done.run(), metrics);
+        source.start();
+        await(() -> source.getImportedCount() == files && source.getFailedCount() == 1);
+        source.close();
+
+        Assert.assertEquals(files, parsed.sum());
+        Assert.assertEquals(1, parseFailed.sum());
+        // 全部已删除, checkpoint 只剩最近一次重写后追加的行
+        Assert.assertTrue(Files.readAllLines(new File(dir, ".checkpoint").toPath()).size() < 8);
+        Assert.assertFalse(new File(dir, ".checkpoint.tmp").exists());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException, IOException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new IOException("timeout");
+            }
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package link.thingscloud.freeswitch.cdr.spool;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>CdrSpoolTest class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class CdrSpoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replayUnacked() throws IOException {
+        File dir = folder.newFolder();
+        CdrSpool spool = new CdrSpool(dir, 1 << 20);
+        long a = spool.append(bytes("a"));
+        long b = spool.append(bytes("b"));
+        long c = spool.append(bytes("c"));
+        spool.ack(b);
+        spool.close();
+
+        spool = new CdrSpool(dir, 1 << 20);
+        List<Long> seqs = new ArrayList<>();
+        List<String> payloads = new ArrayList<>();
+        spool.replay((seq, payload) -> {
+            seqs.add(seq);
+            payloads.add(new String(payload, StandardCharsets.UTF_8));
+        });
+        Assert.assertEquals(2, seqs.size());
+        Assert.assertEquals(a, (long) seqs.get(0));
+        Assert.assertEquals(c, (long) seqs.get(1));
+        Assert.assertEquals("a", payloads.get(0));
+        Assert.assertEquals("c", payloads.get(1));
+
+        // 新记录序号不与旧记录冲突
+        Assert.assertTrue(spool.append(bytes("d")) > c);
+        seqs.forEach(spool::ack);
+        Assert.assertEquals(1, spool.getSegmentCount());
+        spool.close();
+    }
+
+    @Test
+    public void deleteAckedSegments() throws IOException {
+        File dir = folder.newFolder();
+        CdrSpool spool = new CdrSpool(dir, 64);
+        List<Long> seqs = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            seqs.add(spool.append(new byte[40]));
+        }
+        Assert.assertTrue(spool.getSegmentCount() > 1);
+        seqs.forEach(spool::ack);
+        Assert.assertEquals(1, spool.getSegmentCount());
+        spool.close();
+    }
+
+    @Test
+    public void ignoreTornTail() throws IOException {
+        File dir = folder.newFolder();
+        CdrSpool spool = new CdrSpool(dir, 1 << 20);
+        spool.append(bytes("a"));
+        spool.append(bytes("b"));
+        spool.close();
+
+        File[] segments = dir.listFiles((d, name) -> name.endsWith(".seg"));
+        Assert.assertNotNull(segments);
+        try (RandomAccessFile file = new RandomAccessFile(segments[0], "rw")) {
+            file.setLength(file.length() - 1);
+        }
+
+        spool = new CdrSpool(dir, 1 << 20);
+        List<String> payloads = new ArrayList<>();
+        spool.replay((seq, payload) -> payloads.add(new String(payload, StandardCharsets.UTF_8)));
+        Assert.assertEquals(1, payloads.size());
+        Assert.assertEquals("a", payloads.get(0));
+        spool.close();
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
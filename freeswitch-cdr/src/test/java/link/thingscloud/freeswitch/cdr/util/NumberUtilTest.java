@@ -0,0 +1,46 @@
+package link.thingscloud.freeswitch.cdr.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * <p>NumberUtilTest class.</p>
+ *
+ * @author : <a href="mailto:ant.zhou@aliyun.com">zhouhailin</a>
+ * @version $Id: $Id
+ */
+public class NumberUtilTest {
+
+    @Test
+    public void parseLong() {
+        Assert.assertEquals(0L, NumberUtil.parseLong("0", -1L));
+        Assert.assertEquals(1560303991096270L, NumberUtil.parseLong("1560303991096270", -1L));
+        Assert.assertEquals(-42L, NumberUtil.parseLong("-42", -1L));
+        Assert.assertEquals(Long.MAX_VALUE, NumberUtil.parseLong(Long.toString(Long.MAX_VALUE), -1L));
+        Assert.assertEquals(Long.MIN_VALUE, NumberUtil.parseLong(Long.toString(Long.MIN_VALUE), -1L));
+        Assert.assertEquals(-1L, NumberUtil.parseLong("9223372036854775808", -1L));
+        Assert.assertEquals(-1L, NumberUtil.parseLong("", -1L));
+        Assert.assertEquals(-1L, NumberUtil.parseLong("-", -1L));
+        Assert.assertEquals(-1L, NumberUtil.parseLong("1.5", -1L));
+        Assert.assertEquals(-1L, NumberUtil.parseLong(null, -1L));
+    }
+
+    @Test
+    public void parseDouble() {
+        String[] values = {"0", "0.00", "4.50", "6.24", "400.00", "100.00", "20.00", "0.1", "-3.75", ".5", "5.",
+                "123456789012345", "0.000000000000000000001", "1e3", "12345678901234567890.5"};
+        for (String value : values) {
+            Assert.assertEquals(value, Double.parseDouble(value), NumberUtil.parseDouble(value, Double.NaN), 0D);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            String value = random.nextInt(100000) + "." + random.nextInt(100);
+            Assert.assertEquals(value, Double.parseDouble(value), NumberUtil.parseDouble(value, Double.NaN), 0D);
+        }
+        Assert.assertTrue(Double.isNaN(NumberUtil.parseDouble("", Double.NaN)));
+        Assert.assertTrue(Double.isNaN(NumberUtil.parseDouble("abc", Double.NaN)));
+        Assert.assertTrue(Double.isNaN(NumberUtil.parseDouble(null, Double.NaN)));
+    }
+}